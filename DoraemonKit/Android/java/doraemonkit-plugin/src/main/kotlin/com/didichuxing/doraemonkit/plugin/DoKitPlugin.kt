@@ -3,11 +3,8 @@ package com.didichuxing.doraemonkit.plugin
 import com.android.build.gradle.AppExtension
 import com.android.build.gradle.LibraryExtension
 import com.didichuxing.doraemonkit.plugin.extension.DoKitExt
-import com.didichuxing.doraemonkit.plugin.extension.SlowMethodExt
 import com.didichuxing.doraemonkit.plugin.processor.DoKitPluginConfigProcessor
-import com.didichuxing.doraemonkit.plugin.stack_method.MethodStackNodeUtil
 import com.didichuxing.doraemonkit.plugin.transform.DoKitCommTransform
-import com.didichuxing.doraemonkit.plugin.transform.DoKitDependTransform
 import com.didiglobal.booster.gradle.dependencies
 import com.didiglobal.booster.gradle.getAndroid
 import com.didiglobal.booster.gradle.getProperty
@@ -92,28 +89,9 @@ class DoKitPlugin : Plugin<Project> {
 
                         "application module ${project.name} is executing...".println()
 
-                        MethodStackNodeUtil.METHOD_STACK_KEYS.clear()
                         if (DoKitExtUtil.DOKIT_PLUGIN_SWITCH) {
-                            //注册transform
+                            //注册transform STRATEGY_STACK 的调用栈在同一个transform中通过调用图一次完成插桩
                             androidExt.registerTransform(DoKitCommTransform(project))
-                            if (slowMethodSwitch && slowMethodStrategy == SlowMethodExt.STRATEGY_STACK) {
-                                MethodStackNodeUtil.METHOD_STACK_KEYS.add(0, mutableSetOf<String>())
-                                val methodStackRange = 1 until methodStackLevel
-                                if (methodStackLevel > 1) {
-                                    for (index in methodStackRange) {
-                                        MethodStackNodeUtil.METHOD_STACK_KEYS.add(
-                                            index,
-                                            mutableSetOf<String>()
-                                        )
-                                        androidExt.registerTransform(
-                                            DoKitDependTransform(
-                                                project,
-                                                index
-                                            )
-                                        )
-                                    }
-                                }
-                            }
                         }
 
                         //项目评估完毕回调
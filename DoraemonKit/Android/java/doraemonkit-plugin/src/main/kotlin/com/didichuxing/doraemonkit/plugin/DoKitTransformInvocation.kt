@@ -14,6 +14,8 @@ import com.android.build.api.transform.TransformInput
 import com.android.build.api.transform.TransformInvocation
 import com.android.build.api.transform.TransformOutputProvider
 import com.android.dx.command.dexer.Main
+import com.didichuxing.doraemonkit.plugin.method_id.MethodIdGenerator
+import com.didichuxing.doraemonkit.plugin.report.TransformReport
 import com.didichuxing.doraemonkit.plugin.transform.DoKitBaseTransform
 import com.didiglobal.booster.gradle.*
 import com.didiglobal.booster.kotlinx.NCPU
@@ -26,6 +28,7 @@ import com.didiglobal.booster.transform.TransformContext
 import com.didiglobal.booster.transform.artifacts
 import com.didiglobal.booster.transform.util.transform
 import java.io.File
+import java.lang.management.ManagementFactory
 import java.net.URI
 import java.util.concurrent.*
 
@@ -43,6 +46,8 @@ internal class DoKitTransformInvocation(
 
     private val outputs = CopyOnWriteArrayList<File>()
 
+    private val threadMxBean = ManagementFactory.getThreadMXBean()
+
     override val name: String = delegate.context.variantName
 
     override val projectDir: File = project.projectDir
@@ -79,6 +84,11 @@ internal class DoKitTransformInvocation(
 
     override fun get(type: String) = variant.artifacts.get(type)
 
+    /**
+     * 本次transform的耗时统计，结束时写入 build/reports/dokit/<transform>/<variant>.json
+     */
+    internal val report = TransformReport(transform.name, name)
+
     internal fun doFullTransform() = doTransform(this::transformFully)
 
     internal fun doIncrementalTransform() = doTransform(this::transformIncrementally)
@@ -97,6 +107,7 @@ internal class DoKitTransformInvocation(
 
     private fun doTransform(block: (ExecutorService) -> Iterable<Future<*>>) {
         this.outputs.clear()
+        MethodIdGenerator.onTransformStart(this)
         this.onPreTransform()
 
         val executor = Executors.newFixedThreadPool(NCPU)
@@ -110,12 +121,24 @@ internal class DoKitTransformInvocation(
         }
 
         this.onPostTransform()
+        MethodIdGenerator.onTransformEnd(this)
+        this.writeReport()
 
         if (transform.verifyEnabled) {
             this.doVerify()
         }
     }
 
+    private fun writeReport() {
+        val reportFile = File(reportsDir, "dokit/${transform.name}/$name.json")
+        try {
+            report.writeTo(reportFile)
+        } catch (e: Exception) {
+            project.logger.warn("write transform report fail: ${e.message}")
+        }
+        "${report.summary()}  report===>$reportFile".println()
+    }
+
     private fun transformFully(executor: ExecutorService) = this.inputs.map {
         it.jarInputs + it.directoryInputs
     }.flatten().map { input ->
@@ -123,7 +146,9 @@ internal class DoKitTransformInvocation(
             val format = if (input is DirectoryInput) Format.DIRECTORY else Format.JAR
             outputProvider?.let { provider ->
                 project.logger.info("Transforming ${input.file}")
-                input.transform(provider.getContentLocation(input.name, input.contentTypes, input.scopes, format))
+                timeInput(input.file) {
+                    input.transform(provider.getContentLocation(input.name, input.contentTypes, input.scopes, format))
+                }
             }
         }
     }
@@ -148,7 +173,9 @@ internal class DoKitTransformInvocation(
             CHANGED, ADDED -> {
                 project.logger.info("Transforming ${jarInput.file}")
                 outputProvider?.let { provider ->
-                    jarInput.transform(provider.getContentLocation(jarInput.name, jarInput.contentTypes, jarInput.scopes, Format.JAR))
+                    timeInput(jarInput.file) {
+                        jarInput.transform(provider.getContentLocation(jarInput.name, jarInput.contentTypes, jarInput.scopes, Format.JAR))
+                    }
                 }
             }
         }
@@ -175,8 +202,11 @@ internal class DoKitTransformInvocation(
                         val root = provider.getContentLocation(dirInput.name, dirInput.contentTypes, dirInput.scopes, Format.DIRECTORY)
                         val output = File(root, base.relativize(file.toURI()).path)
                         outputs += output
-                        file.transform(output) { bytecode ->
-                            bytecode.transform()
+                        val inputName = dirInput.file.absolutePath
+                        timeInput(dirInput.file) {
+                            file.transform(output) { bytecode ->
+                                bytecode.transform(inputName)
+                            }
                         }
                     }
                 }
@@ -213,14 +243,24 @@ internal class DoKitTransformInvocation(
 
     private fun QualifiedContent.transform(output: File) {
         outputs += output
+        val inputName = this.file.absolutePath
         this.file.transform(output) { bytecode ->
-            bytecode.transform()
+            bytecode.transform(inputName)
         }
     }
 
-    private fun ByteArray.transform(): ByteArray {
-        return transform.transformers.fold(this) { bytes, transformer ->
+    private inline fun timeInput(input: File, action: () -> Unit) {
+        val t0 = System.nanoTime()
+        action()
+        report.input(input.absolutePath).wallNanos.add(System.nanoTime() - t0)
+    }
+
+    private fun ByteArray.transform(inputName: String): ByteArray {
+        val ct0 = threadMxBean.currentThreadCpuTime
+        val result = transform.transformers.fold(this) { bytes, transformer ->
             transformer.transform(this@DoKitTransformInvocation, bytes)
         }
+        report.recordClass(inputName, threadMxBean.currentThreadCpuTime - ct0, this.size, result.size)
+        return result
     }
 }
\ No newline at end of file
@@ -1,16 +1,104 @@
 package com.didichuxing.doraemonkit.plugin.asmtransformer
 
-import com.didichuxing.doraemonkit.plugin.classtransformer.MethodStackDepTransformer
+import com.didichuxing.doraemonkit.plugin.DoKitTransformInvocation
+import com.didichuxing.doraemonkit.plugin.newServiceLoader
+import com.didichuxing.doraemonkit.plugin.report.TransformReport
+import com.didiglobal.booster.annotations.Priority
+import com.didiglobal.booster.transform.TransformContext
+import com.didiglobal.booster.transform.Transformer
+import com.didiglobal.booster.transform.asm.ClassTransformer
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.tree.ClassNode
+import java.lang.management.ManagementFactory
 
 /**
  * ================================================
- * 作    者：jint（金台）
- * 版    本：1.0
- * 创建日期：2020/5/21-16:44
- * 描    述：
+ * 描    述：替代booster的AsmTransformer，读写class的方式相同
+ * booster的实现用普通的mutableMapOf在NCPU个线程中累加耗时，结果不准确且只能println
+ * 这里把每个ClassTransformer的cpu耗时、处理和修改的class数写入DoKitTransformInvocation的TransformReport
+ * class是否被修改通过前后的ClassNode指纹判断(成员数量、每个方法的指令数)，只修改指令操作数的情况不计入
  * 修订历史：
  * ================================================
  */
-class DoKitAsmTransformer(private val level: Int) : BaseDoKitAsmTransformer(MethodStackDepTransformer(level)) {
+internal class DoKitAsmTransformer(classLoader: ClassLoader) : Transformer {
 
+    private val threadMxBean = ManagementFactory.getThreadMXBean()
+
+    private val transformers: List<ClassTransformer> = newServiceLoader<ClassTransformer>(classLoader, ClassLoader::class.java)
+        .load(classLoader)
+        .sortedBy {
+            it.javaClass.getAnnotation(Priority::class.java)?.value ?: 0
+        }
+
+    override fun onPreTransform(context: TransformContext) {
+        val report = context.report()
+        transformers.forEach { transformer ->
+            val cpuNanos = cpuTime {
+                transformer.onPreTransform(context)
+            }
+            report?.transformer(transformer.javaClass.name)?.preTransformCpuNanos?.add(cpuNanos)
+        }
+    }
+
+    override fun transform(context: TransformContext, bytecode: ByteArray): ByteArray {
+        val report = context.report()
+        var klass = ClassNode().also {
+            ClassReader(bytecode).accept(it, 0)
+        }
+        transformers.forEach { transformer ->
+            if (report == null) {
+                klass = transformer.transform(context, klass)
+                return@forEach
+            }
+            val before = klass.fingerprint()
+            val ct0 = threadMxBean.currentThreadCpuTime
+            klass = transformer.transform(context, klass)
+            val cpuNanos = threadMxBean.currentThreadCpuTime - ct0
+            val stats = report.transformer(transformer.javaClass.name)
+            stats.transformCpuNanos.add(cpuNanos)
+            stats.classes.increment()
+            if (klass.fingerprint() != before) {
+                stats.modifiedClasses.increment()
+                report.markClassModified()
+            }
+        }
+        return ClassWriter(ClassWriter.COMPUTE_MAXS).also { writer ->
+            klass.accept(writer)
+        }.toByteArray()
+    }
+
+    override fun onPostTransform(context: TransformContext) {
+        val report = context.report()
+        transformers.forEach { transformer ->
+            val cpuNanos = cpuTime {
+                transformer.onPostTransform(context)
+            }
+            report?.transformer(transformer.javaClass.name)?.postTransformCpuNanos?.add(cpuNanos)
+        }
+    }
+
+    private inline fun cpuTime(action: () -> Unit): Long {
+        val ct0 = threadMxBean.currentThreadCpuTime
+        action()
+        return threadMxBean.currentThreadCpuTime - ct0
+    }
+
+    private fun TransformContext.report(): TransformReport? = (this as? DoKitTransformInvocation)?.report
+
+    /**
+     * InsnList.size()为O(1)，计算开销只与方法数量有关
+     */
+    private fun ClassNode.fingerprint(): Long {
+        var hash = access.toLong()
+        hash = hash * 31 + (superName?.hashCode() ?: 0)
+        hash = hash * 31 + (interfaces?.size ?: 0)
+        hash = hash * 31 + (fields?.size ?: 0)
+        hash = hash * 31 + (methods?.size ?: 0)
+        methods?.forEach { method ->
+            hash = hash * 31 + method.instructions.size()
+            hash = hash * 31 + (method.tryCatchBlocks?.size ?: 0)
+        }
+        return hash
+    }
 }
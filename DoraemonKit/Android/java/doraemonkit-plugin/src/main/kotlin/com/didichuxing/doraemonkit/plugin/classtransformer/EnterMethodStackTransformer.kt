@@ -2,12 +2,12 @@ package com.didichuxing.doraemonkit.plugin.classtransformer
 
 import com.didichuxing.doraemonkit.plugin.*
 import com.didichuxing.doraemonkit.plugin.extension.SlowMethodExt
-import com.didichuxing.doraemonkit.plugin.stack_method.MethodStackNode
-import com.didichuxing.doraemonkit.plugin.stack_method.MethodStackNodeUtil
+import com.didichuxing.doraemonkit.plugin.method_id.MethodIdGenerator
+import com.didichuxing.doraemonkit.plugin.method_id.MethodIdRef
+import com.didichuxing.doraemonkit.plugin.stack_method.MethodCallGraph
 import com.didiglobal.booster.annotations.Priority
 import com.didiglobal.booster.transform.TransformContext
 import com.didiglobal.booster.transform.asm.ClassTransformer
-import com.didiglobal.booster.transform.asm.asIterable
 import com.didiglobal.booster.transform.asm.className
 import com.google.auto.service.AutoService
 import org.objectweb.asm.Opcodes.*
@@ -19,8 +19,8 @@ import org.objectweb.asm.tree.*
  * 版    本：1.0
  * 创建日期：2020/5/14-18:07
  * 描    述：入口函数 慢函数调用栈 wiki:https://juejin.im/post/5e8d87c4f265da47ad218e6b
- * 修订历史：不要指定自动注入 需要手动在DoKitAsmTransformer中通过配置创建
- * 原理:transform()方法的调用是无序的  原因:哪一个class会先被transformer执行是不确定的  但是每一个class被transformer执行顺序是遵循transformer的Priority规则的
+ * 修订历史：onPreTransform中先由MethodCallGraph读取所有class建立调用图，
+ * transform时对入口函数及其STACK_METHOD_LEVEL层以内的函数一次插桩，不再每一层注册一个DoKitDependTransform
  * ================================================
  */
 @Priority(3)
@@ -28,21 +28,18 @@ import org.objectweb.asm.tree.*
 class EnterMethodStackTransformer : ClassTransformer {
 
     private val thresholdTime = DoKitExtUtil.slowMethodExt.stackMethod.thresholdTime
-    private val level = 0
-    override fun transform(context: TransformContext, klass: ClassNode): ClassNode {
-        if (context.isRelease()) {
-            return klass
-        }
 
-        if (!DoKitExtUtil.dokitPluginSwitchOpen()) {
-            return klass
+    override fun onPreTransform(context: TransformContext) {
+        if (!isStackStrategyEnabled(context)) {
+            return
         }
-
-        if (!DoKitExtUtil.dokitSlowMethodSwitchOpen()) {
-            return klass
+        (context as? DoKitTransformInvocation)?.let {
+            MethodCallGraph.build(it)
         }
+    }
 
-        if (DoKitExtUtil.SLOW_METHOD_STRATEGY == SlowMethodExt.STRATEGY_NORMAL) {
+    override fun transform(context: TransformContext, klass: ClassNode): ClassNode {
+        if (!isStackStrategyEnabled(context)) {
             return klass
         }
 
@@ -50,54 +47,47 @@ class EnterMethodStackTransformer : ClassTransformer {
             return klass
         }
 
-        //默认为Application onCreate 和attachBaseContext
-        val enterMethods = DoKitExtUtil.slowMethodExt.stackMethod.enterMethods
-        //找不到配置的Application
-        if (enterMethods.isEmpty()) {
-            val superName = klass.superName
-            //先判断父类
-            if (superName.isNotEmpty() && (superName == "android/app/Application" ||
-                            superName == "android/support/multidex/MultiDexApplication" ||
-                            superName == "androidx/multidex/MultiDexApplication")) {
-                klass.methods.filter { methodNode ->
-                    (methodNode.name == "onCreate" && methodNode.desc == "()V") || (methodNode.name == "attachBaseContext" && methodNode.desc == "(Landroid/content/Context;)V")
-                }.let { methodNodes ->
-                    //读取全是函数调用的Insn
-                    methodNodes.forEach { methodNode ->
-                        operateMethodInsn(klass, methodNode)
-                    }
-                }
-            }
-        } else {
-            enterMethods.forEach { enterMethodName ->
-                klass.methods.forEach { methodNode ->
-                    val allMethodName = "${klass.className}.${methodNode.name}"
-                    if (allMethodName == enterMethodName) {
-                        "${context.projectDir.lastPath()}->level-->$level mathched enterMethod===>$allMethodName".println()
-                        operateMethodInsn(klass, methodNode)
-                    }
+        klass.methods.forEach { methodNode ->
+            MethodCallGraph.levelOf(klass.className, methodNode)?.let { level ->
+                if (level == 0) {
+                    "${context.projectDir.lastPath()}->level-->$level mathched enterMethod===>${klass.className}.${methodNode.name}".println()
                 }
+                operateMethodInsn(context, klass, methodNode, level)
             }
         }
 
         return klass
     }
 
+    private fun isStackStrategyEnabled(context: TransformContext): Boolean {
+        if (context.isRelease()) {
+            return false
+        }
 
-    private fun operateMethodInsn(klass: ClassNode, methodNode: MethodNode) {
-        //读取全是函数调用的指令
-        methodNode.instructions.asIterable().filterIsInstance(MethodInsnNode::class.java).filter { methodInsnNode ->
-            methodInsnNode.name != "<init>"
-        }.forEach { methodInsnNode ->
-            val methodStackNode = MethodStackNode(level, methodInsnNode.ownerClassName, methodInsnNode.name, methodInsnNode.desc, klass.className, methodNode.name, methodNode.desc)
-            MethodStackNodeUtil.addMethodStackNode(level, methodStackNode)
+        if (!DoKitExtUtil.dokitPluginSwitchOpen()) {
+            return false
         }
+
+        if (!DoKitExtUtil.dokitSlowMethodSwitchOpen()) {
+            return false
+        }
+
+        if (DoKitExtUtil.SLOW_METHOD_STRATEGY == SlowMethodExt.STRATEGY_NORMAL) {
+            return false
+        }
+
+        return MethodIdGenerator.isEnabled(context)
+    }
+
+
+    private fun operateMethodInsn(context: TransformContext, klass: ClassNode, methodNode: MethodNode, level: Int) {
+        val methodId = MethodIdGenerator.methodIdOf(context, klass.className, methodNode.name)
         //函数出入口插入耗时统计代码
         //方法入口插入
-        methodNode.instructions.insert(createMethodEnterInsnList(level, klass.className, methodNode.name, methodNode.desc, methodNode.access))
+        methodNode.instructions.insert(createMethodEnterInsnList(level, methodId, methodNode.access))
         //方法出口插入
         methodNode.instructions.getMethodExitInsnNodes()?.forEach { methodExitInsnNode ->
-            methodNode.instructions.insertBefore(methodExitInsnNode, createMethodExitInsnList(level, klass.className, methodNode.name, methodNode.desc, methodNode.access))
+            methodNode.instructions.insertBefore(methodExitInsnNode, createMethodExitInsnList(level, methodId, methodNode.access))
         }
     }
 
@@ -105,7 +95,7 @@ class EnterMethodStackTransformer : ClassTransformer {
     /**
      * 创建慢函数入口指令集
      */
-    private fun createMethodEnterInsnList(level: Int, className: String, methodName: String, desc: String, access: Int): InsnList {
+    private fun createMethodEnterInsnList(level: Int, methodId: MethodIdRef, access: Int): InsnList {
         val isStaticMethod = access and ACC_STATIC != 0
         return with(InsnList()) {
             if (isStaticMethod) {
@@ -113,20 +103,16 @@ class EnterMethodStackTransformer : ClassTransformer {
                 add(IntInsnNode(BIPUSH, DoKitExtUtil.STACK_METHOD_LEVEL))
                 add(IntInsnNode(BIPUSH, thresholdTime))
                 add(IntInsnNode(BIPUSH, level))
-                add(LdcInsnNode(className))
-                add(LdcInsnNode(methodName))
-                add(LdcInsnNode(desc))
-                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "recodeStaticMethodCostStart", "(IIILjava/lang/String;Ljava/lang/String;Ljava/lang/String;)V", false))
+                add(methodId.pushInsns())
+                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "recodeStaticMethodCostStart", "(IIII)V", false))
             } else {
                 add(FieldInsnNode(GETSTATIC, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "INSTANCE", "Lcom/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil;"))
                 add(IntInsnNode(BIPUSH, DoKitExtUtil.STACK_METHOD_LEVEL))
                 add(IntInsnNode(BIPUSH, thresholdTime))
                 add(IntInsnNode(BIPUSH, level))
-                add(LdcInsnNode(className))
-                add(LdcInsnNode(methodName))
-                add(LdcInsnNode(desc))
+                add(methodId.pushInsns())
                 add(VarInsnNode(ALOAD, 0))
-                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "recodeObjectMethodCostStart", "(IIILjava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/Object;)V", false))
+                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "recodeObjectMethodCostStart", "(IIIILjava/lang/Object;)V", false))
             }
             this
         }
@@ -138,7 +124,7 @@ class EnterMethodStackTransformer : ClassTransformer {
     /**
      * 创建慢函数退出时的指令集
      */
-    private fun createMethodExitInsnList(level: Int, className: String, methodName: String, desc: String, access: Int): InsnList {
+    private fun createMethodExitInsnList(level: Int, methodId: MethodIdRef, access: Int): InsnList {
         val isStaticMethod = access and ACC_STATIC != 0
 
         return with(InsnList()) {
@@ -146,19 +132,15 @@ class EnterMethodStackTransformer : ClassTransformer {
                 add(FieldInsnNode(GETSTATIC, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "INSTANCE", "Lcom/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil;"))
                 add(IntInsnNode(BIPUSH, thresholdTime))
                 add(IntInsnNode(BIPUSH, level))
-                add(LdcInsnNode(className))
-                add(LdcInsnNode(methodName))
-                add(LdcInsnNode(desc))
-                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "recodeStaticMethodCostEnd", "(IILjava/lang/String;Ljava/lang/String;Ljava/lang/String;)V", false))
+                add(methodId.pushInsns())
+                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "recodeStaticMethodCostEnd", "(III)V", false))
             } else {
                 add(FieldInsnNode(GETSTATIC, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "INSTANCE", "Lcom/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil;"))
                 add(IntInsnNode(BIPUSH, thresholdTime))
                 add(IntInsnNode(BIPUSH, level))
-                add(LdcInsnNode(className))
-                add(LdcInsnNode(methodName))
-                add(LdcInsnNode(desc))
+                add(methodId.pushInsns())
                 add(VarInsnNode(ALOAD, 0))
-                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "recodeObjectMethodCostEnd", "(IILjava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/Object;)V", false))
+                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/method_stack/MethodStackUtil", "recodeObjectMethodCostEnd", "(IIILjava/lang/Object;)V", false))
             }
             this
         }
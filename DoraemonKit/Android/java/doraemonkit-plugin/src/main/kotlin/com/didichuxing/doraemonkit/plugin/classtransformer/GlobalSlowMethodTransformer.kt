@@ -2,6 +2,8 @@ package com.didichuxing.doraemonkit.plugin.classtransformer
 
 import com.didichuxing.doraemonkit.plugin.*
 import com.didichuxing.doraemonkit.plugin.extension.SlowMethodExt
+import com.didichuxing.doraemonkit.plugin.method_id.MethodIdGenerator
+import com.didichuxing.doraemonkit.plugin.method_id.MethodIdRef
 import com.didiglobal.booster.annotations.Priority
 import com.didiglobal.booster.transform.TransformContext
 import com.didiglobal.booster.transform.asm.ClassTransformer
@@ -46,6 +48,10 @@ class GlobalSlowMethodTransformer : ClassTransformer {
             return klass
         }
 
+        if (!MethodIdGenerator.isEnabled(context)) {
+            return klass
+        }
+
 
         val className = klass.className
         //没有自定义设置插装包名 默认是以applicationId为包名 即全局业务代码插桩
@@ -60,11 +66,12 @@ class GlobalSlowMethodTransformer : ClassTransformer {
                 }.forEach { methodNode ->
                     methodNode.instructions.asIterable().filterIsInstance(MethodInsnNode::class.java).let { methodInsnNodes ->
                         if (methodInsnNodes.isNotEmpty()) {
+                            val methodId = MethodIdGenerator.methodIdOf(context, className, methodNode.name)
                             //方法入口插入
-                            methodNode.instructions.insert(createMethodEnterInsnList(className, methodNode.name, methodNode.access))
+                            methodNode.instructions.insert(createMethodEnterInsnList(methodId, methodNode.access))
                             //方法出口插入
                             methodNode.instructions.getMethodExitInsnNodes()?.forEach { methodExitInsnNode ->
-                                methodNode.instructions.insertBefore(methodExitInsnNode, createMethodExitInsnList(className, methodNode.name, methodNode.access))
+                                methodNode.instructions.insertBefore(methodExitInsnNode, createMethodExitInsnList(methodId, methodNode.access))
                             }
                         }
                     }
@@ -87,23 +94,18 @@ class GlobalSlowMethodTransformer : ClassTransformer {
 
     /**
      * 创建慢函数入口指令集
+     * MethodCostRuntime.enter(methodId, this) 静态函数传null
      */
-    private fun createMethodEnterInsnList(className: String, methodName: String, access: Int): InsnList {
+    private fun createMethodEnterInsnList(methodId: MethodIdRef, access: Int): InsnList {
         val isStaticMethod = access and ACC_STATIC != 0
         return with(InsnList()) {
+            add(methodId.pushInsns())
             if (isStaticMethod) {
-                add(FieldInsnNode(GETSTATIC, "com/didichuxing/doraemonkit/aop/MethodCostUtil", "INSTANCE", "Lcom/didichuxing/doraemonkit/aop/MethodCostUtil;"))
-                add(IntInsnNode(SIPUSH, thresholdTime))
-                add(LdcInsnNode("$className&$methodName"))
-                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/MethodCostUtil", "recodeStaticMethodCostStart", "(ILjava/lang/String;)V", false))
+                add(InsnNode(ACONST_NULL))
             } else {
-                add(FieldInsnNode(GETSTATIC, "com/didichuxing/doraemonkit/aop/MethodCostUtil", "INSTANCE", "Lcom/didichuxing/doraemonkit/aop/MethodCostUtil;"))
-                add(IntInsnNode(SIPUSH, thresholdTime))
-                add(LdcInsnNode("$className&$methodName"))
                 add(VarInsnNode(ALOAD, 0))
-                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/MethodCostUtil", "recodeObjectMethodCostStart", "(ILjava/lang/String;Ljava/lang/Object;)V", false))
             }
-
+            add(MethodInsnNode(INVOKESTATIC, "com/didichuxing/doraemonkit/aop/method_cost/MethodCostRuntime", "enter", "(ILjava/lang/Object;)V", false))
             this
         }
 
@@ -112,22 +114,19 @@ class GlobalSlowMethodTransformer : ClassTransformer {
 
     /**
      * 创建慢函数退出时的指令集
+     * MethodCostRuntime.exit(methodId, thresholdTime, this) 静态函数传null
      */
-    private fun createMethodExitInsnList(className: String, methodName: String, access: Int): InsnList {
+    private fun createMethodExitInsnList(methodId: MethodIdRef, access: Int): InsnList {
         val isStaticMethod = access and ACC_STATIC != 0
         return with(InsnList()) {
+            add(methodId.pushInsns())
+            add(IntInsnNode(SIPUSH, thresholdTime))
             if (isStaticMethod) {
-                add(FieldInsnNode(GETSTATIC, "com/didichuxing/doraemonkit/aop/MethodCostUtil", "INSTANCE", "Lcom/didichuxing/doraemonkit/aop/MethodCostUtil;"))
-                add(IntInsnNode(SIPUSH, thresholdTime))
-                add(LdcInsnNode("$className&$methodName"))
-                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/MethodCostUtil", "recodeStaticMethodCostEnd", "(ILjava/lang/String;)V", false))
+                add(InsnNode(ACONST_NULL))
             } else {
-                add(FieldInsnNode(GETSTATIC, "com/didichuxing/doraemonkit/aop/MethodCostUtil", "INSTANCE", "Lcom/didichuxing/doraemonkit/aop/MethodCostUtil;"))
-                add(IntInsnNode(SIPUSH, thresholdTime))
-                add(LdcInsnNode("$className&$methodName"))
                 add(VarInsnNode(ALOAD, 0))
-                add(MethodInsnNode(INVOKEVIRTUAL, "com/didichuxing/doraemonkit/aop/MethodCostUtil", "recodeObjectMethodCostEnd", "(ILjava/lang/String;Ljava/lang/Object;)V", false))
             }
+            add(MethodInsnNode(INVOKESTATIC, "com/didichuxing/doraemonkit/aop/method_cost/MethodCostRuntime", "exit", "(IILjava/lang/Object;)V", false))
             this
         }
     }
@@ -0,0 +1,207 @@
+package com.didichuxing.doraemonkit.plugin.method_id
+
+import com.android.build.api.transform.Format
+import com.android.build.api.transform.QualifiedContent
+import com.android.build.gradle.internal.pipeline.TransformManager
+import com.didichuxing.doraemonkit.plugin.DoKitTransformInvocation
+import com.didichuxing.doraemonkit.plugin.println
+import com.didichuxing.doraemonkit.plugin.transform.DoKitCommTransform
+import com.didiglobal.booster.transform.TransformContext
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Label
+import org.objectweb.asm.Opcodes.*
+import org.objectweb.asm.tree.AbstractInsnNode
+import org.objectweb.asm.tree.IntInsnNode
+import org.objectweb.asm.tree.LdcInsnNode
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * ================================================
+ * 描    述：编译期为插桩函数分配连续的int id，插桩代码只传id
+ * DoKitCommTransform结束后输出映射文件 build/outputs/dokit/<variant>/method_ids.txt，
+ * 并生成运行时查表用的 MethodIdNames 类，运行时在需要显示时再按id取函数名
+ * 只在application module中分配id，library module的代码会在application的transform中一起处理
+ * dynamic-feature module单独编译，插桩代码改为运行时按函数名取id，见MethodIdRef
+ * 修订历史：
+ * ================================================
+ */
+object MethodIdGenerator {
+    /**
+     * 与运行时 MethodIdTable.NAMES_PER_CHUNK 保持一致
+     */
+    private const val NAMES_PER_CHUNK = 128
+
+    /**
+     * 保证每个chunk常量不超过class文件65535字节的限制
+     */
+    private const val MAX_NAME_LENGTH = 500
+
+    private const val LOOKUP_CLASS = "com/didichuxing/doraemonkit/aop/method_cost/MethodIdNames"
+
+    private val ids = ConcurrentHashMap<String, Int>()
+
+    /**
+     * 下标即id，只在lock中修改
+     */
+    private val names = mutableListOf<String>()
+    private val lock = Any()
+
+    /**
+     * @return 同一个 className&methodName 始终返回同一个id
+     */
+    fun idOf(className: String, methodName: String): Int {
+        val key = "$className&$methodName"
+        ids[key]?.let {
+            return it
+        }
+        synchronized(lock) {
+            ids[key]?.let {
+                return it
+            }
+            val id = names.size
+            names.add(key)
+            ids[key] = id
+            return id
+        }
+    }
+
+    /**
+     * id 小于32768时使用SIPUSH，否则使用LDC
+     */
+    fun pushIdInsn(id: Int): AbstractInsnNode {
+        return if (id <= Short.MAX_VALUE) {
+            IntInsnNode(SIPUSH, id)
+        } else {
+            LdcInsnNode(id)
+        }
+    }
+
+    /**
+     * @return 插桩代码中使用的函数id，application module为编译期常量，dynamic-feature module在运行时取得
+     */
+    fun methodIdOf(context: TransformContext, className: String, methodName: String): MethodIdRef {
+        return if (isApplication(context)) {
+            MethodIdRef.compiled(idOf(className, methodName))
+        } else {
+            MethodIdRef.runtime(className, methodName)
+        }
+    }
+
+    /**
+     * library module 的transform和application的transform可能并行执行，library module不插桩
+     */
+    fun isEnabled(context: TransformContext): Boolean {
+        val invocation = context as? DoKitTransformInvocation ?: return false
+        val plugins = invocation.transform.project.plugins
+        return plugins.hasPlugin("com.android.application") || plugins.hasPlugin("com.android.dynamic-feature")
+    }
+
+    /**
+     * id表只由application维护
+     */
+    private fun isApplication(context: TransformContext): Boolean {
+        val invocation = context as? DoKitTransformInvocation ?: return false
+        return invocation.transform.project.plugins.hasPlugin("com.android.application")
+    }
+
+    internal fun onTransformStart(invocation: DoKitTransformInvocation) {
+        if (!isApplication(invocation) || invocation.transform !is DoKitCommTransform) {
+            return
+        }
+        synchronized(lock) {
+            ids.clear()
+            names.clear()
+            //增量编译时未变化的class保留了上一次的id
+            if (invocation.isIncremental) {
+                val mappingFile = mappingFile(invocation)
+                if (mappingFile.exists()) {
+                    mappingFile.forEachLine { line ->
+                        val index = line.indexOf(' ')
+                        if (index > 0) {
+                            val key = line.substring(index + 1)
+                            ids[key] = names.size
+                            names.add(key)
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    internal fun onTransformEnd(invocation: DoKitTransformInvocation) {
+        if (!isApplication(invocation) || invocation.transform !is DoKitCommTransform) {
+            return
+        }
+        val snapshot = synchronized(lock) {
+            names.toList()
+        }
+        if (snapshot.isEmpty()) {
+            return
+        }
+        val mappingFile = mappingFile(invocation)
+        mappingFile.parentFile.mkdirs()
+        mappingFile.bufferedWriter().use { writer ->
+            snapshot.forEachIndexed { id, name ->
+                writer.write("$id $name")
+                writer.newLine()
+            }
+        }
+
+        invocation.outputProvider?.let { provider ->
+            val root = provider.getContentLocation(
+                "dokit_method_ids",
+                TransformManager.CONTENT_CLASS,
+                mutableSetOf(QualifiedContent.Scope.PROJECT),
+                Format.DIRECTORY
+            )
+            val classFile = File(root, "$LOOKUP_CLASS.class")
+            classFile.parentFile.mkdirs()
+            classFile.writeBytes(generateLookupClass(snapshot))
+        }
+        "method id table size===>${snapshot.size}  mapping===>$mappingFile".println()
+    }
+
+    private fun mappingFile(invocation: DoKitTransformInvocation): File {
+        return File(invocation.buildDir, "outputs/dokit/${invocation.name}/method_ids.txt")
+    }
+
+    /**
+     * 生成
+     * public final class MethodIdNames {
+     *     public static String chunk(int index) {
+     *         switch (index) { case 0: return "name0\nname1..."; ... default: return null; }
+     *     }
+     * }
+     * 每个chunk包含NAMES_PER_CHUNK个函数名，运行时只加载用到的chunk
+     */
+    private fun generateLookupClass(names: List<String>): ByteArray {
+        val chunks = names.chunked(NAMES_PER_CHUNK).map { chunk ->
+            chunk.joinToString("\n") { name ->
+                if (name.length > MAX_NAME_LENGTH) name.substring(0, MAX_NAME_LENGTH) else name
+            }
+        }
+        return with(ClassWriter(ClassWriter.COMPUTE_MAXS)) {
+            visit(V1_6, ACC_PUBLIC or ACC_FINAL or ACC_SUPER, LOOKUP_CLASS, null, "java/lang/Object", null)
+            with(visitMethod(ACC_PUBLIC or ACC_STATIC, "chunk", "(I)Ljava/lang/String;", null, null)) {
+                visitCode()
+                val defaultLabel = Label()
+                val labels = Array(chunks.size) { Label() }
+                visitVarInsn(ILOAD, 0)
+                visitTableSwitchInsn(0, chunks.size - 1, defaultLabel, *labels)
+                chunks.forEachIndexed { index, chunk ->
+                    visitLabel(labels[index])
+                    visitLdcInsn(chunk)
+                    visitInsn(ARETURN)
+                }
+                visitLabel(defaultLabel)
+                visitInsn(ACONST_NULL)
+                visitInsn(ARETURN)
+                visitMaxs(0, 0)
+                visitEnd()
+            }
+            visitEnd()
+            toByteArray()
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.didichuxing.doraemonkit.plugin.method_id
+
+import org.objectweb.asm.Opcodes.INVOKESTATIC
+import org.objectweb.asm.tree.InsnList
+import org.objectweb.asm.tree.LdcInsnNode
+import org.objectweb.asm.tree.MethodInsnNode
+
+/**
+ * ================================================
+ * 描    述：插桩代码中压入函数id的方式
+ * application module中为编译期分配的常量；dynamic-feature module单独编译，无法与application共用id表，
+ * 插桩代码在运行时通过MethodIdTable.idOf(className&methodName)取得DYNAMIC_ID_BASE之后的id，每次调用多一次查表
+ * 修订历史：
+ * ================================================
+ */
+class MethodIdRef private constructor(private val id: Int, private val name: String?) {
+
+    fun pushInsns(): InsnList {
+        return with(InsnList()) {
+            if (name == null) {
+                add(MethodIdGenerator.pushIdInsn(id))
+            } else {
+                add(LdcInsnNode(name))
+                add(MethodInsnNode(INVOKESTATIC, ID_TABLE_CLASS, "idOf", "(Ljava/lang/String;)I", false))
+            }
+            this
+        }
+    }
+
+    companion object {
+        private const val ID_TABLE_CLASS = "com/didichuxing/doraemonkit/aop/method_cost/MethodIdTable"
+
+        fun compiled(id: Int) = MethodIdRef(id, null)
+
+        fun runtime(className: String, methodName: String) = MethodIdRef(-1, "$className&$methodName")
+    }
+}
@@ -0,0 +1,122 @@
+package com.didichuxing.doraemonkit.plugin.report
+
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * ================================================
+ * 描    述：一次transform的耗时统计，按ClassTransformer和输入(jar/目录)分别汇总
+ * 在NCPU个线程中并发写入，计数全部使用LongAdder，结束时写成json方便对比不同构建的插件开销
+ * 修订历史：
+ * ================================================
+ */
+internal class TransformReport(private val transformName: String, private val variantName: String) {
+
+    internal class TransformerStats {
+        val preTransformCpuNanos = LongAdder()
+        val transformCpuNanos = LongAdder()
+        val postTransformCpuNanos = LongAdder()
+        val classes = LongAdder()
+        val modifiedClasses = LongAdder()
+    }
+
+    internal class InputStats {
+        val cpuNanos = LongAdder()
+        val wallNanos = LongAdder()
+        val classes = LongAdder()
+        val modifiedClasses = LongAdder()
+        val bytesIn = LongAdder()
+        val bytesOut = LongAdder()
+    }
+
+    private val startNanos = System.nanoTime()
+    private val transformers = ConcurrentHashMap<String, TransformerStats>()
+    private val inputs = ConcurrentHashMap<String, InputStats>()
+
+    /**
+     * 当前线程正在处理的class是否被任何一个ClassTransformer修改过
+     */
+    private val classModified = ThreadLocal<Boolean>()
+
+    fun transformer(name: String): TransformerStats = transformers.getOrPut(name) { TransformerStats() }
+
+    fun input(name: String): InputStats = inputs.getOrPut(name) { InputStats() }
+
+    fun markClassModified() {
+        classModified.set(true)
+    }
+
+    /**
+     * 一个class处理完成后调用，同时重置当前线程的修改标记
+     */
+    fun recordClass(input: String, cpuNanos: Long, bytesIn: Int, bytesOut: Int) {
+        val stats = input(input)
+        stats.cpuNanos.add(cpuNanos)
+        stats.classes.increment()
+        stats.bytesIn.add(bytesIn.toLong())
+        stats.bytesOut.add(bytesOut.toLong())
+        if (classModified.get() == true) {
+            stats.modifiedClasses.increment()
+        }
+        classModified.remove()
+    }
+
+    fun writeTo(file: File) {
+        val builder = StringBuilder()
+        builder.append("{\n")
+        builder.append("  \"transform\": ").append(quote(transformName)).append(",\n")
+        builder.append("  \"variant\": ").append(quote(variantName)).append(",\n")
+        builder.append("  \"wallMs\": ").append((System.nanoTime() - startNanos) / 1000000).append(",\n")
+        builder.append("  \"transformers\": [")
+        transformers.entries.sortedByDescending { it.value.transformCpuNanos.sum() }.forEachIndexed { index, (name, stats) ->
+            builder.append(if (index == 0) "\n" else ",\n")
+            builder.append("    {\"name\": ").append(quote(name))
+                .append(", \"preTransformCpuMs\": ").append(stats.preTransformCpuNanos.sum() / 1000000)
+                .append(", \"transformCpuMs\": ").append(stats.transformCpuNanos.sum() / 1000000)
+                .append(", \"postTransformCpuMs\": ").append(stats.postTransformCpuNanos.sum() / 1000000)
+                .append(", \"classes\": ").append(stats.classes.sum())
+                .append(", \"modifiedClasses\": ").append(stats.modifiedClasses.sum())
+                .append("}")
+        }
+        builder.append("\n  ],\n")
+        builder.append("  \"inputs\": [")
+        inputs.entries.sortedByDescending { it.value.cpuNanos.sum() }.forEachIndexed { index, (name, stats) ->
+            builder.append(if (index == 0) "\n" else ",\n")
+            builder.append("    {\"name\": ").append(quote(name))
+                .append(", \"cpuMs\": ").append(stats.cpuNanos.sum() / 1000000)
+                .append(", \"wallMs\": ").append(stats.wallNanos.sum() / 1000000)
+                .append(", \"classes\": ").append(stats.classes.sum())
+                .append(", \"modifiedClasses\": ").append(stats.modifiedClasses.sum())
+                .append(", \"bytesIn\": ").append(stats.bytesIn.sum())
+                .append(", \"bytesOut\": ").append(stats.bytesOut.sum())
+                .append("}")
+        }
+        builder.append("\n  ]\n}\n")
+        file.parentFile.mkdirs()
+        file.writeText(builder.toString())
+    }
+
+    /**
+     * 控制台只输出汇总
+     */
+    fun summary(): String {
+        val cpuMs = inputs.values.map { it.cpuNanos.sum() }.sum() / 1000000
+        val classes = inputs.values.map { it.classes.sum() }.sum()
+        val modified = inputs.values.map { it.modifiedClasses.sum() }.sum()
+        return "$transformName[$variantName] inputs:${inputs.size}  classes:$classes  modified:$modified  cpu:${cpuMs}ms  wall:${(System.nanoTime() - startNanos) / 1000000}ms"
+    }
+
+    private fun quote(text: String): String {
+        val builder = StringBuilder(text.length + 2).append('"')
+        text.forEach { c ->
+            when {
+                c == '"' -> builder.append("\\\"")
+                c == '\\' -> builder.append("\\\\")
+                c < ' ' -> builder.append(String.format("\\u%04x", c.toInt()))
+                else -> builder.append(c)
+            }
+        }
+        return builder.append('"').toString()
+    }
+}
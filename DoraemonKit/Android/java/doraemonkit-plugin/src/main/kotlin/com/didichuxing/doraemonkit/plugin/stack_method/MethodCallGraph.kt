@@ -0,0 +1,177 @@
+package com.didichuxing.doraemonkit.plugin.stack_method
+
+import com.didichuxing.doraemonkit.plugin.*
+import com.didiglobal.booster.kotlinx.NCPU
+import com.didiglobal.booster.transform.asm.asIterable
+import com.didiglobal.booster.transform.asm.className
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.tree.ClassNode
+import org.objectweb.asm.tree.MethodInsnNode
+import org.objectweb.asm.tree.MethodNode
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.zip.ZipFile
+
+/**
+ * ================================================
+ * 描    述：STRATEGY_STACK 的调用图
+ * transform之前把所有class读一遍，记录每个函数调用了哪些函数，再从入口函数开始逐层遍历，
+ * 得到 STACK_METHOD_LEVEL 层以内需要插桩的函数及其层级，之后在同一个transform中一次插桩
+ * 一个函数出现在多层时取最浅的一层
+ * 修订历史：
+ * ================================================
+ */
+object MethodCallGraph {
+    /**
+     * key className&methodName&desc
+     */
+    private val METHOD_LEVELS = ConcurrentHashMap<String, Int>()
+
+    /**
+     * @return 不需要插桩时返回null
+     */
+    fun levelOf(className: String, methodNode: MethodNode): Int? {
+        return METHOD_LEVELS["$className&${methodNode.name}&${methodNode.desc}"]
+    }
+
+    internal fun build(invocation: DoKitTransformInvocation) {
+        METHOD_LEVELS.clear()
+        //入口函数和可插桩函数 -> 它调用的函数
+        val callees = ConcurrentHashMap<String, Array<String>>()
+        val enterKeys = ConcurrentHashMap.newKeySet<String>()
+        //同一个被调用函数在不同class中出现时共用一个String
+        val keyPool = ConcurrentHashMap<String, String>()
+
+        val executor = Executors.newFixedThreadPool(NCPU)
+        try {
+            invocation.inputs.map {
+                it.jarInputs + it.directoryInputs
+            }.flatten().map { input ->
+                executor.submit {
+                    input.file.forEachClass { bytecode ->
+                        collect(bytecode, callees, enterKeys, keyPool)
+                    }
+                }
+            }.forEach {
+                it.get()
+            }
+        } finally {
+            executor.shutdown()
+            executor.awaitTermination(1, TimeUnit.HOURS)
+        }
+
+        var currentLevel = enterKeys.toList()
+        currentLevel.forEach {
+            METHOD_LEVELS[it] = 0
+        }
+        for (level in 1 until DoKitExtUtil.STACK_METHOD_LEVEL) {
+            val nextLevel = mutableListOf<String>()
+            currentLevel.forEach { caller ->
+                callees[caller]?.forEach { callee ->
+                    //只有项目中可插桩的函数才会出现在callees的key中
+                    if (!METHOD_LEVELS.containsKey(callee) && callees.containsKey(callee)) {
+                        METHOD_LEVELS[callee] = level
+                        nextLevel.add(callee)
+                    }
+                }
+            }
+            currentLevel = nextLevel
+        }
+        "method call graph===>methods:${callees.size}  enterMethods:${enterKeys.size}  instrumented:${METHOD_LEVELS.size}".println()
+    }
+
+    private fun collect(
+        bytecode: ByteArray,
+        callees: MutableMap<String, Array<String>>,
+        enterKeys: MutableSet<String>,
+        keyPool: ConcurrentHashMap<String, String>
+    ) {
+        val klass = ClassNode()
+        try {
+            ClassReader(bytecode).accept(klass, ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES)
+        } catch (e: Exception) {
+            return
+        }
+        val className = klass.className
+        if (DoKitExtUtil.ignorePackageNames(className)) {
+            return
+        }
+        val blackListed = !notMatchedBlackList(className)
+        klass.methods.forEach { methodNode ->
+            val isEnterMethod = isEnterMethod(klass, methodNode)
+            val instrumentable = !blackListed &&
+                    methodNode.name != "<init>" &&
+                    !methodNode.isEmptyMethod() &&
+                    !methodNode.isSingleMethod() &&
+                    !methodNode.isGetSetMethod()
+            if (!isEnterMethod && !instrumentable) {
+                return@forEach
+            }
+            val key = keyPool.intern("$className&${methodNode.name}&${methodNode.desc}")
+            if (isEnterMethod) {
+                enterKeys.add(key)
+            }
+            callees[key] = methodNode.instructions.asIterable()
+                .filterIsInstance(MethodInsnNode::class.java)
+                .filter { methodInsnNode ->
+                    methodInsnNode.name != "<init>"
+                }.map { methodInsnNode ->
+                    keyPool.intern("${methodInsnNode.ownerClassName}&${methodInsnNode.name}&${methodInsnNode.desc}")
+                }.distinct().toTypedArray()
+        }
+    }
+
+    /**
+     * 默认为Application onCreate 和attachBaseContext
+     */
+    private fun isEnterMethod(klass: ClassNode, methodNode: MethodNode): Boolean {
+        val enterMethods = DoKitExtUtil.slowMethodExt.stackMethod.enterMethods
+        if (enterMethods.isEmpty()) {
+            val superName = klass.superName ?: return false
+            if (superName == "android/app/Application" ||
+                superName == "android/support/multidex/MultiDexApplication" ||
+                superName == "androidx/multidex/MultiDexApplication"
+            ) {
+                return (methodNode.name == "onCreate" && methodNode.desc == "()V") ||
+                        (methodNode.name == "attachBaseContext" && methodNode.desc == "(Landroid/content/Context;)V")
+            }
+            return false
+        }
+        return enterMethods.contains("${klass.className}.${methodNode.name}")
+    }
+
+    private fun notMatchedBlackList(className: String): Boolean {
+        for (strBlack in DoKitExtUtil.slowMethodExt.stackMethod.methodBlacklist) {
+            if (className.contains(strBlack)) {
+                return false
+            }
+        }
+
+        return true
+    }
+
+    private fun ConcurrentHashMap<String, String>.intern(key: String): String {
+        return putIfAbsent(key, key) ?: key
+    }
+
+    private fun File.forEachClass(action: (ByteArray) -> Unit) {
+        when {
+            isDirectory -> walkTopDown().filter {
+                it.isFile && it.extension == "class"
+            }.forEach {
+                action(it.readBytes())
+            }
+            isFile && extension == "jar" -> ZipFile(this).use { zip ->
+                zip.entries().asSequence().filter {
+                    !it.isDirectory && it.name.endsWith(".class")
+                }.forEach { entry ->
+                    zip.getInputStream(entry).use {
+                        action(it.readBytes())
+                    }
+                }
+            }
+        }
+    }
+}
@@ -6,10 +6,12 @@ import com.android.build.api.transform.TransformInvocation
 import com.android.build.gradle.BaseExtension
 import com.android.build.gradle.internal.pipeline.TransformManager
 import com.didichuxing.doraemonkit.plugin.DoKitTransformInvocation
+import com.didichuxing.doraemonkit.plugin.asmtransformer.DoKitAsmTransformer
 import com.didichuxing.doraemonkit.plugin.loadTransformers
 import com.didiglobal.booster.annotations.Priority
 import com.didiglobal.booster.gradle.*
 import com.didiglobal.booster.transform.AbstractKlassPool
+import com.didiglobal.booster.transform.asm.AsmTransformer
 import org.gradle.api.Project
 
 /**
@@ -21,8 +23,11 @@ open class DoKitBaseTransform(val project: Project) : Transform() {
 
     /*
      * Preload transformers as List to fix NoSuchElementException caused by ServiceLoader in parallel mode
+     * booster的AsmTransformer替换为DoKitAsmTransformer，ClassTransformer的耗时写入TransformReport
      */
-    internal open val transformers = loadTransformers(project.buildscript.classLoader).sortedBy {
+    internal open val transformers = loadTransformers(project.buildscript.classLoader).map {
+        if (it is AsmTransformer) DoKitAsmTransformer(project.buildscript.classLoader) else it
+    }.sortedBy {
         it.javaClass.getAnnotation(Priority::class.java)?.value ?: 0
     }
 
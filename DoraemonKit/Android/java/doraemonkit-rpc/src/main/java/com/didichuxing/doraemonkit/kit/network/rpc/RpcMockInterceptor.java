@@ -13,11 +13,12 @@ import com.didichuxing.doraemonkit.constant.DoKitConstant;
 import com.didichuxing.doraemonkit.kit.health.AppHealthInfoUtil;
 import com.didichuxing.doraemonkit.kit.health.model.AppHealthInfo;
 import com.didichuxing.doraemonkit.kit.network.NetworkManager;
+import com.didichuxing.doraemonkit.kit.network.core.MockTemplateResponseHandler;
 import com.didichuxing.doraemonkit.kit.network.room_db.DokitDbManager;
 import com.didichuxing.doraemonkit.kit.network.room_db.MockInterceptApiBean;
+import com.didichuxing.doraemonkit.kit.network.room_db.MockMatchRequest;
 import com.didichuxing.doraemonkit.kit.network.room_db.MockTemplateApiBean;
 import com.didichuxing.doraemonkit.kit.network.stream.InputStreamProxy;
-import com.didichuxing.doraemonkit.util.DokitUtil;
 import com.didichuxing.doraemonkit.util.LogHelper;
 import com.didichuxing.foundation.net.MimeType;
 import com.didichuxing.foundation.net.http.HttpEntity;
@@ -26,8 +27,6 @@ import com.didichuxing.foundation.net.rpc.http.HttpRpcRequest;
 import com.didichuxing.foundation.net.rpc.http.HttpRpcResponse;
 import com.didichuxing.foundation.rpc.RpcInterceptor;
 
-import org.json.JSONObject;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -51,43 +50,45 @@ public class RpcMockInterceptor implements RpcInterceptor<HttpRpcRequest, HttpRp
     public HttpRpcResponse intercept(RpcChain<HttpRpcRequest, HttpRpcResponse> chain) throws IOException {
         HttpRpcRequest oldRequest = chain.getRequest();
 
-        HttpRpcResponse oldResponse = chain.proceed(oldRequest);
-
         HttpUrl url = HttpUrl.parse(oldRequest.getUrl());
         String host = url.host();
         //如果是mock平台的接口则不进行拦截
         if (host.equalsIgnoreCase(NetworkManager.MOCK_HOST)) {
-            return oldResponse;
+            return chain.proceed(oldRequest);
         }
         //path  /test/upload/img
         String path = URLDecoder.decode(url.encodedPath(), "utf-8");
         //兼容滴滴内部外网映射环境  该环境的 path上会多一级/kop_xxx/路径
         String queries = url.query();
-        String jsonQuery = transformQuery(queries);
-        String jsonRequestBody = transformRequestBody(oldRequest.getEntity());
-        //LogHelper.i(TAG, "realJsonQuery===>" + jsonQuery);
-        //LogHelper.i(TAG, "realJsonRequestBody===>" + jsonRequestBody);
-        String interceptMatchedId = DokitDbManager.getInstance().isMockMatched(path, jsonQuery, jsonRequestBody, DokitDbManager.MOCK_API_INTERCEPT, DokitDbManager.FROM_SDK_DIDI);
-        String templateMatchedId = DokitDbManager.getInstance().isMockMatched(path, jsonQuery, jsonRequestBody, DokitDbManager.MOCK_API_TEMPLATE, DokitDbManager.FROM_SDK_DIDI);
+        //只根据请求决定是否命中规则，命中拦截规则时不再请求真实接口
+        MockMatchRequest matchRequest = createMatchRequest(path, queries, oldRequest.getEntity());
+        String interceptMatchedId = DokitDbManager.getInstance().isMockMatched(matchRequest, DokitDbManager.MOCK_API_INTERCEPT, DokitDbManager.FROM_SDK_DIDI);
+        String templateMatchedId = DokitDbManager.getInstance().isMockMatched(matchRequest, DokitDbManager.MOCK_API_TEMPLATE, DokitDbManager.FROM_SDK_DIDI);
+
+        HttpRpcResponse response = null;
+        //是否命中拦截规则
+        if (!TextUtils.isEmpty(interceptMatchedId)) {
+            response = matchedInterceptRule(url, path, interceptMatchedId, chain);
+        }
+        //没有命中或者mock接口没有数据时才请求真实接口
+        if (response == null) {
+            response = chain.proceed(oldRequest);
+        }
 
         try {
             //网络的健康体检功能 统计流量大小
             if (DoKitConstant.APP_HEALTH_RUNNING) {
-                addNetWokInfoInAppHealth(oldRequest, oldResponse);
-            }
-            //是否命中拦截规则
-            if (!TextUtils.isEmpty(interceptMatchedId)) {
-                return matchedInterceptRule(url, path, interceptMatchedId, templateMatchedId, oldRequest, oldResponse, chain);
+                addNetWokInfoInAppHealth(oldRequest, response);
             }
 
             //是否命中模板规则
-            oldResponse = matchedTemplateRule(oldResponse, path, templateMatchedId);
+            response = matchedTemplateRule(response, path, templateMatchedId);
 
         } catch (Exception e) {
             e.printStackTrace();
-            return oldResponse;
+            return response;
         }
-        return oldResponse;
+        return response;
     }
 
     /**
@@ -150,99 +151,50 @@ public class RpcMockInterceptor implements RpcInterceptor<HttpRpcRequest, HttpRp
 
 
     /**
-     * 将request query 转化成json字符串
-     *
-     * @return
-     */
-    private String transformQuery(String query) {
-        String json = "";
-        if (TextUtils.isEmpty(query)) {
-            return json;
-        }
-
-        try {
-            //query 类似 ccc=ccc&ddd=ddd
-            json = DokitUtil.param2Json(query);
-            //测试是否是json字符串
-            new JSONObject(json);
-        } catch (Exception e) {
-            //e.printStackTrace();
-            json = DokitDbManager.IS_NOT_NORMAL_QUERY_PARAMS;
-            LogHelper.e(TAG, "===query json====>" + json);
-        }
-
-        return json;
-    }
-
-    /**
-     * 将request body 转化成json字符串
+     * 将request 转化成参与mock匹配的请求，body的数据流只读取一次
      *
      * @return
      */
-    private String transformRequestBody(HttpEntity requestBody) {
-        //form :"application/x-www-form-urlencoded"
-        //json :"application/json;"
-        String json = "";
+    private MockMatchRequest createMatchRequest(String path, String query, HttpEntity requestBody) {
         if (requestBody == null || requestBody.getContentType() == null) {
-            return json;
+            return MockMatchRequest.create(path, query, null, null);
         }
-
+        String strBody;
         try {
-            String strBody = ConvertUtils.inputStream2String(requestBody.getContent(), "utf-8");
-            if (TextUtils.isEmpty(strBody)) {
-                return "";
-            }
-
-            if (requestBody.getContentType().toString().toLowerCase().contains(DokitDbManager.MEDIA_TYPE_FORM)) {
-                String form = ConvertUtils.inputStream2String(requestBody.getContent(), "utf-8");
-                //类似 ccc=ccc&ddd=ddd
-                json = DokitUtil.param2Json(form);
-                //测试是否是json字符串
-                new JSONObject(json);
-            } else if (requestBody.getContentType().toString().toLowerCase().contains(DokitDbManager.MEDIA_TYPE_JSON)) {
-                //类似 {"ccc":"ccc","ddd":"ddd"}
-                json = ConvertUtils.inputStream2String(requestBody.getContent(), "utf-8");
-                //测试是否是json字符串
-                new JSONObject(json);
-            } else {
-                json = DokitDbManager.IS_NOT_NORMAL_BODY_PARAMS;
-            }
-
+            strBody = ConvertUtils.inputStream2String(requestBody.getContent(), "utf-8");
         } catch (Exception e) {
-            //e.printStackTrace();
-            json = "";
-            LogHelper.e(TAG, "===body json====>" + json);
+            LogHelper.e(TAG, "===body json====>" + e.getMessage());
+            strBody = "";
         }
-
-        return json;
+        return MockMatchRequest.create(path, query, requestBody.getContentType().toString(), strBody);
     }
 
 
     /**
      * 命中拦截规则
-     * 返回新的response
+     * 返回mock接口的response，返回null时由调用方请求真实接口
      *
      * @param interceptMatchedId
      * @return
      */
-    private HttpRpcResponse matchedInterceptRule(HttpUrl url, String path, String interceptMatchedId, String templateMatchedId, HttpRpcRequest oldRequest, HttpRpcResponse oldResponse, RpcChain<HttpRpcRequest, HttpRpcResponse> chain) throws Exception {
+    private HttpRpcResponse matchedInterceptRule(HttpUrl url, String path, String interceptMatchedId, RpcChain<HttpRpcRequest, HttpRpcResponse> chain) {
         //判断是否需要重定向数据接口
         //http https
         String scheme = url.scheme();
         MockInterceptApiBean interceptApiBean = (MockInterceptApiBean) DokitDbManager.getInstance().getInterceptApiByIdInMap(path, interceptMatchedId, DokitDbManager.FROM_SDK_DIDI);
         if (interceptApiBean == null) {
-            return matchedTemplateRule(oldResponse, path, templateMatchedId);
+            return null;
         }
 
         String selectedSceneId = interceptApiBean.getSelectedSceneId();
         //开关是否被打开
         if (!interceptApiBean.isOpen()) {
-            return matchedTemplateRule(oldResponse, path, templateMatchedId);
+            return null;
         }
 
         //判断是否有选中的场景
         if (TextUtils.isEmpty(selectedSceneId)) {
-            return matchedTemplateRule(oldResponse, path, templateMatchedId);
+            return null;
         }
 
         StringBuilder sb = new StringBuilder();
@@ -258,20 +210,28 @@ public class RpcMockInterceptor implements RpcInterceptor<HttpRpcRequest, HttpRp
         HttpRpcRequest mockRequest = new HttpRpcRequest.Builder()
                 .setMethod(HttpMethod.GET, null)
                 .setUrl(newUrl).build();
-        //需要提前关闭数据流 不然在某些场景下会报错
-        oldResponse.close();
-        HttpRpcResponse mockResponse = chain.proceed(mockRequest);
+        HttpRpcResponse mockResponse;
+        try {
+            mockResponse = chain.proceed(mockRequest);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
         //拦截命中提示
         if (mockResponse.isSuccessful()) {
             ToastUtils.showShort("接口别名:==" + interceptApiBean.getMockApiName() + "==已被拦截");
             //判断新的response是否有数据
             if (newResponseHasData(mockResponse)) {
-                return matchedTemplateRule(mockResponse, path, templateMatchedId);
-            } else {
-                return matchedTemplateRule(oldResponse, path, templateMatchedId);
+                return mockResponse;
             }
         }
-        return matchedTemplateRule(oldResponse, path, templateMatchedId);
+        //需要提前关闭数据流 不然再次请求真实接口时会报错
+        try {
+            mockResponse.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
 
     }
 
@@ -327,7 +287,9 @@ public class RpcMockInterceptor implements RpcInterceptor<HttpRpcRequest, HttpRp
         //新建InputStream 代理 并设置到新的response中去
         InputStream newInputStream = new InputStreamProxy(
                 responseStream,
-                new MockResponseHandler(host, mockApi));
+                new MockTemplateResponseHandler(host, mockApi),
+                null,
+                MockTemplateResponseHandler.MAX_TEMPLATE_BODY_SIZE);
         // 必须重置response的body
         return resetResponseInputStream(response, entity, newInputStream);
 
@@ -393,12 +355,16 @@ public class RpcMockInterceptor implements RpcInterceptor<HttpRpcRequest, HttpRp
      *
      * @return boolean
      */
-    private boolean newResponseHasData(HttpRpcResponse response) throws Exception {
+    private boolean newResponseHasData(HttpRpcResponse response) {
         //这里不能直接使用response.body().string()的方式输出日志
         //因为response.body().string()之后，response中的流会被关闭，程序会报错，我们需要创建出一
         //个新的response给应用层处理
-        if (response.getEntity() != null && response.getEntity().getContent() != null) {
-            return true;
+        try {
+            if (response.getEntity() != null && response.getEntity().getContent() != null) {
+                return true;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
         return false;
     }
@@ -0,0 +1,75 @@
+package com.didichuxing.doraemonkit.aop.method_cost;
+
+/**
+ * ================================================
+ * 描    述：单个线程的函数调用栈，只记录函数id和进入时间，只在所属线程中访问
+ * 数组只在调用深度超过当前容量时扩容，其余情况下入栈出栈不分配内存
+ * 插桩函数抛出异常到未插桩的调用方时不会执行退出插桩，这些残留的记录只有在外层插桩函数出栈时才会被清理；
+ * 没有外层插桩函数时残留记录会一直累积，因此深度达到上限时丢弃最底部的一半记录，保证之后的调用仍然可以计时
+ * 修订历史：
+ * ================================================
+ */
+final class MethodCallStack {
+    private static final int INITIAL_CAPACITY = 32;
+    /**
+     * 达到该深度时丢弃最底部的一半记录
+     */
+    private static final int MAX_DEPTH = 1024;
+
+    private int[] mIds = new int[INITIAL_CAPACITY];
+    private long[] mStartNanos = new long[INITIAL_CAPACITY];
+    private int mDepth;
+
+    void push(int methodId, long nowNanos) {
+        if (mDepth == mIds.length) {
+            if (mDepth >= MAX_DEPTH) {
+                discardBottom();
+            } else {
+                grow();
+            }
+        }
+        mIds[mDepth] = methodId;
+        mStartNanos[mDepth] = nowNanos;
+        mDepth++;
+    }
+
+    /**
+     * 从栈顶向下查找对应的函数，抛出异常时没有执行退出插桩的函数会在这里一起出栈
+     * 递归调用时匹配最近的一次进入
+     *
+     * @return 函数耗时，找不到对应的进入记录时返回-1
+     */
+    long pop(int methodId, long nowNanos) {
+        for (int i = mDepth - 1; i >= 0; i--) {
+            if (mIds[i] == methodId) {
+                mDepth = i;
+                return nowNanos - mStartNanos[i];
+            }
+        }
+        return -1;
+    }
+
+    int depth() {
+        return mDepth;
+    }
+
+    /**
+     * 最底部的记录基本都是异常残留的；真实的调用深度超过上限时，被丢弃的外层函数出栈时找不到记录，只是不再计时
+     */
+    private void discardBottom() {
+        int keep = mDepth / 2;
+        System.arraycopy(mIds, mDepth - keep, mIds, 0, keep);
+        System.arraycopy(mStartNanos, mDepth - keep, mStartNanos, 0, keep);
+        mDepth = keep;
+    }
+
+    private void grow() {
+        int capacity = Math.min(MAX_DEPTH, mIds.length * 2);
+        int[] ids = new int[capacity];
+        long[] startNanos = new long[capacity];
+        System.arraycopy(mIds, 0, ids, 0, mDepth);
+        System.arraycopy(mStartNanos, 0, startNanos, 0, mDepth);
+        mIds = ids;
+        mStartNanos = startNanos;
+    }
+}
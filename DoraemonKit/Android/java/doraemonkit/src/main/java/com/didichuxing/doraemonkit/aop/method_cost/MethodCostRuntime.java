@@ -0,0 +1,102 @@
+package com.didichuxing.doraemonkit.aop.method_cost;
+
+import android.app.Application;
+
+import com.didichuxing.doraemonkit.kit.timecounter.TimeCounterManager;
+
+import java.util.List;
+
+/**
+ * ================================================
+ * 描    述：慢函数插桩的运行时
+ * 每个线程维护自己的调用栈，记录System.nanoTime()，不加锁、不装箱；同一个函数递归或在多个线程同时执行互不影响
+ * 只有耗时超过阈值时才获取调用栈并交给后台线程处理
+ * 修订历史：
+ * ================================================
+ */
+public final class MethodCostRuntime {
+    private static final ThreadLocal<MethodCallStack> sCallStack = new ThreadLocal<MethodCallStack>() {
+        @Override
+        protected MethodCallStack initialValue() {
+            return new MethodCallStack();
+        }
+    };
+
+    private static final SlowMethodAggregator sAggregator = new SlowMethodAggregator();
+
+    private MethodCostRuntime() {
+    }
+
+    /**
+     * 函数入口
+     *
+     * @param methodId {@link MethodIdTable}中的id
+     * @param classObj 调用该函数的对象，静态函数为null
+     */
+    public static void enter(int methodId, Object classObj) {
+        if (classObj instanceof Application) {
+            onApplicationMethodStart(methodId);
+        }
+        sCallStack.get().push(methodId, System.nanoTime());
+    }
+
+    /**
+     * 函数出口
+     *
+     * @param methodId      {@link MethodIdTable}中的id
+     * @param thresholdTime 阈值 单位为ms
+     * @param classObj      调用该函数的对象，静态函数为null
+     */
+    public static void exit(int methodId, int thresholdTime, Object classObj) {
+        long costNanos = sCallStack.get().pop(methodId, System.nanoTime());
+        if (classObj instanceof Application) {
+            onApplicationMethodEnd(methodId);
+        }
+        if (costNanos < 0 || costNanos < thresholdTime * 1000000L) {
+            return;
+        }
+        Thread thread = Thread.currentThread();
+        sAggregator.offer(new SlowMethodAggregator.SlowMethodEvent(methodId, costNanos, thresholdTime,
+                thread.getName(), thread.getStackTrace()));
+    }
+
+    private static void onApplicationMethodStart(int methodId) {
+        try {
+            int flags = MethodIdTable.flagsOf(methodId);
+            if ((flags & MethodIdTable.FLAG_APP_ON_CREATE) != 0) {
+                TimeCounterManager.get().onAppCreateStart();
+            } else if ((flags & MethodIdTable.FLAG_APP_ATTACH_BASE_CONTEXT) != 0) {
+                TimeCounterManager.get().onAppAttachBaseContextStart();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void onApplicationMethodEnd(int methodId) {
+        try {
+            int flags = MethodIdTable.flagsOf(methodId);
+            if ((flags & MethodIdTable.FLAG_APP_ON_CREATE) != 0) {
+                TimeCounterManager.get().onAppCreateEnd();
+            } else if ((flags & MethodIdTable.FLAG_APP_ATTACH_BASE_CONTEXT) != 0) {
+                TimeCounterManager.get().onAppAttachBaseContextEnd();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return 各函数超过阈值的调用统计
+     */
+    public static List<SlowMethodStat> getSlowMethodStats() {
+        return sAggregator.getStats();
+    }
+
+    /**
+     * @return 队列已满被丢弃的慢函数记录数
+     */
+    public static int getDroppedCount() {
+        return sAggregator.getDroppedCount();
+    }
+}
@@ -0,0 +1,171 @@
+package com.didichuxing.doraemonkit.aop.method_cost;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ================================================
+ * 描    述：插桩函数名与int id的对应表，运行时只使用id，需要显示时再取函数名
+ * 函数名格式为 className&methodName
+ * 小于DYNAMIC_ID_BASE的id由插件在编译期分配，函数名保存在插件生成的MethodIdNames中，按chunk懒加载
+ * 运行时通过idOf注册的函数名使用DYNAMIC_ID_BASE之后的id，两者互不冲突
+ * 修订历史：
+ * ================================================
+ */
+public final class MethodIdTable {
+    /**
+     * Application#onCreate
+     */
+    static final int FLAG_APP_ON_CREATE = 1;
+    /**
+     * Application#attachBaseContext
+     */
+    static final int FLAG_APP_ATTACH_BASE_CONTEXT = 1 << 1;
+
+    /**
+     * 运行时注册的id从这里开始
+     */
+    public static final int DYNAMIC_ID_BASE = 1 << 30;
+
+    /**
+     * 与插件中 MethodIdGenerator.NAMES_PER_CHUNK 保持一致
+     */
+    private static final int NAMES_PER_CHUNK = 128;
+    private static final String LOOKUP_CLASS_NAME = "com.didichuxing.doraemonkit.aop.method_cost.MethodIdNames";
+
+    private static final ConcurrentHashMap<String, Integer> sIds = new ConcurrentHashMap<>();
+    private static final Object sLock = new Object();
+    /**
+     * 只在sLock中扩容，读取时不加锁
+     */
+    private static volatile String[] sNames = new String[256];
+    private static volatile int[] sFlags = new int[256];
+    private static int sCount;
+
+    /**
+     * 编译期id的函数名，key为chunk下标
+     */
+    private static final ConcurrentHashMap<Integer, String[]> sChunks = new ConcurrentHashMap<>();
+    private static volatile Method sChunkMethod;
+    private static volatile boolean sLookupClassMissing;
+
+    private MethodIdTable() {
+    }
+
+    /**
+     * @param methodName className&methodName
+     * @return 同一个函数名始终返回同一个id
+     */
+    public static int idOf(String methodName) {
+        Integer id = sIds.get(methodName);
+        if (id != null) {
+            return id;
+        }
+        return register(methodName);
+    }
+
+    private static int register(String methodName) {
+        synchronized (sLock) {
+            Integer id = sIds.get(methodName);
+            if (id != null) {
+                return id;
+            }
+            int index = sCount;
+            if (index == sNames.length) {
+                String[] names = new String[index * 2];
+                int[] flags = new int[index * 2];
+                System.arraycopy(sNames, 0, names, 0, index);
+                System.arraycopy(sFlags, 0, flags, 0, index);
+                sFlags = flags;
+                sNames = names;
+            }
+            sFlags[index] = flagsOf(methodName);
+            sNames[index] = methodName;
+            sCount = index + 1;
+            sIds.put(methodName, DYNAMIC_ID_BASE + index);
+            return DYNAMIC_ID_BASE + index;
+        }
+    }
+
+    private static int flagsOf(String methodName) {
+        if (methodName == null) {
+            return 0;
+        }
+        if (methodName.endsWith("&onCreate")) {
+            return FLAG_APP_ON_CREATE;
+        }
+        if (methodName.endsWith("&attachBaseContext")) {
+            return FLAG_APP_ATTACH_BASE_CONTEXT;
+        }
+        return 0;
+    }
+
+    /**
+     * @return 未注册的id返回null
+     */
+    public static String nameOf(int methodId) {
+        if (methodId < 0) {
+            return null;
+        }
+        if (methodId < DYNAMIC_ID_BASE) {
+            return compiledNameOf(methodId);
+        }
+        String[] names = sNames;
+        int index = methodId - DYNAMIC_ID_BASE;
+        if (index >= names.length) {
+            return null;
+        }
+        return names[index];
+    }
+
+    /**
+     * 只在插桩对象是Application时调用，编译期id直接根据函数名判断
+     */
+    static int flagsOf(int methodId) {
+        if (methodId < DYNAMIC_ID_BASE) {
+            return flagsOf(nameOf(methodId));
+        }
+        int[] flags = sFlags;
+        int index = methodId - DYNAMIC_ID_BASE;
+        if (index >= flags.length) {
+            return 0;
+        }
+        return flags[index];
+    }
+
+    private static String compiledNameOf(int methodId) {
+        int chunkIndex = methodId / NAMES_PER_CHUNK;
+        String[] chunk = sChunks.get(chunkIndex);
+        if (chunk == null) {
+            chunk = loadChunk(chunkIndex);
+            if (chunk == null) {
+                return null;
+            }
+            sChunks.put(chunkIndex, chunk);
+        }
+        int index = methodId % NAMES_PER_CHUNK;
+        return index < chunk.length ? chunk[index] : null;
+    }
+
+    private static String[] loadChunk(int chunkIndex) {
+        if (sLookupClassMissing) {
+            return null;
+        }
+        try {
+            Method chunkMethod = sChunkMethod;
+            if (chunkMethod == null) {
+                chunkMethod = Class.forName(LOOKUP_CLASS_NAME).getMethod("chunk", int.class);
+                sChunkMethod = chunkMethod;
+            }
+            String chunk = (String) chunkMethod.invoke(null, chunkIndex);
+            return chunk == null ? null : chunk.split("\n");
+        } catch (ClassNotFoundException e) {
+            //没有使用插件或者插件没有插桩任何函数
+            sLookupClassMissing = true;
+            return null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
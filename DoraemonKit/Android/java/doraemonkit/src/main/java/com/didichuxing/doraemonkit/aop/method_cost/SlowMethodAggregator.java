@@ -0,0 +1,128 @@
+package com.didichuxing.doraemonkit.aop.method_cost;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ================================================
+ * 描    述：超过阈值的函数调用交给后台线程打印和统计，插桩线程只负责入队
+ * 队列满时直接丢弃，不阻塞业务线程
+ * 修订历史：
+ * ================================================
+ */
+final class SlowMethodAggregator {
+    private static final String TAG = "DOKIT_SLOW_METHOD";
+    private static final int QUEUE_CAPACITY = 256;
+
+    private final BlockingQueue<SlowMethodEvent> mQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicInteger mDroppedCount = new AtomicInteger();
+    private final SparseArray<SlowMethodStat> mStats = new SparseArray<>();
+    private volatile boolean mStarted;
+
+    void offer(SlowMethodEvent event) {
+        ensureStarted();
+        if (!mQueue.offer(event)) {
+            mDroppedCount.incrementAndGet();
+        }
+    }
+
+    private void ensureStarted() {
+        if (mStarted) {
+            return;
+        }
+        synchronized (this) {
+            if (mStarted) {
+                return;
+            }
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, "dokit-slow-method");
+            thread.setDaemon(true);
+            thread.start();
+            mStarted = true;
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            try {
+                SlowMethodEvent event = mQueue.take();
+                synchronized (mStats) {
+                    SlowMethodStat stat = mStats.get(event.methodId);
+                    if (stat == null) {
+                        stat = new SlowMethodStat(event.methodId);
+                        mStats.put(event.methodId, stat);
+                    }
+                    stat.add(event.costNanos);
+                }
+                print(event);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void print(SlowMethodEvent event) {
+        long costTime = event.costNanos / 1000000;
+        Log.i(TAG, "================Dokit================");
+        Log.i(TAG, "\t methodName===>" + MethodIdTable.nameOf(event.methodId) + "  threadName==>" + event.threadName
+                + "  thresholdTime===>" + event.thresholdTime + "   costTime===>" + costTime);
+        if (event.stackTrace == null) {
+            return;
+        }
+        for (StackTraceElement stackTraceElement : event.stackTrace) {
+            String className = stackTraceElement.getClassName();
+            if (className.startsWith("com.didichuxing.doraemonkit.aop.method_cost.")
+                    || className.equals("com.didichuxing.doraemonkit.aop.MethodCostUtil")
+                    || className.equals("dalvik.system.VMStack")
+                    || className.equals("java.lang.Thread")) {
+                continue;
+            }
+            Log.i(TAG, "\tat " + stackTraceElement);
+        }
+    }
+
+    /**
+     * @return 各函数超过阈值的调用统计
+     */
+    List<SlowMethodStat> getStats() {
+        synchronized (mStats) {
+            List<SlowMethodStat> stats = new ArrayList<>(mStats.size());
+            for (int i = 0; i < mStats.size(); i++) {
+                stats.add(new SlowMethodStat(mStats.valueAt(i)));
+            }
+            return stats;
+        }
+    }
+
+    int getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    static final class SlowMethodEvent {
+        final int methodId;
+        final long costNanos;
+        final int thresholdTime;
+        final String threadName;
+        final StackTraceElement[] stackTrace;
+
+        SlowMethodEvent(int methodId, long costNanos, int thresholdTime, String threadName, StackTraceElement[] stackTrace) {
+            this.methodId = methodId;
+            this.costNanos = costNanos;
+            this.thresholdTime = thresholdTime;
+            this.threadName = threadName;
+            this.stackTrace = stackTrace;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.didichuxing.doraemonkit.aop.method_cost;
+
+/**
+ * ================================================
+ * 描    述：单个函数超过阈值的调用统计
+ * 修订历史：
+ * ================================================
+ */
+public class SlowMethodStat {
+    private final int mMethodId;
+    private int mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    SlowMethodStat(int methodId) {
+        mMethodId = methodId;
+    }
+
+    SlowMethodStat(SlowMethodStat other) {
+        mMethodId = other.mMethodId;
+        mCount = other.mCount;
+        mTotalNanos = other.mTotalNanos;
+        mMaxNanos = other.mMaxNanos;
+    }
+
+    void add(long costNanos) {
+        mCount++;
+        mTotalNanos += costNanos;
+        if (costNanos > mMaxNanos) {
+            mMaxNanos = costNanos;
+        }
+    }
+
+    public int getMethodId() {
+        return mMethodId;
+    }
+
+    /**
+     * @return className&methodName
+     */
+    public String getMethodName() {
+        return MethodIdTable.nameOf(mMethodId);
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+}
@@ -0,0 +1,50 @@
+package com.didichuxing.doraemonkit.aop.method_stack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * ================================================
+ * 描    述：保存最近完成的函数调用树，容量固定，写满后覆盖最旧的记录
+ * 写入只有一次getAndIncrement和一次set，不加锁；读取时可能读到正在被覆盖的旧记录
+ * 修订历史：
+ * ================================================
+ */
+final class CallTreeRing {
+    private final AtomicReferenceArray<MethodInvokNode> mSlots;
+    private final AtomicLong mNext = new AtomicLong();
+
+    CallTreeRing(int capacity) {
+        mSlots = new AtomicReferenceArray<>(capacity);
+    }
+
+    void add(MethodInvokNode root) {
+        long sequence = mNext.getAndIncrement();
+        mSlots.set((int) (sequence % mSlots.length()), root);
+    }
+
+    /**
+     * @return 从旧到新排列
+     */
+    List<MethodInvokNode> snapshot() {
+        int capacity = mSlots.length();
+        long end = mNext.get();
+        long start = Math.max(0, end - capacity);
+        List<MethodInvokNode> roots = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            MethodInvokNode root = mSlots.get((int) (sequence % capacity));
+            if (root != null && !roots.contains(root)) {
+                roots.add(root);
+            }
+        }
+        return roots;
+    }
+
+    void clear() {
+        for (int i = 0; i < mSlots.length(); i++) {
+            mSlots.set(i, null);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.didichuxing.doraemonkit.aop.method_stack
 
+import com.didichuxing.doraemonkit.aop.method_cost.MethodIdTable
 import java.util.*
 
 /**
@@ -17,8 +18,20 @@ class MethodInvokNode {
     private var endTimeMillis: Long = 0
     private var costTimeMillis = 0
     var currentThreadName: String? = null
-    var className: String? = null
-    var methodName: String? = null
+    /**
+     * 插件分配的函数id，函数名在需要显示时再从MethodIdTable中取
+     */
+    var methodId = 0
+
+    /**
+     * className&methodName
+     */
+    val fullName: String?
+        get() = MethodIdTable.nameOf(methodId)
+    val className: String?
+        get() = fullName?.substringBefore('&')
+    val methodName: String?
+        get() = fullName?.substringAfter('&')
     var level = 0
     var children: MutableList<MethodInvokNode> = mutableListOf()
 
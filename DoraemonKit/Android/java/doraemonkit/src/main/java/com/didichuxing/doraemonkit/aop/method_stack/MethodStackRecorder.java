@@ -0,0 +1,259 @@
+package com.didichuxing.doraemonkit.aop.method_stack;
+
+import com.didichuxing.doraemonkit.aop.method_cost.MethodIdTable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ================================================
+ * 描    述：函数调用树的记录器
+ * 每个线程维护自己的影子栈，父函数就是栈中的上一帧，不需要遍历Thread.getStackTrace()，不同线程互不覆盖
+ * 递归调用按栈中的位置区分，出栈时匹配最近一次进入；抛出异常没有执行退出插桩的帧会在上层函数出栈时一起丢弃
+ * 入口函数抛出异常时没有上层函数，下一个入口函数进入时如果栈底的入口函数已经不在真实的调用栈中，清空影子栈
+ * 入口函数(level 0)结束时整棵树放入CallTreeRing，可以导出火焰图使用的collapsed stack格式
+ * 修订历史：
+ * ================================================
+ */
+final class MethodStackRecorder {
+    private static final int MAX_DEPTH = 256;
+    private static final int RING_CAPACITY = 64;
+    /**
+     * 每一帧最多保存的子函数数量
+     */
+    private static final int MAX_CHILDREN = 256;
+
+    private static final CallTreeRing sRing = new CallTreeRing(RING_CAPACITY);
+
+    private static final ThreadLocal<ShadowStack> sStack = new ThreadLocal<ShadowStack>() {
+        @Override
+        protected ShadowStack initialValue() {
+            return new ShadowStack();
+        }
+    };
+
+    private MethodStackRecorder() {
+    }
+
+    /**
+     * 不在任何入口函数中执行的非入口函数不入栈
+     */
+    static void enter(int methodId, int level) {
+        ShadowStack stack = sStack.get();
+        if (level == 0 && stack.depth > 0 && !isOnCallStack(stack.ids[0])) {
+            //上一个入口函数抛出了异常，它的帧不会再出栈
+            stack.popTo(0);
+        }
+        if (stack.depth == 0 && level != 0) {
+            return;
+        }
+        stack.push(methodId, level, System.nanoTime());
+    }
+
+    /**
+     * @param thresholdTime 单位为ms，不超过阈值的非入口函数不记录
+     * @return 入口函数结束时返回整棵调用树，其他情况返回null
+     */
+    static MethodInvokNode exit(int methodId, int thresholdTime) {
+        ShadowStack stack = sStack.get();
+        long nowNanos = System.nanoTime();
+        if (stack.overflow > 0) {
+            stack.overflow--;
+            return null;
+        }
+        int index = stack.indexOf(methodId);
+        if (index < 0) {
+            return null;
+        }
+        List<MethodInvokNode> children = stack.children[index];
+        stack.popTo(index);
+
+        long costMillis = (nowNanos - stack.startNanos[index]) / 1000000;
+        boolean isRoot = index == 0;
+        if (!isRoot && costMillis <= thresholdTime) {
+            return null;
+        }
+        MethodInvokNode node = new MethodInvokNode();
+        node.setMethodId(methodId);
+        node.setLevel(stack.levels[index]);
+        node.setCurrentThreadName(Thread.currentThread().getName());
+        node.setStartTimeMillis(stack.startNanos[index] / 1000000);
+        node.setEndTimeMillis(node.getStartTimeMillis() + costMillis);
+        if (children != null) {
+            for (MethodInvokNode child : children) {
+                child.setParent(node);
+                node.addChild(child);
+            }
+        }
+        if (isRoot) {
+            sRing.add(node);
+            return node;
+        }
+        stack.addChild(index - 1, node);
+        return null;
+    }
+
+    /**
+     * @return 最近完成的入口函数调用树，从旧到新排列
+     */
+    static List<MethodInvokNode> getRecentTrees() {
+        return sRing.snapshot();
+    }
+
+    static void clear() {
+        sRing.clear();
+    }
+
+    /**
+     * 最近完成的全部调用树导出为collapsed stack格式
+     */
+    static String toCollapsedStacks() {
+        return toCollapsedStacks(sRing.snapshot());
+    }
+
+    /**
+     * 火焰图使用的collapsed stack格式，每行为 入口函数;子函数;... 自身耗时(ms)
+     * 相同的调用路径合并累加
+     */
+    static String toCollapsedStacks(List<MethodInvokNode> roots) {
+        Map<String, Long> selfTimes = new LinkedHashMap<>();
+        StringBuilder path = new StringBuilder();
+        for (MethodInvokNode root : roots) {
+            collapse(root, path, selfTimes);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Long> entry : selfTimes.entrySet()) {
+            if (entry.getValue() > 0) {
+                builder.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void collapse(MethodInvokNode node, StringBuilder path, Map<String, Long> selfTimes) {
+        int length = path.length();
+        if (length > 0) {
+            path.append(';');
+        }
+        path.append(frameName(node));
+        long selfTime = node.getCostTimeMillis();
+        for (MethodInvokNode child : node.getChildren()) {
+            selfTime -= child.getCostTimeMillis();
+            collapse(child, path, selfTimes);
+        }
+        String key = path.toString();
+        Long total = selfTimes.get(key);
+        selfTimes.put(key, total == null ? selfTime : total + selfTime);
+        path.setLength(length);
+    }
+
+    private static String frameName(MethodInvokNode node) {
+        String fullName = node.getFullName();
+        if (fullName == null) {
+            return "unknown_" + node.getMethodId();
+        }
+        return fullName.replace('&', '.').replace(';', '_').replace(' ', '_');
+    }
+
+    /**
+     * 只在入口函数嵌套进入时调用，正常情况下很少发生
+     *
+     * @return 函数是否还在当前线程的真实调用栈中，没有函数名时按仍在栈中处理
+     */
+    private static boolean isOnCallStack(int methodId) {
+        String fullName = MethodIdTable.nameOf(methodId);
+        int index = fullName == null ? -1 : fullName.indexOf('&');
+        if (index < 0) {
+            return true;
+        }
+        String className = fullName.substring(0, index);
+        String methodName = fullName.substring(index + 1);
+        for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+            if (methodName.equals(element.getMethodName()) && className.equals(element.getClassName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class ShadowStack {
+        private int[] ids = new int[16];
+        private int[] levels = new int[16];
+        private long[] startNanos = new long[16];
+        /**
+         * 已结束且超过阈值的子函数，只有出现时才创建
+         */
+        @SuppressWarnings("unchecked")
+        private List<MethodInvokNode>[] children = new List[16];
+        private int depth;
+        /**
+         * 超过MAX_DEPTH后未入栈的调用层数
+         */
+        private int overflow;
+
+        void push(int methodId, int level, long nowNanos) {
+            if (depth == ids.length) {
+                if (depth >= MAX_DEPTH) {
+                    overflow++;
+                    return;
+                }
+                grow();
+            }
+            ids[depth] = methodId;
+            levels[depth] = level;
+            startNanos[depth] = nowNanos;
+            children[depth] = null;
+            depth++;
+        }
+
+        int indexOf(int methodId) {
+            for (int i = depth - 1; i >= 0; i--) {
+                if (ids[i] == methodId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 弹出index及以上的帧
+         */
+        void popTo(int index) {
+            for (int i = index; i < depth; i++) {
+                children[i] = null;
+            }
+            depth = index;
+            if (index == 0) {
+                overflow = 0;
+            }
+        }
+
+        void addChild(int index, MethodInvokNode node) {
+            if (children[index] == null) {
+                children[index] = new ArrayList<>(4);
+            }
+            if (children[index].size() < MAX_CHILDREN) {
+                children[index].add(node);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void grow() {
+            int capacity = Math.min(MAX_DEPTH, ids.length * 2);
+            int[] newIds = new int[capacity];
+            int[] newLevels = new int[capacity];
+            long[] newStartNanos = new long[capacity];
+            List<MethodInvokNode>[] newChildren = new List[capacity];
+            System.arraycopy(ids, 0, newIds, 0, depth);
+            System.arraycopy(levels, 0, newLevels, 0, depth);
+            System.arraycopy(startNanos, 0, newStartNanos, 0, depth);
+            System.arraycopy(children, 0, newChildren, 0, depth);
+            ids = newIds;
+            levels = newLevels;
+            startNanos = newStartNanos;
+            children = newChildren;
+        }
+    }
+}
@@ -4,10 +4,9 @@ import android.app.Application
 import android.util.Log
 import com.blankj.utilcode.util.GsonUtils
 import com.blankj.utilcode.util.LogUtils
-import com.didichuxing.doraemonkit.aop.MethodCostUtil
+import com.didichuxing.doraemonkit.aop.method_cost.MethodIdTable
 import com.didichuxing.doraemonkit.kit.timecounter.TimeCounterManager
 import java.util.*
-import java.util.concurrent.ConcurrentHashMap
 
 /**
  * ================================================
@@ -19,13 +18,6 @@ import java.util.concurrent.ConcurrentHashMap
  * ================================================
  */
 public object MethodStackUtil {
-    /**
-     * key className&methodName
-     */
-    private val METHOD_STACKS: MutableList<ConcurrentHashMap<String, MethodInvokNode>> by lazy {
-        Collections.synchronizedList(mutableListOf<ConcurrentHashMap<String, MethodInvokNode>>())
-    }
-
     /**
      * 用来标识是静态函数对象
      */
@@ -33,37 +25,21 @@ public object MethodStackUtil {
         StaticMethodObject()
     }
 
-
-    private fun createMethodStackList(totalLevel: Int) {
-        if (METHOD_STACKS.size == totalLevel) {
-            return
-        }
-        METHOD_STACKS.clear()
-        for (index in 0 until totalLevel) {
-            METHOD_STACKS.add(index, ConcurrentHashMap())
-        }
-    }
-
     /**
+     * 调用关系由MethodStackRecorder中每个线程的影子栈维护
+     *
      * @param currentLevel
-     * @param methodName
+     * @param methodId   插件分配的函数id
      * @param classObj   null 代表静态函数
      */
-    fun recodeObjectMethodCostStart(totalLevel: Int, thresholdTime: Int, currentLevel: Int, className: String?, methodName: String, desc: String?, classObj: Any?) {
+    fun recodeObjectMethodCostStart(totalLevel: Int, thresholdTime: Int, currentLevel: Int, methodId: Int, classObj: Any?) {
         try {
-            //先创建队列
-            createMethodStackList(totalLevel)
-            val methodInvokNode = MethodInvokNode()
-            methodInvokNode.startTimeMillis = System.currentTimeMillis()
-            methodInvokNode.currentThreadName = Thread.currentThread().name
-            methodInvokNode.className = className
-            methodInvokNode.methodName = methodName
-            methodInvokNode.level = currentLevel
-            METHOD_STACKS[currentLevel][String.format("%s&%s", className, methodName)] = methodInvokNode
+            MethodStackRecorder.enter(methodId, currentLevel)
 
             //特殊判定
             if (currentLevel == 0) {
                 if (classObj is Application) {
+                    val methodName = MethodIdTable.nameOf(methodId)?.substringAfter('&')
                     if (methodName == "onCreate") {
                         TimeCounterManager.get().onAppCreateStart()
                     }
@@ -79,82 +55,41 @@ public object MethodStackUtil {
 
     /**
      * @param currentLevel
-     * @param className
-     * @param methodName
-     * @param desc
+     * @param methodId   插件分配的函数id
      * @param classObj   null 代表静态函数
      */
-    fun recodeObjectMethodCostEnd(thresholdTime: Int, currentLevel: Int, className: String, methodName: String, desc: String?, classObj: Any?) {
-        synchronized(MethodCostUtil::class.java) {
-            try {
-                val methodInvokNode = METHOD_STACKS[currentLevel][String.format("%s&%s", className, methodName)]
-                if (methodInvokNode != null) {
-                    methodInvokNode.setEndTimeMillis(System.currentTimeMillis())
-                    bindNode(thresholdTime, currentLevel, methodInvokNode)
-                }
+    fun recodeObjectMethodCostEnd(thresholdTime: Int, currentLevel: Int, methodId: Int, classObj: Any?) {
+        try {
+            //入口函数结束时返回整棵调用树
+            val rootNode = MethodStackRecorder.exit(methodId, thresholdTime)
 
-                //打印函数调用栈
-                if (currentLevel == 0) {
-                    if (methodInvokNode != null) {
-                        toStack(classObj is Application, methodInvokNode)
+            //打印函数调用栈
+            if (currentLevel == 0) {
+                if (rootNode != null) {
+                    toStack(classObj is Application, rootNode)
+                }
+                if (classObj is Application) {
+                    //Application 启动时间统计
+                    val methodName = MethodIdTable.nameOf(methodId)?.substringAfter('&')
+                    if (methodName == "onCreate") {
+                        TimeCounterManager.get().onAppCreateEnd()
                     }
-                    if (classObj is Application) {
-                        //Application 启动时间统计
-                        if (methodName == "onCreate") {
-                            TimeCounterManager.get().onAppCreateEnd()
-                        }
-                        if (methodName == "attachBaseContext") {
-                            TimeCounterManager.get().onAppAttachBaseContextEnd()
-                        }
+                    if (methodName == "attachBaseContext") {
+                        TimeCounterManager.get().onAppAttachBaseContextEnd()
                     }
-
-                    //移除对象
-                    METHOD_STACKS[0].remove("$className&$methodName")
                 }
-            } catch (e: Exception) {
-                e.printStackTrace()
-            }
-        }
-    }
-
-    private fun getParentMethod(currentClassName: String?, currentMethodName: String?): String {
-        val stackTraceElements = Thread.currentThread().stackTrace
-        var index = 0
-        for (i in stackTraceElements.indices) {
-            val stackTraceElement = stackTraceElements[i]
-            if (currentClassName == stackTraceElement.className && currentMethodName == stackTraceElement.methodName) {
-                index = i
-                break
-            }
-        }
-        val parentStackTraceElement = stackTraceElements[index + 1]
-        return String.format("%s&%s", parentStackTraceElement.className, parentStackTraceElement.methodName)
-    }
-
-    private fun bindNode(thresholdTime: Int, currentLevel: Int, methodInvokNode: MethodInvokNode?) {
-        if (methodInvokNode == null) {
-            return
-        }
-
-        //过滤掉小于指定阈值的函数
-        if (methodInvokNode.getCostTimeMillis() <= thresholdTime) {
-            return
-        }
-        if (currentLevel >= 1) {
-            val parentMethodNode = METHOD_STACKS[currentLevel - 1][getParentMethod(methodInvokNode.className, methodInvokNode.methodName)]
-            if (parentMethodNode != null) {
-                methodInvokNode.parent = parentMethodNode
-                parentMethodNode.addChild(methodInvokNode)
             }
+        } catch (e: Exception) {
+            e.printStackTrace()
         }
     }
 
-    fun recodeStaticMethodCostStart(totalLevel: Int, thresholdTime: Int, currentLevel: Int, className: String?, methodName: String, desc: String?) {
-        recodeObjectMethodCostStart(totalLevel, thresholdTime, currentLevel, className, methodName, desc, staticMethodObject)
+    fun recodeStaticMethodCostStart(totalLevel: Int, thresholdTime: Int, currentLevel: Int, methodId: Int) {
+        recodeObjectMethodCostStart(totalLevel, thresholdTime, currentLevel, methodId, staticMethodObject)
     }
 
-    fun recodeStaticMethodCostEnd(thresholdTime: Int, currentLevel: Int, className: String, methodName: String, desc: String?) {
-        recodeObjectMethodCostEnd(thresholdTime, currentLevel, className, methodName, desc, staticMethodObject)
+    fun recodeStaticMethodCostEnd(thresholdTime: Int, currentLevel: Int, methodId: Int) {
+        recodeObjectMethodCostEnd(thresholdTime, currentLevel, methodId, staticMethodObject)
     }
 
     private fun jsonTravel(methodStackBeans: MutableList<MethodStackBean>?, methodInvokNodes: List<MethodInvokNode>?) {
@@ -164,7 +99,7 @@ public object MethodStackUtil {
         for (methodInvokNode in methodInvokNodes) {
             val methodStackBean = MethodStackBean()
             methodStackBean.setCostTime(methodInvokNode.getCostTimeMillis())
-            methodStackBean.function = methodInvokNode.className + "&" + methodInvokNode.methodName
+            methodStackBean.function = methodInvokNode.fullName
             methodStackBean.children = ArrayList()
             jsonTravel(methodStackBean.children, methodInvokNode.children)
             methodStackBeans?.add(methodStackBean)
@@ -176,17 +111,17 @@ public object MethodStackUtil {
             return
         }
         for (methodInvokNode in methodInvokNodes) {
-            stringBuilder.append(String.format("%s%s%s%s%s", methodInvokNode.level, SPACE_0, methodInvokNode.getCostTimeMillis().toString() + "ms", getSpaceString(methodInvokNode.level), methodInvokNode.className + "&" + methodInvokNode.methodName)).append("\n")
+            stringBuilder.append(String.format("%s%s%s%s%s", methodInvokNode.level, SPACE_0, methodInvokNode.getCostTimeMillis().toString() + "ms", getSpaceString(methodInvokNode.level), methodInvokNode.fullName)).append("\n")
             stackTravel(stringBuilder, methodInvokNode.children)
         }
     }
 
     fun toJson() {
         val methodStackBeans: MutableList<MethodStackBean> = ArrayList()
-        for (methodInvokNode in METHOD_STACKS[0].values) {
+        for (methodInvokNode in MethodStackRecorder.getRecentTrees()) {
             val methodStackBean = MethodStackBean()
             methodStackBean.setCostTime(methodInvokNode.getCostTimeMillis())
-            methodStackBean.function = methodInvokNode.className + "&" + methodInvokNode.methodName
+            methodStackBean.function = methodInvokNode.fullName
             methodStackBean.children = ArrayList()
             jsonTravel(methodStackBean.children, methodInvokNode.children)
             methodStackBeans.add(methodStackBean)
@@ -195,13 +130,22 @@ public object MethodStackUtil {
         LogUtils.json(json)
     }
 
+    /**
+     * 最近完成的调用树导出为火焰图使用的collapsed stack格式，每行为 入口函数;子函数;... 自身耗时(ms)
+     * 可以直接交给flamegraph.pl或speedscope打开
+     */
+    fun toCollapsedStacks(): String {
+        return MethodStackRecorder.toCollapsedStacks()
+    }
+
     fun toStack(isAppStart: Boolean, methodInvokNode: MethodInvokNode) {
         val stringBuilder = StringBuilder()
         stringBuilder.append("=========DoKit函数调用栈==========").append("\n")
         stringBuilder.append(String.format("%s    %s    %s", "level", "time", "function")).append("\n")
-        stringBuilder.append(String.format("%s%s%s%s%s", methodInvokNode.level, SPACE_0, methodInvokNode.getCostTimeMillis().toString() + "ms", getSpaceString(methodInvokNode.level), methodInvokNode.className + "&" + methodInvokNode.methodName)).append("\n")
+        stringBuilder.append(String.format("%s%s%s%s%s", methodInvokNode.level, SPACE_0, methodInvokNode.getCostTimeMillis().toString() + "ms", getSpaceString(methodInvokNode.level), methodInvokNode.fullName)).append("\n")
         stackTravel(stringBuilder, methodInvokNode.children)
         Log.i(TAG, stringBuilder.toString())
+        Log.i(TAG, "=========DoKit collapsed stacks==========\n" + MethodStackRecorder.toCollapsedStacks(Collections.singletonList(methodInvokNode)))
         if (isAppStart && methodInvokNode.level == 0) {
             if (methodInvokNode.methodName == "onCreate") {
                 STR_APP_ON_CREATE = stringBuilder.toString()
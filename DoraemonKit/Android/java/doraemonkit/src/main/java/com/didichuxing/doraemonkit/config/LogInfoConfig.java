@@ -14,4 +14,15 @@ public class LogInfoConfig {
     public static void setLogInfoOpen(boolean open) {
         SharedPrefsUtil.putBoolean(SharedPrefsKey.LOG_INFO_OPEN, open);
     }
+
+    /**
+     * 是否把日志同时写入文件，关闭后已经写入的文件仍然保留
+     */
+    public static boolean isLogFileOpen() {
+        return SharedPrefsUtil.getBoolean(SharedPrefsKey.LOG_INFO_FILE_OPEN, false);
+    }
+
+    public static void setLogFileOpen(boolean open) {
+        SharedPrefsUtil.putBoolean(SharedPrefsKey.LOG_INFO_FILE_OPEN, open);
+    }
 }
\ No newline at end of file
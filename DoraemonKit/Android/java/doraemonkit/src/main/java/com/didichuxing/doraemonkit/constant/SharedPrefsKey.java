@@ -15,6 +15,7 @@ public interface SharedPrefsKey {
     String FLOAT_ICON_POS_X = "float_icon_pos_x";
     String FLOAT_ICON_POS_Y = "float_icon_pos_y";
     String LOG_INFO_OPEN = "log_info_open";
+    String LOG_INFO_FILE_OPEN = "log_info_file_open";
     String COLOR_PICK_OPEN = "color_pick_open";
     String ALIGN_RULER_OPEN = "align_ruler_open";
     String VIEW_CHECK_OPEN = "view_check_open";
@@ -8,13 +8,20 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import android.view.View;
 
+import com.blankj.utilcode.util.ThreadUtils;
+import com.blankj.utilcode.util.ToastUtils;
 import com.didichuxing.doraemonkit.R;
 import com.didichuxing.doraemonkit.kit.blockmonitor.core.BlockMonitorManager;
 import com.didichuxing.doraemonkit.kit.core.BaseFragment;
 import com.didichuxing.doraemonkit.kit.core.SettingItem;
 import com.didichuxing.doraemonkit.kit.core.SettingItemAdapter;
+import com.didichuxing.doraemonkit.kit.methodtrace.SamplingProfiler;
+import com.didichuxing.doraemonkit.util.DokitUtil;
 import com.didichuxing.doraemonkit.widget.titlebar.HomeTitleBar;
 
+import java.io.File;
+import java.util.List;
+
 /**
  * @desc: 卡顿检测首页
  */
@@ -45,11 +52,18 @@ public class BlockMonitorFragment extends BaseFragment {
         });
         RecyclerView mSettingList = findViewById(R.id.setting_list);
         mSettingList.setLayoutManager(new LinearLayoutManager(getContext()));
-        SettingItemAdapter settingItemAdapter = new SettingItemAdapter(getContext());
+        final SettingItemAdapter settingItemAdapter = new SettingItemAdapter(getContext());
         mSettingList.setAdapter(settingItemAdapter);
-        settingItemAdapter.append(new SettingItem(R.string.dk_item_block_switch, BlockMonitorManager.getInstance().isRunning()));
+        final SettingItem blockSwitchItem = new SettingItem(R.string.dk_item_block_switch, BlockMonitorManager.getInstance().isRunning());
+        final SettingItem profileSwitchItem = new SettingItem(R.string.dk_item_block_message_profile_switch,
+                BlockMonitorManager.getInstance().isRunning() && BlockMonitorManager.getInstance().getConfig().isMessageProfileEnabled());
+        settingItemAdapter.append(blockSwitchItem);
         settingItemAdapter.append(new SettingItem(R.string.dk_item_block_goto_list));
         settingItemAdapter.append(new SettingItem(R.string.dk_item_block_mock));
+        settingItemAdapter.append(profileSwitchItem);
+        settingItemAdapter.append(new SettingItem(R.string.dk_item_block_goto_message_profile));
+        settingItemAdapter.append(new SettingItem(R.string.dk_item_block_sampling_profiler_switch, SamplingProfiler.getInstance().isRunning()));
+        settingItemAdapter.append(new SettingItem(R.string.dk_item_block_sampling_profiler_save));
 
         settingItemAdapter.setOnSettingItemSwitchListener(new SettingItemAdapter.OnSettingItemSwitchListener() {
             @Override
@@ -59,6 +73,25 @@ public class BlockMonitorFragment extends BaseFragment {
                         BlockMonitorManager.getInstance().start();
                     } else {
                         BlockMonitorManager.getInstance().stop();
+                        //卡顿检测关闭后消息耗时统计也随之停止
+                        if (profileSwitchItem.isChecked) {
+                            profileSwitchItem.isChecked = false;
+                            notifyItemChanged(settingItemAdapter, profileSwitchItem);
+                        }
+                    }
+                } else if (data.desc == R.string.dk_item_block_message_profile_switch) {
+                    //消息耗时统计依赖卡顿检测对主线程消息的订阅
+                    BlockMonitorManager.getInstance().getConfig().setMessageProfileEnabled(on);
+                    if (on && !BlockMonitorManager.getInstance().isRunning()) {
+                        BlockMonitorManager.getInstance().start();
+                        blockSwitchItem.isChecked = true;
+                        notifyItemChanged(settingItemAdapter, blockSwitchItem);
+                    }
+                } else if (data.desc == R.string.dk_item_block_sampling_profiler_switch) {
+                    if (on) {
+                        SamplingProfiler.getInstance().start();
+                    } else {
+                        SamplingProfiler.getInstance().stop();
                     }
                 }
             }
@@ -70,6 +103,10 @@ public class BlockMonitorFragment extends BaseFragment {
                     showContent(BlockListFragment.class);
                 } else if (data.desc == R.string.dk_item_block_mock) {
                     mockBlock();
+                } else if (data.desc == R.string.dk_item_block_goto_message_profile) {
+                    showContent(MessageProfileFragment.class);
+                } else if (data.desc == R.string.dk_item_block_sampling_profiler_save) {
+                    saveSamplingProfile();
                 }
             }
         });
@@ -82,6 +119,46 @@ public class BlockMonitorFragment extends BaseFragment {
         }
     }
 
+    /**
+     * 在开关的回调中修改另一个开关，等当前的回调结束后再刷新
+     */
+    private void notifyItemChanged(final SettingItemAdapter adapter, final SettingItem item) {
+        getView().post(new Runnable() {
+            @Override
+            public void run() {
+                int position = adapter.getData().indexOf(item);
+                if (position >= 0) {
+                    adapter.notifyItemChanged(position);
+                }
+            }
+        });
+    }
+
+    /**
+     * 采样结果较大，在io线程中写入文件，采样可以继续进行
+     */
+    private void saveSamplingProfile() {
+        ThreadUtils.executeByIo(new ThreadUtils.SimpleTask<List<File>>() {
+            @Override
+            public List<File> doInBackground() throws Throwable {
+                return SamplingProfiler.getInstance().save();
+            }
+
+            @Override
+            public void onSuccess(List<File> files) {
+                if (files.isEmpty()) {
+                    ToastUtils.showShort(DokitUtil.getString(R.string.dk_item_block_sampling_profiler_empty));
+                    return;
+                }
+                StringBuilder builder = new StringBuilder("文件保存在:");
+                for (File file : files) {
+                    builder.append('\n').append(file.getAbsolutePath());
+                }
+                ToastUtils.showLong(builder.toString());
+            }
+        });
+    }
+
     private void mockBlock() {
         try {
             getView().postDelayed(new Runnable() {
@@ -0,0 +1,102 @@
+package com.didichuxing.doraemonkit.kit.blockmonitor;
+
+import android.os.Bundle;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import android.view.View;
+import android.widget.TextView;
+
+import com.didichuxing.doraemonkit.R;
+import com.didichuxing.doraemonkit.kit.blockmonitor.bean.MessageStat;
+import com.didichuxing.doraemonkit.kit.blockmonitor.core.BlockMonitorManager;
+import com.didichuxing.doraemonkit.kit.blockmonitor.core.MessageProfiler;
+import com.didichuxing.doraemonkit.kit.core.BaseFragment;
+import com.didichuxing.doraemonkit.widget.titlebar.TitleBar;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @desc: 主线程消息耗时统计，按总耗时展示前TOP_COUNT项，每秒刷新
+ */
+public class MessageProfileFragment extends BaseFragment {
+    private static final String TAG = "MessageProfileFragment";
+    private static final int TOP_COUNT = 30;
+    private static final int REFRESH_INTERVAL = 1000;
+
+    private TextView mProfileText;
+
+    @Override
+    protected int onRequestLayout() {
+        return R.layout.dk_fragment_message_profile;
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        mProfileText = findViewById(R.id.tx_message_profile);
+        TitleBar titleBar = findViewById(R.id.title_bar);
+        titleBar.setOnTitleBarClickListener(new TitleBar.OnTitleBarClickListener() {
+            @Override
+            public void onLeftClick() {
+                getActivity().onBackPressed();
+            }
+
+            @Override
+            public void onRightClick() {
+                BlockMonitorManager.getInstance().getMessageProfiler().reset();
+                refresh();
+            }
+        });
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        mRefreshRunnable.run();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        mProfileText.removeCallbacks(mRefreshRunnable);
+    }
+
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+            mProfileText.postDelayed(this, REFRESH_INTERVAL);
+        }
+    };
+
+    private void refresh() {
+        MessageProfiler profiler = BlockMonitorManager.getInstance().getMessageProfiler();
+        List<MessageStat> stats = profiler.getTopStats(TOP_COUNT);
+        StringBuilder builder = new StringBuilder();
+        builder.append(getString(R.string.dk_block_message_profile_message_count)).append(' ')
+                .append(profiler.getMessageCount()).append("  ")
+                .append(getString(R.string.dk_block_message_profile_total)).append(' ')
+                .append(formatMillis(profiler.getMessageTotalMicros())).append("\n\n");
+        String total = getString(R.string.dk_block_message_profile_total);
+        String count = getString(R.string.dk_block_message_profile_count);
+        String avg = getString(R.string.dk_block_message_profile_avg);
+        String max = getString(R.string.dk_block_message_profile_max);
+        for (int i = 0; i < stats.size(); i++) {
+            MessageStat stat = stats.get(i);
+            builder.append(i + 1).append(". ").append(stat.key).append('\n')
+                    .append("   ").append(total).append(' ').append(formatMillis(stat.totalMicros))
+                    .append("  ").append(count).append(' ').append(stat.count)
+                    .append("  ").append(avg).append(' ').append(formatMillis(stat.getAverageMicros()))
+                    .append("  p95 ").append(formatMillis(stat.p95Micros))
+                    .append("  ").append(max).append(' ').append(formatMillis(stat.maxMicros))
+                    .append("\n\n");
+        }
+        mProfileText.setText(builder.toString());
+    }
+
+    private static String formatMillis(long micros) {
+        return String.format(Locale.US, "%.1fms", micros / 1000f);
+    }
+}
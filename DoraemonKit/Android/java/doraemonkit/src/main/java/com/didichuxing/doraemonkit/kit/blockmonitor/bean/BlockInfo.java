@@ -15,8 +15,11 @@
  */
 package com.didichuxing.doraemonkit.kit.blockmonitor.bean;
 
+import com.didichuxing.doraemonkit.util.StackFrameTable;
+
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -35,19 +38,28 @@ public class BlockInfo {
     private static final String KEY_TIME_COST_START = "time-start";
     private static final String KEY_TIME_COST_END = "time-end";
     private static final String KEY_STACK = "stack";
+    private static final String KEY_ANR = "anr";
 
 
     // Per Block Info fields
     public long timeCost;
     private long threadTimeCost;
     public long time;
+    /**
+     * 由看门狗线程在主线程未响应时上报，没有线程耗时
+     */
+    public boolean isAnr;
 
     public String timeStart;
     private String timeEnd;
-    public ArrayList<String> threadStackEntries = new ArrayList<>();
+    private List<StackSample> stackSamples = new ArrayList<>();
+    /**
+     * 由stackSamples生成，第一次使用时才转成文本
+     */
+    private ArrayList<String> threadStackEntries;
 
     private StringBuilder timeSb = new StringBuilder();
-    private StringBuilder stackSb = new StringBuilder();
+    private String stackString;
     public String concernStackString;
 
     public static BlockInfo newInstance() {
@@ -59,28 +71,70 @@ public class BlockInfo {
         String separator = SEPARATOR;
 
         timeSb.append(KEY_TIME_COST).append(KV).append(timeCost).append(separator);
-        timeSb.append(KEY_THREAD_TIME_COST).append(KV).append(threadTimeCost).append(separator);
+        if (isAnr) {
+            timeSb.append(KEY_ANR).append(KV).append(true).append(separator);
+        } else {
+            timeSb.append(KEY_THREAD_TIME_COST).append(KV).append(threadTimeCost).append(separator);
+        }
         timeSb.append(KEY_TIME_COST_START).append(KV).append(timeStart).append(separator);
         timeSb.append(KEY_TIME_COST_END).append(KV).append(timeEnd).append(separator);
+        return this;
+    }
 
 
-        if (threadStackEntries != null && !threadStackEntries.isEmpty()) {
-            StringBuilder temp = new StringBuilder();
-            for (String s : threadStackEntries) {
-                temp.append(s);
-                temp.append(separator);
-            }
-            stackSb.append(KEY_STACK).append(KV).append(temp.toString()).append(separator);
-        }
+    public BlockInfo setAnr(boolean anr) {
+        isAnr = anr;
         return this;
     }
 
-
-    public BlockInfo setThreadStackEntries(ArrayList<String> threadStackEntries) {
-        this.threadStackEntries = threadStackEntries;
+    public BlockInfo setStackSamples(List<StackSample> stackSamples) {
+        this.stackSamples = stackSamples;
+        this.threadStackEntries = null;
+        this.stackString = null;
         return this;
     }
 
+    public List<StackSample> getStackSamples() {
+        return stackSamples;
+    }
+
+    /**
+     * 每个元素为一次采样：采样时间 + 堆栈
+     */
+    public ArrayList<String> getThreadStackEntries() {
+        if (threadStackEntries == null) {
+            threadStackEntries = new ArrayList<>(stackSamples.size());
+            StackFrameTable frameTable = StackFrameTable.getInstance();
+            StringBuilder builder = new StringBuilder();
+            for (StackSample sample : stackSamples) {
+                builder.setLength(0);
+                builder.append(TIME_FORMATTER.format(sample.time)).append(SEPARATOR).append(SEPARATOR);
+                for (int frame : sample.frames) {
+                    builder.append(frameTable.getFrame(frame).toString()).append(SEPARATOR);
+                }
+                threadStackEntries.add(builder.toString());
+            }
+        }
+        return threadStackEntries;
+    }
+
+    private String getStackString() {
+        if (stackString == null) {
+            ArrayList<String> entries = getThreadStackEntries();
+            if (entries.isEmpty()) {
+                stackString = "";
+            } else {
+                StringBuilder temp = new StringBuilder();
+                for (String s : entries) {
+                    temp.append(s);
+                    temp.append(SEPARATOR);
+                }
+                stackString = KEY_STACK + KV + temp.toString() + SEPARATOR;
+            }
+        }
+        return stackString;
+    }
+
     public BlockInfo setMainThreadTimeCost(long realTimeStart, long realTimeEnd, long threadTimeStart, long threadTimeEnd) {
         timeCost = realTimeEnd - realTimeStart;
         threadTimeCost = threadTimeEnd - threadTimeStart;
@@ -91,6 +145,6 @@ public class BlockInfo {
 
     @Override
     public String toString() {
-        return timeSb.toString() + "\n" + stackSb.toString();
+        return timeSb.toString() + "\n" + getStackString();
     }
 }
@@ -0,0 +1,30 @@
+package com.didichuxing.doraemonkit.kit.blockmonitor.bean;
+
+/**
+ * ================================================
+ * 描    述：同一类主线程消息的耗时统计，时间单位为us
+ * 修订历史：
+ * ================================================
+ */
+public final class MessageStat {
+    /**
+     * Handler类名 + callback类名或what
+     */
+    public final String key;
+    public final int count;
+    public final long totalMicros;
+    public final long maxMicros;
+    public final long p95Micros;
+
+    public MessageStat(String key, int count, long totalMicros, long maxMicros, long p95Micros) {
+        this.key = key;
+        this.count = count;
+        this.totalMicros = totalMicros;
+        this.maxMicros = maxMicros;
+        this.p95Micros = p95Micros;
+    }
+
+    public long getAverageMicros() {
+        return count == 0 ? 0 : totalMicros / count;
+    }
+}
@@ -0,0 +1,17 @@
+package com.didichuxing.doraemonkit.kit.blockmonitor.bean;
+
+/**
+ * ================================================
+ * 描    述：一次主线程堆栈采样，frames为StackFrameTable中的帧id，栈顶在前
+ * 修订历史：
+ * ================================================
+ */
+public final class StackSample {
+    public final long time;
+    public final int[] frames;
+
+    public StackSample(long time, int[] frames) {
+        this.time = time;
+        this.frames = frames;
+    }
+}
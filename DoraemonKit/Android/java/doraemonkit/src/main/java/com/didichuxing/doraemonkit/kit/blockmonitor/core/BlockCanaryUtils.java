@@ -4,6 +4,8 @@ import android.content.Context;
 import android.text.TextUtils;
 
 import com.didichuxing.doraemonkit.kit.blockmonitor.bean.BlockInfo;
+import com.didichuxing.doraemonkit.kit.blockmonitor.bean.StackSample;
+import com.didichuxing.doraemonkit.util.StackFrameTable;
 import com.didichuxing.doraemonkit.util.SystemUtil;
 
 public final class BlockCanaryUtils {
@@ -13,18 +15,21 @@ public final class BlockCanaryUtils {
 
     private static final String CURRENT_PACKAGE = "com.didichuxing.doraemonkit";
 
+    /**
+     * 直接按帧的类名匹配，不需要把整个堆栈转成文本
+     */
     public static String concernStackString(Context context, BlockInfo blockInfo) {
         String result = "";
-        for (String stackEntry : blockInfo.threadStackEntries) {
-            if (!TextUtils.isEmpty(stackEntry)) {
-                String[] lines = stackEntry.split(BlockInfo.SEPARATOR);
-                for (String line : lines) {
-                    String keyStackString = concernStackString(context, line);
+        StackFrameTable frameTable = StackFrameTable.getInstance();
+        for (StackSample sample : blockInfo.getStackSamples()) {
+            if (sample.frames.length > 0) {
+                for (int frame : sample.frames) {
+                    String keyStackString = concernStackString(context, frameTable.getFrame(frame));
                     if (keyStackString != null) {
                         return keyStackString;
                     }
                 }
-                return classSimpleName(lines[0]);
+                return classSimpleName(frameTable.getFrame(sample.frames[0]).toString());
             }
         }
         return result;
@@ -37,13 +42,14 @@ public final class BlockCanaryUtils {
     }
 
 
-    private static String concernStackString(Context context, String line) {
+    private static String concernStackString(Context context, StackTraceElement element) {
         if (!sProcessNameFirstGetFlag) {
             sProcessNameFirstGetFlag = true;
             sProcessName = SystemUtil.obtainProcessName(context);
         }
-        if (line.startsWith(sProcessName) || line.startsWith(CURRENT_PACKAGE)) {
-            return classSimpleName(line);
+        String className = element.getClassName();
+        if ((sProcessName != null && className.startsWith(sProcessName)) || className.startsWith(CURRENT_PACKAGE)) {
+            return classSimpleName(element.toString());
         }
         return null;
     }
@@ -0,0 +1,87 @@
+package com.didichuxing.doraemonkit.kit.blockmonitor.core;
+
+/**
+ * ================================================
+ * 描    述：卡顿检测的配置，修改后从下一条主线程消息开始生效
+ * 修订历史：
+ * ================================================
+ */
+public class BlockMonitorConfig {
+    public static final int DEFAULT_BLOCK_THRESHOLD = 200;
+    public static final int DEFAULT_SAMPLE_INTERVAL = 100;
+    public static final float DEFAULT_EARLY_SAMPLE_RATIO = 0.8f;
+    public static final int DEFAULT_ANR_THRESHOLD = 5000;
+
+    private volatile int mBlockThreshold = DEFAULT_BLOCK_THRESHOLD;
+    private volatile int mSampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    private volatile float mEarlySampleRatio = DEFAULT_EARLY_SAMPLE_RATIO;
+    private volatile int mAnrThreshold = DEFAULT_ANR_THRESHOLD;
+    private volatile boolean mMessageProfileEnabled;
+
+    /**
+     * 单条消息耗时超过该值认为是卡顿 单位为ms
+     */
+    public int getBlockThreshold() {
+        return mBlockThreshold;
+    }
+
+    public BlockMonitorConfig setBlockThreshold(int blockThreshold) {
+        mBlockThreshold = Math.max(1, blockThreshold);
+        return this;
+    }
+
+    /**
+     * 开始采样后的堆栈采样间隔 单位为ms
+     */
+    public int getSampleInterval() {
+        return mSampleInterval;
+    }
+
+    public BlockMonitorConfig setSampleInterval(int sampleInterval) {
+        mSampleInterval = Math.max(10, sampleInterval);
+        return this;
+    }
+
+    /**
+     * 消息耗时达到 卡顿阈值 * ratio 时开始采样，保证超过阈值的消息至少有一次采样
+     */
+    public float getEarlySampleRatio() {
+        return mEarlySampleRatio;
+    }
+
+    public BlockMonitorConfig setEarlySampleRatio(float earlySampleRatio) {
+        mEarlySampleRatio = Math.min(1f, Math.max(0f, earlySampleRatio));
+        return this;
+    }
+
+    /**
+     * 主线程超过该时间没有响应时由看门狗线程直接上报，不依赖Printer的结束回调 单位为ms，小于等于0时关闭
+     */
+    public int getAnrThreshold() {
+        return mAnrThreshold;
+    }
+
+    public BlockMonitorConfig setAnrThreshold(int anrThreshold) {
+        mAnrThreshold = anrThreshold;
+        return this;
+    }
+
+    /**
+     * 是否统计每类主线程消息的耗时，见MessageProfiler
+     */
+    public boolean isMessageProfileEnabled() {
+        return mMessageProfileEnabled;
+    }
+
+    public BlockMonitorConfig setMessageProfileEnabled(boolean messageProfileEnabled) {
+        mMessageProfileEnabled = messageProfileEnabled;
+        return this;
+    }
+
+    /**
+     * @return 消息开始后第一次采样的延时
+     */
+    int getFirstSampleDelay() {
+        return (int) (mBlockThreshold * mEarlySampleRatio);
+    }
+}
@@ -4,6 +4,7 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Debug;
+import android.os.Handler;
 import android.os.Looper;
 import androidx.annotation.NonNull;
 import android.text.TextUtils;
@@ -18,7 +19,7 @@ import com.didichuxing.doraemonkit.kit.blockmonitor.BlockMonitorFragment;
 import com.didichuxing.doraemonkit.kit.blockmonitor.bean.BlockInfo;
 import com.didichuxing.doraemonkit.kit.health.AppHealthInfoUtil;
 import com.didichuxing.doraemonkit.kit.health.model.AppHealthInfo;
-import com.didichuxing.doraemonkit.kit.timecounter.TimeCounterManager;
+import com.didichuxing.doraemonkit.kit.core.LooperPrinterHub;
 import com.didichuxing.doraemonkit.kit.core.UniversalActivity;
 import com.didichuxing.doraemonkit.util.LogHelper;
 import com.didichuxing.doraemonkit.util.NotificationUtils;
@@ -43,7 +44,10 @@ public class BlockMonitorManager {
 
     private boolean mIsRunning;
     private MonitorCore mMonitorCore;
-    private Context mContext;
+    private final BlockMonitorConfig mConfig = new BlockMonitorConfig();
+    private final MessageProfiler mMessageProfiler = new MessageProfiler();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private volatile Context mContext;
     private List<BlockInfo> mBlockInfoList = Collections.synchronizedList(new ArrayList<BlockInfo>());
     private OnBlockInfoUpdateListener mOnBlockInfoUpdateListener;
 
@@ -65,14 +69,12 @@ public class BlockMonitorManager {
             LogHelper.e(TAG, "start fail, context is null");
             return;
         }
-        // 卡顿检测和跳转耗时统计都使用了Printer的方式，无法同时工作
-        TimeCounterManager.get().stop();
         mContext = DoraemonKit.APPLICATION.getApplicationContext();
         if (mMonitorCore == null) {
-            mMonitorCore = new MonitorCore();
+            mMonitorCore = new MonitorCore(mConfig, mMessageProfiler);
         }
         mIsRunning = true;
-        Looper.getMainLooper().setMessageLogging(mMonitorCore);
+        LooperPrinterHub.getInstance().addListener(mMonitorCore);
     }
 
     public boolean isRunning() {
@@ -84,8 +86,8 @@ public class BlockMonitorManager {
             LogHelper.i(TAG, "stop when manager is not running");
             return;
         }
-        Looper.getMainLooper().setMessageLogging(null);
         if (mMonitorCore != null) {
+            LooperPrinterHub.getInstance().removeListener(mMonitorCore);
             mMonitorCore.shutDown();
             mMonitorCore = null;
         }
@@ -94,6 +96,20 @@ public class BlockMonitorManager {
         mContext = null;
     }
 
+    /**
+     * 卡顿阈值、采样间隔等配置，修改后立即生效
+     */
+    public BlockMonitorConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * 需要先通过getConfig().setMessageProfileEnabled(true)开启，只能在主线程访问
+     */
+    public MessageProfiler getMessageProfiler() {
+        return mMessageProfiler;
+    }
+
     public void setOnBlockInfoUpdateListener(OnBlockInfoUpdateListener onBlockInfoUpdateListener) {
         mOnBlockInfoUpdateListener = onBlockInfoUpdateListener;
     }
@@ -119,39 +135,56 @@ public class BlockMonitorManager {
 
 
     /**
-     * 通知卡顿
+     * 通知卡顿，看门狗线程上报时不在主线程，列表回调会切换到主线程
      *
      * @param blockInfo
      */
-    void notifyBlockEvent(BlockInfo blockInfo) {
-        blockInfo.concernStackString = BlockCanaryUtils.concernStackString(mContext, blockInfo);
+    void notifyBlockEvent(final BlockInfo blockInfo) {
+        Context context = mContext;
+        if (context == null) {
+            return;
+        }
+        blockInfo.concernStackString = BlockCanaryUtils.concernStackString(context, blockInfo);
         blockInfo.time = System.currentTimeMillis();
         if (!TextUtils.isEmpty(blockInfo.concernStackString)) {
             //卡顿 debug模式下会造成卡顿
             if (DoKitConstant.APP_HEALTH_RUNNING && !Debug.isDebuggerConnected()) {
                 addBlockInfoInAppHealth(blockInfo);
             }
-            showNotification(blockInfo);
+            showNotification(context, blockInfo);
             if (mBlockInfoList.size() > MAX_SIZE) {
                 mBlockInfoList.remove(0);
             }
             mBlockInfoList.add(blockInfo);
-            if (mOnBlockInfoUpdateListener != null) {
-                mOnBlockInfoUpdateListener.onBlockInfoUpdate(blockInfo);
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                dispatchBlockInfoUpdate(blockInfo);
+            } else {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        dispatchBlockInfoUpdate(blockInfo);
+                    }
+                });
             }
         }
 
     }
 
-    private void showNotification(BlockInfo info) {
-        String contentTitle = mContext.getString(R.string.dk_block_class_has_blocked, info.timeStart);
-        String contentText = mContext.getString(R.string.dk_block_notification_message);
-        Intent intent = new Intent(mContext, UniversalActivity.class);
+    private void dispatchBlockInfoUpdate(BlockInfo blockInfo) {
+        if (mOnBlockInfoUpdateListener != null) {
+            mOnBlockInfoUpdateListener.onBlockInfoUpdate(blockInfo);
+        }
+    }
+
+    private void showNotification(Context context, BlockInfo info) {
+        String contentTitle = context.getString(R.string.dk_block_class_has_blocked, info.timeStart);
+        String contentText = context.getString(R.string.dk_block_notification_message);
+        Intent intent = new Intent(context, UniversalActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
         intent.putExtra(BundleKey.FRAGMENT_INDEX, FragmentIndex.FRAGMENT_BLOCK_MONITOR);
         intent.putExtra(BlockMonitorFragment.KEY_JUMP_TO_LIST, true);
-        PendingIntent pendingIntent = PendingIntent.getActivity(mContext, 1, intent, FLAG_UPDATE_CURRENT);
-        NotificationUtils.setInfoNotification(mContext, NotificationUtils.ID_SHOW_BLOCK_NOTIFICATION,
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, 1, intent, FLAG_UPDATE_CURRENT);
+        NotificationUtils.setInfoNotification(context, NotificationUtils.ID_SHOW_BLOCK_NOTIFICATION,
                 contentTitle, contentText, contentText, pendingIntent);
     }
 
@@ -0,0 +1,125 @@
+package com.didichuxing.doraemonkit.kit.blockmonitor.core;
+
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.didichuxing.doraemonkit.kit.blockmonitor.bean.BlockInfo;
+import com.didichuxing.doraemonkit.kit.blockmonitor.bean.StackSample;
+import com.didichuxing.doraemonkit.util.LogHelper;
+import com.didichuxing.doraemonkit.util.StackFrameTable;
+
+import java.util.ArrayList;
+
+/**
+ * ================================================
+ * 描    述：卡顿检测的看门狗线程
+ * 定时向主线程post一个空任务，超过anr阈值仍未执行时直接上报，不依赖Printer的结束回调，主线程卡死时也能发现
+ * 同一次卡死只上报一次，堆栈包括当前消息中已有的采样和上报时的主线程堆栈
+ * 堆栈在看门狗线程中采集，BlockInfo的生成和通知post到主线程，在卡住的消息结束后执行；该消息不再由MonitorCore重复上报
+ * 修订历史：
+ * ================================================
+ */
+class BlockWatchdog extends Thread {
+    private static final String TAG = "BlockWatchdog";
+    private static final int MIN_CHECK_INTERVAL = 100;
+    private static final int MAX_CHECK_INTERVAL = 1000;
+
+    private final MonitorCore mMonitorCore;
+    private final BlockMonitorConfig mConfig;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean mRunning = true;
+
+    /**
+     * 最近一次post的时间(uptime)，为0时表示已执行
+     */
+    private volatile long mTickPostTime;
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            mTickPostTime = 0;
+        }
+    };
+
+    BlockWatchdog(MonitorCore monitorCore, BlockMonitorConfig config) {
+        super("dokit-block-watchdog");
+        setDaemon(true);
+        mMonitorCore = monitorCore;
+        mConfig = config;
+    }
+
+    @Override
+    public void run() {
+        boolean reported = false;
+        while (mRunning) {
+            int anrThreshold = mConfig.getAnrThreshold();
+            int checkInterval = anrThreshold <= 0 ? MAX_CHECK_INTERVAL
+                    : Math.min(MAX_CHECK_INTERVAL, Math.max(MIN_CHECK_INTERVAL, anrThreshold / 5));
+            if (mTickPostTime == 0) {
+                reported = false;
+                if (anrThreshold > 0) {
+                    mTickPostTime = SystemClock.uptimeMillis();
+                    mMainHandler.post(mTick);
+                }
+            } else if (!reported && anrThreshold > 0) {
+                long postTime = mTickPostTime;
+                long now = SystemClock.uptimeMillis();
+                if (postTime != 0 && now - postTime >= anrThreshold && !Debug.isDebuggerConnected()) {
+                    reported = true;
+                    report(postTime, now);
+                }
+            }
+            try {
+                Thread.sleep(checkInterval);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        mMainHandler.removeCallbacks(mTick);
+    }
+
+    private void report(long postTime, long now) {
+        int messageSeq = mMonitorCore.getMessageSeq();
+        long messageStartTime = mMonitorCore.getMessageStartTime();
+        //Printer的开始回调比tick更早时，以消息开始时间为准
+        final long startTime = messageStartTime != 0 && messageStartTime < postTime ? messageStartTime : postTime;
+        if (messageStartTime != 0) {
+            mMonitorCore.markAnrReported(messageSeq);
+        }
+        StackSampler stackSampler = mMonitorCore.getStackSampler();
+        final ArrayList<StackSample> samples = stackSampler.getStackSamples(startTime, now);
+        StackSample current = stackSampler.captureStack();
+        samples.add(current);
+        final long wallStart = startTime + System.currentTimeMillis() - now;
+        final long wallEnd = wallStart + now - startTime;
+        //主线程可能一直不恢复，先在这里输出当前堆栈
+        LogHelper.e(TAG, "main thread not responding for " + (now - startTime) + "ms\n" + formatStack(current));
+        //BlockInfo的时间格式化和卡顿列表只在主线程中使用
+        mMainHandler.postAtFrontOfQueue(new Runnable() {
+            @Override
+            public void run() {
+                BlockInfo blockInfo = BlockInfo.newInstance()
+                        .setMainThreadTimeCost(wallStart, wallEnd, 0, 0)
+                        .setAnr(true)
+                        .setStackSamples(samples)
+                        .flushString();
+                BlockMonitorManager.getInstance().notifyBlockEvent(blockInfo);
+            }
+        });
+    }
+
+    private static String formatStack(StackSample sample) {
+        StackFrameTable frameTable = StackFrameTable.getInstance();
+        StringBuilder builder = new StringBuilder();
+        for (int frame : sample.frames) {
+            builder.append(frameTable.getFrame(frame)).append(BlockInfo.SEPARATOR);
+        }
+        return builder.toString();
+    }
+
+    void shutDown() {
+        mRunning = false;
+        interrupt();
+    }
+}
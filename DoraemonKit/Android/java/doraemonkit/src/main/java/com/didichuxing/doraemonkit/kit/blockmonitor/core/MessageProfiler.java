@@ -0,0 +1,209 @@
+package com.didichuxing.doraemonkit.kit.blockmonitor.core;
+
+import com.didichuxing.doraemonkit.kit.blockmonitor.bean.MessageStat;
+import com.didichuxing.doraemonkit.kit.core.LooperDispatchMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ================================================
+ * 描    述：主线程消息耗时统计，按 Handler类名 + callback类名(没有callback时为what) 聚合
+ * 开始日志由LooperDispatchMessage解析，key写入复用的StringBuilder后查哈希表，只有第一次出现的key才生成字符串
+ * 次数、总耗时、最大耗时和用于计算P95的对数直方图都保存在基本类型数组中
+ * 只在主线程中读写，不加锁
+ * 修订历史：
+ * ================================================
+ */
+public class MessageProfiler {
+    private static final String OTHER_KEY = "others";
+
+    /**
+     * 超过后新的key都计入OTHER_KEY
+     */
+    private static final int MAX_KEY_COUNT = 512;
+    private static final int TABLE_SIZE = MAX_KEY_COUNT * 2;
+    /**
+     * 每个2的幂分为两个桶，覆盖1us到2^32us
+     */
+    private static final int BUCKET_COUNT = 64;
+
+    private final String[] mKeys = new String[MAX_KEY_COUNT];
+    private final int[] mKeyHashes = new int[MAX_KEY_COUNT];
+    /**
+     * 开放寻址的哈希表，值为key id + 1，0表示空位
+     */
+    private final int[] mTable = new int[TABLE_SIZE];
+    private int mKeyCount;
+
+    private final int[] mCounts = new int[MAX_KEY_COUNT];
+    private final long[] mTotalMicros = new long[MAX_KEY_COUNT];
+    private final long[] mMaxMicros = new long[MAX_KEY_COUNT];
+    private final int[] mHistogram = new int[MAX_KEY_COUNT * BUCKET_COUNT];
+    private long mMessageCount;
+    private long mMessageTotalMicros;
+
+    private final StringBuilder mKeyBuilder = new StringBuilder(128);
+    private int mCurrentId = -1;
+    private long mCurrentStartNanos;
+
+    MessageProfiler() {
+    }
+
+    void onDispatchStart(LooperDispatchMessage message) {
+        mCurrentId = idOf(message);
+        mCurrentStartNanos = System.nanoTime();
+    }
+
+    /**
+     * 结束日志不需要解析
+     */
+    void onDispatchEnd() {
+        if (mCurrentId < 0) {
+            return;
+        }
+        long costMicros = (System.nanoTime() - mCurrentStartNanos) / 1000;
+        int id = mCurrentId;
+        mCurrentId = -1;
+        mCounts[id]++;
+        mTotalMicros[id] += costMicros;
+        if (costMicros > mMaxMicros[id]) {
+            mMaxMicros[id] = costMicros;
+        }
+        mHistogram[id * BUCKET_COUNT + bucketOf(costMicros)]++;
+        mMessageCount++;
+        mMessageTotalMicros += costMicros;
+    }
+
+    /**
+     * key为 Handler类名 + " " + callback类名或what
+     */
+    private int idOf(LooperDispatchMessage message) {
+        if (!message.isValid()) {
+            return -1;
+        }
+        StringBuilder key = mKeyBuilder;
+        key.setLength(0);
+        message.appendTarget(key);
+        key.append(' ');
+        message.appendCallback(key);
+        return lookup(key);
+    }
+
+    private int lookup(CharSequence key) {
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        int mask = TABLE_SIZE - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (mTable[slot] != 0) {
+            int id = mTable[slot] - 1;
+            if (mKeyHashes[id] == hash && mKeys[id].contentEquals(key)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (mKeyCount == MAX_KEY_COUNT - 1) {
+            //最后一个位置留给OTHER_KEY
+            if (mKeys[mKeyCount] == null) {
+                mKeys[mKeyCount] = OTHER_KEY;
+            }
+            return mKeyCount;
+        }
+        int id = mKeyCount++;
+        mKeys[id] = key.toString();
+        mKeyHashes[id] = hash;
+        mTable[slot] = id + 1;
+        return id;
+    }
+
+    /**
+     * 2^m ~ 1.5*2^m 和 1.5*2^m ~ 2^(m+1) 各一个桶
+     */
+    private static int bucketOf(long micros) {
+        if (micros <= 1) {
+            return 0;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int half = (int) (micros >>> (msb - 1)) & 1;
+        return Math.min(BUCKET_COUNT - 1, msb * 2 + half);
+    }
+
+    /**
+     * @return 桶的上界
+     */
+    private static long bucketUpperBound(int bucket) {
+        int msb = bucket / 2;
+        long base = 1L << msb;
+        return bucket % 2 == 0 ? base + base / 2 : base * 2;
+    }
+
+    private long p95Micros(int id) {
+        int target = (int) Math.ceil(mCounts[id] * 0.95);
+        int seen = 0;
+        int offset = id * BUCKET_COUNT;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mHistogram[offset + i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), mMaxMicros[id]);
+            }
+        }
+        return mMaxMicros[id];
+    }
+
+    /**
+     * @return 按总耗时从高到低排列的前count项
+     */
+    public List<MessageStat> getTopStats(int count) {
+        int size = mKeys[MAX_KEY_COUNT - 1] == null ? mKeyCount : MAX_KEY_COUNT;
+        int[] ids = new int[size];
+        int idCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (mCounts[i] > 0) {
+                ids[idCount++] = i;
+            }
+        }
+        int limit = Math.min(count, idCount);
+        List<MessageStat> stats = new ArrayList<>(limit);
+        //只需要前几项，选择排序即可
+        for (int i = 0; i < limit; i++) {
+            int best = i;
+            for (int j = i + 1; j < idCount; j++) {
+                if (mTotalMicros[ids[j]] > mTotalMicros[ids[best]]) {
+                    best = j;
+                }
+            }
+            int id = ids[best];
+            ids[best] = ids[i];
+            ids[i] = id;
+            stats.add(new MessageStat(mKeys[id], mCounts[id], mTotalMicros[id], mMaxMicros[id], p95Micros(id)));
+        }
+        return stats;
+    }
+
+    public long getMessageCount() {
+        return mMessageCount;
+    }
+
+    public long getMessageTotalMicros() {
+        return mMessageTotalMicros;
+    }
+
+    /**
+     * 只清空统计，已经出现过的key保留
+     */
+    public void reset() {
+        for (int i = 0; i < MAX_KEY_COUNT; i++) {
+            mCounts[i] = 0;
+            mTotalMicros[i] = 0;
+            mMaxMicros[i] = 0;
+        }
+        for (int i = 0; i < mHistogram.length; i++) {
+            mHistogram[i] = 0;
+        }
+        mMessageCount = 0;
+        mMessageTotalMicros = 0;
+        mCurrentId = -1;
+    }
+}
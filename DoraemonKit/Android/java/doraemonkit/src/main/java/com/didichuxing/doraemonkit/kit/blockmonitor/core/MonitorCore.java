@@ -1,65 +1,116 @@
 package com.didichuxing.doraemonkit.kit.blockmonitor.core;
 
 import android.os.SystemClock;
-import android.util.Printer;
 
 import com.didichuxing.doraemonkit.kit.blockmonitor.bean.BlockInfo;
+import com.didichuxing.doraemonkit.kit.blockmonitor.bean.StackSample;
+import com.didichuxing.doraemonkit.kit.core.LooperDispatchMessage;
+import com.didichuxing.doraemonkit.kit.core.LooperPrinterHub;
 
 import java.util.ArrayList;
 
 /**
  * @desc: 检测卡顿的日志类
+ * 通过LooperPrinterHub订阅主线程消息，耗时使用uptime，上报时再换算成系统时间
+ * 卡顿检测不解析日志内容，开启消息耗时统计时由MessageProfiler读取解析结果
  */
-class MonitorCore implements Printer {
+class MonitorCore implements LooperPrinterHub.OnDispatchListener {
     private static final String TAG = "MonitorCore";
+
+    private final BlockMonitorConfig mConfig;
+    private final MessageProfiler mMessageProfiler;
     /**
-     * 卡顿阈值
+     * 当前消息的开始时间，没有正在执行的消息时为0，看门狗线程会读取
      */
-    private static final int BLOCK_THRESHOLD_MILLIS = 200;
-
-    private long mStartTime = 0;
+    private volatile long mStartTime = 0;
+    /**
+     * 每条消息开始时加1，看门狗据此标记已经按anr上报的消息
+     */
+    private volatile int mMessageSeq = 0;
+    private volatile int mAnrReportedSeq = -1;
     private long mStartThreadTime = 0;
     private boolean mPrintingStarted = false;
 
     private StackSampler mStackSampler;
+    private BlockWatchdog mWatchdog;
 
 
-    public MonitorCore() {
+    public MonitorCore(BlockMonitorConfig config, MessageProfiler messageProfiler) {
+        mConfig = config;
+        mMessageProfiler = messageProfiler;
         mStackSampler = new StackSampler();
         mStackSampler.init();
+        mWatchdog = new BlockWatchdog(this, config);
+        mWatchdog.start();
+    }
+
+    @Override
+    public void onDispatchStart(LooperDispatchMessage message) {
+        mMessageSeq++;
+        mStartTime = SystemClock.uptimeMillis();
+        mStartThreadTime = SystemClock.currentThreadTimeMillis();
+        mPrintingStarted = true;
+        mStackSampler.startDump(mConfig.getFirstSampleDelay(), mConfig.getSampleInterval());
+        if (mConfig.isMessageProfileEnabled()) {
+            mMessageProfiler.onDispatchStart(message);
+        }
     }
 
     @Override
-    public void println(String x) {
-        if (!mPrintingStarted) {
-            mStartTime = System.currentTimeMillis();
-            mStartThreadTime = SystemClock.currentThreadTimeMillis();
-            mPrintingStarted = true;
-            mStackSampler.startDump();
-        } else {
-            final long endTime = System.currentTimeMillis();
-            long endThreadTime = SystemClock.currentThreadTimeMillis();
+    public void onDispatchEnd(LooperDispatchMessage message) {
+        //开始订阅时正在执行的消息没有开始回调
+        if (mPrintingStarted) {
+            final long endTime = SystemClock.uptimeMillis();
             mPrintingStarted = false;
-            if (isBlock(endTime)) {
-                final ArrayList<String> entries = mStackSampler.getThreadStackEntries(mStartTime, endTime);
-                if (entries.size() > 0) {
+            mMessageProfiler.onDispatchEnd();
+            //看门狗已经按anr上报过的消息不再重复上报
+            if (isBlock(endTime) && mAnrReportedSeq != mMessageSeq) {
+                long endThreadTime = SystemClock.currentThreadTimeMillis();
+                final ArrayList<StackSample> samples = mStackSampler.getStackSamples(mStartTime, endTime);
+                if (samples.size() > 0) {
+                    long wallOffset = System.currentTimeMillis() - endTime;
                     final BlockInfo blockInfo = BlockInfo.newInstance()
-                            .setMainThreadTimeCost(mStartTime, endTime, mStartThreadTime, endThreadTime)
-                            .setThreadStackEntries(entries)
+                            .setMainThreadTimeCost(mStartTime + wallOffset, endTime + wallOffset, mStartThreadTime, endThreadTime)
+                            .setStackSamples(samples)
                             .flushString();
                     BlockMonitorManager.getInstance().notifyBlockEvent(blockInfo);
                 }
             }
+            mStartTime = 0;
             mStackSampler.stopDump();
         }
     }
 
     private boolean isBlock(long endTime) {
-        return endTime - mStartTime > BLOCK_THRESHOLD_MILLIS;
+        return endTime - mStartTime > mConfig.getBlockThreshold();
     }
 
+    /**
+     * 供看门狗线程使用
+     *
+     * @return 当前消息的开始时间(uptime)，没有正在执行的消息时为0
+     */
+    long getMessageStartTime() {
+        return mStartTime;
+    }
+
+    int getMessageSeq() {
+        return mMessageSeq;
+    }
+
+    /**
+     * 看门狗线程上报anr后调用，该消息结束时不再作为普通卡顿上报
+     */
+    void markAnrReported(int messageSeq) {
+        mAnrReportedSeq = messageSeq;
+    }
+
+    StackSampler getStackSampler() {
+        return mStackSampler;
+    }
 
     public void shutDown() {
+        mWatchdog.shutDown();
         mStackSampler.shutDown();
     }
 }
@@ -3,31 +3,52 @@ package com.didichuxing.doraemonkit.kit.blockmonitor.core;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
-import android.text.TextUtils;
+import android.os.SystemClock;
+
+import com.didichuxing.doraemonkit.kit.blockmonitor.bean.StackSample;
+import com.didichuxing.doraemonkit.util.StackFrameTable;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.Locale;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @desc: 堆栈信息采集类
+ * 堆栈帧通过StackFrameTable转成int id，采样结果保存在预先分配好的环形数组中，不生成字符串
+ * 与上一次采样的hash相同时认为是重复堆栈不保存，只有发生卡顿时才由BlockInfo转成文本
+ * 采样时间使用uptime，取出时换算成系统时间
  */
 public class StackSampler {
     private static final String TAG = "StackSampler";
-    private static final int DEFAULT_SAMPLE_INTERVAL = 300;
     private static final int DEFAULT_MAX_ENTRY_COUNT = 100;
-    private static final String SEPARATOR = "\r\n";
-    private static final SimpleDateFormat TIME_FORMATTER =
-            new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.CHINESE);
+    private static final int DEFAULT_STACK_DEPTH = 64;
 
     private AtomicBoolean mRunning = new AtomicBoolean(false);
     private HandlerThread mStackThread;
     private Handler mStackHandler;
+    private volatile int mSampleInterval = BlockMonitorConfig.DEFAULT_SAMPLE_INTERVAL;
 
-    private LinkedHashMap<Long, String> sStackMap = new LinkedHashMap<>();
-    private String mFilterCache;
+    /**
+     * 环形数组，下标相同的元素属于同一次采样
+     */
+    private final long[] mSampleTimes = new long[DEFAULT_MAX_ENTRY_COUNT];
+    private final int[] mSampleHashes = new int[DEFAULT_MAX_ENTRY_COUNT];
+    private final int[] mSampleLengths = new int[DEFAULT_MAX_ENTRY_COUNT];
+    private final int[][] mSampleFrames = new int[DEFAULT_MAX_ENTRY_COUNT][DEFAULT_STACK_DEPTH];
+    /**
+     * 下一次写入的位置
+     */
+    private int mNextIndex;
+    private int mSampleCount;
+    /**
+     * 本次消息内是否已有采样，用于去重，消息结束时重置
+     */
+    private boolean mHasLastSample;
+
+    /**
+     * 只在采样线程中使用
+     */
+    private int[] mFrameBuffer = new int[DEFAULT_STACK_DEPTH];
 
     public void init() {
         if (mStackThread == null) {
@@ -41,27 +62,41 @@ public class StackSampler {
         }
     }
 
-    public void startDump() {
+    /**
+     * @param firstDelay     第一次采样的延时 单位为ms
+     * @param sampleInterval 之后的采样间隔 单位为ms
+     */
+    public void startDump(int firstDelay, int sampleInterval) {
         if (mStackHandler == null) {
             return;
         }
         if (mRunning.get()) {
             return;
         }
+        mSampleInterval = sampleInterval;
         mRunning.set(true);
         mStackHandler.removeCallbacks(mRunnable);
-        mStackHandler.postDelayed(mRunnable, DEFAULT_SAMPLE_INTERVAL);
+        mStackHandler.postDelayed(mRunnable, firstDelay);
     }
 
-    public ArrayList<String> getThreadStackEntries(long startTime, long endTime) {
-        ArrayList<String> result = new ArrayList<>();
-        synchronized (sStackMap) {
-            for (Long entryTime : sStackMap.keySet()) {
+    /**
+     * 只复制帧id，不生成字符串
+     *
+     * @param startTime uptime
+     * @param endTime   uptime
+     * @return startTime和endTime之间的采样，从旧到新排列，时间已换算成系统时间
+     */
+    public ArrayList<StackSample> getStackSamples(long startTime, long endTime) {
+        ArrayList<StackSample> result = new ArrayList<>();
+        long wallOffset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+        synchronized (mSampleTimes) {
+            int first = mNextIndex - mSampleCount;
+            for (int i = 0; i < mSampleCount; i++) {
+                int index = (first + i + DEFAULT_MAX_ENTRY_COUNT) % DEFAULT_MAX_ENTRY_COUNT;
+                long entryTime = mSampleTimes[index];
                 if (startTime < entryTime && entryTime < endTime) {
-                    result.add(TIME_FORMATTER.format(entryTime)
-                            + SEPARATOR
-                            + SEPARATOR
-                            + sStackMap.get(entryTime));
+                    result.add(new StackSample(entryTime + wallOffset,
+                            Arrays.copyOf(mSampleFrames[index], mSampleLengths[index])));
                 }
             }
         }
@@ -76,10 +111,22 @@ public class StackSampler {
             return;
         }
         mRunning.set(false);
-        mFilterCache = null;
+        synchronized (mSampleTimes) {
+            mHasLastSample = false;
+        }
         mStackHandler.removeCallbacks(mRunnable);
     }
 
+    /**
+     * 立即获取一次主线程堆栈，不写入环形数组，可以在任意线程调用
+     */
+    public StackSample captureStack() {
+        StackTraceElement[] stack = Looper.getMainLooper().getThread().getStackTrace();
+        int[] frames = new int[stack.length];
+        int length = StackFrameTable.getInstance().intern(stack, frames);
+        return new StackSample(System.currentTimeMillis(), length == frames.length ? frames : Arrays.copyOf(frames, length));
+    }
+
     public void shutDown() {
         stopDump();
         if (mStackThread != null) {
@@ -93,41 +140,57 @@ public class StackSampler {
         public void run() {
             dumpInfo();
             if (mRunning.get()) {
-                mStackHandler.postDelayed(mRunnable, DEFAULT_SAMPLE_INTERVAL);
+                mStackHandler.postDelayed(mRunnable, mSampleInterval);
             }
         }
     };
 
     private void dumpInfo() {
-        StringBuilder stringBuilder = new StringBuilder();
         Thread thread = Looper.getMainLooper().getThread();
-        for (StackTraceElement stackTraceElement : thread.getStackTrace()) {
-            stringBuilder
-                    .append(stackTraceElement.toString())
-                    .append(SEPARATOR);
+        StackTraceElement[] stack = thread.getStackTrace();
+        if (stack.length > mFrameBuffer.length) {
+            mFrameBuffer = new int[stack.length];
         }
+        int length = StackFrameTable.getInstance().intern(stack, mFrameBuffer);
+        int hash = hashFrames(mFrameBuffer, length);
+        long time = SystemClock.uptimeMillis();
 
-        synchronized (sStackMap) {
-            if (sStackMap.size() == DEFAULT_MAX_ENTRY_COUNT) {
-                sStackMap.remove(sStackMap.keySet().iterator().next());
+        synchronized (mSampleTimes) {
+            if (shouldIgnore(hash, length)) {
+                return;
+            }
+            int index = mNextIndex;
+            if (mSampleFrames[index].length < length) {
+                mSampleFrames[index] = new int[length];
             }
-            if (!shouldIgnore(stringBuilder)) {
-                sStackMap.put(System.currentTimeMillis(), stringBuilder.toString());
+            System.arraycopy(mFrameBuffer, 0, mSampleFrames[index], 0, length);
+            mSampleTimes[index] = time;
+            mSampleHashes[index] = hash;
+            mSampleLengths[index] = length;
+            mNextIndex = (index + 1) % DEFAULT_MAX_ENTRY_COUNT;
+            if (mSampleCount < DEFAULT_MAX_ENTRY_COUNT) {
+                mSampleCount++;
             }
+            mHasLastSample = true;
         }
     }
 
     /**
-     * 过滤掉重复项
-     *
-     * @param builder
-     * @return
+     * 过滤掉重复项，只比较hash和深度，相同帧的id一定相同
      */
-    private boolean shouldIgnore(StringBuilder builder) {
-        if (TextUtils.equals(mFilterCache, builder.toString())) {
-            return true;
+    private boolean shouldIgnore(int hash, int length) {
+        if (!mHasLastSample) {
+            return false;
+        }
+        int last = (mNextIndex - 1 + DEFAULT_MAX_ENTRY_COUNT) % DEFAULT_MAX_ENTRY_COUNT;
+        return mSampleHashes[last] == hash && mSampleLengths[last] == length;
+    }
+
+    private static int hashFrames(int[] frames, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + frames[i];
         }
-        mFilterCache = builder.toString();
-        return false;
+        return hash;
     }
 }
@@ -0,0 +1,130 @@
+package com.didichuxing.doraemonkit.kit.core;
+
+/**
+ * ================================================
+ * 描    述：主线程Looper分发消息时Printer收到的日志，同一条日志只有一个实例，所有订阅者共用
+ * 开始日志在第一次访问时解析一次，只记录下标，不生成子字符串；结束日志不解析
+ * 开始日志格式为 ">>>>> Dispatching to " + msg.target + " " + msg.callback + ": " + msg.what
+ * msg.target默认为 "Handler (" + 类名 + ") {" + hash + "}"，callback默认为 类名@hash
+ * 只在主线程中使用
+ * 修订历史：
+ * ================================================
+ */
+public final class LooperDispatchMessage {
+    private static final String START_PREFIX = ">>>>>";
+    private static final String DISPATCH_PREFIX = ">>>>> Dispatching to ";
+    private static final String HANDLER_PREFIX = "Handler (";
+    private static final String HANDLER_SUFFIX = ") {";
+    private static final String NULL_CALLBACK = "null";
+
+    private String mLog;
+    private boolean mStart;
+    private boolean mParsed;
+    private boolean mValid;
+
+    private int mTargetStart;
+    private int mTargetEnd;
+    private int mCallbackStart;
+    private int mCallbackEnd;
+    private int mWhatStart;
+    private boolean mNullCallback;
+
+    LooperDispatchMessage() {
+    }
+
+    void reset(String log) {
+        mLog = log;
+        mStart = log != null && log.startsWith(START_PREFIX);
+        mParsed = false;
+        mValid = false;
+    }
+
+    public String getLog() {
+        return mLog;
+    }
+
+    /**
+     * @return 是否是消息开始的日志
+     */
+    public boolean isStart() {
+        return mStart;
+    }
+
+    /**
+     * @return 是否是可以识别的开始日志
+     */
+    public boolean isValid() {
+        if (!mParsed) {
+            mParsed = true;
+            mValid = mStart && parse();
+        }
+        return mValid;
+    }
+
+    private boolean parse() {
+        String log = mLog;
+        if (!log.startsWith(DISPATCH_PREFIX)) {
+            return false;
+        }
+        int whatIndex = log.lastIndexOf(": ");
+        if (whatIndex < DISPATCH_PREFIX.length()) {
+            return false;
+        }
+        int callbackStart = log.lastIndexOf(' ', whatIndex - 1) + 1;
+        if (callbackStart <= DISPATCH_PREFIX.length()) {
+            return false;
+        }
+        int targetStart = DISPATCH_PREFIX.length();
+        int targetEnd = callbackStart - 1;
+        int handlerSuffix = log.lastIndexOf(HANDLER_SUFFIX, targetEnd);
+        if (log.startsWith(HANDLER_PREFIX, targetStart) && handlerSuffix > targetStart) {
+            mTargetStart = targetStart + HANDLER_PREFIX.length();
+            mTargetEnd = handlerSuffix;
+        } else {
+            //自定义了toString的Handler
+            mTargetStart = targetStart;
+            mTargetEnd = targetEnd;
+        }
+        mNullCallback = callbackStart + NULL_CALLBACK.length() == whatIndex
+                && log.startsWith(NULL_CALLBACK, callbackStart);
+        int hashIndex = log.lastIndexOf('@', whatIndex);
+        mCallbackStart = callbackStart;
+        mCallbackEnd = hashIndex > callbackStart ? hashIndex : whatIndex;
+        mWhatStart = whatIndex + 2;
+        return true;
+    }
+
+    /**
+     * 写入Handler的类名，自定义了toString的Handler写入toString的结果
+     */
+    public void appendTarget(StringBuilder builder) {
+        if (isValid()) {
+            builder.append(mLog, mTargetStart, mTargetEnd);
+        }
+    }
+
+    /**
+     * 写入callback的类名，没有callback时写入 what=msg.what
+     */
+    public void appendCallback(StringBuilder builder) {
+        if (!isValid()) {
+            return;
+        }
+        if (mNullCallback) {
+            builder.append("what=").append(mLog, mWhatStart, mLog.length());
+        } else {
+            builder.append(mLog, mCallbackStart, mCallbackEnd);
+        }
+    }
+
+    public boolean hasCallback() {
+        return isValid() && !mNullCallback;
+    }
+
+    /**
+     * 会生成新的字符串
+     */
+    public String getTargetName() {
+        return isValid() ? mLog.substring(mTargetStart, mTargetEnd) : null;
+    }
+}
@@ -0,0 +1,170 @@
+package com.didichuxing.doraemonkit.kit.core;
+
+import android.os.Looper;
+import android.util.Printer;
+
+import com.didichuxing.doraemonkit.util.LogHelper;
+import com.didichuxing.doraemonkit.util.Reflector;
+
+/**
+ * ================================================
+ * 描    述：主线程Looper只能设置一个Printer，由这里统一设置后再分发给各个订阅者
+ * 卡顿检测、消息耗时统计等功能通过OnDispatchListener订阅，日志只包装成一个LooperDispatchMessage，最多解析一次
+ * 安装前宿主app已经设置的Printer会被保留并继续收到原始日志，也可以通过addPrinter添加其他Printer
+ * 消息开始时先调用Printer再调用订阅者，结束时顺序相反，Printer本身的耗时不计入订阅者统计的消息耗时
+ * 修订历史：
+ * ================================================
+ */
+public class LooperPrinterHub implements Printer {
+    private static final String TAG = "LooperPrinterHub";
+    private static final OnDispatchListener[] EMPTY_LISTENERS = new OnDispatchListener[0];
+    private static final Printer[] EMPTY_PRINTERS = new Printer[0];
+
+    public interface OnDispatchListener {
+        void onDispatchStart(LooperDispatchMessage message);
+
+        void onDispatchEnd(LooperDispatchMessage message);
+    }
+
+    private static class Holder {
+        private static final LooperPrinterHub INSTANCE = new LooperPrinterHub();
+    }
+
+    /**
+     * 修改时整体替换，分发时不需要加锁
+     */
+    private volatile OnDispatchListener[] mListeners = EMPTY_LISTENERS;
+    private volatile Printer[] mPrinters = EMPTY_PRINTERS;
+    private final LooperDispatchMessage mMessage = new LooperDispatchMessage();
+    private boolean mInstalled;
+
+    public static LooperPrinterHub getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private LooperPrinterHub() {
+    }
+
+    @Override
+    public void println(String x) {
+        LooperDispatchMessage message = mMessage;
+        message.reset(x);
+        Printer[] printers = mPrinters;
+        OnDispatchListener[] listeners = mListeners;
+        if (message.isStart()) {
+            for (Printer printer : printers) {
+                printer.println(x);
+            }
+            for (OnDispatchListener listener : listeners) {
+                listener.onDispatchStart(message);
+            }
+        } else {
+            for (OnDispatchListener listener : listeners) {
+                listener.onDispatchEnd(message);
+            }
+            for (Printer printer : printers) {
+                printer.println(x);
+            }
+        }
+    }
+
+    public synchronized void addListener(OnDispatchListener listener) {
+        if (listener == null || indexOf(mListeners, listener) >= 0) {
+            return;
+        }
+        mListeners = append(mListeners, listener, new OnDispatchListener[mListeners.length + 1]);
+        install();
+    }
+
+    public synchronized void removeListener(OnDispatchListener listener) {
+        int index = indexOf(mListeners, listener);
+        if (index < 0) {
+            return;
+        }
+        mListeners = remove(mListeners, index, new OnDispatchListener[mListeners.length - 1]);
+        uninstallIfIdle();
+    }
+
+    /**
+     * 添加一个普通的Printer，与直接调用Looper.setMessageLogging的效果相同，但不会替换其他Printer
+     */
+    public synchronized void addPrinter(Printer printer) {
+        if (printer == null || printer == this || indexOf(mPrinters, printer) >= 0) {
+            return;
+        }
+        mPrinters = append(mPrinters, printer, new Printer[mPrinters.length + 1]);
+        install();
+    }
+
+    public synchronized void removePrinter(Printer printer) {
+        int index = indexOf(mPrinters, printer);
+        if (index < 0) {
+            return;
+        }
+        mPrinters = remove(mPrinters, index, new Printer[mPrinters.length - 1]);
+        uninstallIfIdle();
+    }
+
+    /**
+     * 宿主app在安装之后调用了setMessageLogging时，把它设置的Printer加入转发列表后重新安装
+     */
+    private void install() {
+        Printer current = getCurrentPrinter();
+        if (current == this) {
+            return;
+        }
+        if (current != null && indexOf(mPrinters, current) < 0) {
+            mPrinters = append(mPrinters, current, new Printer[mPrinters.length + 1]);
+        }
+        Looper.getMainLooper().setMessageLogging(this);
+        mInstalled = true;
+    }
+
+    /**
+     * 没有订阅者时把Printer还给宿主app，没有Printer时设置为null，Looper不再拼接日志
+     */
+    private void uninstallIfIdle() {
+        if (mListeners.length > 0 || mPrinters.length > 1) {
+            return;
+        }
+        //已经被宿主app替换时不再修改
+        if (getCurrentPrinter() == this) {
+            Looper.getMainLooper().setMessageLogging(mPrinters.length == 1 ? mPrinters[0] : null);
+        }
+        mPrinters = EMPTY_PRINTERS;
+        mInstalled = false;
+    }
+
+    /**
+     * 反射失败时无法得知宿主app设置的Printer，只根据自己是否安装过判断
+     */
+    private Printer getCurrentPrinter() {
+        try {
+            return Reflector.with(Looper.getMainLooper()).field("mLogging").get();
+        } catch (Exception e) {
+            LogHelper.e(TAG, "get Looper mLogging fail " + e.getMessage());
+            return mInstalled ? this : null;
+        }
+    }
+
+    private static int indexOf(Object[] array, Object item) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static <T> T[] append(T[] array, T item, T[] newArray) {
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        newArray[array.length] = item;
+        return newArray;
+    }
+
+    private static <T> T[] remove(T[] array, int index, T[] newArray) {
+        System.arraycopy(array, 0, newArray, 0, index);
+        System.arraycopy(array, index + 1, newArray, index, array.length - index - 1);
+        return newArray;
+    }
+}
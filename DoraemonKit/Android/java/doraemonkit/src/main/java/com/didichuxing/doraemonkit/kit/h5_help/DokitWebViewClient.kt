@@ -157,8 +157,9 @@ class DokitWebViewClient(webViewClient: WebViewClient?, userAgent: String) : Web
             try {
                 val path = URLDecoder.decode(OkHttpWrap.toEncodedPath(httpUrl), "utf-8")
                 val queries = OkHttpWrap.toHttpQuery(httpUrl)
-                val jsonQuery = JsHttpUtil.transformQuery(queries)
-                val jsonRequestBody = JsHttpUtil.transformRequestBody(
+                val matchRequest = JsHttpUtil.createMatchRequest(
+                    path,
+                    queries,
                     requestBean.method,
                     requestBean.body,
                     requestBean.headers
@@ -166,18 +167,14 @@ class DokitWebViewClient(webViewClient: WebViewClient?, userAgent: String) : Web
 
                 val interceptMatchedId =
                     DokitDbManager.getInstance().isMockMatched(
-                        path,
-                        jsonQuery,
-                        jsonRequestBody,
+                        matchRequest,
                         DokitDbManager.MOCK_API_INTERCEPT,
                         DokitDbManager.FROM_SDK_OTHER
                     )
 
                 val templateMatchedId =
                     DokitDbManager.getInstance().isMockMatched(
-                        path,
-                        jsonQuery,
-                        jsonRequestBody,
+                        matchRequest,
                         DokitDbManager.MOCK_API_TEMPLATE,
                         DokitDbManager.FROM_SDK_OTHER
                     )
@@ -153,8 +153,9 @@ class DokitX5WebViewClient(webViewClient: WebViewClient?, userAgent: String) : W
             try {
                 val path = URLDecoder.decode(OkHttpWrap.toEncodedPath(httpUrl), "utf-8")
                 val queries = OkHttpWrap.toHttpQuery(httpUrl)
-                val jsonQuery = JsHttpUtil.transformQuery(queries)
-                val jsonRequestBody = JsHttpUtil.transformRequestBody(
+                val matchRequest = JsHttpUtil.createMatchRequest(
+                    path,
+                    queries,
                     requestBean.method,
                     requestBean.body,
                     requestBean.headers
@@ -162,18 +163,14 @@ class DokitX5WebViewClient(webViewClient: WebViewClient?, userAgent: String) : W
 
                 val interceptMatchedId =
                     DokitDbManager.getInstance().isMockMatched(
-                        path,
-                        jsonQuery,
-                        jsonRequestBody,
+                        matchRequest,
                         DokitDbManager.MOCK_API_INTERCEPT,
                         DokitDbManager.FROM_SDK_OTHER
                     )
 
                 val templateMatchedId =
                     DokitDbManager.getInstance().isMockMatched(
-                        path,
-                        jsonQuery,
-                        jsonRequestBody,
+                        matchRequest,
                         DokitDbManager.MOCK_API_TEMPLATE,
                         DokitDbManager.FROM_SDK_OTHER
                     )
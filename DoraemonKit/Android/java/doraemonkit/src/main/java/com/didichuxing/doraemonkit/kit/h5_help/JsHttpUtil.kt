@@ -9,13 +9,11 @@ import com.didichuxing.doraemonkit.constant.DoKitConstant
 import com.didichuxing.doraemonkit.kit.h5_help.bean.JsRequestBean
 import com.didichuxing.doraemonkit.kit.network.NetworkManager
 import com.didichuxing.doraemonkit.kit.network.bean.WhiteHostBean
-import com.didichuxing.doraemonkit.kit.network.okhttp.interceptor.MockInterceptor
 import com.didichuxing.doraemonkit.kit.network.room_db.DokitDbManager
 import com.didichuxing.doraemonkit.kit.network.room_db.MockInterceptApiBean
+import com.didichuxing.doraemonkit.kit.network.room_db.MockMatchRequest
 import com.didichuxing.doraemonkit.kit.network.room_db.MockTemplateApiBean
 import com.didichuxing.doraemonkit.kit.network.utils.bodyContent
-import com.didichuxing.doraemonkit.util.DokitUtil
-import com.didichuxing.doraemonkit.util.LogHelper
 import okhttp3.*
 import org.json.JSONObject
 
@@ -30,76 +28,24 @@ import org.json.JSONObject
  */
 internal object JsHttpUtil {
     /**
-     * 将request query 转化成json字符串
+     * 将request 转化成参与mock匹配的请求，query和body只解析一次
      *
      * @return
      */
-    fun transformQuery(query: String?): String {
-        var json = ""
-        if (query.isNullOrBlank()) {
-            return json
-        }
-        try {
-            //query 类似 ccc=ccc&ddd=ddd
-            json = DokitUtil.param2Json(query)
-            //测试是否是json字符串
-            JSONObject(json)
-        } catch (e: Exception) {
-            //e.printStackTrace();
-            json = DokitDbManager.IS_NOT_NORMAL_QUERY_PARAMS
-            //LogHelper.e(TAG, "===query json====>" + json);
-        }
-        return json
-    }
-
-
-    /**
-     * 将request body 转化成json字符串
-     *
-     * @return
-     */
-    fun transformRequestBody(
+    fun createMatchRequest(
+        path: String,
+        query: String?,
         method: String?,
         requestBody: String?,
         headers: MutableMap<String?, String?>?
-    ): String {
+    ): MockMatchRequest {
         //form :"application/x-www-form-urlencoded"
         //json :"application/json;"
-        var json = ""
         if (method.equals("GET", true) || requestBody.isNullOrBlank()) {
-            return json
-        }
-
-        try {
-
-            headers?.let {
-                val contentType = it["Content-Type"]
-                if (contentType.isNullOrBlank()) {
-                    return json
-                }
-
-                //表单类型的post
-                if (contentType.contains(DokitDbManager.MEDIA_TYPE_FORM)) {
-                    //类似 ccc=ccc&ddd=ddd
-                    json = DokitUtil.param2Json(requestBody)
-                    //测试是否是json字符串
-                    JSONObject(json)
-                } else if (contentType.contains(DokitDbManager.MEDIA_TYPE_JSON)) {
-                    json = requestBody
-                    JSONObject(json)
-                } else {
-                    json = DokitDbManager.IS_NOT_NORMAL_BODY_PARAMS
-                }
-            }
-        } catch (e: java.lang.Exception) {
-            //e.printStackTrace();
-            json = ""
-            LogHelper.e(
-                MockInterceptor.TAG,
-                "===body json====>$json"
-            )
+            return MockMatchRequest.create(path, query, null, null)
         }
-        return json
+        val contentType = headers?.get("Content-Type")
+        return MockMatchRequest.create(path, query, contentType, requestBody)
     }
 
     /**
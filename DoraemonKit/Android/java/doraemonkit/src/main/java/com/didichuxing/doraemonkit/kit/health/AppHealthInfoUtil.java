@@ -87,95 +87,6 @@ public class AppHealthInfoUtil {
         getData().setAppStart(appStartBean);
     }
 
-    /**
-     * 添加cpu信息
-     *
-     * @param cpuBean
-     */
-    public void addCPUInfo(AppHealthInfo.DataBean.PerformanceBean cpuBean) {
-        List<AppHealthInfo.DataBean.PerformanceBean> cpus = getData().getCpu();
-        if (cpus == null) {
-            cpus = new ArrayList<>();
-            getData().setCpu(cpus);
-        }
-        //不过滤最大最小值
-        //cpuBean.setValues(sortValue(cpuBean.getValues()));
-        cpus.add(cpuBean);
-    }
-
-
-    /**
-     * 添加memory信息
-     *
-     * @param memoryBean
-     */
-    public void addMemoryInfo(AppHealthInfo.DataBean.PerformanceBean memoryBean) {
-        List<AppHealthInfo.DataBean.PerformanceBean> memories = getData().getMemory();
-        if (memories == null) {
-            memories = new ArrayList<>();
-            getData().setMemory(memories);
-        }
-        //不过滤最大最小值
-        //memoryBean.setValues(sortValue(memoryBean.getValues()));
-        memories.add(memoryBean);
-    }
-
-    /**
-     * 添加fps信息
-     *
-     * @param fpsBean
-     */
-    public void addFPSInfo(AppHealthInfo.DataBean.PerformanceBean fpsBean) {
-        List<AppHealthInfo.DataBean.PerformanceBean> fpsBeans = getData().getFps();
-        if (fpsBeans == null) {
-            fpsBeans = new ArrayList<>();
-            getData().setFps(fpsBeans);
-        }
-        //不过滤最大最小值
-        //fpsBean.setValues(sortValue(fpsBean.getValues()));
-        fpsBeans.add(fpsBean);
-    }
-
-    /**
-     * 获取当前最后一个PerformanceInfo信息
-     *
-     * @return PerformanceBean
-     */
-    public AppHealthInfo.DataBean.PerformanceBean getLastPerformanceInfo(int performanceType) {
-        List<AppHealthInfo.DataBean.PerformanceBean> performanceBeans = null;
-        if (performanceType == PerformanceDataManager.PERFORMANCE_TYPE_CPU) {
-            performanceBeans = getData().getCpu();
-        } else if (performanceType == PerformanceDataManager.PERFORMANCE_TYPE_MEMORY) {
-            performanceBeans = getData().getMemory();
-        } else if (performanceType == PerformanceDataManager.PERFORMANCE_TYPE_FPS) {
-            performanceBeans = getData().getFps();
-        }
-        if (performanceBeans == null || performanceBeans.size() == 0) {
-            return null;
-        }
-        return performanceBeans.get(performanceBeans.size() - 1);
-    }
-
-    /**
-     * 移除满足条件的最后一个PerformanceInfo信息
-     *
-     * @return PerformanceBean
-     */
-    public void removeLastPerformanceInfo(int performanceType) {
-        List<AppHealthInfo.DataBean.PerformanceBean> performanceBeans = null;
-        if (performanceType == PerformanceDataManager.PERFORMANCE_TYPE_CPU) {
-            performanceBeans = getData().getCpu();
-        } else if (performanceType == PerformanceDataManager.PERFORMANCE_TYPE_MEMORY) {
-            performanceBeans = getData().getMemory();
-        } else if (performanceType == PerformanceDataManager.PERFORMANCE_TYPE_FPS) {
-            performanceBeans = getData().getFps();
-        }
-        if (performanceBeans != null && performanceBeans.size() > 0) {
-            performanceBeans.remove(performanceBeans.size() - 1);
-        }
-    }
-
-
     /**
      * 添加网络信息
      *
@@ -291,6 +202,8 @@ public class AppHealthInfoUtil {
         if (mAppHealthInfo == null) {
             return;
         }
+        //cpu、内存、fps、帧耗时只保存了每个页面的统计，上传时才生成数据
+        PerformanceDataManager.getInstance().fillAppHealthPerformance(getData());
         //线上地址：https://www.dokit.cn/healthCheck/addCheckData
         //测试环境地址:http://dokit-test.intra.xiaojukeji.com/healthCheck/addCheckData
 
@@ -323,6 +236,8 @@ public class AppHealthInfoUtil {
             dataBean.setCpu(new ArrayList<AppHealthInfo.DataBean.PerformanceBean>());
             dataBean.setMemory(new ArrayList<AppHealthInfo.DataBean.PerformanceBean>());
             dataBean.setFps(new ArrayList<AppHealthInfo.DataBean.PerformanceBean>());
+            dataBean.setFrameStats(new ArrayList<AppHealthInfo.DataBean.FrameStatsBean>());
+            dataBean.setThreadCpu(new ArrayList<AppHealthInfo.DataBean.ThreadCpuBean>());
             dataBean.setNetwork(new ArrayList<AppHealthInfo.DataBean.NetworkBean>());
             dataBean.setBlock(new ArrayList<AppHealthInfo.DataBean.BlockBean>());
             dataBean.setUiLevel(new ArrayList<AppHealthInfo.DataBean.UiLevelBean>());
@@ -353,6 +268,8 @@ public class AppHealthInfoUtil {
      */
     public void start() {
         PerformanceDataManager.getInstance().init();
+        //清空上一次体检按页面保存的性能数据
+        PerformanceDataManager.getInstance().resetAppHealthPerformance();
         //帧率
         PerformanceDataManager.getInstance().startMonitorFrameInfo();
         //cpu
@@ -431,6 +348,7 @@ public class AppHealthInfoUtil {
         if (mAppHealthInfo != null) {
             mAppHealthInfo = null;
         }
+        PerformanceDataManager.getInstance().resetAppHealthPerformance();
     }
 
 }
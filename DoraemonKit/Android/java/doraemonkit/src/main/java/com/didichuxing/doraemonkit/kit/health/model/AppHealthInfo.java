@@ -149,6 +149,8 @@ public class AppHealthInfo {
          * cpu : [{"page":"HomeViewController","values":[{"time":"时间戳","value":"0.5"},{"time":"时间戳","value":"0.8"}]},{"page":"MapViewController","values":[{"time":"时间戳","value":"0.5"},{"time":"时间戳","value":"0.8"}]}]
          * memory : [{"page":"HomeViewController","values":[{"time":"时间戳","value":"80"},{"time":"时间戳","value":"81"}]},{"page":"MapViewController","values":[{"time":"时间戳","value":"90"},{"time":"时间戳","value":"91"}]}]
          * fps : [{"page":"HomeViewController","values":[{"time":"时间戳","value":"60"},{"time":"时间戳","value":"59"}]},{"page":"MapViewController","values":[{"time":"时间戳","value":"50"},{"time":"时间戳","value":"60"}]}]
+         * frameStats : [{"page":"HomeViewController","refreshRate":"60.0","frameCount":"1200","jankCount":"12","droppedFrames":"20","frozenFrameCount":"0","p50":"16.5","p90":"17.0","p99":"50.0","max":"120.0"}]
+         * threadCpu : [{"page":"HomeViewController","values":[{"name":"main","threadCount":"1","value":"12.5","maxValue":"30.2"},{"name":"OkHttp Dispatcher","threadCount":"3","value":"4.1","maxValue":"9.8"}]}]
          * network : [{"page":"HomeViewController","values":[{"time":"时间戳","url":"http://www.baidu.com","up":"100","down":"200","code":"200","method":"Get"},{"time":"时间戳","url":"http://www.taobao.com","up":"100","down":"200","code":"200","method":"Post"}]},{"page":"MapViewController","values":[{"time":"时间戳","url":"http://www.baidu.com","up":"100","down":"200","code":"200","method":"Get"},{"time":"时间戳","url":"http://www.taobao.com","up":"100","down":"200","code":"200","method":"Post"}]}]
          * block : [{"page":"HomeViewController","blockTime":"4.2","detail":"卡顿堆栈"},{"page":"MapViewController","blockTime":"5.2","detail":"卡顿堆栈"}]
          * subThreadUI : [{"page":"HomeViewController","detail":"代码堆栈"},{"page":"MapViewController","detail":"代码堆栈"}]
@@ -162,6 +164,8 @@ public class AppHealthInfo {
         private List<PerformanceBean> cpu;
         private List<PerformanceBean> memory;
         private List<PerformanceBean> fps;
+        private List<FrameStatsBean> frameStats;
+        private List<ThreadCpuBean> threadCpu;
         private List<NetworkBean> network;
         private List<BlockBean> block;
         private List<SubThreadUIBean> subThreadUI;
@@ -202,6 +206,22 @@ public class AppHealthInfo {
             this.fps = fps;
         }
 
+        public List<FrameStatsBean> getFrameStats() {
+            return frameStats;
+        }
+
+        public void setFrameStats(List<FrameStatsBean> frameStats) {
+            this.frameStats = frameStats;
+        }
+
+        public List<ThreadCpuBean> getThreadCpu() {
+            return threadCpu;
+        }
+
+        public void setThreadCpu(List<ThreadCpuBean> threadCpu) {
+            this.threadCpu = threadCpu;
+        }
+
         public List<NetworkBean> getNetwork() {
             return network;
         }
@@ -326,11 +346,21 @@ public class AppHealthInfo {
         public static class PerformanceBean {
             /**
              * page : HomeViewController
-             * values : [{"time":"时间戳","value":"0.5"},{"time":"时间戳","value":"0.8"}]
+             * count : 页面内的采样次数
+             * min、max、avg : 所有采样的最小值、最大值、平均值
+             * p50、p90、p99 : 采样值的分位值，相对误差2%
+             * values : [{"time":"时间戳","value":"0.5"},{"time":"时间戳","value":"0.8"}] 最多40个点，采样较多时为相邻采样的平均值
              */
             @Expose
             private String pageKey;
             private String page;
+            private String count;
+            private String min;
+            private String max;
+            private String avg;
+            private String p50;
+            private String p90;
+            private String p99;
             private List<ValuesBean> values;
 
             public String getPageKey() {
@@ -349,6 +379,62 @@ public class AppHealthInfo {
                 this.page = page;
             }
 
+            public String getCount() {
+                return count;
+            }
+
+            public void setCount(String count) {
+                this.count = count;
+            }
+
+            public String getMin() {
+                return min;
+            }
+
+            public void setMin(String min) {
+                this.min = min;
+            }
+
+            public String getMax() {
+                return max;
+            }
+
+            public void setMax(String max) {
+                this.max = max;
+            }
+
+            public String getAvg() {
+                return avg;
+            }
+
+            public void setAvg(String avg) {
+                this.avg = avg;
+            }
+
+            public String getP50() {
+                return p50;
+            }
+
+            public void setP50(String p50) {
+                this.p50 = p50;
+            }
+
+            public String getP90() {
+                return p90;
+            }
+
+            public void setP90(String p90) {
+                this.p90 = p90;
+            }
+
+            public String getP99() {
+                return p99;
+            }
+
+            public void setP99(String p99) {
+                this.p99 = p99;
+            }
+
             public List<ValuesBean> getValues() {
                 return values;
             }
@@ -392,6 +478,211 @@ public class AppHealthInfo {
             }
         }
 
+        /**
+         * 每个页面的帧耗时统计，耗时单位为ms
+         */
+        public static class FrameStatsBean {
+            /**
+             * page : HomeViewController
+             * refreshRate : 屏幕刷新率
+             * frameCount : 统计的帧数
+             * jankCount : 至少错过一个vsync的帧数
+             * droppedFrames : 错过的vsync总数
+             * frozenFrameCount : 超过700ms的帧数
+             * p50、p90、p99、max : 帧耗时分位值
+             */
+            @Expose
+            private String pageKey;
+            private String page;
+            private String refreshRate;
+            private String frameCount;
+            private String jankCount;
+            private String droppedFrames;
+            private String frozenFrameCount;
+            private String p50;
+            private String p90;
+            private String p99;
+            private String max;
+
+            public String getPageKey() {
+                return pageKey;
+            }
+
+            public void setPageKey(String pageKey) {
+                this.pageKey = pageKey;
+            }
+
+            public String getPage() {
+                return page;
+            }
+
+            public void setPage(String page) {
+                this.page = page;
+            }
+
+            public String getRefreshRate() {
+                return refreshRate;
+            }
+
+            public void setRefreshRate(String refreshRate) {
+                this.refreshRate = refreshRate;
+            }
+
+            public String getFrameCount() {
+                return frameCount;
+            }
+
+            public void setFrameCount(String frameCount) {
+                this.frameCount = frameCount;
+            }
+
+            public String getJankCount() {
+                return jankCount;
+            }
+
+            public void setJankCount(String jankCount) {
+                this.jankCount = jankCount;
+            }
+
+            public String getDroppedFrames() {
+                return droppedFrames;
+            }
+
+            public void setDroppedFrames(String droppedFrames) {
+                this.droppedFrames = droppedFrames;
+            }
+
+            public String getFrozenFrameCount() {
+                return frozenFrameCount;
+            }
+
+            public void setFrozenFrameCount(String frozenFrameCount) {
+                this.frozenFrameCount = frozenFrameCount;
+            }
+
+            public String getP50() {
+                return p50;
+            }
+
+            public void setP50(String p50) {
+                this.p50 = p50;
+            }
+
+            public String getP90() {
+                return p90;
+            }
+
+            public void setP90(String p90) {
+                this.p90 = p90;
+            }
+
+            public String getP99() {
+                return p99;
+            }
+
+            public void setP99(String p99) {
+                this.p99 = p99;
+            }
+
+            public String getMax() {
+                return max;
+            }
+
+            public void setMax(String max) {
+                this.max = max;
+            }
+        }
+
+        /**
+         * 每个页面中cpu占用最高的几个线程分组
+         */
+        public static class ThreadCpuBean {
+            /**
+             * page : HomeViewController
+             * values : [{"name":"main","threadCount":"1","value":"12.5","maxValue":"30.2"}]
+             */
+            @Expose
+            private String pageKey;
+            private String page;
+            private List<ThreadCpuValuesBean> values;
+
+            public String getPageKey() {
+                return pageKey;
+            }
+
+            public void setPageKey(String pageKey) {
+                this.pageKey = pageKey;
+            }
+
+            public String getPage() {
+                return page;
+            }
+
+            public void setPage(String page) {
+                this.page = page;
+            }
+
+            public List<ThreadCpuValuesBean> getValues() {
+                return values;
+            }
+
+            public void setValues(List<ThreadCpuValuesBean> values) {
+                this.values = values;
+            }
+
+            public static class ThreadCpuValuesBean {
+                /**
+                 * name : 去掉编号后的线程名
+                 * threadCount : 该分组的线程数
+                 * value : 页面内平均cpu占用
+                 * maxValue : 页面内单次采样的最大cpu占用
+                 */
+
+                private String name;
+                private String threadCount;
+                private String value;
+                private String maxValue;
+
+                public ThreadCpuValuesBean(String name, String threadCount, String value, String maxValue) {
+                    this.name = name;
+                    this.threadCount = threadCount;
+                    this.value = value;
+                    this.maxValue = maxValue;
+                }
+
+                public String getName() {
+                    return name;
+                }
+
+                public void setName(String name) {
+                    this.name = name;
+                }
+
+                public String getThreadCount() {
+                    return threadCount;
+                }
+
+                public void setThreadCount(String threadCount) {
+                    this.threadCount = threadCount;
+                }
+
+                public String getValue() {
+                    return value;
+                }
+
+                public void setValue(String value) {
+                    this.value = value;
+                }
+
+                public String getMaxValue() {
+                    return maxValue;
+                }
+
+                public void setMaxValue(String maxValue) {
+                    this.maxValue = maxValue;
+                }
+            }
+        }
 
         public static class NetworkBean {
             /**
@@ -7,6 +7,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.didichuxing.doraemonkit.R;
+import com.didichuxing.doraemonkit.config.LogInfoConfig;
 import com.didichuxing.doraemonkit.widget.dialog.DialogListener;
 import com.didichuxing.doraemonkit.widget.dialog.DialogProvider;
 import com.didichuxing.doraemonkit.kit.core.SettingItem;
@@ -41,6 +42,10 @@ public class LogExportDialog extends DialogProvider<Object> {
         mAdapter.append(new SettingItem(R.string.dk_save));
 
         mAdapter.append(new SettingItem(R.string.dk_share));
+        //只有日志文件带时间索引，可以按时间导出
+        if (LogInfoConfig.isLogFileOpen()) {
+            mAdapter.append(new SettingItem(R.string.dk_log_export_recent));
+        }
         mAdapter.setOnSettingItemClickListener(new SettingItemAdapter.OnSettingItemClickListener() {
             @Override
             public void onSettingItemClick(View view, SettingItem data) {
@@ -52,6 +57,10 @@ public class LogExportDialog extends DialogProvider<Object> {
                     if (onButtonClickListener != null) {
                         onButtonClickListener.onShareClick(LogExportDialog.this);
                     }
+                } else if (data.desc == R.string.dk_log_export_recent) {
+                    if (onButtonClickListener != null) {
+                        onButtonClickListener.onSaveRecentClick(LogExportDialog.this);
+                    }
                 }
             }
         });
@@ -73,6 +82,13 @@ public class LogExportDialog extends DialogProvider<Object> {
          * @param dialog dialog
          */
         void onShareClick(LogExportDialog dialog);
+
+        /**
+         * 保存最近几分钟的日志
+         *
+         * @param dialog dialog
+         */
+        void onSaveRecentClick(LogExportDialog dialog);
     }
 
     @Override
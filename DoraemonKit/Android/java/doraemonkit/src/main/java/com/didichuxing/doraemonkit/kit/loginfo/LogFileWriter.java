@@ -0,0 +1,342 @@
+package com.didichuxing.doraemonkit.kit.loginfo;
+
+import com.blankj.utilcode.util.PathUtils;
+import com.didichuxing.doraemonkit.util.LogHelper;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ================================================
+ * 描    述：把本进程的日志按logcat原始格式追加写入 files/dokit/log 目录，崩溃或重启后仍可以导出
+ * 按大小分段，每段约2MB，最多保留10段，超出后删除最早的一段
+ * 每段有一个.idx索引，每写入64KB记录一次当前行的时间戳和偏移，按时间导出时直接定位到附近的位置
+ * 在日志读取线程中写入，每秒最多flush一次；导出只是按段复制文件
+ * 修订历史：
+ * ================================================
+ */
+public class LogFileWriter {
+    private static final String TAG = "LogFileWriter";
+    private static final String SEGMENT_PREFIX = "logcat_";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final long SEGMENT_SIZE = 2 * 1024 * 1024;
+    private static final int MAX_SEGMENTS = 10;
+    private static final long INDEX_INTERVAL = 64 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    /**
+     * "MM-DD HH:MM:SS.mmm"
+     */
+    private static final int TIMESTAMP_LENGTH = 18;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 正在写入的实例，导出前需要先flush
+     */
+    private static volatile LogFileWriter sActiveWriter;
+
+    private OutputStream mOutput;
+    private Writer mIndex;
+    private long mSegmentId;
+    private long mSegmentBytes;
+    private long mNextIndexBytes;
+    private long mLastFlushTime;
+
+    /**
+     * 每次开始读取日志时新建一段，不会改动之前的文件
+     */
+    public synchronized void open() {
+        if (mOutput != null) {
+            return;
+        }
+        List<File> segments = getSegments();
+        mSegmentId = segments.isEmpty() ? 0 : segmentId(segments.get(segments.size() - 1)) + 1;
+        openSegment();
+        sActiveWriter = this;
+    }
+
+    /**
+     * @param line logcat原始格式的一行日志
+     */
+    public synchronized void append(String line) {
+        if (mOutput == null) {
+            return;
+        }
+        try {
+            if (mSegmentBytes >= mNextIndexBytes && hasTimestamp(line)) {
+                mIndex.write(line, 0, TIMESTAMP_LENGTH);
+                mIndex.write('\t');
+                mIndex.write(Long.toString(mSegmentBytes));
+                mIndex.write('\n');
+                mNextIndexBytes = mSegmentBytes + INDEX_INTERVAL;
+            }
+            byte[] bytes = line.getBytes(UTF_8);
+            mOutput.write(bytes);
+            mOutput.write('\n');
+            mSegmentBytes += bytes.length + 1;
+            if (mSegmentBytes >= SEGMENT_SIZE) {
+                closeSegment();
+                mSegmentId++;
+                openSegment();
+            } else {
+                long now = System.currentTimeMillis();
+                if (now - mLastFlushTime >= FLUSH_INTERVAL_MS) {
+                    flushLocked();
+                    mLastFlushTime = now;
+                }
+            }
+        } catch (IOException e) {
+            LogHelper.e(TAG, "append fail " + e.getMessage());
+            closeSegment();
+        }
+    }
+
+    public synchronized void flush() {
+        if (mOutput == null) {
+            return;
+        }
+        try {
+            flushLocked();
+        } catch (IOException e) {
+            LogHelper.e(TAG, "flush fail " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        closeSegment();
+        if (sActiveWriter == this) {
+            sActiveWriter = null;
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        mOutput.flush();
+        mIndex.flush();
+    }
+
+    private void openSegment() {
+        File dir = getDir();
+        if (!dir.exists() && !dir.mkdirs()) {
+            LogHelper.e(TAG, "mkdirs fail " + dir);
+            return;
+        }
+        try {
+            File segment = new File(dir, SEGMENT_PREFIX + mSegmentId + SEGMENT_SUFFIX);
+            mOutput = new BufferedOutputStream(new FileOutputStream(segment, true), 64 * 1024);
+            mIndex = new FileWriter(indexOf(segment), true);
+            mSegmentBytes = segment.length();
+            mNextIndexBytes = mSegmentBytes;
+            mLastFlushTime = System.currentTimeMillis();
+        } catch (IOException e) {
+            LogHelper.e(TAG, "open segment fail " + e.getMessage());
+            closeSegment();
+            return;
+        }
+        //最早的分段超出数量限制时删除
+        List<File> segments = getSegments();
+        for (int i = 0; i < segments.size() - MAX_SEGMENTS; i++) {
+            File segment = segments.get(i);
+            segment.delete();
+            indexOf(segment).delete();
+        }
+    }
+
+    private void closeSegment() {
+        closeQuietly(mOutput);
+        closeQuietly(mIndex);
+        mOutput = null;
+        mIndex = null;
+    }
+
+    private static boolean hasTimestamp(String line) {
+        return line.length() >= TIMESTAMP_LENGTH && Character.isDigit(line.charAt(0));
+    }
+
+    public static File getDir() {
+        return new File(PathUtils.getInternalAppFilesPath() + File.separator + "dokit" + File.separator + "log");
+    }
+
+    /**
+     * @return 按写入顺序排列的分段文件
+     */
+    public static List<File> getSegments() {
+        File[] files = getDir().listFiles();
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        List<File> segments = new ArrayList<>(files.length);
+        for (File file : files) {
+            if (segmentId(file) >= 0) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long id1 = segmentId(o1);
+                long id2 = segmentId(o2);
+                return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+            }
+        });
+        return segments;
+    }
+
+    public static boolean hasLog() {
+        for (File segment : getSegments()) {
+            if (segment.length() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 导出全部日志，不要在主线程调用
+     */
+    public static boolean exportTo(File dest) {
+        return exportSince(null, dest);
+    }
+
+    /**
+     * 从不晚于timestamp的最近一个索引位置开始导出，最多多导出索引间隔(64KB)内更早的日志
+     * 时间戳不带年份，按字符串比较，跨年的日志顺序不准确
+     *
+     * @param timestamp "MM-DD HH:MM:SS.mmm"格式，为空时导出全部
+     */
+    public static boolean exportSince(String timestamp, File dest) {
+        LogFileWriter writer = sActiveWriter;
+        if (writer != null) {
+            writer.flush();
+        }
+        List<File> segments = getSegments();
+        int firstSegment = 0;
+        long firstOffset = 0;
+        if (timestamp != null) {
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                long offset = findOffset(indexOf(segments.get(i)), timestamp);
+                if (offset >= 0) {
+                    firstSegment = i;
+                    firstOffset = offset;
+                    break;
+                }
+            }
+        }
+        File parent = dest.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(dest);
+            FileChannel outChannel = output.getChannel();
+            for (int i = firstSegment; i < segments.size(); i++) {
+                copy(segments.get(i), i == firstSegment ? firstOffset : 0, outChannel);
+            }
+            return true;
+        } catch (IOException e) {
+            LogHelper.e(TAG, "export fail " + e.getMessage());
+            return false;
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    /**
+     * 只复制开始复制时的文件长度，分段在复制前被删除时跳过
+     */
+    private static void copy(File segment, long offset, FileChannel outChannel) throws IOException {
+        FileInputStream input;
+        try {
+            input = new FileInputStream(segment);
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            FileChannel inChannel = input.getChannel();
+            long end = inChannel.size();
+            long position = offset;
+            while (position < end) {
+                long transferred = inChannel.transferTo(position, end - position, outChannel);
+                //文件被截断等情况下不会再有数据
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * @return 最后一个时间戳不晚于timestamp的索引项的偏移，分段的第一项就晚于timestamp时返回-1
+     */
+    private static long findOffset(File index, String timestamp) {
+        long offset = -1;
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(index));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    continue;
+                }
+                if (line.substring(0, tab).compareTo(timestamp) > 0) {
+                    break;
+                }
+                offset = Long.parseLong(line.substring(tab + 1));
+            }
+        } catch (IOException | NumberFormatException e) {
+            LogHelper.e(TAG, "read index fail " + e.getMessage());
+        } finally {
+            closeQuietly(reader);
+        }
+        return offset;
+    }
+
+    private static File indexOf(File segment) {
+        String name = segment.getName();
+        return new File(segment.getParentFile(), name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * @return 不是分段文件时返回-1
+     */
+    private static long segmentId(File file) {
+        String name = file.getName();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignore) {
+        }
+    }
+}
@@ -20,7 +20,6 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.blankj.utilcode.util.AppUtils;
-import com.blankj.utilcode.util.FileIOUtils;
 import com.blankj.utilcode.util.FileUtils;
 import com.blankj.utilcode.util.PathUtils;
 import com.blankj.utilcode.util.ThreadUtils;
@@ -28,6 +27,7 @@ import com.blankj.utilcode.util.TimeUtils;
 import com.blankj.utilcode.util.ToastUtils;
 import com.didichuxing.doraemonkit.DoraemonKit;
 import com.didichuxing.doraemonkit.R;
+import com.didichuxing.doraemonkit.config.LogInfoConfig;
 import com.didichuxing.doraemonkit.kit.core.UniversalActivity;
 import com.didichuxing.doraemonkit.kit.core.AbsDokitView;
 import com.didichuxing.doraemonkit.kit.core.DokitViewLayoutParams;
@@ -36,10 +36,12 @@ import com.didichuxing.doraemonkit.widget.dialog.UniversalDialogFragment;
 import com.didichuxing.doraemonkit.widget.titlebar.LogTitleBar;
 import com.didichuxing.doraemonkit.util.FileUtil;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Created by jintai on 2019/09/26.
@@ -47,7 +49,11 @@ import java.util.List;
 public class LogInfoDokitView extends AbsDokitView implements LogInfoManager.OnLogCatchListener {
     private static final String TAG = "LogInfoFloatPage";
 
-    private static final int MAX_LOG_LINE_NUM = 10000;
+    private static final int MAX_LOG_LINE_NUM = 100000;
+    /**
+     * 保存最近日志的时间范围
+     */
+    private static final long RECENT_EXPORT_MILLIS = 5 * 60 * 1000L;
 
     private RecyclerView mLogRv;
     private LogItemAdapter mLogItemAdapter;
@@ -85,7 +91,7 @@ public class LogInfoDokitView extends AbsDokitView implements LogInfoManager.OnL
         mLogRvWrap = findViewById(R.id.log_page);
         mLogRv = findViewById(R.id.log_list);
         mLogRv.setLayoutManager(new LinearLayoutManager(getContext()));
-        mLogItemAdapter = new LogItemAdapter(getContext());
+        mLogItemAdapter = new LogItemAdapter(getContext(), MAX_LOG_LINE_NUM);
         mLogRv.setAdapter(mLogItemAdapter);
         mLogFilter = findViewById(R.id.log_filter);
         mLogFilter.addTextChangedListener(new TextWatcher() {
@@ -101,7 +107,7 @@ public class LogInfoDokitView extends AbsDokitView implements LogInfoManager.OnL
 
             @Override
             public void afterTextChanged(Editable s) {
-                mLogItemAdapter.getFilter().filter(s);
+                mLogItemAdapter.filter(s);
             }
         });
         LogTitleBar mTitleBar = findViewById(R.id.dokit_title_bar);
@@ -144,7 +150,7 @@ public class LogInfoDokitView extends AbsDokitView implements LogInfoManager.OnL
                 } else if (checkedId == R.id.error) {
                     mLogItemAdapter.setLogLevelLimit(Log.ERROR);
                 }
-                mLogItemAdapter.getFilter().filter(mLogFilter.getText());
+                mLogItemAdapter.filter(mLogFilter.getText());
             }
         });
         mLogRv.addOnScrollListener(new RecyclerView.OnScrollListener() {
@@ -211,6 +217,13 @@ public class LogInfoDokitView extends AbsDokitView implements LogInfoManager.OnL
                         dialog.dismiss();
 
                     }
+
+                    @Override
+                    public void onSaveRecentClick(LogExportDialog dialog) {
+                        export2File(102);
+                        dialog.dismiss();
+
+                    }
                 });
                 showDialog(logExportDialog);
 
@@ -223,7 +236,6 @@ public class LogInfoDokitView extends AbsDokitView implements LogInfoManager.OnL
                 if (mLogItemAdapter == null || mLogItemAdapter.getItemCount() == 0) {
                     return;
                 }
-                counter = 0;
                 mLogItemAdapter.clearLog();
             }
         });
@@ -243,26 +255,43 @@ public class LogInfoDokitView extends AbsDokitView implements LogInfoManager.OnL
     /**
      * 将日志信息保存到文件
      *
-     * @param operateType 100 保存到本地  101 保存到本地并分享
+     * @param operateType 100 保存到本地  101 保存到本地并分享  102 保存最近5分钟到本地
      */
     private void export2File(final int operateType) {
         ToastUtils.showShort("日志保存中,请稍后...");
         final String logPath = PathUtils.getInternalAppFilesPath() + File.separator + AppUtils.getAppName() + "_" + TimeUtils.getNowString(new SimpleDateFormat("yyyy-MM-dd-HH:mm:ss")) + ".log";
         final File logFile = new File(logPath);
+        //开启了日志文件时直接复制文件，包含内存中已经丢弃的和之前运行时的日志
+        final boolean fromFile = LogInfoConfig.isLogFileOpen() && LogFileWriter.hasLog();
+        //在主线程中取快照
+        final List<LogLine> logLines = fromFile ? null : mLogItemAdapter.getTrueValues();
+        //logcat时间戳格式，不带年份
+        final String since = operateType == 102 ? TimeUtils.millis2String(System.currentTimeMillis() - RECENT_EXPORT_MILLIS, new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US)) : null;
 
         ThreadUtils.executeByCpu(new ThreadUtils.Task<Boolean>() {
             @Override
             public Boolean doInBackground() throws Throwable {
+                if (fromFile) {
+                    return LogFileWriter.exportSince(since, logFile);
+                }
+                BufferedWriter writer = null;
                 try {
-                    List<LogLine> logLines = new ArrayList<>(mLogItemAdapter.getTrueValues());
+                    writer = new BufferedWriter(new FileWriter(logFile));
                     for (LogLine logLine : logLines) {
+                        if (since != null && logLine.getTimestamp() != null && logLine.getTimestamp().compareTo(since) < 0) {
+                            continue;
+                        }
                         String strLog = logLine.getProcessId() + "   " + "   " + logLine.getTimestamp() + "   " + logLine.getTag() + "   " + logLine.getLogLevelText() + "   " + logLine.getLogOutput() + "\n";
-                        FileIOUtils.writeFileFromString(logFile, strLog, true);
+                        writer.write(strLog);
                     }
                     return true;
                 } catch (Exception e) {
                     e.printStackTrace();
                     return false;
+                } finally {
+                    if (writer != null) {
+                        writer.close();
+                    }
                 }
             }
 
@@ -304,8 +333,6 @@ public class LogInfoDokitView extends AbsDokitView implements LogInfoManager.OnL
         params.height = DokitViewLayoutParams.MATCH_PARENT;
     }
 
-    private int counter = 0;
-    private static final int UPDATE_CHECK_INTERVAL = 200;
     private boolean mAutoScrollToBottom = true;
 
     @Override
@@ -318,24 +345,12 @@ public class LogInfoDokitView extends AbsDokitView implements LogInfoManager.OnL
             findViewById(R.id.ll_loading).setVisibility(View.GONE);
             mLogRv.setVisibility(View.VISIBLE);
         }
-        if (logLines.size() == 1) {
-            mLogItemAdapter.addWithFilter(logLines.get(0), mLogFilter.getText(), true);
-        } else {
-            for (LogLine line : logLines) {
-                mLogItemAdapter.addWithFilter(line, mLogFilter.getText(), false);
-            }
-            mLogItemAdapter.notifyDataSetChanged();
-        }
+        //超出MAX_LOG_LINE_NUM时由LogStore丢弃最早的日志
+        mLogItemAdapter.addLogLines(logLines);
         if (logLines.size() > 0) {
             LogLine line = logLines.get(logLines.size() - 1);
             mLogHint.setText(line.getTag() + ":" + line.getLogOutput());
         }
-        if (++counter % UPDATE_CHECK_INTERVAL == 0
-                && mLogItemAdapter.getTrueValues().size() > MAX_LOG_LINE_NUM) {
-            int numItemsToRemove = mLogItemAdapter.getTrueValues().size() - MAX_LOG_LINE_NUM;
-            mLogItemAdapter.removeFirst(numItemsToRemove);
-            //LogHelper.d(TAG, "truncating %d lines from log list to avoid out of memory errors:" + numItemsToRemove);
-        }
         if (mAutoScrollToBottom) {
             scrollToBottom();
         }
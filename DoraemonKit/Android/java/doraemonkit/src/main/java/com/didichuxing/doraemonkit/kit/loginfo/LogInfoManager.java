@@ -3,30 +3,56 @@ package com.didichuxing.doraemonkit.kit.loginfo;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.view.Choreographer;
 
+import com.didichuxing.doraemonkit.config.LogInfoConfig;
 import com.didichuxing.doraemonkit.kit.loginfo.reader.LogcatReader;
 import com.didichuxing.doraemonkit.kit.loginfo.reader.LogcatReaderLoader;
 import com.didichuxing.doraemonkit.util.ExecutorUtil;
 import com.didichuxing.doraemonkit.util.LogHelper;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
  * Created by wanglikun on 2018/10/10.
+ * 读取线程只解析本进程的日志，放入有上限的等待队列，主线程每一帧最多取出一批分发
+ * 主线程处理不过来时队列保留最新的日志，丢弃最早的
  */
 
 public class LogInfoManager {
     private static final String TAG = "LogInfoManager";
     private static final int MESSAGE_PUBLISH_LOG = 1001;
+    /**
+     * 等待分发的日志上限，主线程处理不过来时只保留最新的部分
+     */
+    private static final int MAX_PENDING_LINES = 10000;
+    /**
+     * 每一帧最多分发的日志行数，剩余的留到下一帧
+     */
+    private static final int MAX_LINES_PER_FRAME = 500;
 
     private OnLogCatchListener mListener;
 
     private LogCatchRunnable mLogCatchTask;
 
+    /**
+     * 读取线程写入，主线程读取，通过mPendingLines加锁
+     */
+    private final ArrayDeque<LogLine> mPendingLines = new ArrayDeque<>();
+    private boolean mFrameScheduled;
+    private long mDroppedLines;
+
+    private final Handler mInternalHandler = new InternalHandler(Looper.getMainLooper());
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            publishPendingLines();
+        }
+    };
+
     private static class Holder {
         private static LogInfoManager INSTANCE = new LogInfoManager();
     }
@@ -42,6 +68,7 @@ public class LogInfoManager {
         if (mLogCatchTask != null) {
             mLogCatchTask.stop();
         }
+        clearPendingLines();
         mLogCatchTask = new LogCatchRunnable();
         ExecutorUtil.execute(mLogCatchTask);
     }
@@ -50,6 +77,17 @@ public class LogInfoManager {
         if (mLogCatchTask != null) {
             mLogCatchTask.stop();
         }
+        clearPendingLines();
+    }
+
+    /**
+     * 正在读取日志时立即开始或停止写入文件
+     */
+    public void setLogFileOpen(boolean open) {
+        LogInfoConfig.setLogFileOpen(open);
+        if (mLogCatchTask != null) {
+            mLogCatchTask.mWriteFile = open;
+        }
     }
 
     public interface OnLogCatchListener {
@@ -69,6 +107,61 @@ public class LogInfoManager {
         mListener = null;
     }
 
+    /**
+     * 读取线程调用，队列由空变为非空时通知主线程在下一帧分发
+     */
+    private void enqueue(LogLine logLine) {
+        boolean schedule = false;
+        synchronized (mPendingLines) {
+            mPendingLines.addLast(logLine);
+            if (mPendingLines.size() > MAX_PENDING_LINES) {
+                mPendingLines.pollFirst();
+                mDroppedLines++;
+            }
+            if (!mFrameScheduled) {
+                mFrameScheduled = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            mInternalHandler.sendEmptyMessage(MESSAGE_PUBLISH_LOG);
+        }
+    }
+
+    private void clearPendingLines() {
+        synchronized (mPendingLines) {
+            mPendingLines.clear();
+        }
+    }
+
+    /**
+     * 在主线程的帧回调中调用
+     */
+    private void publishPendingLines() {
+        List<LogLine> logLines;
+        long droppedLines;
+        synchronized (mPendingLines) {
+            int count = Math.min(mPendingLines.size(), MAX_LINES_PER_FRAME);
+            logLines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                logLines.add(mPendingLines.pollFirst());
+            }
+            droppedLines = mDroppedLines;
+            mDroppedLines = 0;
+            if (mPendingLines.isEmpty()) {
+                mFrameScheduled = false;
+            } else {
+                Choreographer.getInstance().postFrameCallback(mFrameCallback);
+            }
+        }
+        if (droppedLines > 0) {
+            LogHelper.d(TAG, "log viewer is behind, dropped " + droppedLines + " lines");
+        }
+        if (mListener != null && !logLines.isEmpty()) {
+            mListener.onLogCatch(logLines);
+        }
+    }
+
     /**
      * 接收log 的内部Handler
      */
@@ -81,11 +174,8 @@ public class LogInfoManager {
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MESSAGE_PUBLISH_LOG:
-
-                    if (LogInfoManager.getInstance().mListener != null) {
-                        LogInfoManager.getInstance().mListener.onLogCatch((List<LogLine>) msg.obj);
-                    }
-
+                    //Choreographer需要在主线程中获取
+                    Choreographer.getInstance().postFrameCallback(LogInfoManager.getInstance().mFrameCallback);
                     break;
                 default:
                     break;
@@ -98,13 +188,13 @@ public class LogInfoManager {
      * 获取日志的内部线程
      */
     private static class LogCatchRunnable implements Runnable {
-        private boolean isRunning = true;
-        private Handler internalHandler;
+        private volatile boolean isRunning = true;
+        private volatile boolean mWriteFile = LogInfoConfig.isLogFileOpen();
         private LogcatReader mReader;
+        private LogFileWriter mFileWriter;
         private int mPid;
 
         private LogCatchRunnable() {
-            internalHandler = new InternalHandler(Looper.getMainLooper());
             mPid = android.os.Process.myPid();
         }
 
@@ -114,40 +204,39 @@ public class LogInfoManager {
                 LogcatReaderLoader loader = LogcatReaderLoader.create(true);
                 mReader = loader.loadReader();
 
+                LogInfoManager manager = LogInfoManager.getInstance();
                 String line;
-                int maxLines = 10000;
-                LinkedList<LogLine> initialLines = new LinkedList<>();
                 while ((line = mReader.readLine()) != null && isRunning) {
-                    LogLine logLine = LogLine.newLogLine(line, false);
-                    if (!mReader.readyToRecord()) {
-                        if (logLine.getProcessId() == mPid) {
-                            initialLines.add(logLine);
-                        }
-                        if (initialLines.size() > maxLines) {
-                            initialLines.removeFirst();
-                        }
-                    } else if (!initialLines.isEmpty()) {
-                        if (logLine.getProcessId() == mPid) {
-                            initialLines.add(logLine);
-                        }
-                        Message message = Message.obtain();
-                        message.what = MESSAGE_PUBLISH_LOG;
-                        message.obj = new ArrayList<>(initialLines);
-                        internalHandler.sendMessage(message);
-                        initialLines.clear();
-                    } else {
-                        // just proceed as normal
-                        if (logLine.getProcessId() == mPid) {
-                            Message message = Message.obtain();
-                            message.what = MESSAGE_PUBLISH_LOG;
-                            message.obj = Collections.singletonList(logLine);
-                            internalHandler.sendMessage(message);
-                        }
+                    //其他进程的日志不做完整解析
+                    if (LogLine.parseProcessId(line) != mPid) {
+                        continue;
+                    }
+                    if (mWriteFile != (mFileWriter != null)) {
+                        switchFileWriter();
                     }
+                    //只写入开始读取之后的新日志，logcat缓冲区中已有的日志每次开始时都会重复读到
+                    if (mFileWriter != null && mReader.readyToRecord()) {
+                        mFileWriter.append(line);
+                    }
+                    manager.enqueue(LogLine.newLogLine(line, false));
                 }
                 mReader.killQuietly();
             } catch (IOException e) {
                 LogHelper.e(TAG, e.toString());
+            } finally {
+                if (mFileWriter != null) {
+                    mFileWriter.close();
+                }
+            }
+        }
+
+        private void switchFileWriter() {
+            if (mFileWriter == null) {
+                mFileWriter = new LogFileWriter();
+                mFileWriter.open();
+            } else {
+                mFileWriter.close();
+                mFileWriter = null;
             }
         }
 
@@ -155,4 +244,4 @@ public class LogInfoManager {
             isRunning = false;
         }
     }
-}
\ No newline at end of file
+}
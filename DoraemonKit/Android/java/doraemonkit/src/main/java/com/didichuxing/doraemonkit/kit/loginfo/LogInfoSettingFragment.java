@@ -44,6 +44,7 @@ public class LogInfoSettingFragment extends BaseFragment {
         mSettingList.setLayoutManager(new LinearLayoutManager(getContext()));
         mSettingItemAdapter = new SettingItemAdapter(getContext());
         mSettingItemAdapter.append(new SettingItem(R.string.dk_kit_log_info, LogInfoConfig.isLogInfoOpen()));
+        mSettingItemAdapter.append(new SettingItem(R.string.dk_log_info_save_file, LogInfoConfig.isLogFileOpen()));
         mSettingItemAdapter.setOnSettingItemSwitchListener(new SettingItemAdapter.OnSettingItemSwitchListener() {
             @Override
             public void onSettingItemSwitch(View view, SettingItem data, boolean on) {
@@ -62,6 +63,8 @@ public class LogInfoSettingFragment extends BaseFragment {
                         LogInfoManager.getInstance().removeListener();
                     }
                     LogInfoConfig.setLogInfoOpen(on);
+                } else if (data.desc == R.string.dk_log_info_save_file) {
+                    LogInfoManager.getInstance().setLogFileOpen(on);
                 }
             }
         });
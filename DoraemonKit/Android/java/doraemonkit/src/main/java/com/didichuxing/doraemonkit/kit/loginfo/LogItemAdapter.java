@@ -8,38 +8,39 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.Filter;
-import android.widget.Filterable;
 import android.widget.TextView;
 
 import com.blankj.utilcode.util.ToastUtils;
 import com.didichuxing.doraemonkit.R;
-import com.didichuxing.doraemonkit.kit.loginfo.util.SearchCriteria;
 import com.didichuxing.doraemonkit.kit.loginfo.util.TagColorUtil;
 import com.didichuxing.doraemonkit.widget.recyclerview.AbsRecyclerAdapter;
 import com.didichuxing.doraemonkit.widget.recyclerview.AbsViewBinder;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
 import java.util.List;
 
 import static android.content.Context.CLIPBOARD_SERVICE;
 
 /**
  * Created by wanglikun on 2018/10/30.
+ * 日志保存在LogStore中，mList是当前过滤结果的只读视图，绑定时才生成LogLine
  */
 
-public class LogItemAdapter extends AbsRecyclerAdapter<AbsViewBinder<LogLine>, LogLine> implements Filterable {
-
+public class LogItemAdapter extends AbsRecyclerAdapter<AbsViewBinder<LogLine>, LogLine> {
+    /**
+     * 按每行平均字符数估算共享字符数组的大小，长日志较多时按字符数提前丢弃
+     */
+    private static final int AVERAGE_LINE_CHARS = 80;
 
-    public LogItemAdapter(Context context) {
+    public LogItemAdapter(Context context, int maxLines) {
         super(context);
         mClipboard = (ClipboardManager) context.getSystemService(CLIPBOARD_SERVICE);
+        mStore = new LogStore(maxLines, maxLines * AVERAGE_LINE_CHARS);
+        mList = new ResultList(mStore);
     }
 
 
-    private ArrayList<LogLine> mOriginalValues = new ArrayList<>();
-    private ArrayFilter mFilter = new ArrayFilter();
+    private final LogStore mStore;
     private int logLevelLimit = Log.VERBOSE;
     private ClipboardManager mClipboard;
 
@@ -47,10 +48,7 @@ public class LogItemAdapter extends AbsRecyclerAdapter<AbsViewBinder<LogLine>, L
      * 清空log
      */
     public void clearLog() {
-        if (mOriginalValues != null && mOriginalValues.size() > 0) {
-            mOriginalValues.clear();
-        }
-        clear();
+        mStore.clear();
         notifyDataSetChanged();
     }
 
@@ -64,9 +62,12 @@ public class LogItemAdapter extends AbsRecyclerAdapter<AbsViewBinder<LogLine>, L
         return inflater.inflate(R.layout.dk_item_log, parent, false);
     }
 
-    @Override
-    public Filter getFilter() {
-        return mFilter;
+    /**
+     * 查询语法见SearchCriteria，在上一次关键字后继续输入时只在上一次的结果中查找
+     */
+    public void filter(CharSequence text) {
+        mStore.setQuery(logLevelLimit, text);
+        notifyDataSetChanged();
     }
 
     public int getLogLevelLimit() {
@@ -78,20 +79,12 @@ public class LogItemAdapter extends AbsRecyclerAdapter<AbsViewBinder<LogLine>, L
         this.logLevelLimit = logLevelLimit;
     }
 
+    /**
+     * 返回全部日志的快照，可以在其他线程中读取
+     */
     public List<LogLine> getTrueValues() {
-        return mOriginalValues != null ? mOriginalValues : mList;
-    }
-
-    public void removeFirst(int n) {
-        if (mOriginalValues != null) {
-            List<LogLine> subList = mOriginalValues.subList(n, mOriginalValues.size());
-            for (int i = 0; i < n; i++) {
-                // value to delete - delete it from the mObjects as well
-                mList.remove(mOriginalValues.get(i));
-            }
-            mOriginalValues = new ArrayList<>(subList);
-        }
-        notifyDataSetChanged();
+        LogStore snapshot = mStore.copy();
+        return new SnapshotList(snapshot);
     }
 
     public class LogInfoViewHolder extends AbsViewBinder<LogLine> {
@@ -119,6 +112,7 @@ public class LogItemAdapter extends AbsRecyclerAdapter<AbsViewBinder<LogLine>, L
         protected void onViewClick(View view, final LogLine data) {
             super.onViewClick(view, data);
             data.setExpanded(!data.isExpanded());
+            mStore.setExpanded(data.getStoreSeq(), data.isExpanded());
             if (data.isExpanded() && data.getProcessId() != -1) {
                 mLogText.setSingleLine(false);
                 mTime.setVisibility(View.VISIBLE);
@@ -179,101 +173,66 @@ public class LogItemAdapter extends AbsRecyclerAdapter<AbsViewBinder<LogLine>, L
     }
 
     /**
-     * 添加日志到adapter中
+     * 添加一批日志，只有符合当前过滤条件的才会显示，超出容量时最早的日志被移除
      *
-     * @param logObj
-     * @param text
-     * @param notify
+     * @param logLines
      */
-    public void addWithFilter(LogLine logObj, CharSequence text, boolean notify) {
-
-        if (mOriginalValues != null) {
-
-            List<LogLine> inputList = Collections.singletonList(logObj);
-
-            List<LogLine> filteredObjects = mFilter.performFilteringOnList(inputList, text);
-
-            mOriginalValues.add(logObj);
-
-            mList.addAll(filteredObjects);
-            if (notify) {
-                notifyItemRangeInserted(mList.size() - filteredObjects.size(), filteredObjects.size());
-            }
-        } else {
-            mList.add(logObj);
-            if (notify) {
-                notifyItemInserted(mList.size());
-            }
+    public void addLogLines(List<LogLine> logLines) {
+        int oldSize = mStore.getResultSize();
+        int removed = mStore.addAll(logLines);
+        int inserted = mStore.getResultSize() - (oldSize - removed);
+        if (removed > oldSize) {
+            //本批新加入的日志也被移除
+            notifyDataSetChanged();
+            return;
+        }
+        if (removed > 0) {
+            notifyItemRangeRemoved(0, removed);
+        }
+        if (inserted > 0) {
+            notifyItemRangeInserted(oldSize - removed, inserted);
         }
     }
 
-    private class ArrayFilter extends Filter {
-        @Override
-        protected FilterResults performFiltering(CharSequence prefix) {
-            FilterResults results = new FilterResults();
-
-
-            ArrayList<LogLine> allValues = performFilteringOnList(mOriginalValues, prefix);
-
-            results.values = allValues;
-            results.count = allValues.size();
+    /**
+     * 当前过滤结果的只读视图
+     */
+    private static class ResultList extends AbstractList<LogLine> {
+        private final LogStore mStore;
 
-            return results;
+        ResultList(LogStore store) {
+            mStore = store;
         }
 
-        public ArrayList<LogLine> performFilteringOnList(List<LogLine> inputList, CharSequence query) {
-
-            SearchCriteria searchCriteria = new SearchCriteria(query);
-
-            // search by log level
-            ArrayList<LogLine> allValues = new ArrayList<>();
-
-            ArrayList<LogLine> logLines = new ArrayList<>(inputList);
-
-
-            for (LogLine logLine : logLines) {
-                if (logLine != null && logLine.getLogLevel() >= logLevelLimit) {
-                    allValues.add(logLine);
-                }
-            }
-            ArrayList<LogLine> finalValues = allValues;
-
-            // search by criteria
-            if (!searchCriteria.isEmpty()) {
-
-                final ArrayList<LogLine> values = allValues;
-                final int count = values.size();
-
-                final ArrayList<LogLine> newValues = new ArrayList<>(count);
+        @Override
+        public LogLine get(int index) {
+            return mStore.get(mStore.getResultSeq(index));
+        }
 
-                for (int i = 0; i < count; i++) {
-                    final LogLine value = values.get(i);
-                    // search the logline based on the criteria
-                    if (searchCriteria.matches(value)) {
-                        newValues.add(value);
-                    }
-                }
+        @Override
+        public int size() {
+            return mStore.getResultSize();
+        }
+    }
 
-                finalValues = newValues;
-            }
+    /**
+     * 快照中全部日志的只读视图
+     */
+    private static class SnapshotList extends AbstractList<LogLine> {
+        private final LogStore mStore;
 
-            return finalValues;
+        SnapshotList(LogStore store) {
+            mStore = store;
         }
 
-        @SuppressWarnings("unchecked")
         @Override
-        protected void publishResults(CharSequence constraint, FilterResults results) {
-            //noinspection unchecked
-
-            //log.d("filtering: %s", constraint);
-
+        public LogLine get(int index) {
+            return mStore.get(mStore.getFirstSeq() + index);
+        }
 
-            mList = (List<LogLine>) results.values;
-            if (results.count > 0) {
-                notifyDataSetChanged();
-            } else {
-                notifyDataSetChanged();
-            }
+        @Override
+        public int size() {
+            return (int) (mStore.getNextSeq() - mStore.getFirstSeq());
         }
     }
-}
\ No newline at end of file
+}
@@ -1,32 +1,31 @@
 package com.didichuxing.doraemonkit.kit.loginfo;
 
-import android.text.TextUtils;
 import android.util.Log;
 
 import com.didichuxing.doraemonkit.kit.loginfo.reader.ScrubberUtils;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 
+/**
+ * 解析 logcat -v time 格式的一行日志，格式为 "MM-DD HH:MM:SS.mmm L/Tag( pid): msg"
+ * 日志头由scanHeader逐字符扫描一次，只记录下标；tag、日志内容和时间戳在第一次访问时才生成字符串
+ */
 public class LogLine {
 
     private static final int TIMESTAMP_LENGTH = 19;
 
-    private static Pattern logPattern = Pattern.compile(
-            // log level
-            "(\\w)" +
-                    "/" +
-                    // tag
-                    "([^(]+)" +
-                    "\\(\\s*" +
-                    // pid
-                    "(\\d+)" +
-                    // optional weird number that only occurs on ZTE blade
-                    "(?:\\*\\s*\\d+)?" +
-                    "\\): ");
-
-    private static final String filterPattern = "ResourceType|memtrack|android.os.Debug|BufferItemConsumer|DPM.*|MDM.*|ChimeraUtils|BatteryExternalStats.*|chatty.*|DisplayPowerController|WidgetHelper|WearableService|DigitalWidget.*|^ANDR-PERF-.*";
+    /**
+     * 日志内容以这些字符串开头时日志级别设置为V
+     */
+    private static final String[] VERBOSE_OUTPUT_PREFIXES = {"maxLineHeight", "Failed to read"};
+
+    /**
+     * tag为这些系统tag时日志级别设置为V
+     */
+    private static final TagTrie VERBOSE_TAGS = new TagTrie(
+            new String[]{"ResourceType", "memtrack", "android.os.Debug", "BufferItemConsumer", "ChimeraUtils",
+                    "DisplayPowerController", "WidgetHelper", "WearableService"},
+            new String[]{"DPM", "MDM", "BatteryExternalStats", "chatty", "DigitalWidget", "ANDR-PERF-"});
+
     private int logLevel;
     private String tag;
     private String logOutput;
@@ -35,6 +34,19 @@ public class LogLine {
     private boolean expanded = false;
     private boolean highlighted = false;
 
+    /**
+     * 解析时只记录原始日志中的下标，-1表示不存在；通过set方法设置的值优先
+     */
+    private String line;
+    private int timestampEnd = -1;
+    private int tagStart = -1;
+    private int tagEnd;
+    private int outputStart = -1;
+    /**
+     * 在LogStore中的序号
+     */
+    private long storeSeq = -1;
+
     public static boolean isScrubberEnabled = false;
 
     public static LogLine newLogLine(String originalLine, boolean expanded) {
@@ -42,41 +54,24 @@ public class LogLine {
         LogLine logLine = new LogLine();
         logLine.setExpanded(expanded);
 
-        int startIdx = 0;
-
-        // if the first char is a digit, then this starts out with a timestamp
-        // otherwise, it's a legacy log or the beginning of the log output or something
-        if (!TextUtils.isEmpty(originalLine)
-                && Character.isDigit(originalLine.charAt(0))
-                && originalLine.length() >= TIMESTAMP_LENGTH) {
-            String timestamp = originalLine.substring(0, TIMESTAMP_LENGTH - 1);
-            logLine.setTimestamp(timestamp);
-            // cut off timestamp
-            startIdx = TIMESTAMP_LENGTH;
+        logLine.line = originalLine;
+        int startIdx = timestampLength(originalLine);
+        if (startIdx > 0) {
+            logLine.timestampEnd = TIMESTAMP_LENGTH - 1;
         }
 
-        Matcher matcher = logPattern.matcher(originalLine);
-
-        if (matcher.find(startIdx)) {
-            char logLevelChar = matcher.group(1).charAt(0);
-
-            String logText = originalLine.substring(matcher.end());
-            if (logText.matches("^maxLineHeight.*|Failed to read.*")) {
+        int pid = scanHeader(originalLine, startIdx, logLine);
+        if (pid >= 0) {
+            logLine.setProcessId(pid);
+            if (startsWithAny(originalLine, logLine.outputStart, VERBOSE_OUTPUT_PREFIXES)
+                    || VERBOSE_TAGS.matches(originalLine, logLine.tagStart, logLine.tagEnd)) {
                 logLine.setLogLevel(convertCharToLogLevel('V'));
             } else {
-                logLine.setLogLevel(convertCharToLogLevel(logLevelChar));
+                logLine.setLogLevel(convertCharToLogLevel(originalLine.charAt(startIdx)));
             }
-
-            String tagText = matcher.group(2);
-            if (tagText.matches(filterPattern)) {
-                logLine.setLogLevel(convertCharToLogLevel('V'));
+            if (isScrubberEnabled) {
+                logLine.setLogOutput(originalLine.substring(logLine.outputStart));
             }
-
-            logLine.setTag(tagText);
-            logLine.setProcessId(Integer.parseInt(matcher.group(3)));
-
-            logLine.setLogOutput(logText);
-
         } else {
             logLine.setLogOutput(originalLine);
             logLine.setLogLevel(-1);
@@ -86,6 +81,180 @@ public class LogLine {
 
     }
 
+    /**
+     * 只扫描日志头中的pid，不做完整解析，用于在解析前过滤掉其他进程的日志
+     *
+     * @return 无法识别时返回-1
+     */
+    public static int parseProcessId(String originalLine) {
+        return scanHeader(originalLine, timestampLength(originalLine), null);
+    }
+
+    /**
+     * 以数字开头的是带时间戳的日志，否则是旧格式的日志或者 "--------- beginning of main" 这样的分隔行
+     */
+    private static int timestampLength(String originalLine) {
+        if (originalLine != null
+                && originalLine.length() >= TIMESTAMP_LENGTH
+                && Character.isDigit(originalLine.charAt(0))) {
+            return TIMESTAMP_LENGTH;
+        }
+        return 0;
+    }
+
+    /**
+     * 从start开始匹配 "L/Tag( pid): "，ZTE设备上pid后面可能跟着 "* n"
+     *
+     * @param target 不为null时写入tag和日志内容的下标
+     * @return pid，不是可以识别的日志头时返回-1
+     */
+    private static int scanHeader(String line, int start, LogLine target) {
+        if (line == null) {
+            return -1;
+        }
+        int length = line.length();
+        if (start + 2 >= length || !isWordChar(line.charAt(start)) || line.charAt(start + 1) != '/') {
+            return -1;
+        }
+        int tagStart = start + 2;
+        int index = line.indexOf('(', tagStart);
+        if (index <= tagStart) {
+            return -1;
+        }
+        int tagEnd = index;
+        index = skipWhitespace(line, index + 1);
+        int digitStart = index;
+        int pid = 0;
+        while (index < length && isDigit(line.charAt(index))) {
+            pid = pid * 10 + (line.charAt(index) - '0');
+            index++;
+        }
+        //超过9位的不是pid
+        if (index == digitStart || index - digitStart > 9) {
+            return -1;
+        }
+        if (index < length && line.charAt(index) == '*') {
+            index = skipWhitespace(line, index + 1);
+            int extraStart = index;
+            while (index < length && isDigit(line.charAt(index))) {
+                index++;
+            }
+            if (index == extraStart) {
+                return -1;
+            }
+        }
+        if (!line.startsWith("): ", index)) {
+            return -1;
+        }
+        if (target != null) {
+            target.tagStart = tagStart;
+            target.tagEnd = tagEnd;
+            target.outputStart = index + 3;
+        }
+        return pid;
+    }
+
+    private static int skipWhitespace(String line, int index) {
+        while (index < line.length() && Character.isWhitespace(line.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean startsWithAny(String line, int offset, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (line.startsWith(prefix, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 用于匹配tag的字典树，直接在原始日志的下标范围内匹配，不生成tag字符串
+     * 节点保存在数组中，子节点用兄弟链表连接
+     */
+    private static final class TagTrie {
+        private static final byte MATCH_EXACT = 1;
+        private static final byte MATCH_PREFIX = 2;
+
+        private final char[] chars;
+        private final int[] firstChild;
+        private final int[] nextSibling;
+        private final byte[] flags;
+        private int size = 1;
+
+        TagTrie(String[] exactTags, String[] prefixTags) {
+            int capacity = 1;
+            for (String tag : exactTags) {
+                capacity += tag.length();
+            }
+            for (String tag : prefixTags) {
+                capacity += tag.length();
+            }
+            chars = new char[capacity];
+            firstChild = new int[capacity];
+            nextSibling = new int[capacity];
+            flags = new byte[capacity];
+            for (String tag : exactTags) {
+                add(tag, MATCH_EXACT);
+            }
+            for (String tag : prefixTags) {
+                add(tag, MATCH_PREFIX);
+            }
+        }
+
+        private void add(String tag, byte flag) {
+            int node = 0;
+            for (int i = 0; i < tag.length(); i++) {
+                char c = tag.charAt(i);
+                int child = child(node, c);
+                if (child == 0) {
+                    child = size++;
+                    chars[child] = c;
+                    nextSibling[child] = firstChild[node];
+                    firstChild[node] = child;
+                }
+                node = child;
+            }
+            flags[node] |= flag;
+        }
+
+        /**
+         * 0为根节点，不会是任何节点的子节点，所以用0表示不存在
+         */
+        private int child(int node, char c) {
+            for (int child = firstChild[node]; child != 0; child = nextSibling[child]) {
+                if (chars[child] == c) {
+                    return child;
+                }
+            }
+            return 0;
+        }
+
+        boolean matches(String text, int start, int end) {
+            int node = 0;
+            for (int i = start; i < end; i++) {
+                if ((flags[node] & MATCH_PREFIX) != 0) {
+                    return true;
+                }
+                node = child(node, text.charAt(i));
+                if (node == 0) {
+                    return false;
+                }
+            }
+            return flags[node] != 0;
+        }
+    }
+
     private static int convertCharToLogLevel(char logLevelChar) {
 
         switch (logLevelChar) {
@@ -130,17 +299,17 @@ public class LogLine {
 
         StringBuilder stringBuilder = new StringBuilder();
 
-        if (timestamp != null) {
-            stringBuilder.append(timestamp).append(' ');
+        if (getTimestamp() != null) {
+            stringBuilder.append(getTimestamp()).append(' ');
         }
 
         stringBuilder.append(convertLogLevelToChar(logLevel))
                 .append('/')
-                .append(tag)
+                .append(getTag())
                 .append('(')
                 .append(processId)
                 .append("): ")
-                .append(logOutput);
+                .append(getLogOutput());
 
         return stringBuilder.toString();
     }
@@ -158,6 +327,9 @@ public class LogLine {
     }
 
     public String getTag() {
+        if (tag == null && tagStart >= 0) {
+            tag = line.substring(tagStart, tagEnd);
+        }
         return tag;
     }
 
@@ -166,6 +338,9 @@ public class LogLine {
     }
 
     public String getLogOutput() {
+        if (logOutput == null && outputStart >= 0) {
+            logOutput = line.substring(outputStart);
+        }
         return logOutput;
     }
 
@@ -186,6 +361,9 @@ public class LogLine {
     }
 
     public String getTimestamp() {
+        if (timestamp == null && timestampEnd >= 0) {
+            timestamp = line.substring(0, timestampEnd);
+        }
         return timestamp;
     }
 
@@ -193,6 +371,39 @@ public class LogLine {
         this.timestamp = timestamp;
     }
 
+    /**
+     * 供LogStore按列保存，不生成子字符串
+     */
+    String getRawLine() {
+        return line;
+    }
+
+    /**
+     * @return 没有tag时返回-1
+     */
+    int getTagStartOffset() {
+        return tagStart;
+    }
+
+    int getTagEndOffset() {
+        return tagEnd;
+    }
+
+    /**
+     * @return 无法识别日志头时整行都是日志内容，返回0
+     */
+    int getOutputOffset() {
+        return outputStart >= 0 ? outputStart : 0;
+    }
+
+    long getStoreSeq() {
+        return storeSeq;
+    }
+
+    void setStoreSeq(long storeSeq) {
+        this.storeSeq = storeSeq;
+    }
+
     public boolean isExpanded() {
         return expanded;
     }
@@ -0,0 +1,539 @@
+package com.didichuxing.doraemonkit.kit.loginfo;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.didichuxing.doraemonkit.kit.loginfo.util.SearchCriteria;
+import com.didichuxing.doraemonkit.kit.loginfo.util.StringUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ================================================
+ * 描    述：日志查看器的列式日志存储
+ * 每行日志的原始字符写入共享的环形char数组，其余字段保存在基本类型数组中：起始位置、长度、日志内容的偏移、级别、pid、tag id
+ * 各数组从较小的容量开始按需翻倍，达到上限后丢弃最早的日志
+ * tag保存在字典中，按tag查找时每个不同的tag只匹配一次；清空或tag过多时按保留的日志重建字典
+ * 当前的过滤结果保存为序号数组，新的关键字是上一次关键字的细化时只在上一次的结果中查找
+ * LogLine只在RecyclerView绑定时按需生成
+ * 只在主线程中使用
+ * 修订历史：
+ * ================================================
+ */
+final class LogStore {
+    private static final byte TAG_UNKNOWN = 0;
+    private static final byte TAG_MATCH = 1;
+    private static final byte TAG_MISMATCH = 2;
+    private static final int INITIAL_LINES = 1024;
+    private static final int INITIAL_CHARS = 64 * 1024;
+    private static final int INITIAL_TAGS = 64;
+    /**
+     * tag数量超过后按保留的日志重建字典
+     */
+    private static final int MAX_TAGS = 4096;
+
+    private final int mMaxLines;
+    private final int mMaxChars;
+    private char[] mArena;
+
+    /**
+     * 以下各列的下标为 序号 % mLineCapacity
+     */
+    private int mLineCapacity;
+    private long[] mStarts;
+    private int[] mLengths;
+    private int[] mOutputOffsets;
+    private int[] mPids;
+    private byte[] mLevels;
+    private int[] mTagIds;
+    private boolean[] mExpanded;
+
+    /**
+     * 保留的日志序号为 [mFirstSeq, mNextSeq)
+     */
+    private long mFirstSeq;
+    private long mNextSeq;
+    /**
+     * 已写入的字符总数，不取模
+     */
+    private long mArenaEnd;
+
+    private String[] mTagNames;
+    private int[] mTagHashes;
+    /**
+     * 开放寻址的哈希表，值为tag id + 1，0表示空位
+     */
+    private int[] mTagTable;
+    private int mTagCount;
+    private int mTagRebuildLimit = MAX_TAGS;
+
+    private int mLevelLimit = Log.VERBOSE;
+    private SearchCriteria mCriteria = new SearchCriteria(null);
+    private String mTagQuery;
+    private char[] mTextQuery;
+    /**
+     * 按tag id缓存的tag匹配结果，查询条件变化时清空
+     */
+    private byte[] mTagQueryMatches;
+    private byte[] mTextTagMatches;
+
+    private long[] mResult = new long[1024];
+    private int mResultHead;
+    private int mResultSize;
+
+    LogStore(int maxLines, int maxChars) {
+        mMaxLines = maxLines;
+        mMaxChars = maxChars;
+        mArena = new char[Math.min(INITIAL_CHARS, maxChars)];
+        allocateLines(Math.min(INITIAL_LINES, maxLines));
+        allocateTags(INITIAL_TAGS);
+    }
+
+    /**
+     * 导出时在主线程复制一份，在其他线程中读取
+     * 只复制保留的日志，字符重新从头连续存放，容量正好等于保留的日志
+     */
+    private LogStore(LogStore source) {
+        int lineCount = (int) (source.mNextSeq - source.mFirstSeq);
+        mMaxLines = Math.max(1, lineCount);
+        mFirstSeq = source.mFirstSeq;
+        mNextSeq = source.mNextSeq;
+        allocateLines(mMaxLines);
+        long chars = 0;
+        for (long seq = mFirstSeq; seq < mNextSeq; seq++) {
+            chars += source.mLengths[source.slot(seq)];
+        }
+        mMaxChars = (int) Math.max(1, chars);
+        mArena = new char[mMaxChars];
+        for (long seq = mFirstSeq; seq < mNextSeq; seq++) {
+            int from = source.slot(seq);
+            int to = slot(seq);
+            mLengths[to] = source.mLengths[from];
+            mOutputOffsets[to] = source.mOutputOffsets[from];
+            mPids[to] = source.mPids[from];
+            mLevels[to] = source.mLevels[from];
+            mTagIds[to] = source.mTagIds[from];
+            mExpanded[to] = source.mExpanded[from];
+            System.arraycopy(source.mArena, (int) (source.mStarts[from] % source.mArena.length),
+                    mArena, (int) mArenaEnd, mLengths[to]);
+            mStarts[to] = mArenaEnd;
+            mArenaEnd += mLengths[to];
+        }
+        mTagNames = Arrays.copyOf(source.mTagNames, source.mTagNames.length);
+        mTagHashes = source.mTagHashes.clone();
+        mTagTable = source.mTagTable.clone();
+        mTagCount = source.mTagCount;
+        mTagQueryMatches = new byte[mTagNames.length];
+        mTextTagMatches = new byte[mTagNames.length];
+    }
+
+    private void allocateLines(int capacity) {
+        mLineCapacity = capacity;
+        mStarts = new long[capacity];
+        mLengths = new int[capacity];
+        mOutputOffsets = new int[capacity];
+        mPids = new int[capacity];
+        mLevels = new byte[capacity];
+        mTagIds = new int[capacity];
+        mExpanded = new boolean[capacity];
+    }
+
+    private void allocateTags(int capacity) {
+        mTagNames = new String[capacity];
+        mTagHashes = new int[capacity];
+        mTagTable = new int[capacity * 2];
+        mTagQueryMatches = new byte[capacity];
+        mTextTagMatches = new byte[capacity];
+    }
+
+    LogStore copy() {
+        return new LogStore(this);
+    }
+
+    /**
+     * @return 因为超出容量从过滤结果头部移除的行数
+     */
+    int addAll(List<LogLine> logLines) {
+        int removed = 0;
+        for (LogLine logLine : logLines) {
+            removed += add(logLine);
+        }
+        return removed;
+    }
+
+    private int add(LogLine logLine) {
+        String raw = logLine.getRawLine();
+        if (raw == null) {
+            raw = "";
+        }
+        int length = Math.min(raw.length(), mMaxChars);
+        long start = lineStart(length);
+        //需要丢弃日志才能放下时先扩容
+        while (mArena.length < mMaxChars && (length > mArena.length
+                || (mNextSeq > mFirstSeq && mStarts[slot(mFirstSeq)] < start + length - mArena.length))) {
+            growArena();
+            start = lineStart(length);
+        }
+        if (mNextSeq - mFirstSeq == mLineCapacity && mLineCapacity < mMaxLines) {
+            growLines();
+        }
+        int offset = (int) (start % mArena.length);
+        long end = start + length;
+        while (mNextSeq > mFirstSeq
+                && (mNextSeq - mFirstSeq == mLineCapacity || mStarts[slot(mFirstSeq)] < end - mArena.length)) {
+            mFirstSeq++;
+        }
+        if (mTagCount >= mTagRebuildLimit) {
+            rebuildTags();
+        }
+        int removed = 0;
+        while (mResultSize > 0 && mResult[mResultHead] < mFirstSeq) {
+            mResultHead++;
+            mResultSize--;
+            removed++;
+        }
+
+        raw.getChars(0, length, mArena, offset);
+        long seq = mNextSeq++;
+        int slot = slot(seq);
+        mStarts[slot] = start;
+        mLengths[slot] = length;
+        mOutputOffsets[slot] = Math.min(logLine.getOutputOffset(), length);
+        mPids[slot] = logLine.getProcessId();
+        mLevels[slot] = (byte) logLine.getLogLevel();
+        int tagStart = logLine.getTagStartOffset();
+        int tagEnd = logLine.getTagEndOffset();
+        mTagIds[slot] = tagStart >= 0 && tagEnd <= length ? tagId(raw, tagStart, tagEnd) : -1;
+        mExpanded[slot] = logLine.isExpanded();
+        mArenaEnd = end;
+
+        if (matches(slot)) {
+            appendResult(seq);
+        }
+        return removed;
+    }
+
+    /**
+     * 一行日志在数组中总是连续的，放不下时从头开始写
+     *
+     * @return 下一行的起始位置，不取模
+     */
+    private long lineStart(int length) {
+        int offset = (int) (mArenaEnd % mArena.length);
+        if (offset + length > mArena.length) {
+            return mArenaEnd + mArena.length - offset;
+        }
+        return mArenaEnd;
+    }
+
+    /**
+     * 容量翻倍，保留的日志从头连续存放
+     */
+    private void growArena() {
+        char[] arena = new char[(int) Math.min((long) mArena.length * 2, mMaxChars)];
+        long end = 0;
+        for (long seq = mFirstSeq; seq < mNextSeq; seq++) {
+            int slot = slot(seq);
+            System.arraycopy(mArena, (int) (mStarts[slot] % mArena.length), arena, (int) end, mLengths[slot]);
+            mStarts[slot] = end;
+            end += mLengths[slot];
+        }
+        mArena = arena;
+        mArenaEnd = end;
+    }
+
+    private void growLines() {
+        int oldCapacity = mLineCapacity;
+        long[] starts = mStarts;
+        int[] lengths = mLengths;
+        int[] outputOffsets = mOutputOffsets;
+        int[] pids = mPids;
+        byte[] levels = mLevels;
+        int[] tagIds = mTagIds;
+        boolean[] expanded = mExpanded;
+        allocateLines((int) Math.min((long) oldCapacity * 2, mMaxLines));
+        for (long seq = mFirstSeq; seq < mNextSeq; seq++) {
+            int from = (int) (seq % oldCapacity);
+            int to = slot(seq);
+            mStarts[to] = starts[from];
+            mLengths[to] = lengths[from];
+            mOutputOffsets[to] = outputOffsets[from];
+            mPids[to] = pids[from];
+            mLevels[to] = levels[from];
+            mTagIds[to] = tagIds[from];
+            mExpanded[to] = expanded[from];
+        }
+    }
+
+    void clear() {
+        mFirstSeq = mNextSeq;
+        mResultHead = 0;
+        mResultSize = 0;
+        rebuildTags();
+    }
+
+    long getFirstSeq() {
+        return mFirstSeq;
+    }
+
+    long getNextSeq() {
+        return mNextSeq;
+    }
+
+    /**
+     * 从原始字符重新解析生成LogLine
+     */
+    LogLine get(long seq) {
+        int slot = slot(seq);
+        String raw = new String(mArena, (int) (mStarts[slot] % mArena.length), mLengths[slot]);
+        LogLine logLine = LogLine.newLogLine(raw, mExpanded[slot]);
+        logLine.setStoreSeq(seq);
+        return logLine;
+    }
+
+    void setExpanded(long seq, boolean expanded) {
+        if (seq >= mFirstSeq && seq < mNextSeq) {
+            mExpanded[slot(seq)] = expanded;
+        }
+    }
+
+    int getResultSize() {
+        return mResultSize;
+    }
+
+    long getResultSeq(int position) {
+        return mResult[mResultHead + position];
+    }
+
+    /**
+     * 查询语法与SearchCriteria相同，只保留级别不低于levelLimit的日志
+     */
+    void setQuery(int levelLimit, CharSequence query) {
+        SearchCriteria criteria = new SearchCriteria(query);
+        boolean refinement = isRefinement(levelLimit, criteria);
+        mLevelLimit = levelLimit;
+        mCriteria = criteria;
+        mTagQuery = TextUtils.isEmpty(criteria.getTag()) ? null : criteria.getTag();
+        String text = criteria.getSearchText();
+        if (TextUtils.isEmpty(text)) {
+            mTextQuery = null;
+        } else {
+            mTextQuery = new char[text.length()];
+            for (int i = 0; i < text.length(); i++) {
+                mTextQuery[i] = Character.toUpperCase(text.charAt(i));
+            }
+        }
+        Arrays.fill(mTagQueryMatches, TAG_UNKNOWN);
+        Arrays.fill(mTextTagMatches, TAG_UNKNOWN);
+
+        if (refinement) {
+            //结果按序号递增，原地压缩
+            int count = 0;
+            for (int i = 0; i < mResultSize; i++) {
+                long seq = mResult[mResultHead + i];
+                if (matches(slot(seq))) {
+                    mResult[count++] = seq;
+                }
+            }
+            mResultHead = 0;
+            mResultSize = count;
+        } else {
+            mResultHead = 0;
+            mResultSize = 0;
+            for (long seq = mFirstSeq; seq < mNextSeq; seq++) {
+                if (matches(slot(seq))) {
+                    appendResult(seq);
+                }
+            }
+        }
+    }
+
+    /**
+     * 新的查询条件匹配的日志是否一定是上一次结果的子集
+     */
+    private boolean isRefinement(int levelLimit, SearchCriteria criteria) {
+        SearchCriteria old = mCriteria;
+        if (levelLimit < mLevelLimit) {
+            return false;
+        }
+        if (old.getPid() != -1 && old.getPid() != criteria.getPid()) {
+            return false;
+        }
+        if (!TextUtils.isEmpty(old.getTag()) && !StringUtil.containsIgnoreCase(criteria.getTag(), old.getTag())) {
+            return false;
+        }
+        String oldText = old.getSearchText();
+        if (TextUtils.isEmpty(oldText)) {
+            return true;
+        }
+        //数字同时会匹配pid，只有完全相同时才是子集
+        if (criteria.getSearchTextAsInt() != -1) {
+            return oldText.equals(criteria.getSearchText());
+        }
+        return StringUtil.containsIgnoreCase(criteria.getSearchText(), oldText);
+    }
+
+    /**
+     * 与SearchCriteria.matches的规则相同
+     */
+    private boolean matches(int slot) {
+        if (mLevels[slot] < mLevelLimit) {
+            return false;
+        }
+        SearchCriteria criteria = mCriteria;
+        if (criteria.getPid() != -1 && mPids[slot] != criteria.getPid()) {
+            return false;
+        }
+        int tagId = mTagIds[slot];
+        if (mTagQuery != null && (tagId < 0 || !tagMatches(mTagQueryMatches, tagId, mTagQuery))) {
+            return false;
+        }
+        if (mTextQuery == null) {
+            return true;
+        }
+        if (criteria.getSearchTextAsInt() != -1 && criteria.getSearchTextAsInt() == mPids[slot]) {
+            return true;
+        }
+        if (tagId >= 0 && tagMatches(mTextTagMatches, tagId, criteria.getSearchText())) {
+            return true;
+        }
+        return outputContains(slot, mTextQuery);
+    }
+
+    private boolean tagMatches(byte[] cache, int tagId, String query) {
+        if (cache[tagId] == TAG_UNKNOWN) {
+            cache[tagId] = StringUtil.containsIgnoreCase(mTagNames[tagId], query) ? TAG_MATCH : TAG_MISMATCH;
+        }
+        return cache[tagId] == TAG_MATCH;
+    }
+
+    /**
+     * 直接在共享数组中查找，忽略大小写的规则与StringUtil.containsIgnoreCase相同
+     *
+     * @param upperQuery 已经转换为大写
+     */
+    private boolean outputContains(int slot, char[] upperQuery) {
+        int lineStart = (int) (mStarts[slot] % mArena.length);
+        int limit = lineStart + mLengths[slot] - upperQuery.length;
+        char first = upperQuery[0];
+        for (int i = lineStart + mOutputOffsets[slot]; i <= limit; i++) {
+            if (Character.toUpperCase(mArena[i]) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < upperQuery.length && Character.toUpperCase(mArena[i + j]) == upperQuery[j]) {
+                j++;
+            }
+            if (j == upperQuery.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void appendResult(long seq) {
+        if (mResultHead + mResultSize == mResult.length) {
+            if (mResultHead >= mResult.length / 2) {
+                System.arraycopy(mResult, mResultHead, mResult, 0, mResultSize);
+            } else {
+                long[] result = new long[mResult.length * 2];
+                System.arraycopy(mResult, mResultHead, result, 0, mResultSize);
+                mResult = result;
+            }
+            mResultHead = 0;
+        }
+        mResult[mResultHead + mResultSize++] = seq;
+    }
+
+    /**
+     * 在原始日志的下标范围内查找tag，只有第一次出现的tag才生成字符串
+     */
+    private int tagId(String raw, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + raw.charAt(i);
+        }
+        int length = end - start;
+        int mask = mTagTable.length - 1;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        while (mTagTable[index] != 0) {
+            int id = mTagTable[index] - 1;
+            if (mTagHashes[id] == hash && mTagNames[id].length() == length
+                    && raw.regionMatches(start, mTagNames[id], 0, length)) {
+                return id;
+            }
+            index = (index + 1) & mask;
+        }
+        if (mTagCount == mTagNames.length) {
+            int capacity = mTagNames.length * 2;
+            mTagNames = Arrays.copyOf(mTagNames, capacity);
+            mTagHashes = Arrays.copyOf(mTagHashes, capacity);
+            mTagQueryMatches = Arrays.copyOf(mTagQueryMatches, capacity);
+            mTextTagMatches = Arrays.copyOf(mTextTagMatches, capacity);
+        }
+        int id = mTagCount++;
+        mTagNames[id] = raw.substring(start, end);
+        mTagHashes[id] = hash;
+        mTagTable[index] = id + 1;
+        if (mTagCount * 2 > mTagTable.length) {
+            rehashTags(mTagTable.length * 2);
+        }
+        return id;
+    }
+
+    private void rehashTags(int size) {
+        int[] table = new int[size];
+        int mask = size - 1;
+        for (int id = 0; id < mTagCount; id++) {
+            int hash = mTagHashes[id];
+            int index = (hash ^ (hash >>> 16)) & mask;
+            while (table[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            table[index] = id + 1;
+        }
+        mTagTable = table;
+    }
+
+    /**
+     * 只保留仍在使用的tag，id按出现顺序重新分配，tag的匹配缓存一起清空
+     */
+    private void rebuildTags() {
+        int[] newIds = new int[mTagCount];
+        Arrays.fill(newIds, -1);
+        int count = 0;
+        for (long seq = mFirstSeq; seq < mNextSeq; seq++) {
+            int tagId = mTagIds[slot(seq)];
+            if (tagId >= 0 && newIds[tagId] < 0) {
+                newIds[tagId] = count++;
+            }
+        }
+        String[] names = mTagNames;
+        int[] hashes = mTagHashes;
+        int capacity = INITIAL_TAGS;
+        while (capacity < count * 2) {
+            capacity *= 2;
+        }
+        allocateTags(capacity);
+        for (int id = 0; id < newIds.length; id++) {
+            if (newIds[id] >= 0) {
+                mTagNames[newIds[id]] = names[id];
+                mTagHashes[newIds[id]] = hashes[id];
+            }
+        }
+        mTagCount = count;
+        rehashTags(capacity * 2);
+        for (long seq = mFirstSeq; seq < mNextSeq; seq++) {
+            int slot = slot(seq);
+            if (mTagIds[slot] >= 0) {
+                mTagIds[slot] = newIds[mTagIds[slot]];
+            }
+        }
+        mTagRebuildLimit = Math.max(MAX_TAGS, count * 2);
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % mLineCapacity);
+    }
+}
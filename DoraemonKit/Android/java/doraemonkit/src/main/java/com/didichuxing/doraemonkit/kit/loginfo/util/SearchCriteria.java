@@ -61,6 +61,22 @@ public class SearchCriteria {
 
     }
 
+    public int getPid() {
+        return pid;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getSearchText() {
+        return searchText;
+    }
+
+    public int getSearchTextAsInt() {
+        return searchTextAsInt;
+    }
+
     public boolean isEmpty() {
         return pid == -1 && TextUtils.isEmpty(tag) && TextUtils.isEmpty(searchText);
     }
@@ -0,0 +1,89 @@
+package com.didichuxing.doraemonkit.kit.methodtrace;
+
+/**
+ * ================================================
+ * 描    述：单个线程的采样调用树，节点为StackFrameTable中的函数id，只在采样线程中修改
+ * 每个节点记录经过该节点的采样数和停在该节点的采样数
+ * 修订历史：
+ * ================================================
+ */
+final class SampleCallTree {
+    /**
+     * 超过后新的调用路径不再展开，采样计入已有的最深节点
+     */
+    private static final int MAX_NODE_COUNT = 100000;
+
+    final String threadName;
+    final int threadIndex;
+    final Node root = new Node(-1);
+    private int mNodeCount;
+    private int mSampleCount;
+
+    SampleCallTree(String threadName, int threadIndex) {
+        this.threadName = threadName;
+        this.threadIndex = threadIndex;
+    }
+
+    /**
+     * @param methods 函数id，栈顶在前
+     */
+    void addSample(int[] methods, int count) {
+        mSampleCount++;
+        Node node = root;
+        node.total++;
+        for (int i = count - 1; i >= 0; i--) {
+            Node child = node.findChild(methods[i]);
+            if (child == null) {
+                if (mNodeCount >= MAX_NODE_COUNT) {
+                    break;
+                }
+                child = node.addChild(methods[i]);
+                mNodeCount++;
+            }
+            child.total++;
+            node = child;
+        }
+        node.self++;
+    }
+
+    int getSampleCount() {
+        return mSampleCount;
+    }
+
+    static final class Node {
+        final int methodId;
+        int total;
+        int self;
+        Node[] children;
+        int childCount;
+
+        Node(int methodId) {
+            this.methodId = methodId;
+        }
+
+        /**
+         * 同一层的函数通常不多，线性查找比哈希表更省内存
+         */
+        Node findChild(int methodId) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i].methodId == methodId) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(int methodId) {
+            if (children == null) {
+                children = new Node[2];
+            } else if (childCount == children.length) {
+                Node[] newChildren = new Node[childCount * 2];
+                System.arraycopy(children, 0, newChildren, 0, childCount);
+                children = newChildren;
+            }
+            Node child = new Node(methodId);
+            children[childCount++] = child;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.didichuxing.doraemonkit.kit.methodtrace;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.blankj.utilcode.util.FileIOUtils;
+import com.blankj.utilcode.util.PathUtils;
+import com.didichuxing.doraemonkit.util.LogHelper;
+import com.didichuxing.doraemonkit.util.StackFrameTable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ================================================
+ * 描    述：基于采样的函数耗时分析，不需要插件插桩，release包也可以使用
+ * 在单独的HandlerThread中按固定间隔获取指定线程的堆栈，帧通过StackFrameTable转成int id后合并到每个线程的调用树中
+ * 结果可以导出为火焰图使用的collapsed stack格式，或者chrome://tracing可以打开的json
+ * 在卡顿检测页面中开启和保存
+ * 修订历史：
+ * ================================================
+ */
+public class SamplingProfiler {
+    private static final String TAG = "SamplingProfiler";
+    public static final int DEFAULT_SAMPLE_INTERVAL = 10;
+    /**
+     * 按线程名前缀采样时，重新查找线程的间隔
+     */
+    private static final long THREAD_REFRESH_INTERVAL = 1000;
+
+    private static class Holder {
+        private static final SamplingProfiler INSTANCE = new SamplingProfiler();
+    }
+
+    private final Object mLock = new Object();
+    private HandlerThread mSampleThread;
+    private Handler mSampleHandler;
+    private volatile boolean mRunning;
+
+    private int mSampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    private String[] mThreadNamePrefixes = new String[0];
+    private final List<Thread> mThreads = new ArrayList<>();
+    private long mLastThreadRefreshTime;
+
+    /**
+     * key 线程id
+     */
+    private final Map<Long, SampleCallTree> mTrees = new LinkedHashMap<>();
+    private int[] mMethods = new int[128];
+    private int mSampleCount;
+    private long mStartTime;
+
+    public static SamplingProfiler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private SamplingProfiler() {
+    }
+
+    /**
+     * 以默认间隔采样主线程
+     */
+    public void start() {
+        start(DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * 开始采样，会清空上一次的结果
+     *
+     * @param sampleInterval     采样间隔 单位为ms
+     * @param threadNamePrefixes 需要采样的线程名前缀，为空时只采样主线程
+     */
+    public void start(int sampleInterval, String... threadNamePrefixes) {
+        if (mRunning) {
+            LogHelper.i(TAG, "start when profiler is running");
+            return;
+        }
+        synchronized (mLock) {
+            mSampleInterval = Math.max(1, sampleInterval);
+            mThreadNamePrefixes = threadNamePrefixes == null ? new String[0] : threadNamePrefixes;
+            mThreads.clear();
+            mTrees.clear();
+            mLastThreadRefreshTime = 0;
+            mSampleCount = 0;
+            mStartTime = System.currentTimeMillis();
+        }
+        if (mSampleThread == null) {
+            mSampleThread = new HandlerThread("dokit-sampling-profiler");
+            mSampleThread.start();
+            mSampleHandler = new Handler(mSampleThread.getLooper());
+        }
+        mRunning = true;
+        mSampleHandler.removeCallbacks(mSampleRunnable);
+        mSampleHandler.post(mSampleRunnable);
+    }
+
+    public void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mSampleHandler.removeCallbacks(mSampleRunnable);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    public int getSampleCount() {
+        synchronized (mLock) {
+            return mSampleCount;
+        }
+    }
+
+    private final Runnable mSampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mRunning) {
+                return;
+            }
+            long start = SystemClock.uptimeMillis();
+            try {
+                sample();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            //扣除采样本身的耗时，保持采样频率
+            long cost = SystemClock.uptimeMillis() - start;
+            mSampleHandler.postDelayed(this, Math.max(0, mSampleInterval - cost));
+        }
+    };
+
+    private void sample() {
+        synchronized (mLock) {
+            refreshThreads();
+            StackFrameTable frameTable = StackFrameTable.getInstance();
+            for (Thread thread : mThreads) {
+                if (!thread.isAlive()) {
+                    continue;
+                }
+                StackTraceElement[] stack = thread.getStackTrace();
+                if (stack.length == 0) {
+                    continue;
+                }
+                if (stack.length > mMethods.length) {
+                    mMethods = new int[stack.length * 2];
+                }
+                int count = frameTable.internMethods(stack, mMethods);
+                getTree(thread).addSample(mMethods, count);
+            }
+            mSampleCount++;
+        }
+    }
+
+    private void refreshThreads() {
+        if (mThreadNamePrefixes.length == 0) {
+            if (mThreads.isEmpty()) {
+                mThreads.add(Looper.getMainLooper().getThread());
+            }
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (mLastThreadRefreshTime != 0 && now - mLastThreadRefreshTime < THREAD_REFRESH_INTERVAL) {
+            return;
+        }
+        mLastThreadRefreshTime = now;
+        ThreadGroup group = Thread.currentThread().getThreadGroup();
+        while (group.getParent() != null) {
+            group = group.getParent();
+        }
+        Thread[] threads = new Thread[group.activeCount() * 2 + 1];
+        int count = group.enumerate(threads, true);
+        mThreads.clear();
+        for (int i = 0; i < count; i++) {
+            Thread thread = threads[i];
+            if (thread == mSampleThread) {
+                continue;
+            }
+            for (String prefix : mThreadNamePrefixes) {
+                if (thread.getName().startsWith(prefix)) {
+                    mThreads.add(thread);
+                    break;
+                }
+            }
+        }
+    }
+
+    private SampleCallTree getTree(Thread thread) {
+        SampleCallTree tree = mTrees.get(thread.getId());
+        if (tree == null) {
+            tree = new SampleCallTree(thread.getName(), mTrees.size() + 1);
+            mTrees.put(thread.getId(), tree);
+        }
+        return tree;
+    }
+
+    /**
+     * 火焰图使用的collapsed stack格式，每行为 线程名;函数;函数... 采样数
+     */
+    public String getCollapsedStacks() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (mLock) {
+            StackFrameTable frameTable = StackFrameTable.getInstance();
+            StringBuilder path = new StringBuilder();
+            for (SampleCallTree tree : mTrees.values()) {
+                path.setLength(0);
+                path.append(escapeFrame(tree.threadName));
+                collapse(tree.root, path, builder, frameTable);
+            }
+        }
+        return builder.toString();
+    }
+
+    private void collapse(SampleCallTree.Node node, StringBuilder path, StringBuilder out, StackFrameTable frameTable) {
+        int length = path.length();
+        if (node.methodId >= 0) {
+            path.append(';').append(escapeFrame(frameTable.getMethodName(node.methodId)));
+        }
+        if (node.self > 0) {
+            out.append(path).append(' ').append(node.self).append('\n');
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            collapse(node.children[i], path, out, frameTable);
+        }
+        path.setLength(length);
+    }
+
+    private static String escapeFrame(String frame) {
+        return frame.replace(';', '_').replace(' ', '_');
+    }
+
+    /**
+     * chrome://tracing 或 Perfetto 可以打开的json，每个线程的调用树按采样数展开为X事件
+     * 时间轴是按调用树合并后的时间，不是实际的执行顺序
+     */
+    public String getChromeTraceJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        synchronized (mLock) {
+            StackFrameTable frameTable = StackFrameTable.getInstance();
+            long intervalMicros = mSampleInterval * 1000L;
+            boolean first = true;
+            for (SampleCallTree tree : mTrees.values()) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                builder.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(tree.threadIndex)
+                        .append(",\"args\":{\"name\":\"").append(escapeJson(tree.threadName)).append("\"}}");
+                appendTraceEvents(tree.root, 0, intervalMicros, tree.threadIndex, builder, frameTable);
+            }
+        }
+        builder.append("]}");
+        return builder.toString();
+    }
+
+    private void appendTraceEvents(SampleCallTree.Node node, long startMicros, long intervalMicros, int tid,
+                                   StringBuilder out, StackFrameTable frameTable) {
+        long childStart = startMicros;
+        for (int i = 0; i < node.childCount; i++) {
+            SampleCallTree.Node child = node.children[i];
+            long duration = child.total * intervalMicros;
+            out.append(",{\"name\":\"").append(escapeJson(frameTable.getMethodName(child.methodId)))
+                    .append("\",\"cat\":\"sample\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(tid)
+                    .append(",\"ts\":").append(childStart)
+                    .append(",\"dur\":").append(duration)
+                    .append(",\"args\":{\"samples\":").append(child.total)
+                    .append(",\"self\":").append(child.self).append("}}");
+            appendTraceEvents(child, childStart, intervalMicros, tid, out, frameTable);
+            childStart += duration;
+        }
+    }
+
+    private static String escapeJson(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * 保存到 files/dokit/profiler 目录下，文件较大时不要在主线程调用
+     *
+     * @return 保存的文件，没有采样结果时为空
+     */
+    public List<File> save() {
+        List<File> files = new ArrayList<>();
+        long startTime;
+        synchronized (mLock) {
+            if (mSampleCount == 0) {
+                return files;
+            }
+            startTime = mStartTime;
+        }
+        String dir = PathUtils.getInternalAppFilesPath() + File.separator + "dokit" + File.separator + "profiler";
+        File collapsedFile = new File(dir, "profile_" + startTime + ".folded");
+        if (FileIOUtils.writeFileFromString(collapsedFile, getCollapsedStacks())) {
+            files.add(collapsedFile);
+        }
+        File traceFile = new File(dir, "profile_" + startTime + ".json");
+        if (FileIOUtils.writeFileFromString(traceFile, getChromeTraceJson())) {
+            files.add(traceFile);
+        }
+        return files;
+    }
+}
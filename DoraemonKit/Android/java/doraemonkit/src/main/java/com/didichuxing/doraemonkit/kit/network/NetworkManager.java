@@ -4,13 +4,15 @@ package com.didichuxing.doraemonkit.kit.network;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.blankj.utilcode.util.PathUtils;
 import com.didichuxing.doraemonkit.BuildConfig;
 import com.didichuxing.doraemonkit.kit.network.bean.NetworkRecord;
+import com.didichuxing.doraemonkit.kit.network.storage.BodySpillStore;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @desc: 提供网络抓包功能开启、关闭、数据统计功能的manager
@@ -77,26 +79,42 @@ public class NetworkManager {
     //public static final String APP_START_DATA_PICK_URL = "http://pre.dokit.cn/uploadAppData";
 
 
-    private static final int MAX_SIZE = 100;
+    /**
+     * 默认保留的抓包记录条数
+     */
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    /**
+     * 响应体抓取模式：在响应返回给业务方之前一次性读取完整body
+     */
+    public static final int CAPTURE_MODE_EAGER = 0;
+    /**
+     * 响应体抓取模式：业务方读取时旁路拷贝，读到结尾后异步写入记录
+     */
+    public static final int CAPTURE_MODE_STREAMING = 1;
+
+    /**
+     * 流式抓取时单条记录默认最多保存的响应体字节数
+     */
+    public static final long DEFAULT_MAX_CAPTURE_BODY_SIZE = 512 * 1024;
+
+    private static final String BODY_SPILL_FILE_NAME = "dokit_network_body.dat";
 
     private long mStartTime;
     private OnNetworkInfoUpdateListener mOnNetworkInfoUpdateListener;
 
-    private int mPostCount;
-    private int mGetCount;
-    private int mTotalCount;
+    private final AtomicInteger mPostCount = new AtomicInteger(0);
+    private final AtomicInteger mGetCount = new AtomicInteger(0);
+    private final AtomicInteger mTotalCount = new AtomicInteger(0);
+
+    private volatile int mCaptureMode = CAPTURE_MODE_EAGER;
+    private volatile long mMaxCaptureBodySize = DEFAULT_MAX_CAPTURE_BODY_SIZE;
 
     public NetworkManager() {
     }
 
     public NetworkRecord getRecord(int requestId) {
-        for (NetworkRecord record :
-                mRecords) {
-            if (record.mRequestId == requestId) {
-                return record;
-            }
-        }
-        return null;
+        return mRecords.get(requestId);
     }
 
 
@@ -108,30 +126,116 @@ public class NetworkManager {
     private AtomicBoolean mIsActive = new AtomicBoolean(false);
 
     /**
-     * 这个数据结构要求有序（方便移除最旧的数据），线程安全（网络请求是在子线程内执行，会在子线程内对数据进行查询插入删除操作），方便查找
-     * （需要根据requestId，找到对应的record），目前没找到同时满足三个条件的数据结构，暂时先保证前两者，因为限制了大小为MAX_SIZE，查找
-     * 的数据量不会很大，直接foreach
+     * 抓包记录保存在定长环形队列中：写入有序且自动淘汰最旧数据，子线程并发写入不需要全局锁，
+     * 并且可以根据requestId直接定位到对应的record
+     * 调整容量时替换为新队列，写入方写入后发现队列已经被替换时自己把记录移动到新队列
      */
-    private List<NetworkRecord> mRecords = Collections.synchronizedList(new ArrayList<NetworkRecord>());
+    private volatile NetworkRecordRing mRecords = new NetworkRecordRing(DEFAULT_MAX_SIZE);
 
     public static NetworkManager get() {
         return NetworkManager.Holder.INSTANCE;
     }
 
-    public void addRecord(int requestId, NetworkRecord record) {
-        if (mRecords.size() > MAX_SIZE) {
-            mRecords.remove(0);
+    /**
+     * 设置最多保留的抓包记录条数，已有记录中最新的部分会被保留
+     *
+     * @param maxSize 必须大于0
+     */
+    public synchronized void setMaxRecordSize(int maxSize) {
+        if (maxSize <= 0) {
+            return;
+        }
+        NetworkRecordRing oldRecords = mRecords;
+        if (maxSize == oldRecords.capacity()) {
+            return;
         }
+        NetworkRecordRing newRecords = new NetworkRecordRing(maxSize);
+        for (NetworkRecord record : oldRecords.snapshot()) {
+            newRecords.moveFrom(oldRecords, record);
+        }
+        mRecords = newRecords;
+        //复制之后、发布之前写入旧队列的记录，写入方可能已经读到了旧队列，不会自己移动
+        for (NetworkRecord record : oldRecords.snapshot()) {
+            newRecords.moveFrom(oldRecords, record);
+        }
+    }
+
+    public int getMaxRecordSize() {
+        return mRecords.capacity();
+    }
+
+    /**
+     * @param captureMode {@link #CAPTURE_MODE_EAGER} 或 {@link #CAPTURE_MODE_STREAMING}
+     */
+    public void setCaptureMode(int captureMode) {
+        mCaptureMode = captureMode;
+    }
+
+    public int getCaptureMode() {
+        return mCaptureMode;
+    }
+
+    /**
+     * 设置流式抓取时单条记录最多保存的响应体字节数，超出部分只统计大小
+     *
+     * @param maxCaptureBodySize 小于0表示不限制
+     */
+    public void setMaxCaptureBodySize(long maxCaptureBodySize) {
+        mMaxCaptureBodySize = maxCaptureBodySize;
+    }
+
+    public long getMaxCaptureBodySize() {
+        return mMaxCaptureBodySize;
+    }
+
+    /**
+     * 开启后请求/响应体写入磁盘上的内存映射文件，记录中只保留偏移和长度，适合配合{@link #setMaxRecordSize(int)}保留大量记录
+     *
+     * @param capacity 映射文件大小，写满后覆盖最旧的body
+     * @return 是否开启成功
+     */
+    public boolean enableBodySpill(long capacity) {
+        File file = new File(PathUtils.getInternalAppCachePath() + File.separator + BODY_SPILL_FILE_NAME);
+        return BodySpillStore.get().open(file, capacity);
+    }
+
+    /**
+     * 关闭后已经写入磁盘的body将无法再读取
+     */
+    public void disableBodySpill() {
+        BodySpillStore.get().close();
+    }
+
+    public boolean isBodySpillEnabled() {
+        return BodySpillStore.get().isOpen();
+    }
+
+    public void addRecord(int requestId, NetworkRecord record) {
         if (record.isPostRecord()) {
-            mPostCount++;
+            mPostCount.incrementAndGet();
         } else if (record.isGetRecord()) {
-            mGetCount++;
+            mGetCount.incrementAndGet();
+        }
+        mTotalCount.incrementAndGet();
+        NetworkRecordRing records = mRecords;
+        records.add(record);
+        //写入期间队列被替换，新队列可能没有复制到这条记录
+        NetworkRecordRing latest = mRecords;
+        while (latest != records) {
+            latest.moveFrom(records, record);
+            records = latest;
+            latest = mRecords;
         }
-        mTotalCount++;
-        mRecords.add(record);
         updateRecord(record, true);
     }
 
+    /**
+     * 修改记录的请求/响应大小，需要通过该方法修改以保证累计流量统计正确
+     */
+    public void updateRecordLength(NetworkRecord record, long requestLength, long responseLength) {
+        NetworkRecordRing.updateLength(record, requestLength, responseLength);
+    }
+
     public void updateRecord(final NetworkRecord record, final boolean add) {
         if (mOnNetworkInfoUpdateListener != null) {
             /**
@@ -168,8 +272,11 @@ public class NetworkManager {
         return get().mIsActive.get();
     }
 
+    /**
+     * @return 当前保留记录的快照，按请求先后排序
+     */
     public List<NetworkRecord> getRecords() {
-        return mRecords;
+        return mRecords.snapshot();
     }
 
     public void setOnNetworkInfoUpdateListener(OnNetworkInfoUpdateListener onNetworkInfoUpdateListener) {
@@ -185,40 +292,28 @@ public class NetworkManager {
     }
 
     public long getTotalRequestSize() {
-        long totalSize = 0;
-        for (NetworkRecord record : mRecords) {
-            totalSize += record.requestLength;
-        }
-        return totalSize;
+        return mRecords.getRequestBytes();
     }
 
 
     public long getTotalSize() {
-        long totalSize = 0;
-        for (NetworkRecord record : mRecords) {
-            totalSize += record.requestLength;
-            totalSize += record.responseLength;
-        }
-        return totalSize;
+        NetworkRecordRing records = mRecords;
+        return records.getRequestBytes() + records.getResponseBytes();
     }
 
     public long getTotalResponseSize() {
-        long totalSize = 0;
-        for (NetworkRecord record : mRecords) {
-            totalSize += record.responseLength;
-        }
-        return totalSize;
+        return mRecords.getResponseBytes();
     }
 
     public int getPostCount() {
-        return mPostCount;
+        return mPostCount.get();
     }
 
     public int getGetCount() {
-        return mGetCount;
+        return mGetCount.get();
     }
 
     public int getTotalCount() {
-        return mTotalCount;
+        return mTotalCount.get();
     }
 }
@@ -0,0 +1,153 @@
+package com.didichuxing.doraemonkit.kit.network;
+
+import com.didichuxing.doraemonkit.kit.network.bean.NetworkRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @desc: 定长环形队列，保存最近capacity条抓包记录
+ * 写入通过原子递增的序号占位，不需要全局锁，只在写入和淘汰的记录上同步以保证字节数统计一致；满了以后直接覆盖最旧的记录；同时维护一个以requestId为下标的直接映射索引，
+ * 查找时先走索引，索引被覆盖时再退化为遍历；请求/响应字节数随写入和淘汰实时累加，不需要每次重新求和
+ * 记录上保存所在的队列，调整容量时移动到新队列的记录不会再被旧队列淘汰或统计
+ */
+final class NetworkRecordRing {
+    private final int mCapacity;
+    private final AtomicReferenceArray<NetworkRecord> mSlots;
+    private final AtomicReferenceArray<NetworkRecord> mIndex;
+    private final int mIndexMask;
+    private final AtomicLong mNextSeq = new AtomicLong(0);
+
+    private final AtomicLong mRequestBytes = new AtomicLong(0);
+    private final AtomicLong mResponseBytes = new AtomicLong(0);
+
+    NetworkRecordRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        mCapacity = capacity;
+        mSlots = new AtomicReferenceArray<>(capacity);
+        //索引大小取不小于2倍容量的2的幂，requestId连续递增时基本不会发生冲突
+        int indexSize = Integer.highestOneBit(capacity) << 2;
+        mIndex = new AtomicReferenceArray<>(indexSize);
+        mIndexMask = indexSize - 1;
+    }
+
+    int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     * 写入一条记录，返回被淘汰的最旧记录（没有则返回null）
+     */
+    NetworkRecord add(NetworkRecord record) {
+        return add(null, record);
+    }
+
+    /**
+     * 记录仍在from中时移动到当前队列，已经被移动或淘汰时不处理
+     * 调整容量时复制旧记录，以及写入方发现队列已经被替换时调用
+     */
+    void moveFrom(NetworkRecordRing from, NetworkRecord record) {
+        add(from, record);
+    }
+
+    /**
+     * 淘汰的记录在释放record的锁之后再处理，同一时间只持有一把锁
+     *
+     * @param from 不为null时只写入仍在from中的记录
+     */
+    private NetworkRecord add(NetworkRecordRing from, NetworkRecord record) {
+        NetworkRecord evicted;
+        synchronized (record) {
+            if (from != null && record.mRing != from) {
+                return null;
+            }
+            long seq = mNextSeq.getAndIncrement();
+            record.mRing = this;
+            record.mRingSeq = seq;
+            evicted = mSlots.getAndSet((int) (seq % mCapacity), record);
+            mRequestBytes.addAndGet(record.requestLength);
+            mResponseBytes.addAndGet(record.responseLength);
+        }
+        mIndex.set(record.mRequestId & mIndexMask, record);
+        if (evicted != null) {
+            synchronized (evicted) {
+                //已经被移动到新队列的记录不再处理
+                if (evicted.mRing == this) {
+                    mRequestBytes.addAndGet(-evicted.requestLength);
+                    mResponseBytes.addAndGet(-evicted.responseLength);
+                    evicted.mRing = null;
+                    evicted.mRingSeq = -1;
+                }
+            }
+            mIndex.compareAndSet(evicted.mRequestId & mIndexMask, evicted, null);
+        }
+        return evicted;
+    }
+
+    NetworkRecord get(int requestId) {
+        NetworkRecord record = mIndex.get(requestId & mIndexMask);
+        if (record != null && record.mRequestId == requestId && isResident(record)) {
+            return record;
+        }
+        //索引槽位被其他请求占用，退化为遍历
+        for (int i = 0; i < mCapacity; i++) {
+            record = mSlots.get(i);
+            if (record != null && record.mRequestId == requestId) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 更新记录的请求/响应大小，若记录仍在队列内则同步修正所在队列的累计值
+     * 写入、淘汰和移动都在record上同步，累计值中总是包含仍在队列内的记录的当前大小
+     */
+    static void updateLength(NetworkRecord record, long requestLength, long responseLength) {
+        synchronized (record) {
+            long requestDiff = requestLength - record.requestLength;
+            long responseDiff = responseLength - record.responseLength;
+            record.requestLength = requestLength;
+            record.responseLength = responseLength;
+            NetworkRecordRing ring = (NetworkRecordRing) record.mRing;
+            if (ring != null) {
+                ring.mRequestBytes.addAndGet(requestDiff);
+                ring.mResponseBytes.addAndGet(responseDiff);
+            }
+        }
+    }
+
+    /**
+     * @return 按写入顺序（旧->新）排列的记录快照
+     */
+    List<NetworkRecord> snapshot() {
+        long end = mNextSeq.get();
+        long start = Math.max(0, end - mCapacity);
+        List<NetworkRecord> records = new ArrayList<>((int) (end - start));
+        for (long seq = start; seq < end; seq++) {
+            NetworkRecord record = mSlots.get((int) (seq % mCapacity));
+            //写入方已占位但尚未落槽时，槽内的旧记录还没有被淘汰，和累计值一致仍然返回
+            if (record != null && record.mRing == this) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    long getRequestBytes() {
+        return mRequestBytes.get();
+    }
+
+    long getResponseBytes() {
+        return mResponseBytes.get();
+    }
+
+    private boolean isResident(NetworkRecord record) {
+        long seq = record.mRingSeq;
+        return record.mRing == this && seq >= 0 && mSlots.get((int) (seq % mCapacity)) == record;
+    }
+}
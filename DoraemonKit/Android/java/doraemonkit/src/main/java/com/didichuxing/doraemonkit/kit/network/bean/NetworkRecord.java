@@ -2,6 +2,8 @@ package com.didichuxing.doraemonkit.kit.network.bean;
 
 import android.text.TextUtils;
 
+import com.didichuxing.doraemonkit.kit.network.storage.BodySpillStore;
+
 import java.io.Serializable;
 
 /**
@@ -23,6 +25,23 @@ public class NetworkRecord implements Serializable {
     public long startTime;
     public long endTime;
 
+    /**
+     * 写入BodySpillStore后请求体/响应体在文件中的位置和长度，-1表示没有写入磁盘，此时body保存在mRequest.postData/mResponseBody中
+     */
+    public long mRequestBodyOffset = -1;
+    public int mRequestBodyLength;
+    public long mResponseBodyOffset = -1;
+    public int mResponseBodyLength;
+
+    /**
+     * 在NetworkManager环形队列中的写入序号，-1表示不在队列中
+     */
+    public transient volatile long mRingSeq = -1;
+    /**
+     * 当前所在的NetworkManager环形队列，调整容量时记录会被移动到新队列，只有所在的队列才会修改记录和累计大小
+     */
+    public transient volatile Object mRing;
+
     public boolean filter(String text) {
         // 目前只支持url筛选，后续需要再扩展
         if (mRequest != null && mRequest.filter(text)) {
@@ -32,6 +51,33 @@ public class NetworkRecord implements Serializable {
     }
 
 
+    /**
+     * 请求体写入磁盘时会从文件中读取，不要在主线程调用
+     */
+    public String getRequestBody() {
+        if (mRequestBodyOffset >= 0) {
+            return BodySpillStore.get().readString(mRequestBodyOffset, mRequestBodyLength);
+        }
+        return mRequest != null ? mRequest.postData : null;
+    }
+
+    /**
+     * 响应体写入磁盘时会从文件中读取，不要在主线程调用
+     */
+    public String getResponseBody() {
+        if (mResponseBodyOffset >= 0) {
+            return BodySpillStore.get().readString(mResponseBodyOffset, mResponseBodyLength);
+        }
+        return mResponseBody;
+    }
+
+    /**
+     * @return body是否需要从磁盘读取
+     */
+    public boolean isBodySpilled() {
+        return mRequestBodyOffset >= 0 || mResponseBodyOffset >= 0;
+    }
+
     public boolean isGetRecord() {
         return mRequest != null && mRequest.method != null && TextUtils.equals(METHOD_GET, mRequest.method.toLowerCase());
     }
@@ -5,6 +5,7 @@ import androidx.annotation.Nullable;
 import android.text.TextUtils;
 
 import com.didichuxing.doraemonkit.kit.network.core.NetworkInterpreter;
+import com.didichuxing.doraemonkit.kit.network.utils.Utf8Charset;
 
 import java.util.List;
 
@@ -52,7 +53,7 @@ public class CommonInspectorRequest implements NetworkInterpreter.InspectorReque
         if (TextUtils.isEmpty(body)) {
             return null;
         }
-        return body.getBytes();
+        return body.getBytes(Utf8Charset.INSTANCE);
     }
 
     @Override
@@ -0,0 +1,92 @@
+package com.didichuxing.doraemonkit.kit.network.core;
+
+import android.text.TextUtils;
+
+import com.blankj.utilcode.util.ThreadUtils;
+import com.blankj.utilcode.util.ToastUtils;
+import com.didichuxing.doraemonkit.kit.network.NetworkManager;
+import com.didichuxing.doraemonkit.kit.network.room_db.DokitDbManager;
+import com.didichuxing.doraemonkit.kit.network.room_db.MockTemplateApiBean;
+import com.didichuxing.doraemonkit.kit.network.stream.PooledByteArrayOutputStream;
+import com.didichuxing.doraemonkit.util.LogHelper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * @desc: 模板规则的response旁路记录，业务方读完body后再异步保存到数据库，不提前阻塞读取网络数据
+ * body没有被完整记录（超出上限、缓冲池耗尽或者没读到结尾就关闭）时不保存，避免把不完整的数据当作模板
+ */
+public class MockTemplateResponseHandler implements ResponseHandler {
+    private static final String TAG = "MockTemplateResponseHandler";
+
+    /**
+     * 模板最多记录的body大小
+     */
+    public static final long MAX_TEMPLATE_BODY_SIZE = 1024 * 1024;
+
+    private final String mHost;
+    private final MockTemplateApiBean mMockApi;
+
+    public MockTemplateResponseHandler(String host, MockTemplateApiBean mockApi) {
+        mHost = host;
+        mMockApi = mockApi;
+    }
+
+    @Override
+    public void onEOF(ByteArrayOutputStream outputStream) {
+        if (outputStream == null) {
+            return;
+        }
+        if (outputStream instanceof PooledByteArrayOutputStream) {
+            PooledByteArrayOutputStream pooledStream = (PooledByteArrayOutputStream) outputStream;
+            if (pooledStream.isDropped() || pooledStream.isTruncated() || pooledStream.isIncomplete()) {
+                LogHelper.i(TAG, "template body is incomplete, skip===>" + mMockApi.getMockApiName());
+                return;
+            }
+        }
+        saveAsync(outputStream);
+    }
+
+    private void saveAsync(final ByteArrayOutputStream outputStream) {
+        final PooledByteArrayOutputStream pooledStream = outputStream instanceof PooledByteArrayOutputStream
+                ? (PooledByteArrayOutputStream) outputStream : null;
+        if (pooledStream != null) {
+            pooledStream.retain();
+        }
+        ThreadUtils.executeByIo(new ThreadUtils.SimpleTask<String>() {
+            @Override
+            public String doInBackground() throws Throwable {
+                try {
+                    return outputStream.toString("utf-8");
+                } finally {
+                    if (pooledStream != null) {
+                        pooledStream.release();
+                    }
+                }
+            }
+
+            @Override
+            public void onSuccess(String strResponseBody) {
+                if (TextUtils.isEmpty(strResponseBody)) {
+                    return;
+                }
+                if (mHost.equals(NetworkManager.MOCK_HOST)) {
+                    mMockApi.setResponseFrom(MockTemplateApiBean.RESPONSE_FROM_MOCK);
+                } else {
+                    mMockApi.setResponseFrom(MockTemplateApiBean.RESPONSE_FROM_REAL);
+                }
+                mMockApi.setStrResponse(strResponseBody);
+                //更新本地数据库
+                DokitDbManager.getInstance().updateTemplateApi(mMockApi);
+                //拦截命中提示
+                ToastUtils.showShort("模板别名:==" + mMockApi.getMockApiName() + "==已被保存");
+            }
+        });
+    }
+
+    @Override
+    public void onError(IOException e) {
+        LogHelper.i(TAG, "error===>" + e.getMessage());
+    }
+}
@@ -4,11 +4,14 @@ import android.text.TextUtils;
 
 import androidx.annotation.Nullable;
 
+import com.blankj.utilcode.util.ThreadUtils;
 import com.didichuxing.doraemonkit.kit.network.NetworkManager;
 import com.didichuxing.doraemonkit.kit.network.bean.NetworkRecord;
 import com.didichuxing.doraemonkit.kit.network.bean.Request;
 import com.didichuxing.doraemonkit.kit.network.bean.Response;
+import com.didichuxing.doraemonkit.kit.network.storage.BodySpillStore;
 import com.didichuxing.doraemonkit.kit.network.stream.InputStreamProxy;
+import com.didichuxing.doraemonkit.kit.network.stream.PooledByteArrayOutputStream;
 import com.didichuxing.doraemonkit.kit.network.utils.Utf8Charset;
 import com.didichuxing.doraemonkit.util.LogHelper;
 
@@ -28,6 +31,8 @@ public class NetworkInterpreter {
 
     public static final String TAG = "NetworkInterpreter";
 
+    private static final String TRUNCATED_BODY_FORMAT = "\n\n...(body truncated, %d/%d bytes captured)";
+
     private final AtomicInteger mNextRequestId = new AtomicInteger(0);
     private ResourceTypeHelper mResourceTypeHelper;
 
@@ -39,11 +44,46 @@ public class NetworkInterpreter {
         //LogHelper.i(TAG, "[httpExchangeFailed] requestId: " + requestId + " error: " + s);
     }
 
-    public void responseReadFinished(int requestId, NetworkRecord record, ByteArrayOutputStream outputStream) {
-        if (outputStream != null) {
-            record.responseLength = outputStream.size();
-            record.mResponseBody = outputStream.toString();
+    /**
+     * 响应体读取完毕，body的解码放到后台线程执行，不阻塞业务方的读取线程
+     */
+    public void responseReadFinished(int requestId, final NetworkRecord record, final ByteArrayOutputStream outputStream) {
+        if (outputStream instanceof PooledByteArrayOutputStream) {
+            final PooledByteArrayOutputStream pooledStream = (PooledByteArrayOutputStream) outputStream;
+            final long totalSize = pooledStream.getTotalSize();
+            NetworkManager.get().updateRecordLength(record, record.requestLength, totalSize);
+            if (pooledStream.isDropped()) {
+                //缓冲池耗尽，只保留header
+                return;
+            }
+            pooledStream.retain();
+            ThreadUtils.executeByCpu(new ThreadUtils.SimpleTask<Void>() {
+                @Override
+                public Void doInBackground() throws Throwable {
+                    try {
+                        if (!pooledStream.isTruncated() && spillResponseBody(record, pooledStream)) {
+                            return null;
+                        }
+                        String body = readStreamAsString(pooledStream);
+                        if (pooledStream.isTruncated()) {
+                            body += String.format(TRUNCATED_BODY_FORMAT, pooledStream.size(), totalSize);
+                        }
+                        setResponseBody(record, body);
+                        return null;
+                    } finally {
+                        pooledStream.release();
+                    }
+                }
+
+                @Override
+                public void onSuccess(Void result) {
+                    NetworkManager.get().updateRecord(record, false);
+                }
+            });
             //LogHelper.i(TAG, "[responseReadFinished] body: " + record.mResponseBody.toString().length());
+        } else if (outputStream != null) {
+            setResponseBody(record, readStreamAsString(outputStream));
+            NetworkManager.get().updateRecordLength(record, record.requestLength, outputStream.size());
         } else {
             //LogHelper.i(TAG, "[responseReadFinished] outputStream is null request id: " + requestId);
         }
@@ -76,6 +116,33 @@ public class NetworkInterpreter {
         return new InputStreamProxy(availableInputStream, responseHandler);
     }
 
+    /**
+     * 边读边记录响应体，业务方读取的同时旁路拷贝，不会提前把整个body读进内存
+     *
+     * @param contentEncoding 响应的Content-Encoding，gzip时记录解压后的内容
+     * @param maxCaptureBytes 单条记录最多保存的字节数，小于0表示不限制
+     */
+    public InputStream interpretResponseStream(
+            String contentType,
+            String contentEncoding,
+            @Nullable InputStream availableInputStream,
+            ResponseHandler responseHandler,
+            long maxCaptureBytes
+    ) {
+        if (availableInputStream == null) {
+            responseHandler.onEOF(null);
+            return null;
+        }
+        ResourceType resourceType = contentType != null
+                ? getResourceTypeHelper().determineResourceType(contentType)
+                : null;
+        if (resourceType != ResourceType.DOCUMENT && resourceType != ResourceType.XHR) {
+            responseHandler.onEOF(null);
+            return availableInputStream;
+        }
+        return new InputStreamProxy(availableInputStream, responseHandler, contentEncoding, maxCaptureBytes);
+    }
+
     public NetworkRecord createRecord(int requestId, String platform, NetworkInterpreter.InspectorRequest request) {
         NetworkRecord record = new NetworkRecord();
         record.mRequestId = requestId;
@@ -91,17 +158,18 @@ public class NetworkInterpreter {
         requestJSON.method = request.method();
         requestJSON.headers = formatHeadersAsString(request);
         requestJSON.encode = request.firstHeaderValue("Content-Encoding");
-        requestJSON.postData = readBodyAsString(request);
         record.mRequest = requestJSON;
+        byte[] body = readBody(request);
+        setRequestBody(record, body);
         record.startTime = System.currentTimeMillis();
-        record.requestLength = readBodyLength(request);
+        record.requestLength = readBodyLength(body);
         //Log.e(TAG, requestJSON.toString());
     }
 
     public void fetRequestBody(NetworkRecord record, byte[] request) {
         if (record.mRequest != null) {
-            record.mRequest.postData = readBodyAsString(request);
-            record.requestLength = readBodyLength(request);
+            setRequestBody(record, request);
+            NetworkManager.get().updateRecordLength(record, readBodyLength(request), record.responseLength);
             NetworkManager.get().updateRecord(record, false);
             //Log.e(TAG, record.mRequest.postData);
         }
@@ -109,11 +177,11 @@ public class NetworkInterpreter {
 
     public void fetchResponseBody(NetworkRecord record, String body) {
         if (TextUtils.isEmpty(body)) {
-            record.responseLength = 0;
-            record.mResponseBody = null;
+            setResponseBody(record, null);
+            NetworkManager.get().updateRecordLength(record, record.requestLength, 0);
         } else {
-            record.responseLength = body.getBytes().length;
-            record.mResponseBody = body;
+            setResponseBody(record, body);
+            NetworkManager.get().updateRecordLength(record, record.requestLength, body.getBytes(Utf8Charset.INSTANCE).length);
         }
     }
 
@@ -152,12 +220,63 @@ public class NetworkInterpreter {
         return builder.toString();
     }
 
-    private String readBodyAsString(NetworkInterpreter.InspectorRequest request) {
-        try {
-            byte[] body = request.body();
-            if (body != null) {
-                return new String(body, Utf8Charset.INSTANCE);
+    /**
+     * BodySpillStore打开时请求体直接以字节写入磁盘，只在记录中保留偏移和长度
+     */
+    private void setRequestBody(NetworkRecord record, byte[] body) {
+        BodySpillStore store = BodySpillStore.get();
+        if (body != null && store.isOpen()) {
+            long offset = store.append(body, 0, body.length);
+            if (offset >= 0) {
+                record.mRequestBodyOffset = offset;
+                record.mRequestBodyLength = body.length;
+                record.mRequest.postData = null;
+                return;
             }
+        }
+        record.mRequestBodyOffset = -1;
+        record.mRequest.postData = readBodyAsString(body);
+    }
+
+    private void setResponseBody(NetworkRecord record, String body) {
+        BodySpillStore store = BodySpillStore.get();
+        if (body != null && store.isOpen()) {
+            byte[] bytes = body.getBytes(Utf8Charset.INSTANCE);
+            long offset = store.append(bytes, 0, bytes.length);
+            if (offset >= 0) {
+                record.mResponseBodyOffset = offset;
+                record.mResponseBodyLength = bytes.length;
+                record.mResponseBody = null;
+                return;
+            }
+        }
+        record.mResponseBodyOffset = -1;
+        record.mResponseBody = body;
+    }
+
+    /**
+     * 直接把捕获的字节写入磁盘，不经过String
+     *
+     * @return BodySpillStore未打开或写入失败时返回false
+     */
+    private boolean spillResponseBody(NetworkRecord record, PooledByteArrayOutputStream stream) {
+        BodySpillStore store = BodySpillStore.get();
+        if (!store.isOpen()) {
+            return false;
+        }
+        long offset = store.append(stream);
+        if (offset < 0) {
+            return false;
+        }
+        record.mResponseBodyOffset = offset;
+        record.mResponseBodyLength = stream.size();
+        record.mResponseBody = null;
+        return true;
+    }
+
+    private byte[] readBody(NetworkInterpreter.InspectorRequest request) {
+        try {
+            return request.body();
         } catch (IOException | OutOfMemoryError e) {
         }
         return null;
@@ -173,15 +292,11 @@ public class NetworkInterpreter {
         return null;
     }
 
-    private long readBodyLength(NetworkInterpreter.InspectorRequest request) {
-        try {
-            byte[] body = request.body();
-            if (body != null) {
-                return body.length;
-            }
-        } catch (IOException | OutOfMemoryError e) {
-        }
-        return 0;
+    /**
+     * 与写入磁盘后{@link BodySpillStore#readString}的解码一致，统一按UTF-8解码，不使用平台默认编码
+     */
+    private String readStreamAsString(ByteArrayOutputStream outputStream) {
+        return new String(outputStream.toByteArray(), Utf8Charset.INSTANCE);
     }
 
     private long readBodyLength(byte[] body) {
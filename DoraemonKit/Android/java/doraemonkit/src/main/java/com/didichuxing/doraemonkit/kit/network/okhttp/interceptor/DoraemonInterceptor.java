@@ -108,12 +108,25 @@ public class DoraemonInterceptor implements Interceptor {
             responseStream = body.byteStream();
         }
 
-        responseStream = mNetworkInterpreter.interpretResponseStream(
-                contentType != null ? contentType.toString() : null,
-                responseStream,
-                new DefaultResponseHandler(mNetworkInterpreter, requestId, record));
-        record.mResponseBody = OkHttpResponseKt.bodyContent(response);
-        LogHelper.d("http-monitor", "response body >>>\n" + record.mResponseBody);
+        if (NetworkManager.get().getCaptureMode() == NetworkManager.CAPTURE_MODE_STREAMING) {
+            //业务方读取时旁路拷贝，不提前读取整个body
+            responseStream = mNetworkInterpreter.interpretResponseStream(
+                    contentType != null ? contentType.toString() : null,
+                    OkHttpResponseKt.encoding(response),
+                    responseStream,
+                    new DefaultResponseHandler(mNetworkInterpreter, requestId, record),
+                    NetworkManager.get().getMaxCaptureBodySize());
+        } else {
+            //body已经被完整读入并解码，不需要再包装一层InputStreamProxy重复拷贝
+            mNetworkInterpreter.fetchResponseBody(record, OkHttpResponseKt.bodyContent(response));
+            responseStream = null;
+            if (record.mResponseBodyOffset >= 0) {
+                //body已经写入磁盘，不在拦截线程读取文件
+                LogHelper.d("http-monitor", "response body spilled >>> offset=" + record.mResponseBodyOffset + " length=" + record.mResponseBodyLength);
+            } else {
+                LogHelper.d("http-monitor", "response body >>>\n" + record.mResponseBody);
+            }
+        }
 
         if (responseStream != null) {
             response = response.newBuilder()
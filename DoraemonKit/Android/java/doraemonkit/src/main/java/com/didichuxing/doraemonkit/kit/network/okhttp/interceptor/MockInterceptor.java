@@ -12,16 +12,18 @@ import com.didichuxing.doraemonkit.constant.DoKitConstant;
 import com.didichuxing.doraemonkit.kit.health.AppHealthInfoUtil;
 import com.didichuxing.doraemonkit.kit.health.model.AppHealthInfo;
 import com.didichuxing.doraemonkit.kit.network.NetworkManager;
+import com.didichuxing.doraemonkit.kit.network.core.MockTemplateResponseHandler;
+import com.didichuxing.doraemonkit.kit.network.okhttp.ForwardingResponseBody;
 import com.didichuxing.doraemonkit.kit.network.okhttp.InterceptorUtil;
 import com.didichuxing.doraemonkit.kit.network.room_db.DokitDbManager;
 import com.didichuxing.doraemonkit.kit.network.room_db.MockInterceptApiBean;
+import com.didichuxing.doraemonkit.kit.network.room_db.MockMatchRequest;
 import com.didichuxing.doraemonkit.kit.network.room_db.MockTemplateApiBean;
+import com.didichuxing.doraemonkit.kit.network.stream.InputStreamProxy;
 import com.didichuxing.doraemonkit.util.DokitUtil;
-import com.didichuxing.doraemonkit.util.LogHelper;
-
-import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.List;
@@ -45,114 +47,62 @@ public class MockInterceptor implements Interceptor {
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request oldRequest = chain.request();
-        Response oldResponse = chain.proceed(oldRequest);
-        String contentType = oldResponse.header("Content-Type");
-        //如果是图片则不进行拦截
-        if (InterceptorUtil.isImg(contentType)) {
-            return oldResponse;
-        }
         HttpUrl url = oldRequest.url();
         String host = url.host();
         //如果是mock平台的接口则不进行拦截
         if (host.equalsIgnoreCase(NetworkManager.MOCK_HOST)) {
-            return oldResponse;
+            return chain.proceed(oldRequest);
         }
 
         //path  /test/upload/img
         String path = URLDecoder.decode(url.encodedPath(), "utf-8");
         String queries = url.query();
-        String jsonQuery = transformQuery(queries);
-        String jsonRequestBody = transformRequestBody(oldRequest.body());
-        //LogHelper.i(TAG, "realJsonQuery===>" + jsonQuery);
-        //LogHelper.i(TAG, "realJsonRequestBody===>" + jsonRequestBody);
-        String interceptMatchedId = DokitDbManager.getInstance().isMockMatched(path, jsonQuery, jsonRequestBody, DokitDbManager.MOCK_API_INTERCEPT, DokitDbManager.FROM_SDK_OTHER);
-        String templateMatchedId = DokitDbManager.getInstance().isMockMatched(path, jsonQuery, jsonRequestBody, DokitDbManager.MOCK_API_TEMPLATE, DokitDbManager.FROM_SDK_OTHER);
+        //只根据请求决定是否命中规则，命中拦截规则时不再请求真实接口
+        MockMatchRequest matchRequest = createMatchRequest(path, queries, oldRequest.body());
+        String interceptMatchedId = DokitDbManager.getInstance().isMockMatched(matchRequest, DokitDbManager.MOCK_API_INTERCEPT, DokitDbManager.FROM_SDK_OTHER);
+        String templateMatchedId = DokitDbManager.getInstance().isMockMatched(matchRequest, DokitDbManager.MOCK_API_TEMPLATE, DokitDbManager.FROM_SDK_OTHER);
+
+        Response response = null;
+        //是否命中拦截规则
+        if (!TextUtils.isEmpty(interceptMatchedId)) {
+            response = matchedInterceptRule(url, path, interceptMatchedId, chain);
+        }
+        //没有命中或者mock接口没有数据时才请求真实接口
+        if (response == null) {
+            response = chain.proceed(oldRequest);
+        }
+
+        String contentType = response.header("Content-Type");
+        //如果是图片则不进行拦截
+        if (InterceptorUtil.isImg(contentType)) {
+            return response;
+        }
         try {
             //网络的健康体检功能 统计流量大小
             if (DoKitConstant.APP_HEALTH_RUNNING) {
-                addNetWokInfoInAppHealth(oldRequest, oldResponse);
-            }
-
-            //是否命中拦截规则
-            if (!TextUtils.isEmpty(interceptMatchedId)) {
-                return matchedInterceptRule(url, path, interceptMatchedId, templateMatchedId, oldRequest, oldResponse, chain);
+                addNetWokInfoInAppHealth(oldRequest, response);
             }
 
             //是否命中模板规则
-            matchedTemplateRule(oldResponse, path, templateMatchedId);
-
+            return matchedTemplateRule(response, path, templateMatchedId);
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return oldResponse;
+        return response;
     }
 
 
     /**
-     * 将request query 转化成json字符串
+     * 将request 转化成参与mock匹配的请求，body只读取一次
      *
      * @return
      */
-    private String transformQuery(String query) {
-        String json = "";
-        if (TextUtils.isEmpty(query)) {
-            return json;
-        }
-
-        try {
-            //query 类似 ccc=ccc&ddd=ddd
-            json = DokitUtil.param2Json(query);
-            //测试是否是json字符串
-            new JSONObject(json);
-        } catch (Exception e) {
-            //e.printStackTrace();
-            json = DokitDbManager.IS_NOT_NORMAL_QUERY_PARAMS;
-            //LogHelper.e(TAG, "===query json====>" + json);
-        }
-
-        return json;
-    }
-
-
-    /**
-     * 将request body 转化成json字符串
-     *
-     * @return
-     */
-    private String transformRequestBody(RequestBody requestBody) {
-        //form :"application/x-www-form-urlencoded"
-        //json :"application/json;"
-        String json = "";
+    private MockMatchRequest createMatchRequest(String path, String query, RequestBody requestBody) {
         if (requestBody == null || requestBody.contentType() == null) {
-            return json;
+            return MockMatchRequest.create(path, query, null, null);
         }
-
-        try {
-            String strBody = DokitUtil.requestBodyToString(requestBody);
-            if (TextUtils.isEmpty(strBody)) {
-                return "";
-            }
-
-            if (requestBody.contentType().toString().toLowerCase().contains(DokitDbManager.MEDIA_TYPE_FORM)) {
-                String form = DokitUtil.requestBodyToString(requestBody);
-                //类似 ccc=ccc&ddd=ddd
-                json = DokitUtil.param2Json(form);
-                //测试是否是json字符串
-                new JSONObject(json);
-            } else if (requestBody.contentType().toString().toLowerCase().contains(DokitDbManager.MEDIA_TYPE_JSON)) {
-                json = DokitUtil.requestBodyToString(requestBody);
-                //测试是否是json字符串
-                new JSONObject(json);
-            } else {
-                json = DokitDbManager.IS_NOT_NORMAL_BODY_PARAMS;
-            }
-        } catch (Exception e) {
-            //e.printStackTrace();
-            json = "";
-            LogHelper.e(TAG, "===body json====>" + json);
-        }
-
-        return json;
+        String strBody = DokitUtil.requestBodyToString(requestBody);
+        return MockMatchRequest.create(path, query, requestBody.contentType().toString(), strBody);
     }
 
 
@@ -217,31 +167,28 @@ public class MockInterceptor implements Interceptor {
 
     /**
      * 命中拦截规则
-     * 返回新的response
+     * 返回mock接口的response，返回null时由调用方请求真实接口
      *
      * @param interceptMatchedId
      * @return
      */
-    private Response matchedInterceptRule(HttpUrl url, String path, String interceptMatchedId, String templateMatchedId, Request oldRequest, Response oldResponse, Chain chain) throws Exception {
+    private Response matchedInterceptRule(HttpUrl url, String path, String interceptMatchedId, Chain chain) {
         //判断是否需要重定向数据接口
         //http https
         String scheme = url.scheme();
         MockInterceptApiBean interceptApiBean = (MockInterceptApiBean) DokitDbManager.getInstance().getInterceptApiByIdInMap(path, interceptMatchedId, DokitDbManager.FROM_SDK_OTHER);
         if (interceptApiBean == null) {
-            matchedTemplateRule(oldResponse, path, templateMatchedId);
-            return oldResponse;
+            return null;
         }
         String selectedSceneId = interceptApiBean.getSelectedSceneId();
         //开关是否被打开
         if (!interceptApiBean.isOpen()) {
-            matchedTemplateRule(oldResponse, path, templateMatchedId);
-            return oldResponse;
+            return null;
         }
 
         //判断是否有选中的场景
         if (TextUtils.isEmpty(selectedSceneId)) {
-            matchedTemplateRule(oldResponse, path, templateMatchedId);
-            return oldResponse;
+            return null;
         }
         StringBuilder sb = new StringBuilder();
         String newUrl;
@@ -256,89 +203,78 @@ public class MockInterceptor implements Interceptor {
         Request newRequest = new Request.Builder()
                 .method("GET", null)
                 .url(newUrl).build();
-        //需要提前关闭数据流 不然在某些场景下会报错
-        oldResponse.close();
-        Response newResponse = chain.proceed(newRequest);
+        Response newResponse;
+        try {
+            newResponse = chain.proceed(newRequest);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
         if (newResponse.code() == 200) {
             //拦截命中提示
             ToastUtils.showShort("接口别名:==" + interceptApiBean.getMockApiName() + "==已被拦截");
             //判断新的response是否有数据
             if (newResponseHasData(newResponse)) {
-                matchedTemplateRule(newResponse, path, templateMatchedId);
                 return newResponse;
-            } else {
-                matchedTemplateRule(oldResponse, path, templateMatchedId);
-                return oldResponse;
             }
-
         }
-        matchedTemplateRule(oldResponse, path, templateMatchedId);
-        return oldResponse;
+        //需要提前关闭数据流 不然再次请求真实接口时会报错
+        newResponse.close();
+        return null;
     }
 
     /**
      * 命中模板规则
-     * 保存正常接口的response到数据库
+     * 业务方读取response时旁路保存到数据库
      *
-     * @return
+     * @return 需要返回给业务方的response
      */
-    private void matchedTemplateRule(Response oldResponse, String path, String templateMatchedId) throws Exception {
+    private Response matchedTemplateRule(Response response, String path, String templateMatchedId) {
         //命中模板规则
         if (TextUtils.isEmpty(templateMatchedId)) {
-            return;
+            return response;
         }
         MockTemplateApiBean templateApiBean = (MockTemplateApiBean) DokitDbManager.getInstance().getTemplateApiByIdInMap(path, templateMatchedId, DokitDbManager.FROM_SDK_OTHER);
         if (templateApiBean == null) {
-            return;
+            return response;
         }
         //LogHelper.i("MOCK_TEMPLATE", "path=====>" + path + "isOpen===>" + templateApiBean.isOpen());
         if (templateApiBean.isOpen()) {
-            //保存老的response 数据到数据库
-            saveResponse2DB(oldResponse, templateApiBean);
+            //保存response 数据到数据库
+            return saveResponse2DB(response, templateApiBean);
         }
+        return response;
     }
 
 
     /**
      * 保存匹配中的数据到本地数据库
+     * 不再通过peekBody提前读取，body在业务方读取时旁路拷贝，读取完成后异步保存
      *
      * @param response
      * @param mockApi
-     * @throws Exception
+     * @return 替换了body的response
      */
-    private void saveResponse2DB(Response response, MockTemplateApiBean mockApi) throws Exception {
+    private Response saveResponse2DB(Response response, MockTemplateApiBean mockApi) {
         if (response.code() != 200) {
-            return;
+            return response;
         }
 
-        if (response.body() == null) {
-            return;
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
         }
 
-
         String host = response.request().url().host();
         //LogHelper.i(TAG, "host====>" + host);
-        //这里不能直接使用response.body().string()的方式输出日志
-        //因为response.body().string()之后，response中的流会被关闭，程序会报错，我们需要创建出一
-        //个新的response给应用层处理
-        ResponseBody responseBody = response.peekBody(1024 * 1024);
-
-        String strResponseBody = responseBody.string();
-        if (TextUtils.isEmpty(strResponseBody)) {
-            return;
-        }
-
-        if (host.equals(NetworkManager.MOCK_HOST)) {
-            mockApi.setResponseFrom(MockTemplateApiBean.RESPONSE_FROM_MOCK);
-        } else {
-            mockApi.setResponseFrom(MockTemplateApiBean.RESPONSE_FROM_REAL);
-        }
-
-        mockApi.setStrResponse(strResponseBody);
-        //更新本地数据库
-        DokitDbManager.getInstance().updateTemplateApi(mockApi);
-        //拦截命中提示
-        ToastUtils.showShort("模板别名:==" + mockApi.getMockApiName() + "==已被保存");
+        InputStream teeStream = new InputStreamProxy(
+                body.byteStream(),
+                new MockTemplateResponseHandler(host, mockApi),
+                null,
+                MockTemplateResponseHandler.MAX_TEMPLATE_BODY_SIZE);
+        return response.newBuilder()
+                .body(new ForwardingResponseBody(body, teeStream))
+                .build();
     }
 
     /**
@@ -346,7 +282,7 @@ public class MockInterceptor implements Interceptor {
      *
      * @return
      */
-    private boolean newResponseHasData(Response response) throws Exception {
+    private boolean newResponseHasData(Response response) {
         //这里不能直接使用response.body().string()的方式输出日志
         //因为response.body().string()之后，response中的流会被关闭，程序会报错，我们需要创建出一
         //个新的response给应用层处理
@@ -357,4 +293,4 @@ public class MockInterceptor implements Interceptor {
     }
 
 
-}
\ No newline at end of file
+}
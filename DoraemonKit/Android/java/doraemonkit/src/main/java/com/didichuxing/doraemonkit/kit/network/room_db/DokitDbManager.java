@@ -1,18 +1,9 @@
 package com.didichuxing.doraemonkit.kit.network.room_db;
 
-import android.text.TextUtils;
-
 import com.blankj.utilcode.util.ThreadUtils;
-import com.didichuxing.doraemonkit.constant.DoKitConstant;
 import com.didichuxing.doraemonkit.kit.core.DokitViewManager;
 import com.didichuxing.doraemonkit.util.LogHelper;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -35,24 +26,28 @@ public class DokitDbManager<T extends AbsMockApiBean> {
     private static final String TAG = "DokitDbManager";
 
     /**
-     * key 为path 可能存在path是一样的 所以value为List
+     * 拦截规则的匹配索引，规则重新加载后整体替换，匹配线程读取时不需要加锁
      */
-    private Map<String, List<T>> mGlobalInterceptApiMaps = new HashMap<>();
+    private volatile MockMatchIndex<T> mInterceptIndex = MockMatchIndex.empty();
     /**
-     * key 为path 可能存在path是一样的 所以value为List
+     * 模板规则的匹配索引
      */
-    private Map<String, List<T>> mGlobalTemplateApiMaps = new HashMap<>();
+    private volatile MockMatchIndex<T> mTemplateIndex = MockMatchIndex.empty();
 
 
     private MockTemplateApiBean mGlobalTemplateApiBean;
 
+    /**
+     * key 为path 可能存在path是一样的 所以value为List
+     * 返回的Map为只读
+     */
     public Map<String, List<T>> getGlobalInterceptApiMaps() {
-        return mGlobalInterceptApiMaps;
+        return mInterceptIndex.getApisByPath();
     }
 
 
     public Map<String, List<T>> getGlobalTemplateApiMaps() {
-        return mGlobalTemplateApiMaps;
+        return mTemplateIndex.getApisByPath();
     }
 
 
@@ -153,60 +148,16 @@ public class DokitDbManager<T extends AbsMockApiBean> {
      * 内存中中获取指定的mock intercept api
      */
     public T getInterceptApiByIdInMap(String path, String id, int fromSDK) {
-
-        if (mGlobalInterceptApiMaps == null) {
-            return null;
-        }
-        //先进行全匹配
-        List<T> mGlobalInterceptApis = mGlobalInterceptApiMaps.get(path);
-        if (mGlobalInterceptApis == null) {
-            path = DoKitConstant.dealDidiPlatformPath(path, fromSDK);
-            mGlobalInterceptApis = mGlobalInterceptApiMaps.get(path);
-        }
-
-        //再进行滴滴内部匹配
-        if (mGlobalInterceptApis == null) {
-            return null;
-        }
-
-        T selectedMockApi = null;
-        for (T mockApi : mGlobalInterceptApis) {
-            if (mockApi.getId().equals(id)) {
-                selectedMockApi = mockApi;
-                break;
-            }
-        }
-
-        return selectedMockApi;
+        //先进行全匹配 再进行滴滴内部匹配
+        return mInterceptIndex.findById(path, id, fromSDK);
     }
 
     /**
      * 内存中获取指定的 template api
      */
     public T getTemplateApiByIdInMap(String path, String id, int fromSDK) {
-        if (mGlobalTemplateApiMaps == null) {
-            return null;
-        }
-        List<T> mGlobalTemplateApis = mGlobalTemplateApiMaps.get(path);
-        //先进行全匹配
-        if (mGlobalTemplateApis == null) {
-            path = DoKitConstant.dealDidiPlatformPath(path, fromSDK);
-            mGlobalTemplateApis = mGlobalTemplateApiMaps.get(path);
-        }
-        //再进行滴滴内部匹配
-        if (mGlobalTemplateApis == null) {
-            return null;
-        }
-
-        T selectedMockApi = null;
-        for (T mockApi : mGlobalTemplateApis) {
-            if (mockApi.getId().equals(id)) {
-                selectedMockApi = mockApi;
-                break;
-            }
-        }
-
-        return selectedMockApi;
+        //先进行全匹配 再进行滴滴内部匹配
+        return mTemplateIndex.findById(path, id, fromSDK);
     }
 
     /**
@@ -311,12 +262,13 @@ public class DokitDbManager<T extends AbsMockApiBean> {
      * @return
      */
     public String getMockInterceptSelectedSceneIdByPathAndId(String path, String id) {
-        if (mGlobalInterceptApiMaps.get(path) == null) {
+        List<T> mockApis = mInterceptIndex.getApisByPath().get(path);
+        if (mockApis == null) {
             return "";
         }
 
         String selectedSceneId = "";
-        for (T mockApi : mGlobalInterceptApiMaps.get(path)) {
+        for (T mockApi : mockApis) {
             if (mockApi.getId().equals(id)) {
                 selectedSceneId = mockApi.getSelectedSceneId();
                 break;
@@ -357,16 +309,24 @@ public class DokitDbManager<T extends AbsMockApiBean> {
      * @return
      */
     public String isMockMatched(String path, String jsonQuery, String jsonRequestBody, int operateType, int fromSDK) {
-        //如果是非字符串类型的请求体 直接不匹配
-        if (!TextUtils.isEmpty(jsonQuery) && jsonQuery.equals(IS_NOT_NORMAL_QUERY_PARAMS)) {
-            return "";
-        }
+        return isMockMatched(new MockMatchRequest(path, jsonQuery, jsonRequestBody), operateType, fromSDK);
+    }
 
-        if (!TextUtils.isEmpty(jsonRequestBody) && jsonRequestBody.equals(IS_NOT_NORMAL_BODY_PARAMS)) {
+    /**
+     * 返回命中的id，同一个请求同时匹配拦截和模板时共用一个MockMatchRequest，query和body只解析一次
+     *
+     * @param request
+     * @param operateType 1:代表拦截 2：代表模板
+     * @param fromSDK
+     * @return
+     */
+    public String isMockMatched(MockMatchRequest request, int operateType, int fromSDK) {
+        //如果是非字符串类型的请求体 直接不匹配
+        if (!request.isMatchable()) {
             return "";
         }
 
-        T mockApi = mockMatched(path, jsonQuery, jsonRequestBody, operateType, fromSDK);
+        T mockApi = mockMatched(request, operateType, fromSDK);
         if (mockApi == null) {
             return "";
         }
@@ -377,184 +337,27 @@ public class DokitDbManager<T extends AbsMockApiBean> {
     /**
      * 通过path和query查询指定的对象
      *
-     * @param path
-     * @param jsonQuery
+     * @param request
      * @param operateType 1:代表拦截 2：代表模板
      * @return
      */
-    private T mockMatched(String path, String jsonQuery, String jsonRequestBody, int operateType, int fromSDK) {
-        List<T> mockApis = null;
+    private T mockMatched(MockMatchRequest request, int operateType, int fromSDK) {
         if (operateType == DokitDbManager.MOCK_API_INTERCEPT) {
-            //先进行一次全匹配
-            mockApis = mGlobalInterceptApiMaps.get(path);
-            //滴滴内部sdk匹配
-            if (mockApis == null) {
-                path = DoKitConstant.dealDidiPlatformPath(path, fromSDK);
-                mockApis = mGlobalInterceptApiMaps.get(path);
-            }
+            return mInterceptIndex.match(request, fromSDK);
         } else if (operateType == DokitDbManager.MOCK_API_TEMPLATE) {
-            //先进行一次全匹配
-            mockApis = mGlobalTemplateApiMaps.get(path);
-            //滴滴内部sdk匹配
-            if (mockApis == null) {
-                path = DoKitConstant.dealDidiPlatformPath(path, fromSDK);
-                mockApis = mGlobalTemplateApiMaps.get(path);
-            }
-        }
-        if (mockApis == null) {
-            return null;
-        }
-        T matchedMockApi = null;
-        for (T mockApi : mockApis) {
-            if (mockApi.isOpen() && queriesMatched(jsonQuery, mockApi) && bodyMatched(jsonRequestBody, mockApi)) {
-                matchedMockApi = mockApi;
-                break;
-            }
-
-        }
-
-        return matchedMockApi;
-    }
-
-    /**
-     * queries 是否命中
-     *
-     * @param jsonQuery
-     * @param mockApi
-     */
-    private boolean queriesMatched(String jsonQuery, T mockApi) {
-        //{}代表没有配置query
-        String mockQuery = mockApi.getQuery();
-        boolean mockQueryIsEmpty = TextUtils.isEmpty(mockQuery) || "{}".equals(mockQuery);
-        //平台没有配置query参数且本地也没有query参数
-        if (mockQueryIsEmpty && TextUtils.isEmpty(jsonQuery)) {
-            return true;
-        }
-
-        //本地有参数 平台没有配置参数
-        if (!TextUtils.isEmpty(jsonQuery) && mockQueryIsEmpty) {
-            return true;
-        }
-
-        //本地没有参数 但是平台有参数
-        if (TextUtils.isEmpty(jsonQuery) && !mockQueryIsEmpty) {
-            return false;
-        }
-
-        //匹配query
-        if (!TextUtils.isEmpty(jsonQuery) && !mockQueryIsEmpty) {
-            try {
-                JSONObject jsonQueryLocal = new JSONObject(jsonQuery);
-                JSONObject jsonQueryMock = new JSONObject(mockQuery);
-                List<String> keys = new ArrayList<>();
-                //通过平台端的来主动匹配
-                Iterator<String> iterator = jsonQueryMock.keys();
-                while (iterator.hasNext()) {
-                    keys.add(iterator.next());
-                }
-                int count = 0;
-
-                for (int index = 0; index < keys.size(); index++) {
-                    String key = keys.get(index);
-                    if (jsonQueryLocal.has(key) && jsonQueryMock.getString(key).equals(jsonQueryLocal.get(key))) {
-                        count++;
-                    }
-                }
-
-                if (count == keys.size()) {
-                    return true;
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
-                return false;
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * body 是否命中
-     *
-     * @param jsonRequestBody
-     * @param mockApi
-     */
-    private boolean bodyMatched(String jsonRequestBody, T mockApi) {
-        //{}代表没有配置query
-        String mockBody = mockApi.getBody();
-        boolean mockQueryIsEmpty = TextUtils.isEmpty(mockBody) || "{}".equals(mockBody);
-        //平台没有配置query参数且本地也没有query参数
-        if (mockQueryIsEmpty && TextUtils.isEmpty(jsonRequestBody)) {
-            return true;
-        }
-
-        //本地有参数 平台没有配置参数
-        if (!TextUtils.isEmpty(jsonRequestBody) && mockQueryIsEmpty) {
-            return true;
-        }
-
-        //本地没有参数 但是平台有参数
-        if (TextUtils.isEmpty(jsonRequestBody) && !mockQueryIsEmpty) {
-            return false;
-        }
-
-        //匹配body
-        if (!TextUtils.isEmpty(jsonRequestBody) && !mockQueryIsEmpty) {
-            try {
-                JSONObject jsonBodyLocal = new JSONObject(jsonRequestBody);
-                JSONObject jsonBodyMock = new JSONObject(mockBody);
-
-                List<String> keys = new ArrayList<>();
-                Iterator<String> iterator = jsonBodyMock.keys();
-                while (iterator.hasNext()) {
-                    keys.add(iterator.next());
-                }
-                int count = 0;
-                for (int index = 0; index < keys.size(); index++) {
-                    String key = keys.get(index);
-                    if (jsonBodyLocal.has(key) && jsonBodyMock.getString(key).equals(jsonBodyLocal.get(key))) {
-                        count++;
-                    }
-                }
-                if (count == keys.size()) {
-                    return true;
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
-                return false;
-            }
+            return mTemplateIndex.match(request, fromSDK);
         }
-
-        return false;
+        return null;
     }
 
 
     private void list2mapByIntercept(List<T> interceptApiBeans) {
-        mGlobalInterceptApiMaps.clear();
-        for (T mockApi : interceptApiBeans) {
-            if (mGlobalInterceptApiMaps.get(mockApi.getPath()) == null) {
-                List<T> mockInterceptApiBeans = new ArrayList<>();
-                mockInterceptApiBeans.add(mockApi);
-                mGlobalInterceptApiMaps.put(mockApi.getPath(), mockInterceptApiBeans);
-            } else {
-                mGlobalInterceptApiMaps.get(mockApi.getPath()).add(mockApi);
-            }
-
-        }
+        mInterceptIndex = MockMatchIndex.build(interceptApiBeans);
     }
 
 
     private void list2mapByTemplate(List<T> templateApiBeans) {
-        mGlobalTemplateApiMaps.clear();
-        for (T mockApi : templateApiBeans) {
-            if (mGlobalTemplateApiMaps.get(mockApi.getPath()) == null) {
-                List<T> mockTemplateApiBeans = new ArrayList<>();
-                mockTemplateApiBeans.add(mockApi);
-                mGlobalTemplateApiMaps.put(mockApi.getPath(), mockTemplateApiBeans);
-            } else {
-                mGlobalTemplateApiMaps.get(mockApi.getPath()).add(mockApi);
-            }
-        }
+        mTemplateIndex = MockMatchIndex.build(templateApiBeans);
     }
 
 
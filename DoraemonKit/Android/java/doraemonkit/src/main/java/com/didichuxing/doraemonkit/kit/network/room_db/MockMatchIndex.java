@@ -0,0 +1,221 @@
+package com.didichuxing.doraemonkit.kit.network.room_db;
+
+import android.text.TextUtils;
+
+import com.didichuxing.doraemonkit.constant.DoKitConstant;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ================================================
+ * 描    述：mock规则的匹配索引，规则加载完成后一次性构建，构建完成后不再修改
+ * path直接作为hash key，规则配置的query和body在构建时预先解析成key/value数组，匹配时不再重复解析规则的json
+ * 修订历史：
+ * ================================================
+ */
+final class MockMatchIndex<T extends AbsMockApiBean> {
+    /**
+     * 滴滴内部path改写结果的缓存上限
+     */
+    private static final int MAX_REWRITTEN_PATH_CACHE = 256;
+
+    private static final MockMatchIndex EMPTY = new MockMatchIndex(Collections.emptyList());
+
+    private final Map<String, List<T>> mApisByPath;
+    private final Map<String, List<Entry<T>>> mEntriesByPath;
+    private final Map<String, String> mRewrittenPaths = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    static <T extends AbsMockApiBean> MockMatchIndex<T> empty() {
+        return (MockMatchIndex<T>) EMPTY;
+    }
+
+    static <T extends AbsMockApiBean> MockMatchIndex<T> build(List<T> mockApis) {
+        return new MockMatchIndex<>(mockApis);
+    }
+
+    private MockMatchIndex(List<T> mockApis) {
+        Map<String, List<T>> apisByPath = new HashMap<>();
+        Map<String, List<Entry<T>>> entriesByPath = new HashMap<>();
+        for (T mockApi : mockApis) {
+            String path = mockApi.getPath();
+            List<T> apis = apisByPath.get(path);
+            List<Entry<T>> entries = entriesByPath.get(path);
+            if (apis == null) {
+                apis = new ArrayList<>();
+                entries = new ArrayList<>();
+                apisByPath.put(path, apis);
+                entriesByPath.put(path, entries);
+            }
+            apis.add(mockApi);
+            entries.add(new Entry<>(mockApi));
+        }
+        for (Map.Entry<String, List<T>> entry : apisByPath.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        mApisByPath = Collections.unmodifiableMap(apisByPath);
+        mEntriesByPath = entriesByPath;
+    }
+
+    /**
+     * key 为path 可能存在path是一样的 所以value为List
+     */
+    Map<String, List<T>> getApisByPath() {
+        return mApisByPath;
+    }
+
+    /**
+     * 先进行全匹配，再进行滴滴内部path匹配
+     */
+    List<T> getApis(String path, int fromSDK) {
+        List<T> apis = mApisByPath.get(path);
+        if (apis == null) {
+            apis = mApisByPath.get(rewritePath(path, fromSDK));
+        }
+        return apis;
+    }
+
+    T findById(String path, String id, int fromSDK) {
+        List<T> apis = getApis(path, fromSDK);
+        if (apis == null) {
+            return null;
+        }
+        for (int i = 0; i < apis.size(); i++) {
+            T mockApi = apis.get(i);
+            if (mockApi.getId().equals(id)) {
+                return mockApi;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 第一个打开且query和body都命中的规则
+     */
+    T match(MockMatchRequest request, int fromSDK) {
+        String path = request.getPath();
+        List<Entry<T>> entries = mEntriesByPath.get(path);
+        if (entries == null) {
+            entries = mEntriesByPath.get(rewritePath(path, fromSDK));
+        }
+        if (entries == null) {
+            return null;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            Entry<T> entry = entries.get(i);
+            //开关状态可能在页面上被修改，每次都实时读取
+            if (entry.mMockApi.isOpen()
+                    && entry.mQuery.matches(request, false)
+                    && entry.mBody.matches(request, true)) {
+                return entry.mMockApi;
+            }
+        }
+        return null;
+    }
+
+    private String rewritePath(String path, int fromSDK) {
+        if (fromSDK == DokitDbManager.FROM_SDK_OTHER) {
+            return path;
+        }
+        String rewritten = mRewrittenPaths.get(path);
+        if (rewritten == null) {
+            rewritten = DoKitConstant.dealDidiPlatformPath(path, fromSDK);
+            if (mRewrittenPaths.size() >= MAX_REWRITTEN_PATH_CACHE) {
+                mRewrittenPaths.clear();
+            }
+            mRewrittenPaths.put(path, rewritten);
+        }
+        return rewritten;
+    }
+
+    private static final class Entry<T extends AbsMockApiBean> {
+        final T mMockApi;
+        final Constraints mQuery;
+        final Constraints mBody;
+
+        Entry(T mockApi) {
+            mMockApi = mockApi;
+            mQuery = Constraints.parse(mockApi.getQuery());
+            mBody = Constraints.parse(mockApi.getBody());
+        }
+    }
+
+    /**
+     * 平台端配置的query或body参数，所有key都存在且值相等才算命中
+     */
+    private static final class Constraints {
+        /**
+         * {}或者空代表没有配置参数
+         */
+        static final Constraints NONE = new Constraints(null, null);
+        /**
+         * 配置的参数不是合法的json，本地有参数时一律不命中
+         */
+        static final Constraints INVALID = new Constraints(null, null);
+
+        final String[] mKeys;
+        final String[] mValues;
+
+        private Constraints(String[] keys, String[] values) {
+            mKeys = keys;
+            mValues = values;
+        }
+
+        static Constraints parse(String json) {
+            if (TextUtils.isEmpty(json) || "{}".equals(json)) {
+                return NONE;
+            }
+            try {
+                JSONObject jsonObject = new JSONObject(json);
+                String[] keys = new String[jsonObject.length()];
+                String[] values = new String[keys.length];
+                Iterator<String> iterator = jsonObject.keys();
+                int index = 0;
+                while (iterator.hasNext() && index < keys.length) {
+                    String key = iterator.next();
+                    keys[index] = key;
+                    values[index] = jsonObject.getString(key);
+                    index++;
+                }
+                return new Constraints(keys, values);
+            } catch (JSONException e) {
+                return INVALID;
+            }
+        }
+
+        /**
+         * @param isBody 是否匹配body
+         */
+        boolean matches(MockMatchRequest request, boolean isBody) {
+            //平台没有配置参数
+            if (this == NONE) {
+                return true;
+            }
+            //本地没有参数 但是平台有参数
+            boolean hasLocal = isBody ? request.hasBody() : request.hasQuery();
+            if (!hasLocal || this == INVALID) {
+                return false;
+            }
+            JSONObject local = isBody ? request.getBody() : request.getQuery();
+            if (local == null) {
+                return false;
+            }
+            //通过平台端的来主动匹配，和JSONObject.getString(key).equals(local.get(key))语义一致
+            for (int i = 0; i < mKeys.length; i++) {
+                if (!mValues[i].equals(local.opt(mKeys[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.didichuxing.doraemonkit.kit.network.room_db;
+
+import android.text.TextUtils;
+
+import com.didichuxing.doraemonkit.util.DokitUtil;
+import com.didichuxing.doraemonkit.util.LogHelper;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * ================================================
+ * 描    述：参与mock匹配的请求信息，query和body的json只解析一次，拦截规则和模板规则的匹配共用
+ * okhttp、rpc、webview三种请求统一通过{@link #create(String, String, String, String)}生成，body只读取一次
+ * 修订历史：
+ * ================================================
+ */
+public class MockMatchRequest {
+    private static final String TAG = "MockMatchRequest";
+
+    private final String mPath;
+    private String mJsonQuery;
+    private String mJsonBody;
+
+    private boolean mQueryParsed;
+    private JSONObject mQuery;
+    private boolean mBodyParsed;
+    private JSONObject mBody;
+
+    /**
+     * @param path      url path
+     * @param jsonQuery query转换成的json字符串
+     * @param jsonBody  body转换成的json字符串
+     */
+    public MockMatchRequest(String path, String jsonQuery, String jsonBody) {
+        mPath = path;
+        mJsonQuery = jsonQuery;
+        mJsonBody = jsonBody;
+    }
+
+    /**
+     * 根据原始请求生成，form类型直接转换成JSONObject，json类型只解析一次，不再生成中间的json字符串
+     *
+     * @param path        url path
+     * @param query       url中的query 类似 ccc=ccc&ddd=ddd
+     * @param contentType body的Content-Type，为空时不匹配body
+     * @param body        body字符串
+     */
+    public static MockMatchRequest create(String path, String query, String contentType, String body) {
+        MockMatchRequest request = new MockMatchRequest(path, null, null);
+        request.canonicalizeQuery(query);
+        request.canonicalizeBody(contentType, body);
+        return request;
+    }
+
+    private void canonicalizeQuery(String query) {
+        mQueryParsed = true;
+        if (TextUtils.isEmpty(query)) {
+            mJsonQuery = "";
+            return;
+        }
+        try {
+            mQuery = DokitUtil.param2JsonObject(query);
+        } catch (Exception e) {
+            mJsonQuery = DokitDbManager.IS_NOT_NORMAL_QUERY_PARAMS;
+        }
+    }
+
+    private void canonicalizeBody(String contentType, String body) {
+        //form :"application/x-www-form-urlencoded"
+        //json :"application/json;"
+        mBodyParsed = true;
+        mJsonBody = "";
+        if (TextUtils.isEmpty(contentType) || TextUtils.isEmpty(body)) {
+            return;
+        }
+        String mediaType = contentType.toLowerCase();
+        try {
+            if (mediaType.contains(DokitDbManager.MEDIA_TYPE_FORM)) {
+                //类似 ccc=ccc&ddd=ddd
+                mBody = DokitUtil.param2JsonObject(body);
+                mJsonBody = null;
+            } else if (mediaType.contains(DokitDbManager.MEDIA_TYPE_JSON)) {
+                //类似 {"ccc":"ccc","ddd":"ddd"}
+                mBody = new JSONObject(body);
+                mJsonBody = body;
+            } else {
+                mJsonBody = DokitDbManager.IS_NOT_NORMAL_BODY_PARAMS;
+            }
+        } catch (Exception e) {
+            mBody = null;
+            mJsonBody = "";
+            LogHelper.e(TAG, "===body json====>" + e.getMessage());
+        }
+    }
+
+    public String getPath() {
+        return mPath;
+    }
+
+    /**
+     * @return query转换成的json字符串，由JSONObject生成时才序列化
+     */
+    public synchronized String getJsonQuery() {
+        if (mJsonQuery == null) {
+            mJsonQuery = mQuery == null ? "" : mQuery.toString();
+        }
+        return mJsonQuery;
+    }
+
+    /**
+     * @return body转换成的json字符串，由JSONObject生成时才序列化
+     */
+    public synchronized String getJsonBody() {
+        if (mJsonBody == null) {
+            mJsonBody = mBody == null ? "" : mBody.toString();
+        }
+        return mJsonBody;
+    }
+
+    synchronized boolean hasQuery() {
+        return mQuery != null || !TextUtils.isEmpty(mJsonQuery);
+    }
+
+    synchronized boolean hasBody() {
+        return mBody != null || !TextUtils.isEmpty(mJsonBody);
+    }
+
+    /**
+     * 非字符串类型的query或body不参与匹配
+     */
+    synchronized boolean isMatchable() {
+        if (DokitDbManager.IS_NOT_NORMAL_QUERY_PARAMS.equals(mJsonQuery)) {
+            return false;
+        }
+        return !DokitDbManager.IS_NOT_NORMAL_BODY_PARAMS.equals(mJsonBody);
+    }
+
+    /**
+     * @return 解析失败时返回null
+     */
+    synchronized JSONObject getQuery() {
+        if (!mQueryParsed) {
+            mQuery = parse(mJsonQuery);
+            mQueryParsed = true;
+        }
+        return mQuery;
+    }
+
+    /**
+     * @return 解析失败时返回null
+     */
+    synchronized JSONObject getBody() {
+        if (!mBodyParsed) {
+            mBody = parse(mJsonBody);
+            mBodyParsed = true;
+        }
+        return mBody;
+    }
+
+    private static JSONObject parse(String json) {
+        if (TextUtils.isEmpty(json)) {
+            return null;
+        }
+        try {
+            return new JSONObject(json);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.didichuxing.doraemonkit.kit.network.storage;
+
+import com.didichuxing.doraemonkit.kit.network.utils.Utf8Charset;
+import com.didichuxing.doraemonkit.util.LogHelper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * @desc: 抓包请求/响应体的磁盘存储，数据顺序追加写入一个固定大小的内存映射文件，写满后从头覆盖最旧的数据
+ * 内存中的NetworkRecord只保存body在文件中的偏移和长度，需要展示时再读取，避免大量body以String形式常驻堆内存
+ * 偏移量是单调递增的逻辑位置，重新打开也不归零；写入在锁内完成后才提交，读取时据此判断数据是否已写完、已被覆盖或者属于旧文件
+ */
+public final class BodySpillStore {
+    private static final String TAG = "BodySpillStore";
+
+    /**
+     * 默认映射文件大小
+     */
+    public static final long DEFAULT_CAPACITY = 64 * 1024 * 1024;
+
+    private static class Holder {
+        private static BodySpillStore INSTANCE = new BodySpillStore();
+    }
+
+    public static BodySpillStore get() {
+        return Holder.INSTANCE;
+    }
+
+    private RandomAccessFile mFile;
+    private volatile MappedByteBuffer mBuffer;
+    private volatile int mCapacity;
+    /**
+     * 下一次预留的逻辑位置，写入前推进，只增不减，重新打开文件也不会归零
+     */
+    private volatile long mReserveCursor;
+    /**
+     * 已经写完的逻辑位置，写入完成后才推进到mReserveCursor，读取方只能读到它之前的数据
+     */
+    private volatile long mCommitCursor;
+    /**
+     * 本次打开文件时的逻辑位置，之前写入的记录属于旧文件，全部失效
+     */
+    private volatile long mBaseCursor;
+
+    private BodySpillStore() {
+    }
+
+    /**
+     * 打开（或重新创建）映射文件，之前写入的数据全部失效
+     *
+     * @return 是否打开成功
+     */
+    public synchronized boolean open(File file, long capacity) {
+        close();
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            mCapacity = (int) Math.min(capacity, Integer.MAX_VALUE);
+            mFile = new RandomAccessFile(file, "rw");
+            mFile.setLength(mCapacity);
+            mBaseCursor = mReserveCursor;
+            mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mCapacity);
+            return true;
+        } catch (IOException e) {
+            LogHelper.e(TAG, "open spill file failed: " + e.getMessage());
+            close();
+            return false;
+        }
+    }
+
+    public synchronized void close() {
+        mBuffer = null;
+        //游标不归零，旧记录的偏移在重新打开后不会与新数据重合
+        mBaseCursor = mReserveCursor;
+        if (mFile != null) {
+            try {
+                mFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            mFile = null;
+        }
+    }
+
+    public boolean isOpen() {
+        return mBuffer != null;
+    }
+
+    /**
+     * 预留一段连续空间，剩余空间不足以连续写入时跳到文件开头
+     * 需要在锁内调用，写入完成后调用commit()
+     *
+     * @return 逻辑位置，无法写入时返回-1
+     */
+    private long reserve(int length) {
+        if (mBuffer == null || length > mCapacity) {
+            return -1;
+        }
+        long cursor = mReserveCursor;
+        int position = (int) ((cursor - mBaseCursor) % mCapacity);
+        if (position + length > mCapacity) {
+            cursor += mCapacity - position;
+        }
+        //先推进预留游标，读取方据此判断正在被覆盖的区域
+        mReserveCursor = cursor + length;
+        return cursor;
+    }
+
+    private void commit() {
+        mCommitCursor = mReserveCursor;
+    }
+
+    private int positionOf(long offset) {
+        return (int) ((offset - mBaseCursor) % mCapacity);
+    }
+
+    /**
+     * 不加锁，只读取volatile游标
+     */
+    private boolean isValid(long offset, int length) {
+        return mBuffer != null && offset >= mBaseCursor && offset + length <= mCommitCursor
+                && offset >= mReserveCursor - mCapacity;
+    }
+
+    /**
+     * @return 写入的逻辑位置，失败返回-1
+     */
+    public long append(String data) {
+        if (data == null) {
+            return -1;
+        }
+        byte[] bytes = data.getBytes(Utf8Charset.INSTANCE);
+        return append(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 写入在锁内完成，预留和提交的顺序与写入顺序一致
+     */
+    public synchronized long append(byte[] data, int off, int len) {
+        long offset = reserve(len);
+        if (offset < 0) {
+            return -1;
+        }
+        ByteBuffer target = mBuffer.duplicate();
+        target.position(positionOf(offset));
+        target.put(data, off, len);
+        commit();
+        return offset;
+    }
+
+    /**
+     * 直接把输出流中的内容写入映射文件，不生成中间数组
+     */
+    public synchronized long append(ByteArrayOutputStream stream) {
+        int length = stream.size();
+        long offset = reserve(length);
+        if (offset < 0) {
+            return -1;
+        }
+        final ByteBuffer target = mBuffer.duplicate();
+        target.position(positionOf(offset));
+        try {
+            stream.writeTo(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    target.put((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    target.put(b, off, len);
+                }
+            });
+        } catch (IOException | BufferOverflowException e) {
+            //预留的空间已经计入覆盖范围，只是这条记录不可用
+            commit();
+            return -1;
+        }
+        commit();
+        return offset;
+    }
+
+    /**
+     * @return 数据已被覆盖或存储未打开时返回null
+     */
+    public byte[] read(long offset, int length) {
+        MappedByteBuffer buffer = mBuffer;
+        if (buffer == null || !isValid(offset, length)) {
+            return null;
+        }
+        byte[] result = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        try {
+            source.position(positionOf(offset));
+            source.get(result, 0, length);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            //文件以不同大小重新打开，位置已经不属于这个映射
+            return null;
+        }
+        //读取过程中可能被新数据覆盖或者文件被重新打开，读完后再校验一次
+        if (!isValid(offset, length)) {
+            return null;
+        }
+        return result;
+    }
+
+    public String readString(long offset, int length) {
+        byte[] bytes = read(offset, length);
+        return bytes == null ? null : new String(bytes, Utf8Charset.INSTANCE);
+    }
+}
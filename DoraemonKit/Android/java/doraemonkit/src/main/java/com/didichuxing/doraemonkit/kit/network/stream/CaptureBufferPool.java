@@ -0,0 +1,238 @@
+package com.didichuxing.doraemonkit.kit.network.stream;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @desc: 抓包body使用的分段缓冲池，InputStreamProxy/OutputStreamProxy共用
+ * 缓冲区按大小分为三档，一条记录先用小段，不够时再申请更大的段，不需要像ByteArrayOutputStream那样反复扩容拷贝；
+ * 归还的段按档位缓存复用，所有记录正在使用的内存总量不超过上限，超出时申请失败，由调用方降级为只记录header
+ * 持有段的记录通过Lease(弱引用)登记，body没有读完也没有关闭就被GC回收时，在下次申请时把它占用的字节数从总量中扣除
+ */
+public final class CaptureBufferPool {
+    /**
+     * 各档位的段大小
+     */
+    static final int[] TIER_SIZES = {1024, 8 * 1024, 64 * 1024};
+    /**
+     * 各档位最多缓存的空闲段数量
+     */
+    private static final int[] TIER_MAX_POOLED = {64, 32, 16};
+
+    /**
+     * 默认所有记录正在使用的缓冲区总量上限
+     */
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    private static class Holder {
+        private static CaptureBufferPool INSTANCE = new CaptureBufferPool();
+    }
+
+    public static CaptureBufferPool get() {
+        return Holder.INSTANCE;
+    }
+
+    private final byte[][][] mFreeSegments = new byte[TIER_SIZES.length][][];
+    private final int[] mFreeCounts = new int[TIER_SIZES.length];
+
+    private volatile long mMaxBytes = DEFAULT_MAX_BYTES;
+    private final AtomicLong mBytesInUse = new AtomicLong(0);
+    private final AtomicLong mPeakBytesInUse = new AtomicLong(0);
+
+    private final AtomicLong mAllocateCount = new AtomicLong(0);
+    private final AtomicLong mReuseCount = new AtomicLong(0);
+    private final AtomicLong mExhaustedCount = new AtomicLong(0);
+    private final AtomicLong mReclaimedBytes = new AtomicLong(0);
+
+    private final ReferenceQueue<Object> mLeaseQueue = new ReferenceQueue<>();
+    /**
+     * 保证Lease在持有者被回收之前不会先被回收
+     */
+    private final Set<Lease> mLeases = Collections.newSetFromMap(new ConcurrentHashMap<Lease, Boolean>());
+
+    /**
+     * 记录一个持有者当前占用的字节数，持有者被GC回收后进入mLeaseQueue
+     */
+    static final class Lease extends WeakReference<Object> {
+        /**
+         * 只在持有者的锁内修改
+         */
+        private volatile long mBytes;
+
+        private Lease(Object owner, ReferenceQueue<Object> queue) {
+            super(owner, queue);
+        }
+    }
+
+    private CaptureBufferPool() {
+        for (int i = 0; i < TIER_SIZES.length; i++) {
+            mFreeSegments[i] = new byte[TIER_MAX_POOLED[i]][];
+        }
+    }
+
+    /**
+     * 一条记录的第index个段应该使用的档位
+     */
+    static int tierOf(int index) {
+        return Math.min(index, TIER_SIZES.length - 1);
+    }
+
+    /**
+     * 持有者申请第一个段之前调用
+     */
+    Lease newLease(Object owner) {
+        Lease lease = new Lease(owner, mLeaseQueue);
+        mLeases.add(lease);
+        return lease;
+    }
+
+    /**
+     * 持有者归还了全部段，不再需要回收
+     */
+    void endLease(Lease lease) {
+        mLeases.remove(lease);
+        lease.clear();
+    }
+
+    /**
+     * 扣除已经被GC回收但没有归还的段
+     */
+    private void reclaim() {
+        Reference<?> ref;
+        while ((ref = mLeaseQueue.poll()) != null) {
+            Lease lease = (Lease) ref;
+            if (mLeases.remove(lease) && lease.mBytes > 0) {
+                mBytesInUse.addAndGet(-lease.mBytes);
+                mReclaimedBytes.addAndGet(lease.mBytes);
+            }
+        }
+    }
+
+    /**
+     * 申请一个指定档位的段
+     *
+     * @return 超出总量上限时返回null
+     */
+    byte[] acquire(int tier, Lease lease) {
+        reclaim();
+        int size = TIER_SIZES[tier];
+        long inUse = mBytesInUse.addAndGet(size);
+        if (inUse > mMaxBytes) {
+            mBytesInUse.addAndGet(-size);
+            mExhaustedCount.incrementAndGet();
+            return null;
+        }
+        updatePeak(inUse);
+        lease.mBytes += size;
+        byte[] segment = null;
+        byte[][] freeSegments = mFreeSegments[tier];
+        synchronized (freeSegments) {
+            int count = mFreeCounts[tier];
+            if (count > 0) {
+                segment = freeSegments[--count];
+                freeSegments[count] = null;
+                mFreeCounts[tier] = count;
+            }
+        }
+        if (segment != null) {
+            mReuseCount.incrementAndGet();
+            return segment;
+        }
+        mAllocateCount.incrementAndGet();
+        return new byte[size];
+    }
+
+    /**
+     * 归还一个段，对应档位缓存已满时直接丢弃交给GC
+     */
+    void release(byte[] segment, Lease lease) {
+        int tier = tierOfSize(segment.length);
+        if (tier < 0) {
+            return;
+        }
+        lease.mBytes -= segment.length;
+        mBytesInUse.addAndGet(-segment.length);
+        byte[][] freeSegments = mFreeSegments[tier];
+        synchronized (freeSegments) {
+            int count = mFreeCounts[tier];
+            if (count < freeSegments.length) {
+                freeSegments[count] = segment;
+                mFreeCounts[tier] = count + 1;
+            }
+        }
+    }
+
+    private static int tierOfSize(int size) {
+        for (int i = 0; i < TIER_SIZES.length; i++) {
+            if (TIER_SIZES[i] == size) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void updatePeak(long inUse) {
+        long peak;
+        do {
+            peak = mPeakBytesInUse.get();
+            if (inUse <= peak) {
+                return;
+            }
+        } while (!mPeakBytesInUse.compareAndSet(peak, inUse));
+    }
+
+    /**
+     * 设置所有记录正在使用的缓冲区总量上限
+     */
+    public void setMaxBytes(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /**
+     * @return 正在被记录使用的字节数
+     */
+    public long getBytesInUse() {
+        return mBytesInUse.get();
+    }
+
+    public long getPeakBytesInUse() {
+        return mPeakBytesInUse.get();
+    }
+
+    /**
+     * @return 新分配的段数量，稳定运行后应当基本不再增长
+     */
+    public long getAllocateCount() {
+        return mAllocateCount.get();
+    }
+
+    /**
+     * @return 从缓存中复用的段数量
+     */
+    public long getReuseCount() {
+        return mReuseCount.get();
+    }
+
+    /**
+     * @return 因超出总量上限而申请失败的次数
+     */
+    public long getExhaustedCount() {
+        return mExhaustedCount.get();
+    }
+
+    /**
+     * @return 没有归还就被GC回收、由缓冲池扣除的字节数
+     */
+    public long getReclaimedBytes() {
+        return mReclaimedBytes.get();
+    }
+}
@@ -26,7 +26,8 @@ public class HttpOutputStreamProxy extends OutputStreamProxy {
     @Override
     protected  void onStreamComplete() throws IOException {
         NetworkRecord record = NetworkManager.get().getRecord(mRequestId);
-        if (record != null && record.mRequest != null) {
+        //缓冲池耗尽时只记录header
+        if (record != null && record.mRequest != null && !mOutputStream.isDropped()) {
             RequestBodyHelper requestBodyHelper = new RequestBodyHelper();
             try {
                 OutputStream out = requestBodyHelper.createBodySink(record.mRequest.encode);
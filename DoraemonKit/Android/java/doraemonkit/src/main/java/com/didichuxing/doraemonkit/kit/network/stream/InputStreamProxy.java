@@ -11,10 +11,10 @@ package com.didichuxing.doraemonkit.kit.network.stream;
 
 import com.didichuxing.doraemonkit.kit.network.core.ResponseHandler;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 public final class InputStreamProxy extends FilterInputStream {
 
@@ -22,10 +22,21 @@ public final class InputStreamProxy extends FilterInputStream {
 
     private static final int BUFFER_SIZE = 1024;
 
-    private final ByteArrayOutputStream mOutputStream = new ByteArrayOutputStream();
+    private static final String GZIP_ENCODING = "gzip";
+
+    private final PooledByteArrayOutputStream mOutputStream;
+    /**
+     * 实际写入的目标，gzip编码时为边读边解压的包装流
+     */
+    private final OutputStream mCaptureStream;
     private final ResponseHandler mResponseHandler;
 
     private boolean mClosed;
+    private boolean mEOFNotified;
+    /**
+     * 是否真正读到了结尾，没读到结尾就close时记录的只是部分内容
+     */
+    private boolean mReachedEOF;
 
     private byte[] mSkipBuffer;
 
@@ -38,18 +49,61 @@ public final class InputStreamProxy extends FilterInputStream {
             InputStream inputStream,
             ResponseHandler responseHandler) {
         super(inputStream);
+        mOutputStream = new PooledByteArrayOutputStream();
+        mCaptureStream = mOutputStream;
+        mResponseHandler = responseHandler;
+        mClosed = false;
+    }
+
+    /**
+     * 边读边记录的有界模式：最多记录maxCaptureBytes字节（解压后），超出部分只计数不保存
+     *
+     * @param contentEncoding 响应的Content-Encoding，gzip时会在记录的同时逐块解压
+     * @param maxCaptureBytes 单条记录最多保存的字节数，小于0表示不限制
+     */
+    public InputStreamProxy(
+            InputStream inputStream,
+            ResponseHandler responseHandler,
+            String contentEncoding,
+            long maxCaptureBytes) {
+        super(inputStream);
+        PooledByteArrayOutputStream outputStream = new PooledByteArrayOutputStream(maxCaptureBytes);
+        mOutputStream = outputStream;
+        mCaptureStream = GZIP_ENCODING.equalsIgnoreCase(contentEncoding)
+                ? new StreamingGunzipOutputStream(outputStream)
+                : outputStream;
         mResponseHandler = responseHandler;
         mClosed = false;
     }
 
     private synchronized int checkEOF(int n) {
         if (n == -1) {
+            mReachedEOF = true;
+            notifyEOF();
+        }
+        return n;
+    }
+
+    /**
+     * 读到结尾或者提前关闭时都只回调一次，提前关闭时回调的是已经读到的部分，并标记为不完整
+     * 回调结束后释放自身持有的缓冲区引用，需要异步读取内容的ResponseHandler应当在回调内retain()
+     */
+    private synchronized void notifyEOF() {
+        if (mEOFNotified) {
+            return;
+        }
+        mEOFNotified = true;
+        closeOutputStreamQuietly();
+        if (!mReachedEOF) {
+            mOutputStream.markIncomplete();
+        }
+        try {
             if (mResponseHandler != null) {
                 mResponseHandler.onEOF(mOutputStream);
             }
-            closeOutputStreamQuietly();
+        } finally {
+            mOutputStream.release();
         }
-        return n;
     }
 
     @Override
@@ -126,13 +180,13 @@ public final class InputStreamProxy extends FilterInputStream {
     @Override
     public void close() throws IOException {
         super.close();
-        closeOutputStreamQuietly();
+        notifyEOF();
     }
 
     private synchronized void closeOutputStreamQuietly() {
         if (!mClosed) {
             try {
-                mOutputStream.close();
+                mCaptureStream.close();
             } catch (IOException e) {
             } finally {
                 mClosed = true;
@@ -151,15 +205,22 @@ public final class InputStreamProxy extends FilterInputStream {
         if (mClosed) {
             return;
         }
-        mOutputStream.write(oneByte);
+        try {
+            mCaptureStream.write(oneByte);
+        } catch (IOException e) {
+            closeOutputStreamQuietly();
+        }
     }
 
     private synchronized void writeToOutputStream(byte[] b, int offset, int count) {
         if (mClosed) {
             return;
         }
-
-        mOutputStream.write(b, offset, count);
+        try {
+            mCaptureStream.write(b, offset, count);
+        } catch (IOException e) {
+            closeOutputStreamQuietly();
+        }
     }
 
 }
@@ -3,16 +3,15 @@ package com.didichuxing.doraemonkit.kit.network.stream;
 
 import androidx.annotation.NonNull;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
 /**
- * @desc: OutputStream的包装类，在写入时记录写入的内容
+ * @desc: OutputStream的包装类，在写入时记录写入的内容，记录使用CaptureBufferPool中的分段缓冲区，关闭时归还
  */
 public abstract class OutputStreamProxy extends FilterOutputStream {
-    protected final ByteArrayOutputStream mOutputStream = new ByteArrayOutputStream();
+    protected final PooledByteArrayOutputStream mOutputStream = new PooledByteArrayOutputStream();
 
 
     public OutputStreamProxy(@NonNull OutputStream out) {
@@ -29,13 +28,18 @@ public abstract class OutputStreamProxy extends FilterOutputStream {
 
     @Override
     public void write(@NonNull byte[] b, int off, int len) throws IOException {
-        super.write(b, off, len);
+        //FilterOutputStream默认实现是逐字节写入，这里直接整块写给下游
+        out.write(b, off, len);
         mOutputStream.write(b, off, len);
     }
 
 
     @Override
     public void close() throws IOException {
-        super.close();
+        try {
+            super.close();
+        } finally {
+            mOutputStream.release();
+        }
     }
 }
@@ -0,0 +1,229 @@
+package com.didichuxing.doraemonkit.kit.network.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * @desc: 由CaptureBufferPool分段存储的ByteArrayOutputStream
+ * 可以设置最多保存的字节数，超出部分只计数不保存；缓冲池耗尽时丢弃已保存的内容，只保留总字节数（即降级为只记录header）
+ * 使用引用计数管理段的归还，创建时计数为1，异步使用方需要先retain()，用完后release()
+ * 没有release()就被GC回收时，占用的额度由CaptureBufferPool在之后的申请中扣除
+ */
+public class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+    private static final int INITIAL_SEGMENT_SLOTS = 4;
+
+    private final CaptureBufferPool mPool = CaptureBufferPool.get();
+    private final long mMaxSize;
+
+    private CaptureBufferPool.Lease mLease;
+    private byte[][] mSegments = new byte[INITIAL_SEGMENT_SLOTS][];
+    private int mSegmentCount;
+    /**
+     * 当前段已写入的字节数
+     */
+    private int mSegmentPos;
+    private int mSize;
+    private long mTotalSize;
+    private boolean mDropped;
+    private boolean mIncomplete;
+    private int mRefCount = 1;
+
+    public PooledByteArrayOutputStream() {
+        this(-1);
+    }
+
+    /**
+     * @param maxSize 最多保存的字节数，小于0表示不限制
+     */
+    public PooledByteArrayOutputStream(long maxSize) {
+        super(0);
+        mMaxSize = maxSize;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        mTotalSize++;
+        if (!isWritable() || (mMaxSize >= 0 && mSize >= mMaxSize)) {
+            return;
+        }
+        if (!ensureSegment()) {
+            return;
+        }
+        mSegments[mSegmentCount - 1][mSegmentPos++] = (byte) b;
+        mSize++;
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        mTotalSize += len;
+        if (!isWritable()) {
+            return;
+        }
+        if (mMaxSize >= 0) {
+            len = (int) Math.min(len, mMaxSize - mSize);
+        }
+        while (len > 0) {
+            if (!ensureSegment()) {
+                return;
+            }
+            byte[] segment = mSegments[mSegmentCount - 1];
+            int n = Math.min(len, segment.length - mSegmentPos);
+            System.arraycopy(b, off, segment, mSegmentPos, n);
+            mSegmentPos += n;
+            mSize += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private boolean isWritable() {
+        return !mDropped && mRefCount > 0;
+    }
+
+    /**
+     * 保证当前段还有剩余空间，申请失败时降级
+     */
+    private boolean ensureSegment() {
+        if (mSegmentCount > 0 && mSegmentPos < mSegments[mSegmentCount - 1].length) {
+            return true;
+        }
+        if (mLease == null) {
+            mLease = mPool.newLease(this);
+        }
+        byte[] segment = mPool.acquire(CaptureBufferPool.tierOf(mSegmentCount), mLease);
+        if (segment == null) {
+            drop();
+            return false;
+        }
+        if (mSegmentCount == mSegments.length) {
+            byte[][] segments = new byte[mSegmentCount * 2][];
+            System.arraycopy(mSegments, 0, segments, 0, mSegmentCount);
+            mSegments = segments;
+        }
+        mSegments[mSegmentCount++] = segment;
+        mSegmentPos = 0;
+        return true;
+    }
+
+    private void drop() {
+        mDropped = true;
+        releaseSegments();
+    }
+
+    private void releaseSegments() {
+        for (int i = 0; i < mSegmentCount; i++) {
+            mPool.release(mSegments[i], mLease);
+            mSegments[i] = null;
+        }
+        if (mLease != null) {
+            mPool.endLease(mLease);
+            mLease = null;
+        }
+        mSegmentCount = 0;
+        mSegmentPos = 0;
+        mSize = 0;
+    }
+
+    public synchronized void retain() {
+        if (mRefCount > 0) {
+            mRefCount++;
+        }
+    }
+
+    /**
+     * 计数归零时把段归还给缓冲池，之后内容不可再读取
+     */
+    public synchronized void release() {
+        if (mRefCount > 0 && --mRefCount == 0) {
+            releaseSegments();
+        }
+    }
+
+    /**
+     * @return 缓冲池耗尽导致内容被丢弃
+     */
+    public synchronized boolean isDropped() {
+        return mDropped;
+    }
+
+    /**
+     * @return 写入的内容是否没有被完整保存
+     */
+    public synchronized boolean isTruncated() {
+        return mTotalSize > mSize;
+    }
+
+    /**
+     * 读取方没有读到结尾就关闭了流
+     */
+    public synchronized void markIncomplete() {
+        mIncomplete = true;
+    }
+
+    /**
+     * @return 是否只记录了body的前一部分
+     */
+    public synchronized boolean isIncomplete() {
+        return mIncomplete;
+    }
+
+    /**
+     * @return 写入的总字节数（包括没有保存的部分）
+     */
+    public synchronized long getTotalSize() {
+        return mTotalSize;
+    }
+
+    @Override
+    public synchronized int size() {
+        return mSize;
+    }
+
+    @Override
+    public synchronized void reset() {
+        releaseSegments();
+        mTotalSize = 0;
+        mDropped = false;
+        mIncomplete = false;
+    }
+
+    @Override
+    public synchronized byte[] toByteArray() {
+        byte[] result = new byte[mSize];
+        int pos = 0;
+        for (int i = 0; i < mSegmentCount; i++) {
+            int n = segmentLength(i);
+            System.arraycopy(mSegments[i], 0, result, pos, n);
+            pos += n;
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        for (int i = 0; i < mSegmentCount; i++) {
+            out.write(mSegments[i], 0, segmentLength(i));
+        }
+    }
+
+    private int segmentLength(int index) {
+        return index == mSegmentCount - 1 ? mSegmentPos : mSegments[index].length;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return new String(toByteArray());
+    }
+
+    @Override
+    public synchronized String toString(String charsetName) throws UnsupportedEncodingException {
+        return new String(toByteArray(), charsetName);
+    }
+
+    @Override
+    public void close() {
+        //与ByteArrayOutputStream一致，close后内容仍然可读，段的归还由release()负责
+    }
+}
@@ -0,0 +1,156 @@
+package com.didichuxing.doraemonkit.kit.network.stream;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * @desc: 边写入边解压的gzip输出流，写入的是gzip数据，输出到下游的是解压后的数据
+ * 和GunzippingOutputStream不同，这里直接在写入线程上用Inflater逐块解压，不需要额外的管道和线程；
+ * 数据损坏时只停止解压，不会影响写入方
+ */
+public class StreamingGunzipOutputStream extends FilterOutputStream {
+    private static final int BUFFER_SIZE = 1024;
+
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final int STATE_HEADER = 0;
+    private static final int STATE_EXTRA_LENGTH = 1;
+    private static final int STATE_SKIP = 2;
+    private static final int STATE_ZERO_TERMINATED = 3;
+    private static final int STATE_BODY = 4;
+    private static final int STATE_DONE = 5;
+
+    private final Inflater mInflater = new Inflater(true);
+    private final byte[] mInflateBuffer = new byte[BUFFER_SIZE];
+    private final byte[] mSingleByte = new byte[1];
+    private final byte[] mHeader = new byte[GZIP_HEADER_SIZE];
+
+    private int mState = STATE_HEADER;
+    private int mHeaderPos;
+    private int mFlags;
+    private int mExtraLength;
+    private int mExtraLengthPos;
+    private long mSkipRemaining;
+
+    public StreamingGunzipOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        mSingleByte[0] = (byte) b;
+        write(mSingleByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end && mState != STATE_BODY && mState != STATE_DONE) {
+            consumeHeaderByte(b[off++] & 0xff);
+        }
+        if (off < end && mState == STATE_BODY) {
+            inflate(b, off, end - off);
+        }
+    }
+
+    /**
+     * Inflater会持有输入数组的引用，所以必须在返回前把这次写入的数据全部消费掉
+     */
+    private void inflate(byte[] b, int off, int len) throws IOException {
+        mInflater.setInput(b, off, len);
+        try {
+            while (!mInflater.finished() && !mInflater.needsInput()) {
+                int n = mInflater.inflate(mInflateBuffer);
+                if (n > 0) {
+                    out.write(mInflateBuffer, 0, n);
+                } else if (mInflater.needsDictionary()) {
+                    mState = STATE_DONE;
+                    return;
+                }
+            }
+        } catch (DataFormatException e) {
+            mState = STATE_DONE;
+            return;
+        }
+        if (mInflater.finished()) {
+            //只解析第一个member，尾部的crc和长度不做校验
+            mState = STATE_DONE;
+        }
+    }
+
+    private void consumeHeaderByte(int b) {
+        switch (mState) {
+            case STATE_HEADER:
+                mHeader[mHeaderPos++] = (byte) b;
+                if (mHeaderPos == GZIP_HEADER_SIZE) {
+                    if ((mHeader[0] & 0xff) != 0x1f || (mHeader[1] & 0xff) != 0x8b || mHeader[2] != 8) {
+                        mState = STATE_DONE;
+                        return;
+                    }
+                    mFlags = mHeader[3] & 0xff;
+                    nextHeaderField();
+                }
+                break;
+            case STATE_EXTRA_LENGTH:
+                mExtraLength |= b << (8 * mExtraLengthPos++);
+                if (mExtraLengthPos == 2) {
+                    mSkipRemaining = mExtraLength;
+                    mState = STATE_SKIP;
+                    if (mSkipRemaining == 0) {
+                        nextHeaderField();
+                    }
+                }
+                break;
+            case STATE_SKIP:
+                if (--mSkipRemaining == 0) {
+                    nextHeaderField();
+                }
+                break;
+            case STATE_ZERO_TERMINATED:
+                if (b == 0) {
+                    nextHeaderField();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 按FEXTRA、FNAME、FCOMMENT、FHCRC的顺序跳过可选的头部字段
+     */
+    private void nextHeaderField() {
+        if ((mFlags & FEXTRA) != 0) {
+            mFlags &= ~FEXTRA;
+            mState = STATE_EXTRA_LENGTH;
+        } else if ((mFlags & FNAME) != 0) {
+            mFlags &= ~FNAME;
+            mState = STATE_ZERO_TERMINATED;
+        } else if ((mFlags & FCOMMENT) != 0) {
+            mFlags &= ~FCOMMENT;
+            mState = STATE_ZERO_TERMINATED;
+        } else if ((mFlags & FHCRC) != 0) {
+            mFlags &= ~FHCRC;
+            mSkipRemaining = 2;
+            mState = STATE_SKIP;
+        } else {
+            mState = STATE_BODY;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            mInflater.end();
+        } finally {
+            super.close();
+        }
+    }
+}
@@ -77,6 +77,11 @@ public class NetworkDetailView extends LinearLayout {
 
     private ClipboardManager mClipboard;
 
+    /**
+     * 当前展示的响应体，写入磁盘的body会在后台线程读取后再赋值
+     */
+    private String mResponseBody;
+
     public NetworkDetailView(final Context context) {
         super(context);
         inflate(context, R.layout.dk_view_network_request, this);
@@ -110,7 +115,7 @@ public class NetworkDetailView extends LinearLayout {
         super(context, attrs);
     }
 
-    public void bindRequest(NetworkRecord record) {
+    public void bindRequest(final NetworkRecord record) {
         diverTime.setText(R.string.dk_network_detail_title_request_time);
         diverHeader.setText(R.string.dk_network_detail_title_request_header);
         diverBody.setText(R.string.dk_network_detail_title_request_body);
@@ -129,16 +134,36 @@ public class NetworkDetailView extends LinearLayout {
             }
             time.setText(mDateFormat.format(new Date(record.startTime)));
             size.setText(ByteUtil.getPrintSize(record.requestLength));
-            try {
-                String strBody = TextUtils.isEmpty(request.postData) ? "NULL" : request.postData;
-                strBody = URLDecoder.decode(strBody, "utf-8");
-                body.setText(strBody);
-            } catch (Exception e) {
-                body.setText(TextUtils.isEmpty(request.postData) ? "NULL" : request.postData);
+            if (record.mRequestBodyOffset >= 0) {
+                //请求体保存在磁盘上，后台读取后再展示
+                body.setText(R.string.dk_network_body_loading);
+                ThreadUtils.executeByIo(new ThreadUtils.SimpleTask<String>() {
+                    @Override
+                    public String doInBackground() throws Throwable {
+                        return record.getRequestBody();
+                    }
+
+                    @Override
+                    public void onSuccess(String result) {
+                        bindRequestBody(result);
+                    }
+                });
+            } else {
+                bindRequestBody(request.postData);
             }
         }
     }
 
+    private void bindRequestBody(String postData) {
+        try {
+            String strBody = TextUtils.isEmpty(postData) ? "NULL" : postData;
+            strBody = URLDecoder.decode(strBody, "utf-8");
+            body.setText(strBody);
+        } catch (Exception e) {
+            body.setText(TextUtils.isEmpty(postData) ? "NULL" : postData);
+        }
+    }
+
     public void bindResponse(final NetworkRecord record) {
         diverTime.setText(R.string.dk_network_detail_title_response_time);
         diverHeader.setText(R.string.dk_network_detail_title_response_header);
@@ -157,7 +182,7 @@ public class NetworkDetailView extends LinearLayout {
             public void onClick(View view) {
                 if (body.getVisibility() == View.VISIBLE) {
                     //格式化
-                    String strBody = TextUtils.isEmpty(record.mResponseBody) ? "NULL" : record.mResponseBody;
+                    String strBody = TextUtils.isEmpty(mResponseBody) ? "NULL" : mResponseBody;
                     try {
                         new JSONObject(strBody);
                         jsonView.setVisibility(View.VISIBLE);
@@ -172,7 +197,7 @@ public class NetworkDetailView extends LinearLayout {
                     }
                 } else {
                     //反格式化
-                    String strBody = TextUtils.isEmpty(record.mResponseBody) ? "NULL" : record.mResponseBody;
+                    String strBody = TextUtils.isEmpty(mResponseBody) ? "NULL" : mResponseBody;
                     body.setText(strBody);
                     diverFormat.setText("format");
                     jsonView.setVisibility(View.GONE);
@@ -185,7 +210,7 @@ public class NetworkDetailView extends LinearLayout {
             @Override
             public void onClick(View v) {
                 //格式化
-                final String strBody = TextUtils.isEmpty(record.mResponseBody) ? "NULL" : record.mResponseBody;
+                final String strBody = TextUtils.isEmpty(mResponseBody) ? "NULL" : mResponseBody;
                 if (strBody.equals("NULL")) {
                     ToastUtils.showShort("暂无响应体可以导出");
                     return;
@@ -221,18 +246,42 @@ public class NetworkDetailView extends LinearLayout {
             header.setText(response.headers);
             time.setText(mDateFormat.format(new Date(record.endTime)));
             size.setText(ByteUtil.getPrintSize(record.responseLength));
-            String strBody = TextUtils.isEmpty(record.mResponseBody) ? "NULL" : record.mResponseBody;
-            try {
-                new JSONObject(strBody);
-                jsonView.bindJson(strBody);
-            } catch (JSONException e) {
-                e.printStackTrace();
+            if (record.mResponseBodyOffset >= 0) {
+                //响应体保存在磁盘上，后台读取后再展示
                 body.setVisibility(View.VISIBLE);
                 jsonView.setVisibility(View.GONE);
-                diverFormat.setText("format");
-                body.setText(strBody);
+                body.setText(R.string.dk_network_body_loading);
+                ThreadUtils.executeByIo(new ThreadUtils.SimpleTask<String>() {
+                    @Override
+                    public String doInBackground() throws Throwable {
+                        return record.getResponseBody();
+                    }
+
+                    @Override
+                    public void onSuccess(String result) {
+                        bindResponseBody(result);
+                    }
+                });
+            } else {
+                bindResponseBody(record.mResponseBody);
             }
+        }
+    }
 
+    private void bindResponseBody(String responseBody) {
+        mResponseBody = responseBody;
+        String strBody = TextUtils.isEmpty(mResponseBody) ? "NULL" : mResponseBody;
+        try {
+            new JSONObject(strBody);
+            body.setVisibility(View.GONE);
+            jsonView.setVisibility(View.VISIBLE);
+            jsonView.bindJson(strBody);
+        } catch (JSONException e) {
+            e.printStackTrace();
+            body.setVisibility(View.VISIBLE);
+            jsonView.setVisibility(View.GONE);
+            diverFormat.setText("format");
+            body.setText(strBody);
         }
     }
 
@@ -0,0 +1,86 @@
+package com.didichuxing.doraemonkit.kit.performance;
+
+import android.app.Activity;
+
+import com.didichuxing.doraemonkit.kit.health.model.AppHealthInfo;
+import com.didichuxing.doraemonkit.kit.performance.fps.FrameStats;
+
+/**
+ * 保存每个页面的帧耗时统计，上传健康体检时生成数据
+ * 主线程写入，每次采样把当前页面的统计复制为不可变的快照发布，上传时只读取快照
+ */
+class FrameHealthRecorder extends PageHealthRecorder<FrameHealthRecorder.PageStats, AppHealthInfo.DataBean.FrameStatsBean> {
+
+    /**
+     * 主线程调用
+     *
+     * @param pageStats 当前页面从进入开始的统计
+     */
+    void record(Activity topActivity, FrameStats pageStats) {
+        PageStats page = pageOf(topActivity);
+        if (page != null && pageStats.getFrameCount() > 0) {
+            page.mSnapshot = new Snapshot(pageStats);
+        }
+    }
+
+    @Override
+    PageStats newPage(Activity activity) {
+        return new PageStats(activity);
+    }
+
+    static final class PageStats extends PageHealthRecorder.Page<AppHealthInfo.DataBean.FrameStatsBean> {
+        private volatile Snapshot mSnapshot;
+
+        PageStats(Activity activity) {
+            super(activity);
+        }
+
+        @Override
+        AppHealthInfo.DataBean.FrameStatsBean toBean() {
+            Snapshot snapshot = mSnapshot;
+            if (snapshot == null) {
+                return null;
+            }
+            AppHealthInfo.DataBean.FrameStatsBean bean = new AppHealthInfo.DataBean.FrameStatsBean();
+            bean.setPage(mPage);
+            bean.setPageKey(mPageKey);
+            bean.setRefreshRate(snapshot.mRefreshRate);
+            bean.setFrameCount(snapshot.mFrameCount);
+            bean.setJankCount(snapshot.mJankCount);
+            bean.setDroppedFrames(snapshot.mDroppedFrames);
+            bean.setFrozenFrameCount(snapshot.mFrozenFrameCount);
+            bean.setP50(snapshot.mP50);
+            bean.setP90(snapshot.mP90);
+            bean.setP99(snapshot.mP99);
+            bean.setMax(snapshot.mMax);
+            return bean;
+        }
+    }
+
+    /**
+     * FrameStats在主线程中持续更新，发布前复制需要上传的值
+     */
+    private static final class Snapshot {
+        final String mRefreshRate;
+        final String mFrameCount;
+        final String mJankCount;
+        final String mDroppedFrames;
+        final String mFrozenFrameCount;
+        final String mP50;
+        final String mP90;
+        final String mP99;
+        final String mMax;
+
+        Snapshot(FrameStats pageStats) {
+            mRefreshRate = "" + pageStats.getRefreshRate();
+            mFrameCount = "" + pageStats.getFrameCount();
+            mJankCount = "" + pageStats.getJankCount();
+            mDroppedFrames = "" + pageStats.getDroppedFrames();
+            mFrozenFrameCount = "" + pageStats.getFrozenFrameCount();
+            mP50 = "" + pageStats.getPercentileMillis(50);
+            mP90 = "" + pageStats.getPercentileMillis(90);
+            mP99 = "" + pageStats.getPercentileMillis(99);
+            mMax = "" + pageStats.getMaxMillis();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.didichuxing.doraemonkit.kit.performance;
+
+import android.app.Activity;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 按页面汇总健康体检数据，cpu、内存、fps、线程cpu和帧耗时共用同一套页面切换和读取规则
+ * 每个recorder只有一个采样线程写入，页面切换时比较Activity对象，离开的页面放入并发队列
+ * 页面每次写入后发布不可变的快照，上传时在其他线程只读取快照，不需要加锁
+ * 有过一次采样的页面都会上传，停留时间短的页面不会被丢弃
+ *
+ * @param <P> 页面统计
+ * @param <B> 上传的bean
+ */
+abstract class PageHealthRecorder<P extends PageHealthRecorder.Page<B>, B> {
+    private final ConcurrentLinkedQueue<P> mFinishedPages = new ConcurrentLinkedQueue<>();
+    private volatile P mCurrentPage;
+
+    /**
+     * 采样线程调用，页面切换时生成新的页面统计
+     *
+     * @return topActivity为null时返回null
+     */
+    final P pageOf(Activity topActivity) {
+        if (topActivity == null) {
+            return null;
+        }
+        P page = mCurrentPage;
+        //比较Activity对象，只在页面切换时生成pageKey
+        if (page == null || page.mActivity.get() != topActivity) {
+            P newPage = newPage(topActivity);
+            if (page != null) {
+                //先放入队列再切换，读取时才不会漏掉
+                mFinishedPages.add(page);
+            }
+            mCurrentPage = newPage;
+            page = newPage;
+        }
+        return page;
+    }
+
+    abstract P newPage(Activity activity);
+
+    /**
+     * 上传时调用，可以在任意线程中调用
+     */
+    final List<B> buildBeans() {
+        P current = mCurrentPage;
+        List<B> beans = new ArrayList<>();
+        for (P page : mFinishedPages) {
+            //读取current之后页面才切换时，current也已经在队列中
+            if (page != current) {
+                addBean(beans, page);
+            }
+        }
+        if (current != null) {
+            addBean(beans, current);
+        }
+        return beans;
+    }
+
+    /**
+     * 开始新一轮健康体检时调用，与采样可能并发，只丢弃引用
+     */
+    final void reset() {
+        mCurrentPage = null;
+        mFinishedPages.clear();
+    }
+
+    private void addBean(List<B> beans, P page) {
+        B bean = page.toBean();
+        if (bean != null) {
+            beans.add(bean);
+        }
+    }
+
+    abstract static class Page<B> {
+        final WeakReference<Activity> mActivity;
+        final String mPage;
+        final String mPageKey;
+
+        Page(Activity activity) {
+            mActivity = new WeakReference<>(activity);
+            mPage = activity.getClass().getCanonicalName();
+            mPageKey = activity.toString();
+        }
+
+        /**
+         * 只读取已经发布的快照，可以在任意线程调用
+         *
+         * @return 还没有采样时返回null
+         */
+        abstract B toBean();
+    }
+}
@@ -1,5 +1,6 @@
 package com.didichuxing.doraemonkit.kit.performance;
 
+import android.app.Activity;
 import android.app.ActivityManager;
 import android.content.Context;
 import android.os.Build;
@@ -15,21 +16,20 @@ import android.view.Choreographer;
 
 import com.blankj.utilcode.util.ActivityUtils;
 import com.blankj.utilcode.util.AppUtils;
-import com.blankj.utilcode.util.TimeUtils;
 import com.didichuxing.doraemonkit.DoraemonKit;
 import com.didichuxing.doraemonkit.config.DokitMemoryConfig;
 import com.didichuxing.doraemonkit.constant.DoKitConstant;
-import com.didichuxing.doraemonkit.kit.health.AppHealthInfoUtil;
 import com.didichuxing.doraemonkit.kit.health.model.AppHealthInfo;
 import com.didichuxing.doraemonkit.kit.network.NetworkManager;
+import com.didichuxing.doraemonkit.kit.performance.cpu.ProcCpuSampler;
+import com.didichuxing.doraemonkit.kit.performance.cpu.ThreadCpuGroup;
+import com.didichuxing.doraemonkit.kit.performance.cpu.ThreadCpuGrouper;
+import com.didichuxing.doraemonkit.kit.performance.cpu.ThreadCpuInfo;
+import com.didichuxing.doraemonkit.kit.performance.fps.FrameStats;
+import com.didichuxing.doraemonkit.kit.performance.fps.FrameTimingMonitor;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -38,7 +38,7 @@ import java.util.List;
 
 public class PerformanceDataManager {
     private static final String TAG = "PerformanceDataManager";
-    private static final int MAX_FRAME_RATE = 60;
+    private static final int DEFAULT_FRAME_RATE = 60;
     /**
      * 信息采集时间 内存和cpu
      */
@@ -63,7 +63,11 @@ public class PerformanceDataManager {
     /**
      * 当前的帧率
      */
-    private int mLastFrameRate = MAX_FRAME_RATE;
+    private int mLastFrameRate = DEFAULT_FRAME_RATE;
+    /**
+     * 最近1s内的卡顿帧数
+     */
+    private int mLastJankCount;
     private long mUpBytes;
     private long mDownBytes;
     private long mLastUpBytes;
@@ -76,24 +80,28 @@ public class PerformanceDataManager {
     private float mMaxMemory;
     private Context mContext;
     private ActivityManager mActivityManager;
-    private RandomAccessFile mProcStatFile;
-    private RandomAccessFile mAppStatFile;
-    private Long mLastCpuTime;
-    private Long mLastAppCpuTime;
-    // 是否是8.0及其以上
-    private boolean mAboveAndroidO;
+    private final ProcCpuSampler mCpuSampler = new ProcCpuSampler();
+    /**
+     * 按线程名前缀合并后的线程cpu占用
+     */
+    private volatile List<ThreadCpuGroup> mLastThreadCpuGroups = Collections.emptyList();
+    private final ThreadCpuHealthRecorder mThreadCpuHealthRecorder = new ThreadCpuHealthRecorder();
     private static final int MSG_CPU = 1;
     private static final int MSG_MEMORY = 2;
     private static final int MSG_NET_FLOW = 4;
     private Handler mMainHandler = new Handler(Looper.getMainLooper());
     private FrameRateRunnable mRateRunnable = new FrameRateRunnable();
+    private final FrameTimingMonitor mFrameMonitor = new FrameTimingMonitor();
+    private final FrameHealthRecorder mFrameHealthRecorder = new FrameHealthRecorder();
+    private final PerformanceHealthRecorder mCpuHealthRecorder = new PerformanceHealthRecorder();
+    private final PerformanceHealthRecorder mMemoryHealthRecorder = new PerformanceHealthRecorder();
+    private final PerformanceHealthRecorder mFpsHealthRecorder = new PerformanceHealthRecorder();
 
     private void executeCpuData() {
-        if (mAboveAndroidO) {
-            mLastCpuRate = getCpuDataForO();
-            writeCpuDataIntoFile();
-        } else {
-            mLastCpuRate = getCPUData();
+        //直接读取/proc，不再fork top进程
+        if (mCpuSampler.sample()) {
+            mLastCpuRate = mCpuSampler.getProcessCpuRate();
+            mLastThreadCpuGroups = ThreadCpuGrouper.group(mCpuSampler.getThreadCpuInfos(), Process.myPid());
             writeCpuDataIntoFile();
         }
     }
@@ -106,68 +114,6 @@ public class PerformanceDataManager {
         writeMemoryDataIntoFile();
     }
 
-
-    /**
-     * 8.0以上获取cpu的方式
-     *
-     * @return
-     */
-    private float getCpuDataForO() {
-        java.lang.Process process = null;
-        try {
-            process = Runtime.getRuntime().exec("top -n 1");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            int cpuIndex = -1;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (TextUtils.isEmpty(line)) {
-                    continue;
-                }
-                int tempIndex = getCPUIndex(line);
-                if (tempIndex != -1) {
-                    cpuIndex = tempIndex;
-                    continue;
-                }
-                if (line.startsWith(String.valueOf(Process.myPid()))) {
-                    if (cpuIndex == -1) {
-                        continue;
-                    }
-                    String[] param = line.split("\\s+");
-                    if (param.length <= cpuIndex) {
-                        continue;
-                    }
-                    String cpu = param[cpuIndex];
-                    if (cpu.endsWith("%")) {
-                        cpu = cpu.substring(0, cpu.lastIndexOf("%"));
-                    }
-                    float rate = Float.parseFloat(cpu) / Runtime.getRuntime().availableProcessors();
-                    return rate;
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (process != null) {
-                process.destroy();
-            }
-        }
-        return 0;
-    }
-
-    private int getCPUIndex(String line) {
-        if (line.contains("CPU")) {
-            String[] titles = line.split("\\s+");
-            for (int i = 0; i < titles.length; i++) {
-                if (titles[i].contains("CPU")) {
-                    return i;
-                }
-            }
-        }
-        return -1;
-    }
-
-
     private static class Holder {
         private static PerformanceDataManager INSTANCE = new PerformanceDataManager();
     }
@@ -182,9 +128,6 @@ public class PerformanceDataManager {
     public void init() {
         mContext = DoraemonKit.APPLICATION.getApplicationContext();
         mActivityManager = (ActivityManager) DoraemonKit.APPLICATION.getSystemService(Context.ACTIVITY_SERVICE);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            mAboveAndroidO = true;
-        }
         if (mHandlerThread == null) {
             mHandlerThread = new HandlerThread("handler-thread");
             mHandlerThread.start();
@@ -226,6 +169,7 @@ public class PerformanceDataManager {
     @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
     public void startMonitorFrameInfo() {
         DokitMemoryConfig.FPS_STATUS = true;
+        mFrameMonitor.reset();
         //开启定时任务
         mMainHandler.postDelayed(mRateRunnable, FPS_SAMPLING_TIME);
         Choreographer.getInstance().postFrameCallback(mRateRunnable);
@@ -236,6 +180,7 @@ public class PerformanceDataManager {
         DokitMemoryConfig.FPS_STATUS = false;
         Choreographer.getInstance().removeFrameCallback(mRateRunnable);
         mMainHandler.removeCallbacks(mRateRunnable);
+        mFrameMonitor.reset();
     }
 
     public void startMonitorCPUInfo() {
@@ -253,7 +198,6 @@ public class PerformanceDataManager {
         mNormalHandler.removeMessages(MSG_NET_FLOW);
     }
 
-
     public void destroy() {
         stopMonitorMemoryInfo();
         stopMonitorCPUInfo();
@@ -265,17 +209,13 @@ public class PerformanceDataManager {
         mNormalHandler = null;
     }
 
-
-
     public void stopMonitorCPUInfo() {
         DokitMemoryConfig.CPU_STATUS = false;
         mNormalHandler.removeMessages(MSG_CPU);
+        mCpuSampler.reset();
+        mLastThreadCpuGroups = Collections.emptyList();
     }
 
-
-
-
-
     public void startMonitorMemoryInfo() {
         DokitMemoryConfig.RAM_STATUS = true;
         if (mMaxMemory == 0) {
@@ -293,7 +233,9 @@ public class PerformanceDataManager {
 
         //保存cpu数据到app健康体检
         if (DoKitConstant.APP_HEALTH_RUNNING) {
-            addPerformanceDataInAppHealth(mLastCpuRate, PERFORMANCE_TYPE_CPU);
+            Activity topActivity = ActivityUtils.getTopActivity();
+            mCpuHealthRecorder.record(topActivity, mLastCpuRate);
+            mThreadCpuHealthRecorder.record(topActivity, mLastThreadCpuGroups);
         }
     }
 
@@ -301,56 +243,18 @@ public class PerformanceDataManager {
 
         //保存cpu数据到app健康体检
         if (DoKitConstant.APP_HEALTH_RUNNING) {
-            addPerformanceDataInAppHealth(mLastMemoryRate, PERFORMANCE_TYPE_MEMORY);
+            mMemoryHealthRecorder.record(ActivityUtils.getTopActivity(), mLastMemoryRate);
         }
     }
 
-    private void writeFpsDataIntoFile() {
+    private void writeFpsDataIntoFile(Activity topActivity) {
         if (DoKitConstant.APP_HEALTH_RUNNING) {
-            addPerformanceDataInAppHealth(mLastFrameRate > 60 ? 60 : mLastFrameRate, PERFORMANCE_TYPE_FPS);
+            //帧率已经按屏幕刷新率限制，90/120Hz的屏幕不再截断为60
+            mFpsHealthRecorder.record(topActivity, mLastFrameRate);
+            mFrameHealthRecorder.record(topActivity, mFrameMonitor.getPageStats());
         }
     }
 
-    /**
-     * 8.0一下获取cpu的方式
-     *
-     * @return
-     */
-    private float getCPUData() {
-        long cpuTime;
-        long appTime;
-        float value = 0.0f;
-        try {
-            if (mProcStatFile == null || mAppStatFile == null) {
-                mProcStatFile = new RandomAccessFile("/proc/stat", "r");
-                mAppStatFile = new RandomAccessFile("/proc/" + android.os.Process.myPid() + "/stat", "r");
-            } else {
-                mProcStatFile.seek(0L);
-                mAppStatFile.seek(0L);
-            }
-            String procStatString = mProcStatFile.readLine();
-            String appStatString = mAppStatFile.readLine();
-            String procStats[] = procStatString.split(" ");
-            String appStats[] = appStatString.split(" ");
-            cpuTime = Long.parseLong(procStats[2]) + Long.parseLong(procStats[3])
-                    + Long.parseLong(procStats[4]) + Long.parseLong(procStats[5])
-                    + Long.parseLong(procStats[6]) + Long.parseLong(procStats[7])
-                    + Long.parseLong(procStats[8]);
-            appTime = Long.parseLong(appStats[13]) + Long.parseLong(appStats[14]);
-            if (mLastCpuTime == null && mLastAppCpuTime == null) {
-                mLastCpuTime = cpuTime;
-                mLastAppCpuTime = appTime;
-                return value;
-            }
-            value = ((float) (appTime - mLastAppCpuTime) / (float) (cpuTime - mLastCpuTime)) * 100f;
-            mLastCpuTime = cpuTime;
-            mLastAppCpuTime = appTime;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return value;
-    }
-
     private float getMemoryData() {
         float mem = 0.0F;
         try {
@@ -381,50 +285,6 @@ public class PerformanceDataManager {
         return mem;
     }
 
-    private float parseMemoryData(String data) throws IOException {
-        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data.getBytes())));
-        String line;
-        while ((line = bufferedReader.readLine()) != null) {
-            line = line.trim();
-            if (line.contains("Permission Denial")) {
-                break;
-            } else {
-                String[] lineItems = line.split("\\s+");
-                if (lineItems != null && lineItems.length > 1) {
-                    String result = lineItems[0];
-                    bufferedReader.close();
-                    if (!TextUtils.isEmpty(result) && result.contains("K:")) {
-                        result = result.replace("K:", "");
-                        if (result.contains(",")) {
-                            result = result.replace(",", ".");
-                        }
-                    }
-                    // Mem in MB
-                    return Float.parseFloat(result) / 1024;
-                }
-            }
-        }
-        return 0;
-    }
-
-    private float parseCPUData(String data) throws IOException {
-        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data.getBytes())));
-        String line;
-        while ((line = bufferedReader.readLine()) != null) {
-            line = line.trim();
-            if (line.contains("Permission Denial")) {
-                break;
-            } else {
-                String[] lineItems = line.split("\\s+");
-                if (lineItems != null && lineItems.length > 1) {
-                    bufferedReader.close();
-                    return Float.parseFloat(lineItems[0].replace("%", ""));
-                }
-            }
-        }
-        return 0;
-    }
-
     public String getCpuFilePath() {
         return getFilePath(mContext) + cpuFileName;
     }
@@ -437,15 +297,42 @@ public class PerformanceDataManager {
         return getFilePath(mContext) + fpsFileName;
     }
 
-
     public long getLastFrameRate() {
         return mLastFrameRate;
     }
 
+    /**
+     * @return 最近1s内至少错过一个vsync的帧数
+     */
+    public int getLastJankCount() {
+        return mLastJankCount;
+    }
+
+    /**
+     * @return 当前页面的帧耗时统计，只能在主线程读取
+     */
+    public FrameStats getFramePageStats() {
+        return mFrameMonitor.getPageStats();
+    }
+
     public float getLastCpuRate() {
         return mLastCpuRate;
     }
 
+    /**
+     * @return 上一次采样时各线程的cpu占用，按cpu占用从高到低排序
+     */
+    public List<ThreadCpuInfo> getLastThreadCpuInfos() {
+        return mCpuSampler.getThreadCpuInfos();
+    }
+
+    /**
+     * @return 上一次采样时按线程名前缀合并后的cpu占用，按cpu占用从高到低排序
+     */
+    public List<ThreadCpuGroup> getLastThreadCpuGroups() {
+        return mLastThreadCpuGroups;
+    }
+
     public float getLastMemoryInfo() {
         return mLastMemoryRate;
     }
@@ -460,29 +347,37 @@ public class PerformanceDataManager {
 
     /**
      * 读取fps的线程
+     * 每一帧的间隔交给FrameTimingMonitor统计，每秒汇总一次帧率和当前页面的卡顿
      */
     private class FrameRateRunnable implements Runnable, Choreographer.FrameCallback {
-        private int totalFramesPerSecond;
+        private String mPageKey;
 
         @Override
         public void run() {
-            mLastFrameRate = totalFramesPerSecond;
-            if (mLastFrameRate > MAX_FRAME_RATE) {
-                mLastFrameRate = MAX_FRAME_RATE;
+            mFrameMonitor.setRefreshRate(FrameTimingMonitor.detectRefreshRate());
+            mLastFrameRate = mFrameMonitor.closeWindow(System.nanoTime());
+            mLastJankCount = mFrameMonitor.getLastWindowJankCount();
+            Activity topActivity = ActivityUtils.getTopActivity();
+            String pageKey = topActivity == null ? null : topActivity.toString();
+            //页面切换后重新统计
+            if (!TextUtils.equals(pageKey, mPageKey)) {
+                mPageKey = pageKey;
+                mFrameMonitor.resetPage();
             }
             //保存fps数据
             if (AppUtils.isAppForeground()) {
-                writeFpsDataIntoFile();
+                writeFpsDataIntoFile(topActivity);
+            } else {
+                //后台不产生帧，回到前台的第一帧不计算间隔
+                mFrameMonitor.pause();
             }
-            totalFramesPerSecond = 0;
             //1s中统计一次
             mMainHandler.postDelayed(this, FPS_SAMPLING_TIME);
         }
 
-        //
         @Override
         public void doFrame(long frameTimeNanos) {
-            totalFramesPerSecond++;
+            mFrameMonitor.onFrame(frameTimeNanos);
             Choreographer.getInstance().postFrameCallback(this);
         }
 
@@ -514,69 +409,25 @@ public class PerformanceDataManager {
     public static final int PERFORMANCE_TYPE_FPS = 3;
 
     /**
-     * 保存cpu数据到健康体检中 统计有问题
+     * 上传健康体检前调用，按页面生成cpu、线程cpu、内存、fps、帧耗时的统计数据
      */
-    private synchronized void addPerformanceDataInAppHealth(float performanceValue, int performanceType) {
-        try {
-            AppHealthInfo.DataBean.PerformanceBean lastPerformanceInfo = AppHealthInfoUtil.getInstance().getLastPerformanceInfo(performanceType);
-            //第一次启动
-            if (lastPerformanceInfo == null) {
-                AppHealthInfo.DataBean.PerformanceBean performanceBean = new AppHealthInfo.DataBean.PerformanceBean();
-                List<AppHealthInfo.DataBean.PerformanceBean.ValuesBean> valuesBeans = new ArrayList<>();
-                valuesBeans.add(new AppHealthInfo.DataBean.PerformanceBean.ValuesBean("" + TimeUtils.getNowMills(), "" + performanceValue));
-                performanceBean.setPage(ActivityUtils.getTopActivity().getClass().getCanonicalName());
-                performanceBean.setPageKey(ActivityUtils.getTopActivity().toString());
-                performanceBean.setValues(valuesBeans);
-                if (performanceType == PERFORMANCE_TYPE_CPU) {
-                    AppHealthInfoUtil.getInstance().addCPUInfo(performanceBean);
-                } else if (performanceType == PERFORMANCE_TYPE_MEMORY) {
-                    AppHealthInfoUtil.getInstance().addMemoryInfo(performanceBean);
-                } else {
-                    AppHealthInfoUtil.getInstance().addFPSInfo(performanceBean);
-                }
-            } else {//不是第一次启动
-                String lastPageKey = lastPerformanceInfo.getPageKey();
-                //同一个页面
-                if (lastPageKey.equals(ActivityUtils.getTopActivity().toString())) {
-                    List<AppHealthInfo.DataBean.PerformanceBean.ValuesBean> valuesBeans = lastPerformanceInfo.getValues();
-                    int valueSize = valuesBeans.size();
-                    //判断是否需要上传数据
-                    //采集的点数必须在10~40之间 其中cpu 、 内存必须在20~40 因为fps 1s中采集一次
-                    if (valueSize < 40) {
-                        valuesBeans.add(new AppHealthInfo.DataBean.PerformanceBean.ValuesBean("" + TimeUtils.getNowMills(), "" + performanceValue));
-                    }
-                } else {//页面已发生变化
-                    List<AppHealthInfo.DataBean.PerformanceBean.ValuesBean> lastValuesBeans = lastPerformanceInfo.getValues();
-                    int valueSize = lastValuesBeans.size();
-                    //先丢弃上一个页面的数据
-                    if (performanceType == PERFORMANCE_TYPE_CPU && valueSize < 20) {
-                        AppHealthInfoUtil.getInstance().removeLastPerformanceInfo(performanceType);
-                    } else if (performanceType == PERFORMANCE_TYPE_MEMORY && valueSize < 20) {
-                        AppHealthInfoUtil.getInstance().removeLastPerformanceInfo(performanceType);
-                    } else if (performanceType == PERFORMANCE_TYPE_FPS && valueSize < 10) {
-                        AppHealthInfoUtil.getInstance().removeLastPerformanceInfo(performanceType);
-                    }
-
-                    AppHealthInfo.DataBean.PerformanceBean performanceBean = new AppHealthInfo.DataBean.PerformanceBean();
-                    List<AppHealthInfo.DataBean.PerformanceBean.ValuesBean> newValuesBeans = new ArrayList<>();
-                    newValuesBeans.add(new AppHealthInfo.DataBean.PerformanceBean.ValuesBean("" + TimeUtils.getNowMills(), "" + performanceValue));
-                    performanceBean.setPage(ActivityUtils.getTopActivity().getClass().getCanonicalName());
-                    performanceBean.setPageKey(ActivityUtils.getTopActivity().toString());
-                    performanceBean.setValues(newValuesBeans);
-                    if (performanceType == PERFORMANCE_TYPE_CPU) {
-                        AppHealthInfoUtil.getInstance().addCPUInfo(performanceBean);
-                    } else if (performanceType == PERFORMANCE_TYPE_MEMORY) {
-                        AppHealthInfoUtil.getInstance().addMemoryInfo(performanceBean);
-                    } else {
-                        AppHealthInfoUtil.getInstance().addFPSInfo(performanceBean);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
+    public void fillAppHealthPerformance(AppHealthInfo.DataBean data) {
+        data.setCpu(mCpuHealthRecorder.buildBeans());
+        data.setThreadCpu(mThreadCpuHealthRecorder.buildBeans());
+        data.setMemory(mMemoryHealthRecorder.buildBeans());
+        data.setFps(mFpsHealthRecorder.buildBeans());
+        data.setFrameStats(mFrameHealthRecorder.buildBeans());
     }
 
-
+    /**
+     * 健康体检开始和结束时调用，清空按页面保存的统计数据
+     * 性能工具页面也会停止cpu、内存、fps的采样，停止采样时不清空，否则体检过程中的数据会丢失
+     */
+    public void resetAppHealthPerformance() {
+        mCpuHealthRecorder.reset();
+        mThreadCpuHealthRecorder.reset();
+        mMemoryHealthRecorder.reset();
+        mFpsHealthRecorder.reset();
+        mFrameHealthRecorder.reset();
+    }
 }
@@ -43,6 +43,12 @@ public class PerformanceDokitViewManager {
         }
         performanceDokitView.addPerformanceFragmentCloseListener(listener);
         singleperformanceViewInfos.put(title, new performanceViewInfo(performanceType, title, interval));
+        //cpu曲线旁边显示各线程的cpu占用
+        if (performanceType == DataSourceFactory.TYPE_CPU) {
+            DokitIntent threadCpuIntent = new DokitIntent(ThreadCpuDokitView.class);
+            threadCpuIntent.mode = DokitIntent.MODE_SINGLE_INSTANCE;
+            DokitViewManager.getInstance().attach(threadCpuIntent);
+        }
     }
 
     /**
@@ -65,6 +71,9 @@ public class PerformanceDokitViewManager {
         if (performanceDokitView != null) {
             performanceDokitView.removeItem(performanceType);
         }
+        if (performanceType == DataSourceFactory.TYPE_CPU) {
+            DokitViewManager.getInstance().detach(ThreadCpuDokitView.class);
+        }
 
         singleperformanceViewInfos.remove(title);
     }
@@ -0,0 +1,213 @@
+package com.didichuxing.doraemonkit.kit.performance;
+
+import android.app.Activity;
+
+import com.didichuxing.doraemonkit.kit.health.model.AppHealthInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按页面流式统计cpu、内存或fps的采样值，只在上传时生成健康体检的PerformanceBean
+ * 每个页面只保存次数、最小值、最大值、总和、对数直方图(用于分位值)以及最多40个均匀抽稀的采样点，全部为基本类型
+ * 每种数据只有一个采样线程写入(cpu和内存在采样线程，fps在主线程)，每次采样后发布包含分位值和采样点的快照
+ */
+class PerformanceHealthRecorder extends PageHealthRecorder<PerformanceHealthRecorder.PageStats, AppHealthInfo.DataBean.PerformanceBean> {
+    /**
+     * 上传的采样点上限，超过后相邻的点两两合并，保证覆盖整个页面停留时间
+     */
+    private static final int MAX_POINTS = 40;
+    /**
+     * 直方图的相对误差为2%，覆盖 MIN_VALUE ~ MAX_VALUE，小于MIN_VALUE的值计入第0个桶
+     */
+    private static final double RELATIVE_ACCURACY = 0.02;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_VALUE = 0.01;
+    private static final double MAX_VALUE = 100000;
+    private static final int BUCKET_COUNT = (int) Math.ceil(Math.log(MAX_VALUE / MIN_VALUE) / LOG_GAMMA) + 2;
+    /**
+     * 上传的分位值，从小到大
+     */
+    private static final int[] PERCENTILES = {50, 90, 99};
+
+    /**
+     * 采样线程调用
+     */
+    void record(Activity topActivity, float value) {
+        PageStats page = pageOf(topActivity);
+        if (page != null) {
+            page.add(System.currentTimeMillis(), value);
+        }
+    }
+
+    @Override
+    PageStats newPage(Activity activity) {
+        return new PageStats(activity);
+    }
+
+    private static int bucketOf(float value) {
+        if (value < MIN_VALUE) {
+            return 0;
+        }
+        int bucket = (int) Math.ceil(Math.log(value / MIN_VALUE) / LOG_GAMMA) + 1;
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * 桶内相对误差最小的估计值
+     */
+    private static double bucketValue(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return MIN_VALUE * Math.pow(GAMMA, bucket - 1) * 2 / (GAMMA + 1);
+    }
+
+    static final class PageStats extends PageHealthRecorder.Page<AppHealthInfo.DataBean.PerformanceBean> {
+        /**
+         * 以下字段只在采样线程中访问
+         */
+        private int mCount;
+        private double mSum;
+        private float mMin;
+        private float mMax;
+        private final int[] mBuckets = new int[BUCKET_COUNT];
+
+        private final long[] mPointTimes = new long[MAX_POINTS];
+        private final float[] mPointValues = new float[MAX_POINTS];
+        private int mPointCount;
+        /**
+         * 每个点合并的采样数
+         */
+        private int mStride = 1;
+        private int mPendingCount;
+        private double mPendingSum;
+        private long mPendingTime;
+
+        private volatile Snapshot mSnapshot;
+
+        PageStats(Activity activity) {
+            super(activity);
+        }
+
+        void add(long time, float value) {
+            if (mCount == 0 || value < mMin) {
+                mMin = value;
+            }
+            if (mCount == 0 || value > mMax) {
+                mMax = value;
+            }
+            mCount++;
+            mSum += value;
+            mBuckets[bucketOf(value)]++;
+
+            if (mPendingCount == 0) {
+                mPendingTime = time;
+            }
+            mPendingCount++;
+            mPendingSum += value;
+            if (mPendingCount == mStride) {
+                if (mPointCount == MAX_POINTS) {
+                    halvePoints();
+                }
+                mPointTimes[mPointCount] = mPendingTime;
+                mPointValues[mPointCount] = (float) (mPendingSum / mPendingCount);
+                mPointCount++;
+                mPendingCount = 0;
+                mPendingSum = 0;
+            }
+            mSnapshot = new Snapshot(this);
+        }
+
+        /**
+         * 相邻两点合并为一点，时间取前一个点，值取平均
+         */
+        private void halvePoints() {
+            for (int i = 0; i < MAX_POINTS / 2; i++) {
+                mPointTimes[i] = mPointTimes[i * 2];
+                mPointValues[i] = (mPointValues[i * 2] + mPointValues[i * 2 + 1]) / 2;
+            }
+            mPointCount = MAX_POINTS / 2;
+            mStride *= 2;
+        }
+
+        @Override
+        AppHealthInfo.DataBean.PerformanceBean toBean() {
+            Snapshot snapshot = mSnapshot;
+            if (snapshot == null) {
+                return null;
+            }
+
+            AppHealthInfo.DataBean.PerformanceBean bean = new AppHealthInfo.DataBean.PerformanceBean();
+            bean.setPage(mPage);
+            bean.setPageKey(mPageKey);
+            bean.setCount("" + snapshot.mCount);
+            bean.setMin("" + snapshot.mMin);
+            bean.setMax("" + snapshot.mMax);
+            bean.setAvg("" + snapshot.mAvg);
+            bean.setP50("" + snapshot.mP50);
+            bean.setP90("" + snapshot.mP90);
+            bean.setP99("" + snapshot.mP99);
+            List<AppHealthInfo.DataBean.PerformanceBean.ValuesBean> values = new ArrayList<>(snapshot.mPointTimes.length);
+            for (int i = 0; i < snapshot.mPointTimes.length; i++) {
+                values.add(new AppHealthInfo.DataBean.PerformanceBean.ValuesBean("" + snapshot.mPointTimes[i], "" + snapshot.mPointValues[i]));
+            }
+            bean.setValues(values);
+            return bean;
+        }
+
+        /**
+         * 一次遍历直方图得到p50、p90、p99，结果限制在[min, max]内
+         */
+        private float[] percentiles() {
+            float[] result = new float[PERCENTILES.length];
+            int next = 0;
+            int target = (int) Math.ceil(mCount * PERCENTILES[next] / 100.0);
+            int seen = 0;
+            for (int i = 0; i < mBuckets.length && next < PERCENTILES.length; i++) {
+                seen += mBuckets[i];
+                while (next < PERCENTILES.length && seen >= target) {
+                    result[next] = (float) Math.max(mMin, Math.min(mMax, bucketValue(i)));
+                    next++;
+                    if (next < PERCENTILES.length) {
+                        target = (int) Math.ceil(mCount * PERCENTILES[next] / 100.0);
+                    }
+                }
+            }
+            for (; next < PERCENTILES.length; next++) {
+                result[next] = mMax;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 采样线程每次写入后生成，分位值在生成时计算，不复制直方图
+     */
+    private static final class Snapshot {
+        final int mCount;
+        final float mMin;
+        final float mMax;
+        final float mAvg;
+        final float mP50;
+        final float mP90;
+        final float mP99;
+        final long[] mPointTimes;
+        final float[] mPointValues;
+
+        Snapshot(PageStats page) {
+            mCount = page.mCount;
+            mMin = page.mMin;
+            mMax = page.mMax;
+            mAvg = (float) (page.mSum / page.mCount);
+            float[] percentiles = page.percentiles();
+            mP50 = percentiles[0];
+            mP90 = percentiles[1];
+            mP99 = percentiles[2];
+            mPointTimes = Arrays.copyOf(page.mPointTimes, page.mPointCount);
+            mPointValues = Arrays.copyOf(page.mPointValues, page.mPointCount);
+        }
+    }
+}
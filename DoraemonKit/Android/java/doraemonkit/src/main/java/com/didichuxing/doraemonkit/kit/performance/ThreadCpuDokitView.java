@@ -0,0 +1,126 @@
+package com.didichuxing.doraemonkit.kit.performance;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.blankj.utilcode.util.ScreenUtils;
+import com.didichuxing.doraemonkit.R;
+import com.didichuxing.doraemonkit.kit.core.AbsDokitView;
+import com.didichuxing.doraemonkit.kit.core.DokitViewLayoutParams;
+import com.didichuxing.doraemonkit.kit.performance.cpu.ThreadCpuGroup;
+import com.didichuxing.doraemonkit.util.UIUtils;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 与cpu曲线一起显示的线程cpu占用列表，按线程名前缀合并，每秒刷新一次
+ */
+public class ThreadCpuDokitView extends AbsDokitView {
+    /**
+     * 最多显示的分组数
+     */
+    private static final int MAX_ROW_COUNT = 8;
+
+    private LinearLayout mThreadCpuWrap;
+    private final TextView[] mRows = new TextView[MAX_ROW_COUNT];
+    private boolean mRefreshing;
+
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mRefreshing) {
+                return;
+            }
+            refresh();
+            mThreadCpuWrap.postDelayed(this, PerformanceDokitView.DEFAULT_REFRESH_INTERVAL);
+        }
+    };
+
+    @Override
+    public void onCreate(Context context) {
+
+    }
+
+    @Override
+    public View onCreateView(Context context, FrameLayout rootView) {
+        return LayoutInflater.from(context).inflate(R.layout.dk_float_thread_cpu, rootView, false);
+    }
+
+    @Override
+    public void onViewCreated(FrameLayout rootView) {
+        mThreadCpuWrap = findViewById(R.id.ll_thread_cpu);
+        for (int i = 0; i < MAX_ROW_COUNT; i++) {
+            TextView row = new TextView(getContext());
+            row.setTextAppearance(getContext(), R.style.DK_TextSmall_Dark);
+            row.setSingleLine(true);
+            row.setEllipsize(TextUtils.TruncateAt.MIDDLE);
+            row.setVisibility(View.GONE);
+            mThreadCpuWrap.addView(row);
+            mRows[i] = row;
+        }
+        startRefresh();
+    }
+
+    @Override
+    public void initDokitViewLayoutParams(DokitViewLayoutParams params) {
+        params.width = DokitViewLayoutParams.WRAP_CONTENT;
+        params.height = DokitViewLayoutParams.WRAP_CONTENT;
+        params.x = UIUtils.dp2px(10);
+        //曲线显示在屏幕上方，列表默认放在屏幕中部
+        params.y = ScreenUtils.getAppScreenHeight() / 2;
+    }
+
+    private void refresh() {
+        List<ThreadCpuGroup> groups = PerformanceDataManager.getInstance().getLastThreadCpuGroups();
+        for (int i = 0; i < MAX_ROW_COUNT; i++) {
+            TextView row = mRows[i];
+            if (i < groups.size()) {
+                ThreadCpuGroup group = groups.get(i);
+                String name = group.getThreadCount() > 1 ? group.getName() + " x" + group.getThreadCount() : group.getName();
+                row.setText(String.format(Locale.US, "%5.1f%%  %s", group.getCpuRate(), name));
+                row.setVisibility(View.VISIBLE);
+            } else {
+                row.setVisibility(View.GONE);
+            }
+        }
+    }
+
+    private void startRefresh() {
+        if (mRefreshing || mThreadCpuWrap == null) {
+            return;
+        }
+        mRefreshing = true;
+        mThreadCpuWrap.post(mRefreshRunnable);
+    }
+
+    private void stopRefresh() {
+        mRefreshing = false;
+        if (mThreadCpuWrap != null) {
+            mThreadCpuWrap.removeCallbacks(mRefreshRunnable);
+        }
+    }
+
+    @Override
+    public void onEnterForeground() {
+        super.onEnterForeground();
+        startRefresh();
+    }
+
+    @Override
+    public void onEnterBackground() {
+        super.onEnterBackground();
+        stopRefresh();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        stopRefresh();
+    }
+}
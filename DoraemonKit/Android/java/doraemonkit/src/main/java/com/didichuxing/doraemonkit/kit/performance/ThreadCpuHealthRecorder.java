@@ -0,0 +1,142 @@
+package com.didichuxing.doraemonkit.kit.performance;
+
+import android.app.Activity;
+
+import com.didichuxing.doraemonkit.kit.health.model.AppHealthInfo;
+import com.didichuxing.doraemonkit.kit.performance.cpu.ThreadCpuGroup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按页面统计各线程分组的cpu占用，上传健康体检时生成占用最高的几个分组
+ * cpu采样线程写入，每次采样后发布占用最高分组的快照，上传时只读取快照
+ */
+class ThreadCpuHealthRecorder extends PageHealthRecorder<ThreadCpuHealthRecorder.PageStats, AppHealthInfo.DataBean.ThreadCpuBean> {
+    /**
+     * 每个页面保存的分组数
+     */
+    private static final int TOP_N = 5;
+
+    /**
+     * cpu采样线程调用
+     */
+    void record(Activity topActivity, List<ThreadCpuGroup> groups) {
+        PageStats page = pageOf(topActivity);
+        if (page != null) {
+            page.add(groups);
+        }
+    }
+
+    @Override
+    PageStats newPage(Activity activity) {
+        return new PageStats(activity);
+    }
+
+    static final class PageStats extends PageHealthRecorder.Page<AppHealthInfo.DataBean.ThreadCpuBean> {
+        /**
+         * 以下字段只在采样线程中访问
+         */
+        private int mSampleCount;
+        private final Map<String, GroupStat> mStats = new HashMap<>();
+
+        private volatile Snapshot mSnapshot;
+
+        PageStats(Activity activity) {
+            super(activity);
+        }
+
+        void add(List<ThreadCpuGroup> groups) {
+            mSampleCount++;
+            for (ThreadCpuGroup group : groups) {
+                GroupStat stat = mStats.get(group.getName());
+                if (stat == null) {
+                    stat = new GroupStat(group.getName());
+                    mStats.put(group.getName(), stat);
+                }
+                stat.mSum += group.getCpuRate();
+                stat.mMax = Math.max(stat.mMax, group.getCpuRate());
+                stat.mThreadCount = Math.max(stat.mThreadCount, group.getThreadCount());
+            }
+            mSnapshot = new Snapshot(topStats(), mSampleCount);
+        }
+
+        /**
+         * 依次选出平均占用最高的分组，分组数通常只有几十个
+         */
+        private List<GroupStat> topStats() {
+            List<GroupStat> candidates = new ArrayList<>(mStats.values());
+            List<GroupStat> top = new ArrayList<>(TOP_N);
+            while (top.size() < TOP_N && !candidates.isEmpty()) {
+                int maxIndex = 0;
+                for (int i = 1; i < candidates.size(); i++) {
+                    if (candidates.get(i).mSum > candidates.get(maxIndex).mSum) {
+                        maxIndex = i;
+                    }
+                }
+                GroupStat stat = candidates.remove(maxIndex);
+                if (stat.mSum <= 0) {
+                    break;
+                }
+                top.add(stat);
+            }
+            return top;
+        }
+
+        @Override
+        AppHealthInfo.DataBean.ThreadCpuBean toBean() {
+            Snapshot snapshot = mSnapshot;
+            if (snapshot == null) {
+                return null;
+            }
+            List<AppHealthInfo.DataBean.ThreadCpuBean.ThreadCpuValuesBean> values = new ArrayList<>(snapshot.mNames.length);
+            for (int i = 0; i < snapshot.mNames.length; i++) {
+                values.add(new AppHealthInfo.DataBean.ThreadCpuBean.ThreadCpuValuesBean(snapshot.mNames[i],
+                        "" + snapshot.mThreadCounts[i], "" + snapshot.mAvgs[i], "" + snapshot.mMaxs[i]));
+            }
+            AppHealthInfo.DataBean.ThreadCpuBean bean = new AppHealthInfo.DataBean.ThreadCpuBean();
+            bean.setPage(mPage);
+            bean.setPageKey(mPageKey);
+            bean.setValues(values);
+            return bean;
+        }
+    }
+
+    private static class GroupStat {
+        final String mName;
+        float mSum;
+        float mMax;
+        int mThreadCount;
+
+        GroupStat(String name) {
+            mName = name;
+        }
+    }
+
+    /**
+     * 采样线程每次写入后生成，只保存占用最高的分组
+     */
+    private static final class Snapshot {
+        final String[] mNames;
+        final int[] mThreadCounts;
+        final float[] mAvgs;
+        final float[] mMaxs;
+
+        Snapshot(List<GroupStat> top, int sampleCount) {
+            int size = top.size();
+            mNames = new String[size];
+            mThreadCounts = new int[size];
+            mAvgs = new float[size];
+            mMaxs = new float[size];
+            for (int i = 0; i < size; i++) {
+                GroupStat stat = top.get(i);
+                mNames[i] = stat.mName;
+                mThreadCounts[i] = stat.mThreadCount;
+                mAvgs[i] = stat.mSum / sampleCount;
+                mMaxs[i] = stat.mMax;
+            }
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.didichuxing.doraemonkit.kit.performance.cpu;
+
+import android.os.Build;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.SparseArray;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @desc: 直接读取/proc/self/stat和/proc/self/task/[tid]/stat计算进程及各线程的cpu占用，替代fork top进程
+ * 每个stat文件只打开一次，之后seek到开头重新读取；线程结束或reset时关闭
+ * 文件内容读入复用的byte数组，数字直接在字节上解析，不生成中间字符串；线程名只在线程首次出现或改名时解码
+ * /proc/stat可读时（8.0以下）以整机cpu时间为分母，不可读时以墙钟时间 * cpu核数为分母，两种方式结果都是占整机cpu的百分比
+ * sample()只应在采样线程中调用，结果可以在其他线程读取
+ */
+public final class ProcCpuSampler {
+    private static final String PROC_STAT = "/proc/stat";
+    private static final String SELF_STAT = "/proc/self/stat";
+    private static final String SELF_TASK = "/proc/self/task";
+
+    private static final int DEFAULT_CLOCK_TICKS = 100;
+    /**
+     * utime在stat中是第14个字段，从comm之后的state(第3个字段)开始数需要跳过11个字段
+     */
+    private static final int FIELDS_BEFORE_UTIME = 11;
+
+    private final byte[] mBuffer = new byte[1024];
+    private final long[] mParsed = new long[2];
+    private final long mClockTicks;
+    private final int mCpuCount;
+
+    private RandomAccessFile mSelfStatFile;
+    private RandomAccessFile mProcStatFile;
+    private boolean mProcStatReadable = true;
+
+    private final SparseArray<ThreadState> mThreads = new SparseArray<>();
+    private int mGeneration;
+
+    private long mLastSampleNanos;
+    private long mLastTotalCpuTicks;
+    private long mLastProcessTicks = -1;
+    /**
+     * 本次采样周期的分母，单位为clock tick
+     */
+    private float mPeriodTicks;
+    private float mProcessCpuRate;
+
+    public ProcCpuSampler() {
+        mClockTicks = readClockTicks();
+        mCpuCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static long readClockTicks() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            try {
+                long ticks = Os.sysconf(OsConstants._SC_CLK_TCK);
+                if (ticks > 0) {
+                    return ticks;
+                }
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+        return DEFAULT_CLOCK_TICKS;
+    }
+
+    /**
+     * 采集一次，第一次调用只记录基准值
+     *
+     * @return 是否已经有可用的采样结果
+     */
+    public synchronized boolean sample() {
+        long now = System.nanoTime();
+        long processTicks = readSelfTicks();
+        if (processTicks < 0) {
+            return false;
+        }
+        long totalCpuTicks = readTotalCpuTicks();
+        boolean hasBaseline = mLastProcessTicks >= 0;
+        if (hasBaseline) {
+            if (totalCpuTicks > 0 && mLastTotalCpuTicks > 0) {
+                mPeriodTicks = totalCpuTicks - mLastTotalCpuTicks;
+            } else {
+                mPeriodTicks = (now - mLastSampleNanos) / 1e9f * mClockTicks * mCpuCount;
+            }
+            mProcessCpuRate = rate(processTicks - mLastProcessTicks);
+        }
+        mLastSampleNanos = now;
+        mLastTotalCpuTicks = totalCpuTicks;
+        mLastProcessTicks = processTicks;
+        sampleThreads(hasBaseline);
+        return hasBaseline;
+    }
+
+    private float rate(long deltaTicks) {
+        if (mPeriodTicks <= 0 || deltaTicks <= 0) {
+            return 0f;
+        }
+        return Math.min(100f, deltaTicks * 100f / mPeriodTicks);
+    }
+
+    /**
+     * @return 进程占整机cpu的百分比
+     */
+    public synchronized float getProcessCpuRate() {
+        return mProcessCpuRate;
+    }
+
+    /**
+     * @return 上一次采样时各线程的cpu占用，按cpu占用从高到低排序
+     */
+    public synchronized List<ThreadCpuInfo> getThreadCpuInfos() {
+        List<ThreadCpuInfo> result = new ArrayList<>(mThreads.size());
+        for (int i = 0; i < mThreads.size(); i++) {
+            ThreadState state = mThreads.valueAt(i);
+            result.add(new ThreadCpuInfo(state.mTid, state.mName, state.mCpuRate, state.mLastTicks));
+        }
+        sortByCpuRate(result);
+        return result;
+    }
+
+    private static void sortByCpuRate(List<ThreadCpuInfo> list) {
+        //插入排序，线程数通常只有几十到一两百
+        for (int i = 1; i < list.size(); i++) {
+            ThreadCpuInfo current = list.get(i);
+            int j = i - 1;
+            while (j >= 0 && list.get(j).getCpuRate() < current.getCpuRate()) {
+                list.set(j + 1, list.get(j));
+                j--;
+            }
+            list.set(j + 1, current);
+        }
+    }
+
+    /**
+     * 关闭打开的文件并清空基准值
+     */
+    public synchronized void reset() {
+        closeQuietly(mSelfStatFile);
+        closeQuietly(mProcStatFile);
+        mSelfStatFile = null;
+        mProcStatFile = null;
+        mProcStatReadable = true;
+        for (int i = 0; i < mThreads.size(); i++) {
+            mThreads.valueAt(i).closeStatFile();
+        }
+        mThreads.clear();
+        mLastProcessTicks = -1;
+        mLastTotalCpuTicks = 0;
+        mProcessCpuRate = 0f;
+    }
+
+    private long readSelfTicks() {
+        try {
+            if (mSelfStatFile == null) {
+                mSelfStatFile = new RandomAccessFile(SELF_STAT, "r");
+            }
+            int length = readFully(mSelfStatFile);
+            if (parseTaskStat(mBuffer, length, mParsed) < 0) {
+                return -1;
+            }
+            return mParsed[0];
+        } catch (IOException e) {
+            closeQuietly(mSelfStatFile);
+            mSelfStatFile = null;
+            return -1;
+        }
+    }
+
+    /**
+     * 8.0开始普通应用无法读取/proc/stat，失败一次后不再尝试
+     *
+     * @return 整机累计cpu时间，不可读时返回0
+     */
+    private long readTotalCpuTicks() {
+        if (!mProcStatReadable) {
+            return 0;
+        }
+        try {
+            if (mProcStatFile == null) {
+                mProcStatFile = new RandomAccessFile(PROC_STAT, "r");
+            }
+            int length = readFully(mProcStatFile);
+            return parseTotalCpuTicks(mBuffer, length);
+        } catch (IOException e) {
+            mProcStatReadable = false;
+            closeQuietly(mProcStatFile);
+            mProcStatFile = null;
+            return 0;
+        }
+    }
+
+    private void sampleThreads(boolean hasBaseline) {
+        String[] tids = new File(SELF_TASK).list();
+        if (tids == null) {
+            return;
+        }
+        int generation = ++mGeneration;
+        for (String tidName : tids) {
+            int tid = parseInt(tidName);
+            if (tid <= 0) {
+                continue;
+            }
+            ThreadState state = mThreads.get(tid);
+            boolean isNew = state == null;
+            if (isNew) {
+                state = new ThreadState(tid);
+            }
+            if (!readThread(state)) {
+                state.closeStatFile();
+                continue;
+            }
+            if (isNew) {
+                mThreads.put(tid, state);
+            }
+            state.mGeneration = generation;
+            //新出现的线程本周期内的cpu时间无法得知起点，下一次采样再计算
+            state.mCpuRate = hasBaseline && state.mPrevTicks >= 0 ? rate(state.mLastTicks - state.mPrevTicks) : 0f;
+        }
+        //移除已经结束的线程
+        for (int i = mThreads.size() - 1; i >= 0; i--) {
+            if (mThreads.valueAt(i).mGeneration != generation) {
+                mThreads.valueAt(i).closeStatFile();
+                mThreads.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * 读取失败时由调用方关闭文件
+     */
+    private boolean readThread(ThreadState state) {
+        try {
+            if (state.mStatFile == null) {
+                state.mStatFile = new RandomAccessFile(state.mStatPath, "r");
+            }
+            int length = readFully(state.mStatFile);
+            int commEnd = parseTaskStat(mBuffer, length, mParsed);
+            if (commEnd < 0) {
+                return false;
+            }
+            state.updateName(mBuffer, commEnd);
+            state.mPrevTicks = state.mLastTicks;
+            state.mLastTicks = mParsed[0];
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private int readFully(RandomAccessFile file) throws IOException {
+        file.seek(0L);
+        int total = 0;
+        int n;
+        while (total < mBuffer.length && (n = file.read(mBuffer, total, mBuffer.length - total)) > 0) {
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * 解析 pid (comm) state ppid ... utime stime ...
+     * comm中可能包含空格和括号，以最后一个')'为准
+     *
+     * @param out out[0]为utime + stime
+     * @return comm结束位置（最后一个')'的下标），格式不对时返回-1
+     */
+    static int parseTaskStat(byte[] buffer, int length, long[] out) {
+        int commEnd = -1;
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == ')') {
+                commEnd = i;
+                break;
+            }
+        }
+        if (commEnd < 0) {
+            return -1;
+        }
+        int pos = skipFields(buffer, commEnd + 1, length, FIELDS_BEFORE_UTIME);
+        long utime = parseLong(buffer, pos, length);
+        pos = skipFields(buffer, pos, length, 1);
+        long stime = parseLong(buffer, pos, length);
+        if (utime < 0 || stime < 0) {
+            return -1;
+        }
+        out[0] = utime + stime;
+        return commEnd;
+    }
+
+    /**
+     * 解析第一行 cpu user nice system idle iowait irq softirq ...
+     */
+    static long parseTotalCpuTicks(byte[] buffer, int length) {
+        //跳过"cpu"
+        int pos = skipFields(buffer, 0, length, 1);
+        long total = 0;
+        for (int i = 0; i < 7; i++) {
+            long value = parseLong(buffer, pos, length);
+            if (value < 0) {
+                return 0;
+            }
+            total += value;
+            pos = skipFields(buffer, pos, length, 1);
+        }
+        return total;
+    }
+
+    /**
+     * 从pos开始跳过count个以空格分隔的字段，返回下一个字段的起始位置
+     */
+    private static int skipFields(byte[] buffer, int pos, int length, int count) {
+        for (int i = 0; i < count; i++) {
+            while (pos < length && buffer[pos] == ' ') {
+                pos++;
+            }
+            while (pos < length && buffer[pos] != ' ' && buffer[pos] != '\n') {
+                pos++;
+            }
+        }
+        while (pos < length && buffer[pos] == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static long parseLong(byte[] buffer, int pos, int length) {
+        if (pos >= length || buffer[pos] < '0' || buffer[pos] > '9') {
+            return -1;
+        }
+        long value = 0;
+        while (pos < length && buffer[pos] >= '0' && buffer[pos] <= '9') {
+            value = value * 10 + (buffer[pos] - '0');
+            pos++;
+        }
+        return value;
+    }
+
+    private static int parseInt(String value) {
+        int result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //ignore
+        }
+    }
+
+    private static final class ThreadState {
+        final int mTid;
+        final String mStatPath;
+        String mName = "";
+        private byte[] mNameBytes = new byte[0];
+        long mPrevTicks = -1;
+        long mLastTicks = -1;
+        float mCpuRate;
+        int mGeneration;
+        RandomAccessFile mStatFile;
+
+        ThreadState(int tid) {
+            mTid = tid;
+            mStatPath = SELF_TASK + "/" + tid + "/stat";
+        }
+
+        void closeStatFile() {
+            closeQuietly(mStatFile);
+            mStatFile = null;
+        }
+
+        /**
+         * 线程名与上一次相同时不重新生成字符串
+         */
+        void updateName(byte[] buffer, int commEnd) {
+            int start = 0;
+            while (start < commEnd && buffer[start] != '(') {
+                start++;
+            }
+            start++;
+            int length = Math.max(0, commEnd - start);
+            if (length == mNameBytes.length) {
+                boolean same = true;
+                for (int i = 0; i < length; i++) {
+                    if (mNameBytes[i] != buffer[start + i]) {
+                        same = false;
+                        break;
+                    }
+                }
+                if (same) {
+                    return;
+                }
+            }
+            mNameBytes = new byte[length];
+            System.arraycopy(buffer, start, mNameBytes, 0, length);
+            mName = new String(mNameBytes);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.didichuxing.doraemonkit.kit.performance.cpu;
+
+/**
+ * @desc: 同一线程名前缀下所有线程在一个采样周期内的cpu占用之和
+ */
+public class ThreadCpuGroup {
+    private final String mName;
+    private float mCpuRate;
+    private int mThreadCount;
+
+    ThreadCpuGroup(String name) {
+        mName = name;
+    }
+
+    void add(ThreadCpuInfo info) {
+        mCpuRate += info.getCpuRate();
+        mThreadCount++;
+    }
+
+    /**
+     * @return 线程名去掉编号后的前缀，主线程固定为{@link ThreadCpuGrouper#MAIN_THREAD_GROUP}
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return 占整机cpu的百分比
+     */
+    public float getCpuRate() {
+        return mCpuRate;
+    }
+
+    public int getThreadCount() {
+        return mThreadCount;
+    }
+}
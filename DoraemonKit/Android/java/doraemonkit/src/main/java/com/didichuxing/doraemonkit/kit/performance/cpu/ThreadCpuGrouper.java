@@ -0,0 +1,87 @@
+package com.didichuxing.doraemonkit.kit.performance.cpu;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @desc: 按线程名前缀合并线程的cpu占用
+ * 线程名中的数字编号会被去掉，例如 pool-2-thread-1 和 pool-3-thread-4 都归到 pool-thread，
+ * glide-source-thread-0 归到 glide-source-thread，OkHttp Dispatcher 保持不变
+ */
+public final class ThreadCpuGrouper {
+    /**
+     * 主线程在/proc中的名字是包名的后15个字符，不适合作为分组名
+     */
+    public static final String MAIN_THREAD_GROUP = "main";
+
+    private ThreadCpuGrouper() {
+    }
+
+    /**
+     * @param infos   {@link ProcCpuSampler#getThreadCpuInfos()}的结果
+     * @param mainTid 主线程的tid，即进程pid
+     * @return 按cpu占用从高到低排序的分组
+     */
+    public static List<ThreadCpuGroup> group(List<ThreadCpuInfo> infos, int mainTid) {
+        Map<String, ThreadCpuGroup> groups = new HashMap<>();
+        List<ThreadCpuGroup> result = new ArrayList<>();
+        for (ThreadCpuInfo info : infos) {
+            String name = info.getTid() == mainTid ? MAIN_THREAD_GROUP : groupName(info.getName());
+            ThreadCpuGroup group = groups.get(name);
+            if (group == null) {
+                group = new ThreadCpuGroup(name);
+                groups.put(name, group);
+                result.add(group);
+            }
+            group.add(info);
+        }
+        sortByCpuRate(result);
+        return result;
+    }
+
+    /**
+     * 去掉数字并合并多余的分隔符，去掉之后为空时返回原线程名
+     */
+    static String groupName(String threadName) {
+        if (threadName == null || threadName.length() == 0) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(threadName.length());
+        boolean pendingSeparator = false;
+        for (int i = 0; i < threadName.length(); i++) {
+            char c = threadName.charAt(i);
+            if (c >= '0' && c <= '9') {
+                continue;
+            }
+            if (isSeparator(c)) {
+                pendingSeparator = builder.length() > 0;
+                continue;
+            }
+            if (pendingSeparator) {
+                builder.append(threadName.charAt(i - 1) == ' ' ? ' ' : '-');
+                pendingSeparator = false;
+            }
+            builder.append(c);
+        }
+        return builder.length() == 0 ? threadName : builder.toString();
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '-' || c == '_' || c == ' ' || c == '#' || c == '.' || c == ':' || c == '/';
+    }
+
+    private static void sortByCpuRate(List<ThreadCpuGroup> list) {
+        //插入排序，分组数通常只有几十个
+        for (int i = 1; i < list.size(); i++) {
+            ThreadCpuGroup current = list.get(i);
+            int j = i - 1;
+            while (j >= 0 && list.get(j).getCpuRate() < current.getCpuRate()) {
+                list.set(j + 1, list.get(j));
+                j--;
+            }
+            list.set(j + 1, current);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.didichuxing.doraemonkit.kit.performance.cpu;
+
+/**
+ * @desc: 单个线程在一个采样周期内的cpu占用
+ */
+public class ThreadCpuInfo {
+    private final int mTid;
+    private final String mName;
+    private final float mCpuRate;
+    private final long mTotalTicks;
+
+    public ThreadCpuInfo(int tid, String name, float cpuRate, long totalTicks) {
+        mTid = tid;
+        mName = name;
+        mCpuRate = cpuRate;
+        mTotalTicks = totalTicks;
+    }
+
+    public int getTid() {
+        return mTid;
+    }
+
+    /**
+     * @return /proc中的线程名，最长15个字符
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return 占整机cpu的百分比，与进程cpu使用同一个分母
+     */
+    public float getCpuRate() {
+        return mCpuRate;
+    }
+
+    /**
+     * @return 线程启动以来累计的utime + stime，单位为clock tick
+     */
+    public long getTotalTicks() {
+        return mTotalTicks;
+    }
+}
@@ -7,6 +7,9 @@ public class FpsDataSource implements IDataSource {
     @Override
     public LineData createData() {
         float rate = PerformanceDataManager.getInstance().getLastFrameRate();
-        return LineData.obtain(rate, Math.round(rate) + "");
+        int jankCount = PerformanceDataManager.getInstance().getLastJankCount();
+        //最近1s有卡顿帧时一并显示
+        String label = jankCount > 0 ? Math.round(rate) + " jank:" + jankCount : Math.round(rate) + "";
+        return LineData.obtain(rate, label);
     }
 }
@@ -0,0 +1,91 @@
+package com.didichuxing.doraemonkit.kit.performance.fps;
+
+/**
+ * @desc: 帧耗时的固定桶直方图，记录一帧只需要一次数组自增，不保存原始数据
+ * 0~100ms每0.5ms一个桶，100ms~1s每10ms一个桶，超过1s的帧放在最后一个桶中
+ */
+public final class FrameHistogram {
+    private static final long FINE_BUCKET_NANOS = 500 * 1000L;
+    private static final int FINE_BUCKET_COUNT = 200;
+    private static final long FINE_LIMIT_NANOS = FINE_BUCKET_NANOS * FINE_BUCKET_COUNT;
+    private static final long COARSE_BUCKET_NANOS = 10 * 1000 * 1000L;
+    private static final int COARSE_BUCKET_COUNT = 90;
+    private static final int OVERFLOW_BUCKET = FINE_BUCKET_COUNT + COARSE_BUCKET_COUNT;
+
+    private final int[] mBuckets = new int[OVERFLOW_BUCKET + 1];
+    private int mCount;
+    private long mMaxNanos;
+
+    public void add(long durationNanos) {
+        if (durationNanos < 0) {
+            return;
+        }
+        mBuckets[bucketIndex(durationNanos)]++;
+        mCount++;
+        if (durationNanos > mMaxNanos) {
+            mMaxNanos = durationNanos;
+        }
+    }
+
+    static int bucketIndex(long durationNanos) {
+        if (durationNanos < FINE_LIMIT_NANOS) {
+            return (int) (durationNanos / FINE_BUCKET_NANOS);
+        }
+        int coarse = (int) ((durationNanos - FINE_LIMIT_NANOS) / COARSE_BUCKET_NANOS);
+        if (coarse >= COARSE_BUCKET_COUNT) {
+            return OVERFLOW_BUCKET;
+        }
+        return FINE_BUCKET_COUNT + coarse;
+    }
+
+    /**
+     * @return 桶的上边界，最后一个桶没有上边界
+     */
+    static long bucketUpperNanos(int index) {
+        if (index < FINE_BUCKET_COUNT) {
+            return (index + 1) * FINE_BUCKET_NANOS;
+        }
+        if (index < OVERFLOW_BUCKET) {
+            return FINE_LIMIT_NANOS + (index - FINE_BUCKET_COUNT + 1) * COARSE_BUCKET_NANOS;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return 该分位所在桶的上边界，不超过记录到的最大值；没有数据时返回0
+     */
+    public long getPercentileNanos(float percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(mCount * Math.min(100f, Math.max(0f, percentile)) / 100f);
+        if (target < 1) {
+            target = 1;
+        }
+        long cumulative = 0;
+        for (int i = 0; i < mBuckets.length; i++) {
+            cumulative += mBuckets[i];
+            if (cumulative >= target) {
+                return Math.min(bucketUpperNanos(i), mMaxNanos);
+            }
+        }
+        return mMaxNanos;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    public void reset() {
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = 0;
+        }
+        mCount = 0;
+        mMaxNanos = 0;
+    }
+}
@@ -0,0 +1,75 @@
+package com.didichuxing.doraemonkit.kit.performance.fps;
+
+/**
+ * @desc: 一段时间内（通常是一个页面）的帧耗时统计
+ */
+public final class FrameStats {
+    private final FrameHistogram mHistogram = new FrameHistogram();
+    private int mJankCount;
+    private int mDroppedFrames;
+    private int mFrozenFrameCount;
+    private float mRefreshRate;
+
+    void add(long durationNanos, int droppedFrames, boolean frozen, float refreshRate) {
+        mHistogram.add(durationNanos);
+        if (droppedFrames > 0) {
+            mJankCount++;
+            mDroppedFrames += droppedFrames;
+        }
+        if (frozen) {
+            mFrozenFrameCount++;
+        }
+        mRefreshRate = refreshRate;
+    }
+
+    void reset() {
+        mHistogram.reset();
+        mJankCount = 0;
+        mDroppedFrames = 0;
+        mFrozenFrameCount = 0;
+    }
+
+    public int getFrameCount() {
+        return mHistogram.getCount();
+    }
+
+    /**
+     * @return 至少错过一个vsync的帧数
+     */
+    public int getJankCount() {
+        return mJankCount;
+    }
+
+    /**
+     * @return 错过的vsync总数
+     */
+    public int getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * @return 耗时超过{@link FrameTimingMonitor#FROZEN_FRAME_NANOS}的帧数
+     */
+    public int getFrozenFrameCount() {
+        return mFrozenFrameCount;
+    }
+
+    /**
+     * @return 最后一帧时屏幕的刷新率
+     */
+    public float getRefreshRate() {
+        return mRefreshRate;
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return 帧耗时，单位ms
+     */
+    public float getPercentileMillis(float percentile) {
+        return mHistogram.getPercentileNanos(percentile) / 1000000f;
+    }
+
+    public float getMaxMillis() {
+        return mHistogram.getMaxNanos() / 1000000f;
+    }
+}
@@ -0,0 +1,157 @@
+package com.didichuxing.doraemonkit.kit.performance.fps;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.Display;
+import android.view.WindowManager;
+
+import com.blankj.utilcode.util.ActivityUtils;
+import com.didichuxing.doraemonkit.DoraemonKit;
+
+/**
+ * @desc: 根据Choreographer回调的frameTimeNanos计算相邻两帧的间隔
+ * 间隔按屏幕实际刷新率换算错过的vsync个数，90/120Hz的屏幕不再按60帧计算
+ * 所有方法只在主线程调用
+ */
+public final class FrameTimingMonitor {
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+    /**
+     * 超过700ms的帧记为冻帧，与Android vitals的定义一致
+     */
+    public static final long FROZEN_FRAME_NANOS = 700 * 1000 * 1000L;
+    /**
+     * 超过该间隔认为中间发生了暂停（例如退到后台），不计入统计
+     */
+    private static final long MAX_FRAME_NANOS = 10 * 1000 * 1000 * 1000L;
+
+    private float mRefreshRate = DEFAULT_REFRESH_RATE;
+    private long mFrameIntervalNanos = intervalOf(DEFAULT_REFRESH_RATE);
+    private long mLastFrameTimeNanos = -1;
+
+    private long mWindowStartNanos = -1;
+    private int mWindowFrameCount;
+    private int mWindowJankCount;
+    private int mLastWindowJankCount;
+
+    private final FrameStats mPageStats = new FrameStats();
+
+    private static long intervalOf(float refreshRate) {
+        return (long) (1000000000L / refreshRate);
+    }
+
+    /**
+     * @return 当前页面所在屏幕的刷新率
+     */
+    public static float detectRefreshRate() {
+        try {
+            Display display;
+            Activity topActivity = ActivityUtils.getTopActivity();
+            if (topActivity != null) {
+                display = topActivity.getWindowManager().getDefaultDisplay();
+            } else {
+                WindowManager windowManager = (WindowManager) DoraemonKit.APPLICATION.getSystemService(Context.WINDOW_SERVICE);
+                display = windowManager.getDefaultDisplay();
+            }
+            float refreshRate = display.getRefreshRate();
+            if (refreshRate >= 1f) {
+                return refreshRate;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return DEFAULT_REFRESH_RATE;
+    }
+
+    public void setRefreshRate(float refreshRate) {
+        if (refreshRate < 1f || refreshRate == mRefreshRate) {
+            return;
+        }
+        mRefreshRate = refreshRate;
+        mFrameIntervalNanos = intervalOf(refreshRate);
+    }
+
+    public float getRefreshRate() {
+        return mRefreshRate;
+    }
+
+    /**
+     * 在Choreographer.FrameCallback#doFrame中调用
+     */
+    public void onFrame(long frameTimeNanos) {
+        if (mWindowStartNanos < 0) {
+            //frameTimeNanos与System.nanoTime()同一时间基准
+            mWindowStartNanos = frameTimeNanos;
+        }
+        mWindowFrameCount++;
+        long lastFrameTimeNanos = mLastFrameTimeNanos;
+        mLastFrameTimeNanos = frameTimeNanos;
+        if (lastFrameTimeNanos < 0) {
+            return;
+        }
+        long durationNanos = frameTimeNanos - lastFrameTimeNanos;
+        if (durationNanos <= 0 || durationNanos > MAX_FRAME_NANOS) {
+            return;
+        }
+        //四舍五入到vsync个数，抵消vsync时间戳的抖动
+        int droppedFrames = (int) ((durationNanos + mFrameIntervalNanos / 2) / mFrameIntervalNanos) - 1;
+        if (droppedFrames > 0) {
+            mWindowJankCount++;
+        }
+        mPageStats.add(durationNanos, Math.max(0, droppedFrames), durationNanos >= FROZEN_FRAME_NANOS, mRefreshRate);
+    }
+
+    /**
+     * 结束当前统计窗口
+     *
+     * @return 窗口内的帧率，不超过屏幕刷新率
+     */
+    public int closeWindow(long nowNanos) {
+        int frameRate;
+        if (mWindowStartNanos < 0 || nowNanos <= mWindowStartNanos) {
+            //暂停之后还没有新的帧
+            frameRate = Math.round(mRefreshRate);
+        } else {
+            frameRate = Math.round(mWindowFrameCount * 1e9f / (nowNanos - mWindowStartNanos));
+        }
+        frameRate = Math.min(frameRate, Math.round(mRefreshRate));
+        mLastWindowJankCount = mWindowJankCount;
+        mWindowStartNanos = nowNanos;
+        mWindowFrameCount = 0;
+        mWindowJankCount = 0;
+        return frameRate;
+    }
+
+    /**
+     * @return 上一个统计窗口内的卡顿帧数
+     */
+    public int getLastWindowJankCount() {
+        return mLastWindowJankCount;
+    }
+
+    /**
+     * @return 当前页面的统计，只能在主线程读取
+     */
+    public FrameStats getPageStats() {
+        return mPageStats;
+    }
+
+    public void resetPage() {
+        mPageStats.reset();
+    }
+
+    /**
+     * 退到后台等不产生帧的情况下调用，下一帧不与之前的帧计算间隔
+     */
+    public void pause() {
+        mLastFrameTimeNanos = -1;
+        mWindowStartNanos = -1;
+        mWindowFrameCount = 0;
+        mWindowJankCount = 0;
+    }
+
+    public void reset() {
+        pause();
+        mLastWindowJankCount = 0;
+        mPageStats.reset();
+    }
+}
@@ -1,7 +1,5 @@
 package com.didichuxing.doraemonkit.kit.timecounter;
 
-import android.os.Looper;
-
 import com.blankj.utilcode.util.GsonUtils;
 import com.didichuxing.doraemonkit.aop.DokitPluginConfig;
 import com.didichuxing.doraemonkit.aop.method_stack.MethodStackUtil;
@@ -134,7 +132,6 @@ public class TimeCounterManager {
         if (!mIsRunning) {
             return;
         }
-        Looper.getMainLooper().setMessageLogging(null);
         mIsRunning = false;
         DokitViewManager.getInstance().detach(TimeCounterDokitView.class.getSimpleName());
 
@@ -60,6 +60,16 @@ public class DokitUtil {
      * @return
      */
     public static String param2Json(String param) throws JSONException {
+        return param2JsonObject(param).toString();
+    }
+
+    /**
+     * 字符串对转JSONObject，不需要json字符串时可以省去一次序列化和解析
+     *
+     * @param param
+     * @return
+     */
+    public static JSONObject param2JsonObject(String param) throws JSONException {
         String[] params = param.split("&");
         JSONObject jsonObject = new JSONObject();
 
@@ -72,6 +82,6 @@ public class DokitUtil {
             }
         }
 
-        return jsonObject.toString();
+        return jsonObject;
     }
 }
@@ -0,0 +1,117 @@
+package com.didichuxing.doraemonkit.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ================================================
+ * 描    述：堆栈帧的共享常量表，相同的StackTraceElement只保存一份，采样结果只记录int id
+ * 同时按 className.methodName 分配函数id，用于忽略行号按函数聚合
+ * 修订历史：
+ * ================================================
+ */
+public final class StackFrameTable {
+
+    private static class Holder {
+        private static final StackFrameTable INSTANCE = new StackFrameTable();
+    }
+
+    private final Map<StackTraceElement, Integer> mFrameIds = new HashMap<>();
+    private final List<StackTraceElement> mFrames = new ArrayList<>();
+    /**
+     * 下标为帧id，值为函数id
+     */
+    private int[] mFrameMethods = new int[1024];
+
+    private final Map<String, Integer> mMethodIds = new HashMap<>();
+    private final List<String> mMethods = new ArrayList<>();
+
+    public static StackFrameTable getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private StackFrameTable() {
+    }
+
+    /**
+     * 一次加锁处理整个堆栈
+     *
+     * @param stack  Thread.getStackTrace()的结果，栈顶在前
+     * @param frames 输出的帧id，顺序与stack相同
+     * @return 写入frames的个数
+     */
+    public synchronized int intern(StackTraceElement[] stack, int[] frames) {
+        int count = Math.min(stack.length, frames.length);
+        for (int i = 0; i < count; i++) {
+            frames[i] = internLocked(stack[i]);
+        }
+        return count;
+    }
+
+    /**
+     * 与intern相同，但输出的是函数id
+     */
+    public synchronized int internMethods(StackTraceElement[] stack, int[] methods) {
+        int count = Math.min(stack.length, methods.length);
+        for (int i = 0; i < count; i++) {
+            methods[i] = mFrameMethods[internLocked(stack[i])];
+        }
+        return count;
+    }
+
+    public synchronized int intern(StackTraceElement element) {
+        return internLocked(element);
+    }
+
+    private int internLocked(StackTraceElement element) {
+        Integer id = mFrameIds.get(element);
+        if (id != null) {
+            return id;
+        }
+        int frameId = mFrames.size();
+        mFrames.add(element);
+        mFrameIds.put(element, frameId);
+        if (frameId == mFrameMethods.length) {
+            int[] frameMethods = new int[frameId * 2];
+            System.arraycopy(mFrameMethods, 0, frameMethods, 0, frameId);
+            mFrameMethods = frameMethods;
+        }
+        mFrameMethods[frameId] = internMethodLocked(element.getClassName() + "." + element.getMethodName());
+        return frameId;
+    }
+
+    private int internMethodLocked(String methodName) {
+        Integer id = mMethodIds.get(methodName);
+        if (id != null) {
+            return id;
+        }
+        int methodId = mMethods.size();
+        mMethods.add(methodName);
+        mMethodIds.put(methodName, methodId);
+        return methodId;
+    }
+
+    public synchronized StackTraceElement getFrame(int frameId) {
+        return mFrames.get(frameId);
+    }
+
+    /**
+     * @return 帧对应的函数id
+     */
+    public synchronized int methodOf(int frameId) {
+        return mFrameMethods[frameId];
+    }
+
+    /**
+     * @return className.methodName
+     */
+    public synchronized String getMethodName(int methodId) {
+        return mMethods.get(methodId);
+    }
+
+    public synchronized int getFrameCount() {
+        return mFrames.size();
+    }
+}
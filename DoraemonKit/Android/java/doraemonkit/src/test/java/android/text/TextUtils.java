@@ -0,0 +1,13 @@
+package android.text;
+
+/**
+ * ================================================
+ * 描    述：本地单元测试中android.jar的方法都会抛出"Method not mocked"，这里覆盖测试用到的方法
+ * 修订历史：
+ * ================================================
+ */
+public class TextUtils {
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
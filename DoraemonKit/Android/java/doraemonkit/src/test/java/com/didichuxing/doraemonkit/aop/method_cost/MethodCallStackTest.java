@@ -0,0 +1,94 @@
+package com.didichuxing.doraemonkit.aop.method_cost;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ================================================
+ * 描    述：{@link MethodCallStack}的入栈出栈、递归、异常残留记录和深度上限
+ * 修订历史：
+ * ================================================
+ */
+public class MethodCallStackTest {
+    private MethodCallStack mStack;
+
+    @Before
+    public void setUp() {
+        mStack = new MethodCallStack();
+    }
+
+    @Test
+    public void pushPop() {
+        mStack.push(1, 100);
+        mStack.push(2, 150);
+        assertEquals(2, mStack.depth());
+        assertEquals(30, mStack.pop(2, 180));
+        assertEquals(100, mStack.pop(1, 200));
+        assertEquals(0, mStack.depth());
+    }
+
+    @Test
+    public void popWithoutPushReturnsMinusOne() {
+        assertEquals(-1, mStack.pop(1, 100));
+        mStack.push(1, 100);
+        assertEquals(-1, mStack.pop(2, 200));
+        assertEquals(1, mStack.depth());
+    }
+
+    @Test
+    public void recursionMatchesNearestEnter() {
+        mStack.push(1, 0);
+        mStack.push(1, 10);
+        mStack.push(1, 20);
+        assertEquals(5, mStack.pop(1, 25));
+        assertEquals(20, mStack.pop(1, 30));
+        assertEquals(40, mStack.pop(1, 40));
+        assertEquals(0, mStack.depth());
+    }
+
+    @Test
+    public void throwLeavesFramesUnwoundByOuterExit() {
+        //1调用2，2调用3，3抛出异常一直到1才被捕获，2和3都不会执行退出插桩
+        mStack.push(1, 0);
+        mStack.push(2, 10);
+        mStack.push(3, 20);
+        assertEquals(3, mStack.depth());
+        assertEquals(50, mStack.pop(1, 50));
+        assertEquals(0, mStack.depth());
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        for (int i = 0; i < 100; i++) {
+            mStack.push(i, i);
+        }
+        assertEquals(100, mStack.depth());
+        for (int i = 99; i >= 0; i--) {
+            assertEquals(1000 - i, mStack.pop(i, 1000));
+        }
+        assertEquals(0, mStack.depth());
+    }
+
+    @Test
+    public void overflowDiscardsBottomHalf() {
+        //没有外层插桩函数时，异常残留的记录一直累积到上限
+        for (int i = 0; i < 1024; i++) {
+            mStack.push(i, i);
+        }
+        assertEquals(1024, mStack.depth());
+        mStack.push(5000, 5000);
+        assertEquals(513, mStack.depth());
+        //最底部的记录被丢弃，外层函数出栈时不再计时
+        assertEquals(-1, mStack.pop(0, 6000));
+        assertEquals(-1, mStack.pop(511, 6000));
+        assertEquals(513, mStack.depth());
+        //之后的调用仍然可以计时
+        assertEquals(100, mStack.pop(5000, 5100));
+        assertEquals(6000 - 512, mStack.pop(512, 6000));
+        assertEquals(0, mStack.depth());
+        mStack.push(7, 0);
+        assertEquals(10, mStack.pop(7, 10));
+    }
+}
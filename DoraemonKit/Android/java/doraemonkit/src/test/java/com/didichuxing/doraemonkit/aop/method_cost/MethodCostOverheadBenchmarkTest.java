@@ -0,0 +1,81 @@
+package com.didichuxing.doraemonkit.aop.method_cost;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ================================================
+ * 描    述：对比插桩和未插桩函数的调用耗时
+ * 插桩函数的入口和出口与{@link MethodCostRuntime#enter}、{@link MethodCostRuntime#exit}未超过阈值时的路径一致：
+ * 取线程的调用栈、System.nanoTime()、入栈出栈。MethodCostRuntime的慢函数聚合依赖SparseArray，本地单元测试中无法初始化，这里直接使用{@link MethodCallStack}
+ * 修订历史：
+ * ================================================
+ */
+public class MethodCostOverheadBenchmarkTest {
+    private static final int WARMUP_ROUNDS = 200000;
+    private static final int MEASURE_ROUNDS = 5000000;
+    private static final int METHOD_ID = 42;
+
+    private static final ThreadLocal<MethodCallStack> sCallStack = new ThreadLocal<MethodCallStack>() {
+        @Override
+        protected MethodCallStack initialValue() {
+            return new MethodCallStack();
+        }
+    };
+
+    private static int sSink;
+
+    private static int work(int value) {
+        return value * 31 + 7;
+    }
+
+    private static int plain(int value) {
+        return work(value);
+    }
+
+    private static int instrumented(int value) {
+        sCallStack.get().push(METHOD_ID, System.nanoTime());
+        int result = work(value);
+        long costNanos = sCallStack.get().pop(METHOD_ID, System.nanoTime());
+        if (costNanos < 0 || costNanos < 50 * 1000000L) {
+            return result;
+        }
+        return -result;
+    }
+
+    @Test
+    public void benchmark() {
+        runPlain(WARMUP_ROUNDS);
+        runInstrumented(WARMUP_ROUNDS);
+        long plain = runPlain(MEASURE_ROUNDS);
+        long instrumented = runInstrumented(MEASURE_ROUNDS);
+        System.out.println(String.format("plain %.1f ns/call  instrumented %.1f ns/call  overhead %.1f ns/call",
+                plain / (double) MEASURE_ROUNDS, instrumented / (double) MEASURE_ROUNDS,
+                (instrumented - plain) / (double) MEASURE_ROUNDS));
+        //每次调用都要出栈
+        assertEquals(0, sCallStack.get().depth());
+    }
+
+    private static long runPlain(int rounds) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += plain(i);
+        }
+        long cost = System.nanoTime() - start;
+        sSink += sink;
+        return cost;
+    }
+
+    private static long runInstrumented(int rounds) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += instrumented(i);
+        }
+        long cost = System.nanoTime() - start;
+        sSink += sink;
+        return cost;
+    }
+}
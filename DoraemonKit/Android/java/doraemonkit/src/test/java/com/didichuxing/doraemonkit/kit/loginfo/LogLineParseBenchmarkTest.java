@@ -0,0 +1,72 @@
+package com.didichuxing.doraemonkit.kit.loginfo;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * ================================================
+ * 描    述：对比正则解析和逐字符扫描解析同一批日志的耗时
+ * 扫描解析的tag和日志内容在第一次访问时才生成，这里分别统计只解析和解析后读取tag、日志内容两种情况
+ * 修订历史：
+ * ================================================
+ */
+public class LogLineParseBenchmarkTest {
+    private static final int LINE_COUNT = 50000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+
+    private static int sSink;
+
+    @Test
+    public void benchmark() {
+        List<String> lines = new LogcatLineGenerator(7L).generate(LINE_COUNT);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runRegex(lines);
+            runScanner(lines, false);
+            runScanner(lines, true);
+        }
+        long regex = 0;
+        long scanner = 0;
+        long scannerWithFields = 0;
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            regex += runRegex(lines);
+            scanner += runScanner(lines, false);
+            scannerWithFields += runScanner(lines, true);
+        }
+        long total = (long) LINE_COUNT * MEASURE_ROUNDS;
+        System.out.println(String.format("regex %d ns/line  scanner %d ns/line  scanner+fields %d ns/line",
+                regex / total, scanner / total, scannerWithFields / total));
+    }
+
+    private static long runRegex(List<String> lines) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lines.size(); i++) {
+            RegexLogLine logLine = RegexLogLine.parse(lines.get(i));
+            sink += logLine.logLevel + logLine.logOutput.length();
+        }
+        long cost = System.nanoTime() - start;
+        sSink += sink;
+        return cost;
+    }
+
+    private static long runScanner(List<String> lines, boolean readFields) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lines.size(); i++) {
+            LogLine logLine = LogLine.newLogLine(lines.get(i), false);
+            sink += logLine.getLogLevel();
+            if (readFields) {
+                sink += logLine.getLogOutput().length();
+                String tag = logLine.getTag();
+                if (tag != null) {
+                    sink += tag.length();
+                }
+            }
+        }
+        long cost = System.nanoTime() - start;
+        sSink += sink;
+        return cost;
+    }
+}
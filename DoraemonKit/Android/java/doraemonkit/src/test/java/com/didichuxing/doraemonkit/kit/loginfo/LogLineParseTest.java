@@ -0,0 +1,81 @@
+package com.didichuxing.doraemonkit.kit.loginfo;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ================================================
+ * 描    述：逐字符扫描的{@link LogLine}和原来基于正则的解析结果一致
+ * 修订历史：
+ * ================================================
+ */
+public class LogLineParseTest {
+
+    @Test
+    public void generatedLinesMatchRegex() {
+        List<String> lines = new LogcatLineGenerator(20201018L).generate(20000);
+        for (String line : lines) {
+            assertParity(line);
+        }
+    }
+
+    @Test
+    public void fixtureLines() {
+        String[] lines = {
+                "10-18 12:00:00.000 D/Tag( 1234): msg",
+                "10-18 12:00:00.000 I/ActivityManager(  567): Start proc com.example",
+                "10-18 12:00:00.000 W/my tag(1): (nested): value",
+                "10-18 12:00:00.000 E/ZTE( 1234* 5): zte blade",
+                "10-18 12:00:00.000 E/ZTE( 1234*5): zte blade",
+                "10-18 12:00:00.000 D/chatty( 99): uid=1000 expire 3 lines",
+                "10-18 12:00:00.000 D/Foo( 99): maxLineHeight=2",
+                "10-18 12:00:00.000 I/memtrack( 99): Couldn't load",
+                "10-18 12:00:00.000 I/ANDR-PERF-MPCTL( 99): perf",
+                "10-18 12:00:00.000 F/libc( 99): Fatal signal",
+                "10-18 12:00:00.000 D/Tag( 1234): ",
+                "D/Tag( 1234): no timestamp",
+                "--------- beginning of main",
+                "--------- beginning of crash",
+                "10-18 12:00:00.000 D/Tag(abc): not a pid",
+                "10-18 12:00:00.000 D/Tag( 1234) missing colon",
+                "",
+        };
+        for (String line : lines) {
+            assertParity(line);
+        }
+    }
+
+    @Test
+    public void separatorLine() {
+        LogLine logLine = LogLine.newLogLine("--------- beginning of main", false);
+        assertEquals(-1, logLine.getLogLevel());
+        assertEquals(-1, logLine.getProcessId());
+        assertEquals("--------- beginning of main", logLine.getLogOutput());
+        assertEquals("--------- beginning of main", logLine.getOriginalLine());
+        assertEquals(-1, LogLine.parseProcessId("--------- beginning of main"));
+    }
+
+    @Test
+    public void ztePid() {
+        LogLine logLine = LogLine.newLogLine("10-18 12:00:00.000 E/ZTE( 1234* 5): zte blade", false);
+        assertEquals(1234, logLine.getProcessId());
+        assertEquals("ZTE", logLine.getTag());
+        assertEquals("zte blade", logLine.getLogOutput());
+        assertEquals(1234, LogLine.parseProcessId("10-18 12:00:00.000 E/ZTE( 1234* 5): zte blade"));
+    }
+
+    private static void assertParity(String line) {
+        RegexLogLine expected = RegexLogLine.parse(line);
+        LogLine actual = LogLine.newLogLine(line, false);
+        assertEquals(line, expected.logLevel, actual.getLogLevel());
+        assertEquals(line, expected.processId, actual.getProcessId());
+        assertEquals(line, expected.tag, actual.getTag());
+        assertEquals(line, expected.logOutput, actual.getLogOutput());
+        assertEquals(line, expected.timestamp, actual.getTimestamp());
+        assertEquals(line, expected.getOriginalLine(), actual.getOriginalLine());
+        assertEquals(line, expected.processId, LogLine.parseProcessId(line));
+    }
+}
@@ -0,0 +1,173 @@
+package com.didichuxing.doraemonkit.kit.loginfo;
+
+import android.util.Log;
+
+import com.didichuxing.doraemonkit.kit.loginfo.util.SearchCriteria;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ================================================
+ * 描    述：{@link LogStore}的过滤结果与逐行调用{@link SearchCriteria#matches}的结果一致
+ * 覆盖容量上限丢弃日志、growArena/growLines扩容、tag过多时rebuildTags、清空、关键字细化和放宽
+ * 修订历史：
+ * ================================================
+ */
+public class LogStoreTest {
+    private static final int[] LEVELS = {Log.VERBOSE, Log.DEBUG, Log.INFO, Log.WARN, Log.ERROR};
+    private static final String[] QUERIES = {"", "a", "ac", "act", "activity", "ActivityManager", "o", "ok", "okh",
+            "tag:Do", "tag:DoKit", "tag:DoKit on", "tag:\"my tag\"", "tag:chatty", "#1", "#12", "#123", "12", "7",
+            "中文", "beginning", "maxLineHeight", "https", "(1)", "zzz", "tag:T1", "tag:T12 #"};
+
+    /**
+     * 所有添加过的日志，下标为在LogStore中的序号
+     */
+    private final List<String> mAdded = new ArrayList<>();
+
+    @Test
+    public void filterMatchesSearchCriteriaWithEviction() {
+        //字符上限较小，丢弃主要由字符数触发；初始容量小于上限，会经过growArena和growLines
+        LogStore store = new LogStore(3000, 120 * 1024);
+        LogcatLineGenerator generator = new LogcatLineGenerator(1L);
+        Random random = new Random(2L);
+        int levelLimit = Log.VERBOSE;
+        String query = "";
+        int seq = 0;
+        for (int round = 0; round < 300; round++) {
+            int batch = 1 + random.nextInt(200);
+            List<String> lines = new ArrayList<>(batch);
+            for (int i = 0; i < batch; i++) {
+                lines.add(generator.next(seq++));
+            }
+            add(store, lines);
+            assertConsistent(store, levelLimit, query);
+            if (random.nextInt(3) == 0) {
+                levelLimit = LEVELS[random.nextInt(LEVELS.length)];
+                query = nextQuery(random, store);
+                store.setQuery(levelLimit, query);
+                assertConsistent(store, levelLimit, query);
+            }
+        }
+        assertTrue(store.getFirstSeq() > 0);
+    }
+
+    @Test
+    public void lineLimitEviction() {
+        //行数上限先于字符上限触发
+        LogStore store = new LogStore(1500, 4 * 1024 * 1024);
+        LogcatLineGenerator generator = new LogcatLineGenerator(3L);
+        store.setQuery(Log.DEBUG, "a");
+        for (int round = 0; round < 20; round++) {
+            add(store, generator.generate(500));
+            assertConsistent(store, Log.DEBUG, "a");
+            assertTrue(store.getNextSeq() - store.getFirstSeq() <= 1500);
+        }
+        assertEquals(mAdded.size() - 1500, store.getFirstSeq());
+    }
+
+    @Test
+    public void refineAndWidenQuery() {
+        LogStore store = new LogStore(5000, 1024 * 1024);
+        add(store, new LogcatLineGenerator(4L).generate(4000));
+        String[] queries = {"a", "ac", "act", "ac", "", "tag:DoKit", "tag:DoKit on", "tag:Do", "1", "12", "123", "pid:5 x"};
+        int[] levels = {Log.VERBOSE, Log.DEBUG, Log.DEBUG, Log.INFO, Log.VERBOSE, Log.WARN, Log.WARN, Log.DEBUG,
+                Log.VERBOSE, Log.VERBOSE, Log.VERBOSE, Log.VERBOSE};
+        for (int i = 0; i < queries.length; i++) {
+            store.setQuery(levels[i], queries[i]);
+            assertConsistent(store, levels[i], queries[i]);
+        }
+    }
+
+    @Test
+    public void rebuildTagsKeepsTagMatches() {
+        //每行一个不同的tag，超过tag上限后按保留的日志重建字典
+        LogStore store = new LogStore(2000, 1024 * 1024);
+        store.setQuery(Log.VERBOSE, "tag:T1");
+        for (int round = 0; round < 6; round++) {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 1500; i++) {
+                int seq = mAdded.size() + i;
+                lines.add("10-18 12:00:00.000 D/T" + seq + "( " + (seq % 50) + "): unique tag " + seq);
+            }
+            add(store, lines);
+            assertConsistent(store, Log.VERBOSE, "tag:T1");
+            store.setQuery(Log.VERBOSE, "T12");
+            assertConsistent(store, Log.VERBOSE, "T12");
+            store.setQuery(Log.VERBOSE, "tag:T1");
+            assertConsistent(store, Log.VERBOSE, "tag:T1");
+        }
+    }
+
+    @Test
+    public void clearAndCopy() {
+        LogStore store = new LogStore(3000, 256 * 1024);
+        LogcatLineGenerator generator = new LogcatLineGenerator(5L);
+        store.setQuery(Log.DEBUG, "o");
+        add(store, generator.generate(2000));
+        store.clear();
+        assertEquals(0, store.getResultSize());
+        assertEquals(store.getFirstSeq(), store.getNextSeq());
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            lines.add(generator.next(mAdded.size() + i));
+        }
+        add(store, lines);
+        assertConsistent(store, Log.DEBUG, "o");
+
+        LogStore copy = store.copy();
+        assertEquals(store.getFirstSeq(), copy.getFirstSeq());
+        assertEquals(store.getNextSeq(), copy.getNextSeq());
+        for (long seq = copy.getFirstSeq(); seq < copy.getNextSeq(); seq++) {
+            assertEquals(mAdded.get((int) seq), copy.get(seq).getRawLine());
+        }
+    }
+
+    private void add(LogStore store, List<String> lines) {
+        List<LogLine> logLines = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            logLines.add(LogLine.newLogLine(line, false));
+        }
+        mAdded.addAll(lines);
+        store.addAll(logLines);
+    }
+
+    private String nextQuery(Random random, LogStore store) {
+        if (random.nextInt(5) == 0 && store.getNextSeq() > store.getFirstSeq()) {
+            //用保留的日志中的pid
+            long seq = store.getNextSeq() - 1 - random.nextInt((int) (store.getNextSeq() - store.getFirstSeq()));
+            int pid = LogLine.newLogLine(mAdded.get((int) seq), false).getProcessId();
+            return random.nextBoolean() ? "pid:" + pid : Integer.toString(pid);
+        }
+        return QUERIES[random.nextInt(QUERIES.length)];
+    }
+
+    /**
+     * 保留的日志内容不变，过滤结果与逐行匹配一致
+     */
+    private void assertConsistent(LogStore store, int levelLimit, String query) {
+        assertEquals(mAdded.size(), store.getNextSeq());
+        SearchCriteria criteria = new SearchCriteria(query);
+        List<Long> expected = new ArrayList<>();
+        for (long seq = store.getFirstSeq(); seq < store.getNextSeq(); seq++) {
+            String raw = mAdded.get((int) seq);
+            LogLine stored = store.get(seq);
+            assertEquals(raw, stored.getRawLine());
+            LogLine logLine = LogLine.newLogLine(raw, false);
+            if (logLine.getLogLevel() >= levelLimit && criteria.matches(logLine)) {
+                expected.add(seq);
+            }
+        }
+        List<Long> actual = new ArrayList<>(store.getResultSize());
+        for (int i = 0; i < store.getResultSize(); i++) {
+            actual.add(store.getResultSeq(i));
+        }
+        assertEquals("level " + levelLimit + " query \"" + query + "\"", expected, actual);
+    }
+}
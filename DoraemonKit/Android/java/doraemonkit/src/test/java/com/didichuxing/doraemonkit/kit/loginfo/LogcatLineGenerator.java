@@ -0,0 +1,73 @@
+package com.didichuxing.doraemonkit.kit.loginfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ================================================
+ * 描    述：按 logcat -v time 格式生成测试日志，固定随机种子，每次生成的内容一致
+ * 覆盖各日志级别、含空格和特殊字符的tag、系统tag、pid前的空格、ZTE设备的 "pid* n"、不带时间戳的旧格式和分隔行
+ * 修订历史：
+ * ================================================
+ */
+final class LogcatLineGenerator {
+    private static final char[] LEVELS = {'V', 'D', 'I', 'W', 'E', 'F', 'A'};
+    private static final String[] TAGS = {"ActivityManager", "DoKit", "OkHttp", "my tag", "Tag_1", "a.b.c", "x",
+            "ResourceType", "memtrack", "android.os.Debug", "chatty", "chattyFoo", "DPM", "DPMService",
+            "ANDR-PERF-LM", "ANDR-PERF", "WearableService", "WearableServiceX", "DigitalWidgetProvider"};
+    private static final String[] OUTPUTS = {"onCreate", "request done in 12ms", "maxLineHeight=3",
+            "Failed to read file", "uid=1000(system): denied", "value (1): ok", "",
+            "中文日志内容", "  leading spaces", "url=https://example.com/a?b=c&d=e"};
+    private static final String[] SEPARATORS = {"--------- beginning of main", "--------- beginning of system",
+            "--------- beginning of crash"};
+
+    private final Random mRandom;
+
+    LogcatLineGenerator(long seed) {
+        mRandom = new Random(seed);
+    }
+
+    List<String> generate(int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(next(i));
+        }
+        return lines;
+    }
+
+    String next(int seq) {
+        int kind = mRandom.nextInt(20);
+        if (kind == 0) {
+            return SEPARATORS[mRandom.nextInt(SEPARATORS.length)];
+        }
+        StringBuilder builder = new StringBuilder(96);
+        //旧格式不带时间戳
+        if (kind != 1) {
+            builder.append(String.format("%02d-%02d %02d:%02d:%02d.%03d ",
+                    1 + mRandom.nextInt(12), 1 + mRandom.nextInt(28), mRandom.nextInt(24),
+                    mRandom.nextInt(60), mRandom.nextInt(60), mRandom.nextInt(1000)));
+        }
+        builder.append(LEVELS[mRandom.nextInt(LEVELS.length)])
+                .append('/')
+                .append(TAGS[mRandom.nextInt(TAGS.length)])
+                .append('(');
+        int pid = 1 + mRandom.nextInt(99999);
+        for (int i = Integer.toString(pid).length(); i < 5; i++) {
+            builder.append(' ');
+        }
+        builder.append(pid);
+        if (kind == 2) {
+            builder.append('*');
+            if (mRandom.nextBoolean()) {
+                builder.append(' ');
+            }
+            builder.append(mRandom.nextInt(10));
+        }
+        builder.append("): ")
+                .append(OUTPUTS[mRandom.nextInt(OUTPUTS.length)])
+                .append(" #")
+                .append(seq);
+        return builder.toString();
+    }
+}
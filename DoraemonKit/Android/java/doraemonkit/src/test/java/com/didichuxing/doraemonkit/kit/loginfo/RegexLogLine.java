@@ -0,0 +1,122 @@
+package com.didichuxing.doraemonkit.kit.loginfo;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ================================================
+ * 描    述：改为逐字符扫描之前基于正则的LogLine解析，作为对照
+ * 修订历史：
+ * ================================================
+ */
+final class RegexLogLine {
+    private static final int TIMESTAMP_LENGTH = 19;
+
+    private static final Pattern LOG_PATTERN = Pattern.compile(
+            // log level
+            "(\\w)" +
+                    "/" +
+                    // tag
+                    "([^(]+)" +
+                    "\\(\\s*" +
+                    // pid
+                    "(\\d+)" +
+                    // optional weird number that only occurs on ZTE blade
+                    "(?:\\*\\s*\\d+)?" +
+                    "\\): ");
+
+    private static final String FILTER_PATTERN = "ResourceType|memtrack|android.os.Debug|BufferItemConsumer|DPM.*|MDM.*|ChimeraUtils|BatteryExternalStats.*|chatty.*|DisplayPowerController|WidgetHelper|WearableService|DigitalWidget.*|^ANDR-PERF-.*";
+
+    int logLevel;
+    String tag;
+    String logOutput;
+    int processId = -1;
+    String timestamp;
+
+    static RegexLogLine parse(String originalLine) {
+        RegexLogLine logLine = new RegexLogLine();
+        int startIdx = 0;
+        if (!TextUtils.isEmpty(originalLine)
+                && Character.isDigit(originalLine.charAt(0))
+                && originalLine.length() >= TIMESTAMP_LENGTH) {
+            logLine.timestamp = originalLine.substring(0, TIMESTAMP_LENGTH - 1);
+            startIdx = TIMESTAMP_LENGTH;
+        }
+        Matcher matcher = LOG_PATTERN.matcher(originalLine);
+        if (matcher.find(startIdx)) {
+            char logLevelChar = matcher.group(1).charAt(0);
+            String logText = originalLine.substring(matcher.end());
+            if (logText.matches("^maxLineHeight.*|Failed to read.*")) {
+                logLine.logLevel = convertCharToLogLevel('V');
+            } else {
+                logLine.logLevel = convertCharToLogLevel(logLevelChar);
+            }
+            String tagText = matcher.group(2);
+            if (tagText.matches(FILTER_PATTERN)) {
+                logLine.logLevel = convertCharToLogLevel('V');
+            }
+            logLine.tag = tagText;
+            logLine.processId = Integer.parseInt(matcher.group(3));
+            logLine.logOutput = logText;
+        } else {
+            logLine.logOutput = originalLine;
+            logLine.logLevel = -1;
+        }
+        return logLine;
+    }
+
+    String getOriginalLine() {
+        if (logLevel == -1) {
+            return logOutput;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        if (timestamp != null) {
+            stringBuilder.append(timestamp).append(' ');
+        }
+        stringBuilder.append(convertLogLevelToChar(logLevel))
+                .append('/')
+                .append(tag)
+                .append('(')
+                .append(processId)
+                .append("): ")
+                .append(logOutput);
+        return stringBuilder.toString();
+    }
+
+    private static int convertCharToLogLevel(char logLevelChar) {
+        switch (logLevelChar) {
+            case 'D':
+                return Log.DEBUG;
+            case 'E':
+                return Log.ERROR;
+            case 'I':
+                return Log.INFO;
+            case 'V':
+                return Log.VERBOSE;
+            case 'W':
+                return Log.WARN;
+            case 'F':
+                return Log.VERBOSE;
+        }
+        return -1;
+    }
+
+    private static char convertLogLevelToChar(int logLevel) {
+        switch (logLevel) {
+            case Log.DEBUG:
+                return 'D';
+            case Log.ERROR:
+                return 'E';
+            case Log.INFO:
+                return 'I';
+            case Log.VERBOSE:
+                return 'V';
+            case Log.WARN:
+                return 'W';
+        }
+        return ' ';
+    }
+}
@@ -0,0 +1,197 @@
+package com.didichuxing.doraemonkit.kit.network.room_db;
+
+import android.text.TextUtils;
+
+import com.didichuxing.doraemonkit.util.DokitUtil;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ================================================
+ * 描    述：对比旧的匹配流程(body最多序列化三次，query和body先转成json字符串再解析校验)和{@link MockMatchRequest#create}
+ * 覆盖form、json两种body以及带query的请求，先校验两种流程命中的规则一致，再分别计时
+ * 修订历史：
+ * ================================================
+ */
+public class MockMatchRequestBenchmarkTest {
+    private static final String PATH = "/api/v1/order/detail";
+    private static final String MEDIA_TYPE_FORM = "application/x-www-form-urlencoded";
+    private static final String MEDIA_TYPE_JSON = "application/json; charset=utf-8";
+
+    private static final int WARMUP_ROUNDS = 20000;
+    private static final int MEASURE_ROUNDS = 100000;
+
+    /**
+     * 一次请求的原始数据
+     */
+    private static final class Sample {
+        final String mName;
+        final String mQuery;
+        final String mContentType;
+        final String mBody;
+
+        Sample(String name, String query, String contentType, String body) {
+            mName = name;
+            mQuery = query;
+            mContentType = contentType;
+            mBody = body;
+        }
+
+        RequestBody requestBody() {
+            return mContentType == null ? null : RequestBody.create(MediaType.parse(mContentType), mBody);
+        }
+    }
+
+    private static List<Sample> samples() {
+        List<Sample> samples = new ArrayList<>();
+        samples.add(new Sample("form", "city=1&lang=zh-CN",
+                MEDIA_TYPE_FORM,
+                "orderId=1234567890&uid=998877&token=abcdefghijklmnopqrstuvwxyz&lat=39.9&lng=116.3&source=app&scene=detail"));
+        samples.add(new Sample("json", "city=1&lang=zh-CN",
+                MEDIA_TYPE_JSON,
+                "{\"orderId\":\"1234567890\",\"uid\":\"998877\",\"token\":\"abcdefghijklmnopqrstuvwxyz\",\"lat\":\"39.9\",\"lng\":\"116.3\",\"source\":\"app\",\"scene\":\"detail\"}"));
+        samples.add(new Sample("json-miss", "city=2",
+                MEDIA_TYPE_JSON,
+                "{\"orderId\":\"0\",\"uid\":\"998877\"}"));
+        samples.add(new Sample("query-only", "orderId=1234567890&city=1", null, null));
+        return samples;
+    }
+
+    private static MockMatchIndex<MockInterceptApiBean> buildIndex() {
+        List<MockInterceptApiBean> apis = new ArrayList<>();
+        apis.add(api("1", "{\"city\":\"2\"}", "{\"orderId\":\"0\"}"));
+        apis.add(api("2", "{\"city\":\"1\"}", "{\"orderId\":\"1234567890\",\"source\":\"app\"}"));
+        apis.add(api("3", "{\"orderId\":\"1234567890\"}", ""));
+        return MockMatchIndex.build(apis);
+    }
+
+    private static MockInterceptApiBean api(String id, String query, String body) {
+        MockInterceptApiBean api = new MockInterceptApiBean(id, "api" + id, PATH, "POST", "", query, body, "", "", "", null);
+        api.setOpen(true);
+        return api;
+    }
+
+    @Test
+    public void createMatchesSameRulesAsLegacy() throws Exception {
+        MockMatchIndex<MockInterceptApiBean> index = buildIndex();
+        for (Sample sample : samples()) {
+            assertEquals(sample.mName, matchedId(index, legacyRequest(sample)), matchedId(index, canonicalRequest(sample)));
+        }
+        assertEquals("2", matchedId(index, canonicalRequest(samples().get(0))));
+        assertEquals("2", matchedId(index, canonicalRequest(samples().get(1))));
+        assertEquals("1", matchedId(index, canonicalRequest(samples().get(2))));
+        assertEquals("3", matchedId(index, canonicalRequest(samples().get(3))));
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        MockMatchIndex<MockInterceptApiBean> index = buildIndex();
+        for (Sample sample : samples()) {
+            run(index, sample, true, WARMUP_ROUNDS);
+            run(index, sample, false, WARMUP_ROUNDS);
+            long legacy = run(index, sample, true, MEASURE_ROUNDS);
+            long canonical = run(index, sample, false, MEASURE_ROUNDS);
+            System.out.println(String.format("%-10s legacy %6d ns/op  create %6d ns/op",
+                    sample.mName, legacy / MEASURE_ROUNDS, canonical / MEASURE_ROUNDS));
+        }
+    }
+
+    /**
+     * @return 总耗时ns
+     */
+    private static long run(MockMatchIndex<MockInterceptApiBean> index, Sample sample, boolean legacy, int rounds) throws Exception {
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            MockMatchRequest request = legacy ? legacyRequest(sample) : canonicalRequest(sample);
+            //拦截和模板各匹配一次，和MockInterceptor一致
+            if (!TextUtils.isEmpty(matchedId(index, request))) {
+                hits++;
+            }
+            if (!TextUtils.isEmpty(matchedId(index, request))) {
+                hits++;
+            }
+        }
+        long cost = System.nanoTime() - start;
+        //避免循环被优化掉
+        if (hits < 0) {
+            throw new IllegalStateException();
+        }
+        return cost;
+    }
+
+    private static String matchedId(MockMatchIndex<MockInterceptApiBean> index, MockMatchRequest request) {
+        if (!request.isMatchable()) {
+            return "";
+        }
+        MockInterceptApiBean api = index.match(request, DokitDbManager.FROM_SDK_OTHER);
+        return api == null ? "" : api.getId();
+    }
+
+    private static MockMatchRequest canonicalRequest(Sample sample) {
+        RequestBody body = sample.requestBody();
+        if (body == null) {
+            return MockMatchRequest.create(PATH, sample.mQuery, null, null);
+        }
+        return MockMatchRequest.create(PATH, sample.mQuery, body.contentType().toString(), DokitUtil.requestBodyToString(body));
+    }
+
+    private static MockMatchRequest legacyRequest(Sample sample) {
+        return new MockMatchRequest(PATH, legacyTransformQuery(sample.mQuery), legacyTransformRequestBody(sample.requestBody()));
+    }
+
+    /**
+     * 旧的MockInterceptor.transformQuery
+     */
+    private static String legacyTransformQuery(String query) {
+        String json = "";
+        if (TextUtils.isEmpty(query)) {
+            return json;
+        }
+        try {
+            json = DokitUtil.param2Json(query);
+            new JSONObject(json);
+        } catch (Exception e) {
+            json = DokitDbManager.IS_NOT_NORMAL_QUERY_PARAMS;
+        }
+        return json;
+    }
+
+    /**
+     * 旧的MockInterceptor.transformRequestBody，body会被序列化两到三次
+     */
+    private static String legacyTransformRequestBody(RequestBody requestBody) {
+        String json = "";
+        if (requestBody == null || requestBody.contentType() == null) {
+            return json;
+        }
+        try {
+            String strBody = DokitUtil.requestBodyToString(requestBody);
+            if (TextUtils.isEmpty(strBody)) {
+                return "";
+            }
+            if (requestBody.contentType().toString().toLowerCase().contains(DokitDbManager.MEDIA_TYPE_FORM)) {
+                String form = DokitUtil.requestBodyToString(requestBody);
+                json = DokitUtil.param2Json(form);
+                new JSONObject(json);
+            } else if (requestBody.contentType().toString().toLowerCase().contains(DokitDbManager.MEDIA_TYPE_JSON)) {
+                json = DokitUtil.requestBodyToString(requestBody);
+                new JSONObject(json);
+            } else {
+                json = DokitDbManager.IS_NOT_NORMAL_BODY_PARAMS;
+            }
+        } catch (Exception e) {
+            json = "";
+        }
+        return json;
+    }
+}